@@ -0,0 +1,92 @@
+package OBJConverter;
+
+import benchmarks.BenchmarkDefaults;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for parsing OBJ files of different sizes. The meshes are UV spheres generated into a temporary file, so
+ * the benchmark does not depend on the contents of the "res" directory.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Benchmark)
+public class OBJFileLoaderBenchmark {
+    /**
+     * Number of stacks and slices of the generated sphere — 16 is a small prop, 256 is roughly 66k vertices.
+     */
+    @Param({"16", "256"})
+    public int segments;
+
+    private File objFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        objFile = File.createTempFile("maple-sphere-" + segments + "-", ".obj");
+        objFile.deleteOnExit();
+
+        writeSphere(objFile, segments);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        objFile.delete();
+    }
+
+    @Benchmark
+    public ModelData loadOBJ() {
+        return OBJFileLoader.loadOBJ(objFile);
+    }
+
+    /**
+     * Write a UV sphere with positions, texture coordinates, normals and triangulated faces to an OBJ file.
+     *
+     * @param file     File to write the sphere to.
+     * @param segments Number of stacks and slices of the sphere.
+     * @throws IOException If the file cannot be written.
+     */
+    private static void writeSphere(File file, int segments) throws IOException {
+        try (PrintWriter writer = new PrintWriter(file)) {
+            for (int stack = 0; stack <= segments; stack++) {
+                double phi = Math.PI * stack / segments;
+
+                for (int slice = 0; slice <= segments; slice++) {
+                    double theta = 2 * Math.PI * slice / segments;
+
+                    float x = (float) (Math.sin(phi) * Math.cos(theta));
+                    float y = (float) Math.cos(phi);
+                    float z = (float) (Math.sin(phi) * Math.sin(theta));
+
+                    writer.println("v " + x + " " + y + " " + z);
+                    writer.println("vt " + (float) slice / segments + " " + (float) stack / segments);
+                    writer.println("vn " + x + " " + y + " " + z);
+                }
+            }
+
+            int rowLength = segments + 1;
+
+            for (int stack = 0; stack < segments; stack++) {
+                for (int slice = 0; slice < segments; slice++) {
+                    int topLeft = stack * rowLength + slice + 1;
+                    int topRight = topLeft + 1;
+                    int bottomLeft = topLeft + rowLength;
+                    int bottomRight = bottomLeft + 1;
+
+                    writer.println("f " + face(topLeft) + " " + face(bottomLeft) + " " + face(topRight));
+                    writer.println("f " + face(topRight) + " " + face(bottomLeft) + " " + face(bottomRight));
+                }
+            }
+        }
+    }
+
+    private static String face(int index) {
+        return index + "/" + index + "/" + index;
+    }
+}
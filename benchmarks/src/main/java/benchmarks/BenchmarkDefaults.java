@@ -0,0 +1,13 @@
+package benchmarks;
+
+/**
+ * Shared JMH settings so every benchmark in the suite is reported in the same units.
+ */
+public final class BenchmarkDefaults {
+    public static final int WARMUP_ITERATIONS = 5;
+    public static final int MEASUREMENT_ITERATIONS = 5;
+    public static final int ITERATION_SECONDS = 1;
+    public static final int FORKS = 1;
+
+    private BenchmarkDefaults() { }
+}
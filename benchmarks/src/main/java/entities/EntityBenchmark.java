@@ -0,0 +1,55 @@
+package entities;
+
+import benchmarks.BenchmarkDefaults;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for fetching the world matrices of a frame's worth of entities, when nothing moved (static scenery) and
+ * when every entity moved since the previous frame.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Thread)
+public class EntityBenchmark {
+    private static final int ENTITY_COUNT = 1000;
+
+    private final Entity[] ENTITIES = new Entity[ENTITY_COUNT];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(676452);
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            ENTITIES[i] = new Entity(
+                    null,
+                    new Vector3f(random.nextFloat() * 800 - 400, 0, random.nextFloat() * -600),
+                    new Vector3f(0, random.nextFloat() * 360, 0), random.nextFloat() + 0.5f
+            );
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITY_COUNT)
+    public void staticWorldMatrices(Blackhole blackhole) {
+        for (Entity entity : ENTITIES) blackhole.consume(entity.worldMatrix());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITY_COUNT)
+    public void movingWorldMatrices(Blackhole blackhole) {
+        for (Entity entity : ENTITIES) {
+            entity.rotate(0, 1, 0);
+            Matrix4f worldMatrix = entity.worldMatrix();
+            blackhole.consume(worldMatrix);
+        }
+    }
+}
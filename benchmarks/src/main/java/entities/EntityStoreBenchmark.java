@@ -0,0 +1,160 @@
+package entities;
+
+import benchmarks.BenchmarkDefaults;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.ReadableVector3f;
+import org.lwjgl.util.vector.Vector3f;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import toolbox.EngineMath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks comparing the same frame's work over entities stored as an object graph and in an entity store: moving
+ * every entity and rebuilding its world matrix, culling the bounding spheres against a frustum, and a plain pass over
+ * the positions. The object graph is iterated in a shuffled order, as a scene list built up over time would be, so
+ * consecutive entities are not next to each other on the heap. EntityStoreTest in the engine module checks that both
+ * storages give the same world matrices.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Thread)
+public class EntityStoreBenchmark {
+    private static final int ENTITY_COUNT = 100_000;
+    private static final float BOUNDING_RADIUS = 5;
+    private static final float DELTA_TIME = 1f / 60;
+
+    private final float[] VIEW_PROJECTION = new float[16];
+    private final float[] PLANES = new float[24];
+    private final int[] VISIBLE = new int[ENTITY_COUNT];
+
+    private Entity[] entities;
+    private Vector3f[] velocities;
+    private EntityStore store;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(676452);
+        List<Entity> shuffled = new ArrayList<>(ENTITY_COUNT);
+        List<Vector3f> shuffledVelocities = new ArrayList<>(ENTITY_COUNT);
+        store = new EntityStore(ENTITY_COUNT);
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            float x = random.nextFloat() * 4000 - 2000;
+            float z = random.nextFloat() * -4000;
+            float rotation = random.nextFloat() * 360;
+            float scale = random.nextFloat() + 0.5f;
+            Vector3f velocity = new Vector3f(random.nextFloat() - 0.5f, 0, random.nextFloat() - 0.5f);
+
+            shuffled.add(new Entity(null, new Vector3f(x, 0, z), new Vector3f(0, rotation, 0), scale));
+            shuffledVelocities.add(velocity);
+
+            int id = store.create(null, BOUNDING_RADIUS, x, 0, z, 0, rotation, 0, scale, 0);
+            store.setVelocity(id, velocity.x, velocity.y, velocity.z);
+        }
+
+        long seed = random.nextLong();
+        Collections.shuffle(shuffled, new Random(seed));
+        Collections.shuffle(shuffledVelocities, new Random(seed));
+        entities = shuffled.toArray(new Entity[0]);
+        velocities = shuffledVelocities.toArray(new Vector3f[0]);
+
+        createViewProjection();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITY_COUNT)
+    public void objectGraphMove(Blackhole blackhole) {
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            Vector3f velocity = velocities[i];
+            entities[i].displace(velocity.x * DELTA_TIME, velocity.y * DELTA_TIME, velocity.z * DELTA_TIME);
+            blackhole.consume(entities[i].worldMatrix());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITY_COUNT)
+    public float[] storeMove() {
+        store.integrate(DELTA_TIME);
+        store.updateWorldMatrices();
+        return store.worldMatrices();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITY_COUNT)
+    public int objectGraphCull() {
+        int visible = 0;
+
+        entities:
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            ReadableVector3f position = entities[i].position();
+            float negativeRadius = -BOUNDING_RADIUS * entities[i].scale();
+
+            for (int plane = 0; plane < 24; plane += 4) {
+                float distance = PLANES[plane] * position.getX() + PLANES[plane + 1] * position.getY()
+                        + PLANES[plane + 2] * position.getZ() + PLANES[plane + 3];
+                if (distance < negativeRadius) continue entities;
+            }
+
+            VISIBLE[visible++] = i;
+        }
+
+        return visible;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITY_COUNT)
+    public int storeCull() {
+        return store.cull(PLANES, VISIBLE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITY_COUNT)
+    public float objectGraphIterate() {
+        float sum = 0;
+        for (Entity entity : entities) sum += entity.position().getX() + entity.position().getZ();
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITY_COUNT)
+    public float storeIterate() {
+        float[] positionsX = store.positionsX();
+        float[] positionsZ = store.positionsZ();
+        int size = store.size();
+
+        float sum = 0;
+        for (int i = 0; i < size; i++) sum += positionsX[i] + positionsZ[i];
+        return sum;
+    }
+
+    /**
+     * Build the view-projection matrix of a camera looking over the entities, with the same frustum as MasterRenderer.
+     */
+    private void createViewProjection() {
+        float aspectRatio = 16f / 9;
+        float yScale = (float) ((1f / Math.tan(Math.toRadians(35))) * aspectRatio);
+        float farPlane = 1000;
+        float nearPlane = 0.1f;
+
+        Matrix4f projection = new Matrix4f();
+        projection.m00 = yScale / aspectRatio;
+        projection.m11 = yScale;
+        projection.m22 = -(farPlane + nearPlane) / (farPlane - nearPlane);
+        projection.m23 = -1;
+        projection.m32 = -(2 * nearPlane * farPlane) / (farPlane - nearPlane);
+        projection.m33 = 0;
+
+        Matrix4f view = EngineMath.createTransformationMatrix(0, -10, 0, 10, 30, 0, 1, new Matrix4f());
+        EngineMath.storeMatrix(Matrix4f.mul(projection, view, null), VIEW_PROJECTION, 0);
+        EngineMath.extractFrustumPlanes(VIEW_PROJECTION, PLANES);
+    }
+}
@@ -0,0 +1,139 @@
+package jobs;
+
+import benchmarks.BenchmarkDefaults;
+import entities.EntityBehaviour;
+import entities.EntityStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for updating the entities of an entity store with a pursuit behaviour, in which every entity steers
+ * towards another entity's position, on job systems with different numbers of threads, and for the overhead of a small
+ * graph of dependent jobs. Determinism across thread counts is checked by EntityStoreTest, and the job graph by
+ * JobSystemTest, both in the engine module.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Thread)
+public class JobSystemBenchmark {
+    private static final int ENTITY_COUNT = 100_000;
+    private static final int GRAPH_WIDTH = 64;
+    private static final float DELTA_TIME = 1f / 60;
+
+    @Param({"0", "1", "2", "4"})
+    private int threadCount;
+
+    private JobSystem jobs;
+    private EntityStore store;
+    private Pursuit pursuit;
+
+    @Setup
+    public void setUp() {
+        jobs = new JobSystem(threadCount);
+        store = createStore();
+        pursuit = new Pursuit(ENTITY_COUNT);
+    }
+
+    @TearDown
+    public void tearDown() {
+        jobs.close();
+    }
+
+    @Benchmark
+    public float[] updateEntities() {
+        store.update(jobs, pursuit, DELTA_TIME);
+        return store.positionsX();
+    }
+
+    @Benchmark
+    public Job dependencyGraph() {
+        // A root job fanning out to a row of jobs, all joined by a final job.
+        Job root = jobs.schedule(() -> { });
+        Job[] row = new Job[GRAPH_WIDTH];
+        for (int i = 0; i < GRAPH_WIDTH; i++) row[i] = jobs.schedule(() -> { }, root);
+
+        Job last = jobs.schedule(() -> { }, row);
+        last.await();
+        return last;
+    }
+
+    /**
+     * Per-entity game logic for the benchmarks: every entity turns its velocity towards another entity and faces where
+     * it is going.
+     */
+    private static final class Pursuit implements EntityBehaviour {
+        private static final float SPEED = 5;
+        private static final float STEERING = 0.1f;
+
+        private final float[] NEXT_VELOCITIES_X;
+        private final float[] NEXT_VELOCITIES_Z;
+        private final float[] NEXT_YAWS;
+
+        private Pursuit(int capacity) {
+            this.NEXT_VELOCITIES_X = new float[capacity];
+            this.NEXT_VELOCITIES_Z = new float[capacity];
+            this.NEXT_YAWS = new float[capacity];
+        }
+
+        @Override
+        public void read(EntityStore store, int from, int to, float deltaTime) {
+            float[] positionsX = store.positionsX();
+            float[] positionsZ = store.positionsZ();
+            float[] velocitiesX = store.velocitiesX();
+            float[] velocitiesZ = store.velocitiesZ();
+            int size = store.size();
+
+            for (int i = from; i < to; i++) {
+                int target = (int) ((i * 7919L + 1) % size);
+                float dx = positionsX[target] - positionsX[i];
+                float dz = positionsZ[target] - positionsZ[i];
+                float length = (float) Math.sqrt(dx * dx + dz * dz);
+                if (length > 0) {
+                    dx *= SPEED / length;
+                    dz *= SPEED / length;
+                }
+
+                float velocityX = velocitiesX[i] + (dx - velocitiesX[i]) * STEERING;
+                float velocityZ = velocitiesZ[i] + (dz - velocitiesZ[i]) * STEERING;
+                NEXT_VELOCITIES_X[i] = velocityX;
+                NEXT_VELOCITIES_Z[i] = velocityZ;
+                NEXT_YAWS[i] = (float) Math.toDegrees(Math.atan2(velocityX, velocityZ));
+            }
+        }
+
+        @Override
+        public void write(EntityStore store, int from, int to, float deltaTime) {
+            float[] positionsX = store.positionsX();
+            float[] positionsZ = store.positionsZ();
+            float[] velocitiesX = store.velocitiesX();
+            float[] velocitiesZ = store.velocitiesZ();
+            float[] rotationsY = store.rotationsY();
+
+            for (int i = from; i < to; i++) {
+                velocitiesX[i] = NEXT_VELOCITIES_X[i];
+                velocitiesZ[i] = NEXT_VELOCITIES_Z[i];
+                positionsX[i] += NEXT_VELOCITIES_X[i] * deltaTime;
+                positionsZ[i] += NEXT_VELOCITIES_Z[i] * deltaTime;
+                rotationsY[i] = NEXT_YAWS[i];
+            }
+        }
+    }
+
+    private static EntityStore createStore() {
+        Random random = new Random(676452);
+        EntityStore store = new EntityStore(ENTITY_COUNT);
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            store.create(
+                    null, 1, random.nextFloat() * 4000 - 2000, 0, random.nextFloat() * -4000, 0, 0, 0, 1, 0
+            );
+        }
+
+        return store;
+    }
+}
@@ -0,0 +1,181 @@
+package lighting;
+
+import benchmarks.BenchmarkDefaults;
+import entities.Camera;
+import jobs.JobSystem;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector4f;
+import org.openjdk.jmh.annotations.*;
+import renderEngine.MasterRenderer;
+import toolbox.EngineMath;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for assigning hundreds of point and spot lights scattered over 800 by 800 units to the clusters of a
+ * camera's view frustum, on job systems with different numbers of threads, and for shading a few thousand points
+ * with the lights of their cluster against shading them with every light, as a fragment shader would. Coverage,
+ * determinism across threads and allocations are checked by LightClustersTest in the engine module.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Thread)
+public class LightClustersBenchmark {
+    private static final float ASPECT_RATIO = 16f / 9;
+    private static final float WORLD_SIZE = 800;
+    private static final float SAMPLE_DEPTH = 400;
+    private static final int SAMPLE_COUNT = 4096;
+
+    @Param({"256", "1024"})
+    private int lightCount;
+
+    @Param({"0", "1", "2", "4"})
+    private int threadCount;
+
+    private final Matrix4f PROJECTION_MATRIX = MasterRenderer.createProjectionMatrix(ASPECT_RATIO, new Matrix4f());
+    private final Matrix4f VIEW_MATRIX = new Matrix4f();
+
+    private JobSystem jobs;
+    private LightStore lights;
+    private LightClusters clusters;
+    private float[] samples;
+    private int[] sampleClusters;
+
+    @Setup
+    public void setUp() {
+        Camera camera = new Camera();
+        camera.position().set(0, 15, 0);
+        camera.rotation().set(15, 30, 0);
+        EngineMath.createViewMatrix(camera, VIEW_MATRIX);
+
+        jobs = new JobSystem(threadCount);
+        lights = createLights(lightCount);
+        clusters = createClusters();
+        clusters.assign(lights, PROJECTION_MATRIX, VIEW_MATRIX, jobs);
+
+        samples = new float[SAMPLE_COUNT * 3];
+        sampleClusters = new int[SAMPLE_COUNT];
+        createSamples(new Random(676452), samples, sampleClusters);
+    }
+
+    @TearDown
+    public void tearDown() {
+        jobs.close();
+    }
+
+    @Benchmark
+    public int assign() {
+        clusters.assign(lights, PROJECTION_MATRIX, VIEW_MATRIX, jobs);
+        return clusters.indexCount();
+    }
+
+    @Benchmark
+    public float shadeClustered() {
+        int[] ranges = clusters.clusterRanges();
+        int[] indices = clusters.lightIndices();
+        float total = 0;
+
+        for (int sample = 0; sample < SAMPLE_COUNT; sample++) {
+            int cluster = sampleClusters[sample];
+            int offset = ranges[cluster * 2];
+            int count = ranges[cluster * 2 + 1];
+
+            for (int i = offset; i < offset + count; i++) total += shade(indices[i], sample);
+        }
+
+        return total;
+    }
+
+    @Benchmark
+    public float shadeEveryLight() {
+        float total = 0;
+
+        for (int sample = 0; sample < SAMPLE_COUNT; sample++) {
+            for (int light = 0; light < lights.size(); light++) total += shade(light, sample);
+        }
+
+        return total;
+    }
+
+    /**
+     * Light a point of an upward-facing surface the way the fragment shaders do.
+     *
+     * @param light  Index of the light.
+     * @param sample Index of the point.
+     * @return Brightness of the light's red channel at the point.
+     */
+    private float shade(int light, int sample) {
+        float toLightX = lights.positionsX()[light] - samples[sample * 3];
+        float toLightY = lights.positionsY()[light] - samples[sample * 3 + 1];
+        float toLightZ = lights.positionsZ()[light] - samples[sample * 3 + 2];
+        float distance = (float) Math.sqrt(toLightX * toLightX + toLightY * toLightY + toLightZ * toLightZ);
+        float inverse = 1 / Math.max(distance, 0.0001f);
+
+        float falloff = Math.max(0, Math.min(1, 1 - distance / lights.ranges()[light]));
+        float spot = -(toLightX * lights.directionsX()[light] + toLightY * lights.directionsY()[light]
+                + toLightZ * lights.directionsZ()[light]) * inverse;
+        float outer = lights.outerCosines()[light];
+        float cone = Math.max(0, Math.min(1, (spot - outer) / (lights.innerCosines()[light] - outer)));
+        float brightness = Math.max(0, toLightY * inverse);
+
+        return brightness * falloff * falloff * cone * lights.colorsR()[light];
+    }
+
+    private static LightStore createLights(int count) {
+        Random random = new Random(count);
+        LightStore store = new LightStore(count);
+
+        for (int i = 0; i < count; i++) {
+            float x = (random.nextFloat() * 2 - 1) * WORLD_SIZE / 2;
+            float y = random.nextFloat() * 20;
+            float z = (random.nextFloat() * 2 - 1) * WORLD_SIZE / 2;
+
+            if (i % 4 == 0) {
+                store.addSpot(
+                        x, y + 5, z, 1, 0.8f, 0.6f, 30, random.nextFloat() - 0.5f, -1, random.nextFloat() - 0.5f,
+                        10 + random.nextFloat() * 20, 35 + random.nextFloat() * 50
+                );
+            }
+
+            else {
+                store.addPoint(x, y, z, 1, 0.7f, 0.4f, 15 + random.nextFloat() * 25);
+            }
+        }
+
+        return store;
+    }
+
+    private static LightClusters createClusters() {
+        return new LightClusters(16, 9, 24, MasterRenderer.NEAR_PLANE, MasterRenderer.FAR_PLANE, 256);
+    }
+
+    /**
+     * Pick points spread over the screen and the depth in front of the camera, and find their clusters.
+     *
+     * @param random        Source of the points.
+     * @param points        Destination for the world positions of the points, three floats each.
+     * @param pointClusters Destination for the cluster of each point.
+     */
+    private void createSamples(Random random, float[] points, int[] pointClusters) {
+        Matrix4f inverseView = Matrix4f.invert(VIEW_MATRIX, null);
+        Vector4f point = new Vector4f();
+
+        for (int i = 0; i < pointClusters.length; i++) {
+            float ndcX = random.nextFloat() * 2 - 1;
+            float ndcY = random.nextFloat() * 2 - 1;
+            float depth = MasterRenderer.NEAR_PLANE + random.nextFloat() * SAMPLE_DEPTH;
+
+            point.set(ndcX * depth / PROJECTION_MATRIX.m00, ndcY * depth / PROJECTION_MATRIX.m11, -depth, 1);
+            Matrix4f.transform(inverseView, point, point);
+
+            points[i * 3] = point.x;
+            points[i * 3 + 1] = point.y;
+            points[i * 3 + 2] = point.z;
+            pointClusters[i] = clusters.clusterAt(ndcX, ndcY, depth);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package physics;
+
+import benchmarks.BenchmarkDefaults;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for a step of a collision world of tree trunks and wandering capsules on rolling ground, against finding
+ * the same pairs by testing every pair of bounding boxes. The pairs, the collision response and the absence of
+ * garbage are checked by CollisionWorldTest in the engine module.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Thread)
+public class CollisionWorldBenchmark {
+    private static final int BOX_COUNT = 10_000;
+    private static final int CAPSULE_COUNT = 2000;
+    private static final float WORLD_SIZE = 2000;
+    private static final float RADIUS = 1.5f;
+    private static final float HEIGHT = 4;
+    private static final float SPEED = 0.5f;
+    private static final HeightField GROUND = (x, z) -> (float) (Math.sin(x * 0.01) * Math.cos(z * 0.01)) * 10;
+
+    private final float[] BOUNDS = new float[(BOX_COUNT + CAPSULE_COUNT) * 6];
+    private final float[] VELOCITIES_X = new float[CAPSULE_COUNT];
+    private final float[] VELOCITIES_Z = new float[CAPSULE_COUNT];
+    private final int[] CAPSULES = new int[CAPSULE_COUNT];
+
+    private CollisionWorld world;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(676452);
+        world = new CollisionWorld(BOX_COUNT + CAPSULE_COUNT);
+
+        for (int i = 0; i < BOX_COUNT; i++) {
+            float x = random.nextFloat() * WORLD_SIZE;
+            float z = random.nextFloat() * WORLD_SIZE;
+            float halfWidth = random.nextFloat() + 0.5f;
+            float y = GROUND.heightAt(x, z);
+            world.addBox(x - halfWidth, y, z - halfWidth, x + halfWidth, y + 30, z + halfWidth);
+        }
+
+        for (int i = 0; i < CAPSULE_COUNT; i++) {
+            float x = random.nextFloat() * WORLD_SIZE;
+            float z = random.nextFloat() * WORLD_SIZE;
+            CAPSULES[i] = world.addCapsule(x, GROUND.heightAt(x, z), z, RADIUS, HEIGHT);
+
+            double angle = random.nextDouble() * 2 * Math.PI;
+            VELOCITIES_X[i] = (float) Math.cos(angle) * SPEED;
+            VELOCITIES_Z[i] = (float) Math.sin(angle) * SPEED;
+        }
+
+        for (int i = 0; i < 100; i++) step();
+    }
+
+    @Benchmark
+    public int step() {
+        for (int i = 0; i < CAPSULE_COUNT; i++) {
+            int body = CAPSULES[i];
+            float x = world.x(body) + VELOCITIES_X[i];
+            float z = world.z(body) + VELOCITIES_Z[i];
+
+            if (x < 0 || x > WORLD_SIZE) VELOCITIES_X[i] = -VELOCITIES_X[i];
+            if (z < 0 || z > WORLD_SIZE) VELOCITIES_Z[i] = -VELOCITIES_Z[i];
+            world.setPosition(body, x, world.y(body) - SPEED, z);
+        }
+
+        world.step(GROUND);
+        return world.pairCount();
+    }
+
+    @Benchmark
+    public int bruteForcePairs() {
+        storeBounds();
+        return findPairsBruteForce().length;
+    }
+
+    /**
+     * Copy the bounding boxes the next step will sweep over: the boxes as they were added, and the capsules around
+     * their current positions.
+     */
+    private void storeBounds() {
+        Random random = new Random(676452);
+
+        for (int i = 0; i < BOX_COUNT; i++) {
+            float x = random.nextFloat() * WORLD_SIZE;
+            float z = random.nextFloat() * WORLD_SIZE;
+            float halfWidth = random.nextFloat() + 0.5f;
+            float y = GROUND.heightAt(x, z);
+            setBounds(i, x - halfWidth, y, z - halfWidth, x + halfWidth, y + 30, z + halfWidth);
+        }
+
+        for (int i = 0; i < CAPSULE_COUNT; i++) {
+            int body = CAPSULES[i];
+            float x = world.x(body);
+            float y = world.y(body);
+            float z = world.z(body);
+            setBounds(body, x - RADIUS, y, z - RADIUS, x + RADIUS, y + HEIGHT, z + RADIUS);
+        }
+    }
+
+    private void setBounds(int body, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        BOUNDS[body * 6] = minX;
+        BOUNDS[body * 6 + 1] = minY;
+        BOUNDS[body * 6 + 2] = minZ;
+        BOUNDS[body * 6 + 3] = maxX;
+        BOUNDS[body * 6 + 4] = maxY;
+        BOUNDS[body * 6 + 5] = maxZ;
+    }
+
+    /**
+     * Find every overlapping pair involving a capsule by testing every pair of bounding boxes.
+     *
+     * @return Sorted pairs, each as the smaller handle times 2^32 plus the larger handle.
+     */
+    private long[] findPairsBruteForce() {
+        int bodyCount = BOX_COUNT + CAPSULE_COUNT;
+        long[] found = new long[64];
+        int count = 0;
+
+        for (int first = BOX_COUNT; first < bodyCount; first++) {
+            for (int second = 0; second < bodyCount; second++) {
+                if (second >= BOX_COUNT && second <= first) continue;
+
+                boolean overlaps = true;
+                for (int axis = 0; axis < 3; axis++) {
+                    if (BOUNDS[first * 6 + axis] > BOUNDS[second * 6 + 3 + axis]
+                            || BOUNDS[second * 6 + axis] > BOUNDS[first * 6 + 3 + axis]) {
+                        overlaps = false;
+                    }
+                }
+
+                if (!overlaps) continue;
+                if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                found[count++] = ((long) Math.min(first, second) << 32) | Math.max(first, second);
+            }
+        }
+
+        found = Arrays.copyOf(found, count);
+        Arrays.sort(found);
+        return found;
+    }
+}
@@ -0,0 +1,234 @@
+package picking;
+
+import OBJConverter.GeneratedMeshes;
+import OBJConverter.ModelData;
+import benchmarks.BenchmarkDefaults;
+import entities.Camera;
+import entities.EntityStore;
+import models.RawModel;
+import models.TexturedModel;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+import org.openjdk.jmh.annotations.*;
+import physics.HeightField;
+import renderEngine.MasterRenderer;
+import textures.ModelTexture;
+import toolbox.EngineMath;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for picking through a hundred thousand bumpy spheres of two models scattered over 4000 by 4000 units of
+ * rolling ground, with rays cast through random points of the screen of cameras looking slightly down, against
+ * testing the ray against the bounding sphere of every entity before tracing the same hierarchies. Unprojection,
+ * picks against brute force and allocations are checked by PickerTest in the engine module.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Thread)
+public class PickerBenchmark {
+    private static final int ENTITY_COUNT = 100_000;
+    private static final float WORLD_SIZE = 4000;
+    private static final float CELL_SIZE = 40;
+    private static final float GROUND_TOP = 11;
+    private static final float GROUND_STEP = 1;
+    private static final float PICK_DISTANCE = 1000;
+    private static final int RAY_COUNT = 1024;
+    private static final float ASPECT_RATIO = 16f / 9;
+
+    private static final HeightField GROUND = (x, z) -> (float) (8 * Math.sin(x / 40) * Math.cos(z / 55)
+            + 3 * Math.sin((x + z) / 17));
+
+    private final Matrix4f PROJECTION_MATRIX = MasterRenderer.createProjectionMatrix(ASPECT_RATIO, new Matrix4f());
+    private final PickResult RESULT = new PickResult();
+
+    private EntityStore store;
+    private Picker picker;
+    private float[] rays;
+    private int nextRay = 0;
+
+    @Setup
+    public void setUp() {
+        TexturedModel rock = new TexturedModel(new RawModel(1, 0), new ModelTexture(1));
+        TexturedModel boulder = new TexturedModel(new RawModel(2, 0), new ModelTexture(2));
+        Map<TexturedModel, ModelData> meshes = Map.of(
+                rock, GeneratedMeshes.bumpySphere(25, 3), boulder, GeneratedMeshes.bumpySphere(13, 4)
+        );
+
+        Random random = new Random(676452);
+        store = new EntityStore(ENTITY_COUNT);
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            TexturedModel model = i % 3 == 0 ? boulder : rock;
+            float x = random.nextFloat() * WORLD_SIZE;
+            float z = random.nextFloat() * WORLD_SIZE;
+
+            store.create(
+                    model, meshes.get(model).furthestPoint(), x, GROUND.heightAt(x, z) - 1, z,
+                    random.nextFloat() * 40 - 20, random.nextFloat() * 360, random.nextFloat() * 40 - 20,
+                    random.nextFloat() + 1, EntityStore.STATIC
+            );
+        }
+
+        picker = new Picker(store, meshes, CELL_SIZE, GROUND, GROUND_TOP, GROUND_STEP);
+
+        // The picker has to follow entities removed, moved and hidden after it was built.
+        for (int id = 0; id < ENTITY_COUNT; id += 97) store.remove(id);
+        for (int id = 1; id < ENTITY_COUNT; id += 89) {
+            if (id % 97 == 0) continue;
+
+            float x = random.nextFloat() * WORLD_SIZE;
+            float z = random.nextFloat() * WORLD_SIZE;
+            store.setPosition(id, x, GROUND.heightAt(x, z), z);
+        }
+        for (int id = 2; id < ENTITY_COUNT; id += 53) {
+            if (id % 97 != 0) store.setFlags(id, EntityStore.STATIC | EntityStore.HIDDEN);
+        }
+        picker.update();
+
+        rays = createRays(random, RAY_COUNT);
+    }
+
+    @Benchmark
+    public float pick() {
+        int offset = nextRay();
+        picker.pick(
+                rays[offset], rays[offset + 1], rays[offset + 2], rays[offset + 3], rays[offset + 4], rays[offset + 5],
+                PICK_DISTANCE, RESULT
+        );
+        return RESULT.distance();
+    }
+
+    @Benchmark
+    public float pickWithoutGrid() {
+        int offset = nextRay();
+        return pickLinearly(
+                rays[offset], rays[offset + 1], rays[offset + 2], rays[offset + 3], rays[offset + 4], rays[offset + 5]
+        );
+    }
+
+    private int nextRay() {
+        int offset = nextRay * 6;
+        nextRay = (nextRay + 1) % RAY_COUNT;
+        return offset;
+    }
+
+    /**
+     * Pick an entity the way the picker does, but testing the ray against the bounding sphere of every entity instead
+     * of walking the grid, and without the ground.
+     *
+     * @param ox Origin of the ray.
+     * @param oy Origin of the ray.
+     * @param oz Origin of the ray.
+     * @param dx Normalized direction of the ray.
+     * @param dy Normalized direction of the ray.
+     * @param dz Normalized direction of the ray.
+     * @return Distance to the nearest entity hit, or the pick distance if none is.
+     */
+    private float pickLinearly(float ox, float oy, float oz, float dx, float dy, float dz) {
+        float[] matrices = store.worldMatrices();
+        float[] radii = store.radii();
+        float best = PICK_DISTANCE;
+
+        for (int i = 0; i < store.size(); i++) {
+            int m = i * 16;
+            if (sphereEntry(matrices, radii[i], m, ox, oy, oz, dx, dy, dz) >= best) continue;
+            if ((store.flags(store.id(i)) & EntityStore.HIDDEN) != 0) continue;
+
+            float inverseScale = 1 / (matrices[m] * matrices[m] + matrices[m + 1] * matrices[m + 1]
+                    + matrices[m + 2] * matrices[m + 2]);
+            float toOriginX = ox - matrices[m + 12];
+            float toOriginY = oy - matrices[m + 13];
+            float toOriginZ = oz - matrices[m + 14];
+
+            best = Math.min(best, picker.meshBvh(store.model(store.models()[i])).intersect(
+                    (matrices[m] * toOriginX + matrices[m + 1] * toOriginY + matrices[m + 2] * toOriginZ)
+                            * inverseScale,
+                    (matrices[m + 4] * toOriginX + matrices[m + 5] * toOriginY + matrices[m + 6] * toOriginZ)
+                            * inverseScale,
+                    (matrices[m + 8] * toOriginX + matrices[m + 9] * toOriginY + matrices[m + 10] * toOriginZ)
+                            * inverseScale,
+                    (matrices[m] * dx + matrices[m + 1] * dy + matrices[m + 2] * dz) * inverseScale,
+                    (matrices[m + 4] * dx + matrices[m + 5] * dy + matrices[m + 6] * dz) * inverseScale,
+                    (matrices[m + 8] * dx + matrices[m + 9] * dy + matrices[m + 10] * dz) * inverseScale,
+                    best
+            ));
+        }
+
+        return best;
+    }
+
+    /**
+     * Find where a ray enters the bounding sphere of an entity.
+     *
+     * @param matrices World matrices of the entities.
+     * @param radius   Radius of the entity's bounding sphere.
+     * @param m        Offset of the entity's world matrix.
+     * @param ox       Origin of the ray.
+     * @param oy       Origin of the ray.
+     * @param oz       Origin of the ray.
+     * @param dx       Normalized direction of the ray.
+     * @param dy       Normalized direction of the ray.
+     * @param dz       Normalized direction of the ray.
+     * @return Distance along the ray to the sphere, 0 if the ray starts inside, or positive infinity if it misses.
+     */
+    private static float sphereEntry(
+            float[] matrices, float radius, int m, float ox, float oy, float oz, float dx, float dy, float dz
+    ) {
+        float toCentreX = matrices[m + 12] - ox;
+        float toCentreY = matrices[m + 13] - oy;
+        float toCentreZ = matrices[m + 14] - oz;
+        float along = toCentreX * dx + toCentreY * dy + toCentreZ * dz;
+        float squaredDistance = toCentreX * toCentreX + toCentreY * toCentreY + toCentreZ * toCentreZ;
+        float squaredOffset = squaredDistance - along * along;
+
+        if (squaredDistance <= radius * radius) return 0;
+        if (along < 0 || squaredOffset > radius * radius) return Float.POSITIVE_INFINITY;
+        return along - (float) Math.sqrt(radius * radius - squaredOffset);
+    }
+
+    /**
+     * Cast rays through random points of the screens of cameras scattered over the world, looking slightly down.
+     *
+     * @param random Source of the cameras and points.
+     * @param count  Number of rays.
+     * @return Origin and normalized direction of every ray, six floats each.
+     */
+    private float[] createRays(Random random, int count) {
+        float[] result = new float[count * 6];
+        Camera camera = new Camera();
+        Matrix4f viewMatrix = new Matrix4f();
+        Vector3f origin = new Vector3f();
+        Vector3f direction = new Vector3f();
+
+        for (int i = 0; i < count; i++) {
+            placeCamera(random, camera, viewMatrix);
+            EngineMath.unproject(
+                    random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1, PROJECTION_MATRIX, viewMatrix, origin,
+                    direction
+            );
+
+            result[i * 6] = origin.x;
+            result[i * 6 + 1] = origin.y;
+            result[i * 6 + 2] = origin.z;
+            result[i * 6 + 3] = direction.x;
+            result[i * 6 + 4] = direction.y;
+            result[i * 6 + 5] = direction.z;
+        }
+
+        return result;
+    }
+
+    private static void placeCamera(Random random, Camera camera, Matrix4f viewMatrix) {
+        float x = 500 + random.nextFloat() * (WORLD_SIZE - 1000);
+        float z = 500 + random.nextFloat() * (WORLD_SIZE - 1000);
+        camera.position().set(x, GROUND.heightAt(x, z) + 2 + random.nextFloat() * 30, z);
+        camera.rotation().set(5 + random.nextFloat() * 30, random.nextFloat() * 360, 0);
+        EngineMath.createViewMatrix(camera, viewMatrix);
+    }
+}
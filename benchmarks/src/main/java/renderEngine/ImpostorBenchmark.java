@@ -0,0 +1,107 @@
+package renderEngine;
+
+import OBJConverter.GeneratedMeshes;
+import OBJConverter.ModelData;
+import benchmarks.BenchmarkDefaults;
+import entities.Camera;
+import entities.EntityStore;
+import models.RawModel;
+import models.TexturedModel;
+import org.lwjgl.util.vector.Matrix4f;
+import org.openjdk.jmh.annotations.*;
+import textures.ModelTexture;
+import toolbox.EngineMath;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for picking the static chunks to draw in a frame over twenty thousand trees on 4000 by 4000 units, with
+ * chunks beyond the impostor distance drawn as impostors against drawing every visible chunk's merged mesh. Uploads
+ * are replaced by creating models without OpenGL. View selection, drawing each visible tree exactly once and
+ * allocations are checked by ImpostorAtlasTest in the engine module.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Thread)
+public class ImpostorBenchmark {
+    private static final int ENTITY_COUNT = 20_000;
+    private static final float WORLD_SIZE = 4000;
+    private static final float CHUNK_SIZE = 200;
+    private static final float IMPOSTOR_DISTANCE = 300;
+    private static final int VIEW_COUNT = 16;
+    private static final float ASPECT_RATIO = 16f / 9;
+
+    private final float[] PLANES = new float[24];
+    private final Camera CAMERA = new Camera();
+
+    private EntityStore store;
+    private StaticBatcher impostorBatcher;
+    private StaticBatcher meshBatcher;
+
+    @Setup
+    public void setUp() {
+        TexturedModel tree = new TexturedModel(new RawModel(1, 0), new ModelTexture(1));
+        TexturedModel lowPolyTree = new TexturedModel(new RawModel(2, 0), new ModelTexture(2));
+        Map<TexturedModel, ModelData> meshes = Map.of(
+                tree, GeneratedMeshes.sphere(25, 8), lowPolyTree, GeneratedMeshes.sphere(12, 5)
+        );
+
+        Random random = new Random(676452);
+        store = new EntityStore(ENTITY_COUNT);
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            store.create(
+                    i % 3 == 0 ? lowPolyTree : tree, 16, random.nextFloat() * WORLD_SIZE, 0,
+                    random.nextFloat() * WORLD_SIZE, 0, random.nextFloat() * 360, 0, random.nextFloat() + 1,
+                    EntityStore.STATIC
+            );
+        }
+
+        impostorBatcher = createBatcher(new ImpostorAtlas(meshes, VIEW_COUNT));
+        impostorBatcher.update(store, meshes);
+        meshBatcher = createBatcher(null);
+        meshBatcher.update(store, meshes);
+
+        CAMERA.position().set(WORLD_SIZE / 2, 20, WORLD_SIZE / 2);
+        CAMERA.rotation().set(5, 30, 0);
+        extractFrustumPlanes(CAMERA, PLANES);
+    }
+
+    @Benchmark
+    public int selectWithImpostors() {
+        impostorBatcher.selectVisible(PLANES, CAMERA.position().x, CAMERA.position().y, CAMERA.position().z);
+        return impostorBatcher.visibleImpostorCount();
+    }
+
+    @Benchmark
+    public int selectMeshesOnly() {
+        meshBatcher.selectVisible(PLANES, CAMERA.position().x, CAMERA.position().y, CAMERA.position().z);
+        return meshBatcher.visibleMeshes().size();
+    }
+
+    private static StaticBatcher createBatcher(ImpostorAtlas impostors) {
+        return new StaticBatcher(
+                CHUNK_SIZE, impostors, IMPOSTOR_DISTANCE, mesh -> new RawModel(0, mesh.indices().length), model -> { }
+        );
+    }
+
+    /**
+     * Extract the frustum planes of a camera with the projection the master renderer uses on a 16:9 display.
+     *
+     * @param camera Camera to be looked through.
+     * @param planes Destination for the six frustum planes.
+     */
+    private static void extractFrustumPlanes(Camera camera, float[] planes) {
+        Matrix4f projectionMatrix = MasterRenderer.createProjectionMatrix(ASPECT_RATIO, new Matrix4f());
+
+        Matrix4f viewProjection = Matrix4f.mul(projectionMatrix, EngineMath.createViewMatrix(camera), null);
+        float[] matrix = new float[16];
+        EngineMath.storeMatrix(viewProjection, matrix, 0);
+        EngineMath.extractFrustumPlanes(matrix, planes);
+    }
+}
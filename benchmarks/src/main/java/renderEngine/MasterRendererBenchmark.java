@@ -0,0 +1,60 @@
+package renderEngine;
+
+import benchmarks.BenchmarkDefaults;
+import entities.Entity;
+import models.RawModel;
+import models.TexturedModel;
+import org.lwjgl.util.vector.Vector3f;
+import org.openjdk.jmh.annotations.*;
+import textures.ModelTexture;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for sorting a frame's worth of entities into render batches, the way MasterRenderer does every frame.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Thread)
+public class MasterRendererBenchmark {
+    private static final int MODEL_COUNT = 6;
+
+    @Param({"100", "1000", "10000"})
+    public int entityCount;
+
+    private final List<Entity> ENTITIES = new ArrayList<>();
+    private final Map<TexturedModel, List<Entity>> BATCHES = new HashMap<>();
+
+    @Setup
+    public void setUp() {
+        TexturedModel[] models = new TexturedModel[MODEL_COUNT];
+        for (int i = 0; i < MODEL_COUNT; i++) {
+            models[i] = new TexturedModel(new RawModel(i + 1, 3 * (i + 1)), new ModelTexture(i + 1));
+        }
+
+        Random random = new Random(676452);
+        for (int i = 0; i < entityCount; i++) {
+            ENTITIES.add(new Entity(
+                    models[random.nextInt(MODEL_COUNT)],
+                    new Vector3f(random.nextFloat() * 800 - 400, 0, random.nextFloat() * -600),
+                    new Vector3f(0, random.nextFloat() * 360, 0), 1
+            ));
+        }
+    }
+
+    @Benchmark
+    public Map<TexturedModel, List<Entity>> processEntities() {
+        BATCHES.clear();
+        for (Entity entity : ENTITIES) MasterRenderer.addToBatch(BATCHES, entity);
+
+        return BATCHES;
+    }
+}
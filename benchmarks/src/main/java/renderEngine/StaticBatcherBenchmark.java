@@ -0,0 +1,82 @@
+package renderEngine;
+
+import OBJConverter.GeneratedMeshes;
+import OBJConverter.ModelData;
+import benchmarks.BenchmarkDefaults;
+import entities.EntityStore;
+import models.RawModel;
+import models.TexturedModel;
+import org.openjdk.jmh.annotations.*;
+import textures.ModelTexture;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for batching the static scenery of an entity store: merging every chunk from scratch, checking an
+ * unchanged store, and rebuilding after a single entity moved. Uploads are replaced by creating models without
+ * OpenGL. Merging and incremental rebuilds are checked by StaticBatcherTest in the engine module.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Thread)
+public class StaticBatcherBenchmark {
+    private static final int ENTITY_COUNT = 2000;
+    private static final int MESH_RINGS = 12;
+    private static final float CHUNK_SIZE = 200;
+
+    private EntityStore store;
+    private Map<TexturedModel, ModelData> meshes;
+    private StaticBatcher batcher;
+    private int movingId;
+    private float step = CHUNK_SIZE / 2;
+
+    @Setup
+    public void setUp() {
+        TexturedModel tree = new TexturedModel(new RawModel(1, 0), new ModelTexture(1));
+        TexturedModel rock = new TexturedModel(new RawModel(2, 0), new ModelTexture(2));
+        meshes = Map.of(tree, GeneratedMeshes.sphere(MESH_RINGS, 8), rock, GeneratedMeshes.sphere(MESH_RINGS / 2, 2));
+
+        Random random = new Random(676452);
+        store = new EntityStore(ENTITY_COUNT);
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            store.create(
+                    i % 3 == 0 ? rock : tree, 8, random.nextFloat() * 800 - 400, 0, random.nextFloat() * -600, 0,
+                    random.nextFloat() * 360, 0, random.nextFloat() + 4, EntityStore.STATIC
+            );
+        }
+
+        movingId = store.id(ENTITY_COUNT / 2);
+        batcher = createBatcher();
+        batcher.update(store, meshes);
+    }
+
+    @Benchmark
+    public int buildAll() {
+        StaticBatcher fresh = createBatcher();
+        fresh.update(store, meshes);
+        return fresh.chunkCount();
+    }
+
+    @Benchmark
+    public boolean updateUnchanged() {
+        return batcher.update(store, meshes);
+    }
+
+    @Benchmark
+    public boolean updateAfterMove() {
+        // Move one entity back and forth by half a chunk, so it changes chunks every other time.
+        store.displace(movingId, step, 0, 0);
+        step = -step;
+        return batcher.update(store, meshes);
+    }
+
+    private static StaticBatcher createBatcher() {
+        return new StaticBatcher(CHUNK_SIZE, mesh -> new RawModel(0, mesh.indices().length), model -> { });
+    }
+}
@@ -0,0 +1,106 @@
+package scenes;
+
+import benchmarks.BenchmarkDefaults;
+import entities.EntityStore;
+import models.RawModel;
+import models.TexturedModel;
+import org.openjdk.jmh.annotations.*;
+import textures.ModelTexture;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Benchmarks for a scene file of a hundred thousand entities over 4000 by 4000 units: opening it, loading every region
+ * into an empty entity store, and paging regions in and out around a camera moving across it. Reading back, paging
+ * and rejecting malformed files are checked by SceneTest in the engine module.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Thread)
+public class SceneBenchmark {
+    private static final int ENTITY_COUNT = 100_000;
+    private static final float WORLD_SIZE = 4000;
+    private static final float REGION_SIZE = 100;
+    private static final float LOAD_DISTANCE = 300;
+    private static final float EVICT_DISTANCE = 500;
+
+    private final TexturedModel[] MODELS = {
+            new TexturedModel(new RawModel(1, 0), new ModelTexture(1)),
+            new TexturedModel(new RawModel(2, 0), new ModelTexture(2))
+    };
+    private final BiFunction<String, String, TexturedModel> RESOLVER =
+            (model, texture) -> MODELS[model.equals("tree") ? 0 : 1];
+
+    private File file;
+    private EntityStore pagedStore;
+    private Scene pagedScene;
+    private float cameraX = 0;
+    private float step = 50;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("scene", ".mpls");
+        file.deleteOnExit();
+        writeScene();
+
+        pagedStore = new EntityStore(ENTITY_COUNT);
+        pagedScene = Scene.open(file, pagedStore, RESOLVER, LOAD_DISTANCE, EVICT_DISTANCE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pagedScene.close();
+    }
+
+    @Benchmark
+    public int openIndex() {
+        try (Scene scene = Scene.open(file, new EntityStore(16), RESOLVER, LOAD_DISTANCE, EVICT_DISTANCE)) {
+            return scene.regionCount();
+        }
+    }
+
+    @Benchmark
+    public int loadEverything() {
+        EntityStore store = new EntityStore(ENTITY_COUNT);
+
+        try (Scene scene = Scene.open(file, store, RESOLVER, Float.MAX_VALUE, Float.MAX_VALUE)) {
+            scene.update(0, 0);
+            return store.size();
+        }
+    }
+
+    @Benchmark
+    public int pageWhileMoving() {
+        // Sweep the camera back and forth along the middle of the scene, a little over a region per update.
+        cameraX += step;
+        if (cameraX < 0 || cameraX > WORLD_SIZE) step = -step;
+        return pagedScene.update(cameraX, WORLD_SIZE / 2);
+    }
+
+    /**
+     * Write a scene of two models with entities scattered at random.
+     */
+    private void writeScene() {
+        Random random = new Random(676452);
+        SceneWriter writer = new SceneWriter(REGION_SIZE);
+        writer.addModel("tree", "tree", 8);
+        writer.addModel("lowPolyTree", "lowPolyTree", 5);
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            writer.addEntity(
+                    i % 2, random.nextFloat() * WORLD_SIZE, random.nextFloat() * 40, random.nextFloat() * WORLD_SIZE,
+                    random.nextFloat() * 360, random.nextFloat() * 360, i, random.nextFloat() + 0.5f,
+                    i % 3 == 0 ? EntityStore.STATIC : 0
+            );
+        }
+
+        writer.write(file);
+    }
+}
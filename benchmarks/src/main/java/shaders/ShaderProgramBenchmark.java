@@ -0,0 +1,51 @@
+package shaders;
+
+import benchmarks.BenchmarkDefaults;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+import org.openjdk.jmh.annotations.*;
+import toolbox.EngineMath;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for packing a matrix into the shared upload buffer used by every loadMatrix4f call, and for the uniform
+ * shadow comparison that decides whether the upload can be skipped, which is checked by ShaderProgramTest in the
+ * engine module.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Thread)
+public class ShaderProgramBenchmark {
+    private Matrix4f matrix;
+    private Matrix4f otherMatrix;
+    private final int[] shadow = new int[16];
+    private boolean alternate = false;
+
+    @Setup
+    public void setUp() {
+        matrix = EngineMath.createTransformationMatrix(new Vector3f(10, 2, -30), new Vector3f(0, 45, 0), 2);
+        otherMatrix = EngineMath.createTransformationMatrix(new Vector3f(10, 2, -31), new Vector3f(0, 45, 0), 2);
+        UniformShadow.updateShadow(shadow, 0, matrix);
+    }
+
+    @Benchmark
+    public FloatBuffer storeMatrix() {
+        return ShaderProgram.storeMatrix(matrix);
+    }
+
+    @Benchmark
+    public boolean updateShadowUnchanged() {
+        return UniformShadow.updateShadow(shadow, 0, matrix);
+    }
+
+    @Benchmark
+    public boolean updateShadowChanged() {
+        alternate = !alternate;
+        return UniformShadow.updateShadow(shadow, 0, alternate ? otherMatrix : matrix);
+    }
+}
@@ -0,0 +1,46 @@
+package simulation;
+
+import benchmarks.BenchmarkDefaults;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for handing snapshots of a thousand transforms from a simulation thread to a render thread through a
+ * triple buffer, with both threads running flat out against each other. The hand-off is checked by TripleBufferTest,
+ * and the simulation loop on top of it by SimulationLoopTest, both in the engine module.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Group)
+public class TripleBufferBenchmark {
+    private static final int SNAPSHOT_FLOATS = 1000 * 7;
+
+    private TripleBuffer<float[]> buffer;
+    private float producerTick = 0;
+
+    @Setup
+    public void setUp() {
+        buffer = new TripleBuffer<>(() -> new float[SNAPSHOT_FLOATS]);
+    }
+
+    @Benchmark
+    @Group("handOff")
+    @GroupThreads(1)
+    public void publish() {
+        float[] snapshot = buffer.back();
+        Arrays.fill(snapshot, ++producerTick);
+        buffer.publish();
+    }
+
+    @Benchmark
+    @Group("handOff")
+    @GroupThreads(1)
+    public float acquire() {
+        return buffer.acquire()[SNAPSHOT_FLOATS - 1];
+    }
+}
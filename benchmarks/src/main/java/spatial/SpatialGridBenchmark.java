@@ -0,0 +1,165 @@
+package spatial;
+
+import benchmarks.BenchmarkDefaults;
+import org.lwjgl.util.vector.Matrix4f;
+import org.openjdk.jmh.annotations.*;
+import toolbox.EngineMath;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for querying and updating a spatial grid of a million entities spread over a 10 km square world, against
+ * a linear scan over the same bounding spheres. The queries are checked against a linear scan by SpatialGridTest in
+ * the engine module.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Thread)
+public class SpatialGridBenchmark {
+    private static final int ENTITY_COUNT = 1_000_000;
+    private static final float WORLD_SIZE = 10000;
+    private static final float CELL_SIZE = 16;
+    private static final int MOVES_PER_INVOCATION = 1000;
+
+    private static final float QUERY_RADIUS = 100;
+    private static final float RAY_LENGTH = 2000;
+
+    private final float[] VIEW_PROJECTION = new float[16];
+    private final float[] PLANES = new float[24];
+    private final QueryResults RESULTS = new QueryResults(1024);
+
+    private SpatialGrid<Integer> grid;
+    private float[] positionsX;
+    private float[] positionsY;
+    private float[] positionsZ;
+    private float[] radii;
+    private int[] handles;
+    private int[] scanResults;
+
+    private SplittableRandom random;
+
+    @Setup
+    public void setUp() {
+        random = new SplittableRandom(42);
+        grid = new SpatialGrid<>(CELL_SIZE, ENTITY_COUNT);
+
+        positionsX = new float[ENTITY_COUNT];
+        positionsY = new float[ENTITY_COUNT];
+        positionsZ = new float[ENTITY_COUNT];
+        radii = new float[ENTITY_COUNT];
+        handles = new int[ENTITY_COUNT];
+        scanResults = new int[ENTITY_COUNT];
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            positionsX[i] = (float) random.nextDouble(-WORLD_SIZE / 2, WORLD_SIZE / 2);
+            positionsY[i] = (float) random.nextDouble(0, 40);
+            positionsZ[i] = (float) random.nextDouble(-WORLD_SIZE / 2, WORLD_SIZE / 2);
+            // A few entities are larger than half a cell, so the oversized list is exercised too.
+            radii[i] = i % 1000 == 0 ? 20 : (float) random.nextDouble(0.5, 3);
+            handles[i] = grid.insert(i, positionsX[i], positionsY[i], positionsZ[i], radii[i]);
+        }
+
+        createViewProjection();
+    }
+
+    @Benchmark
+    public int querySphere() {
+        return grid.querySphere(0, 20, 0, QUERY_RADIUS, RESULTS);
+    }
+
+    @Benchmark
+    public int queryAabb() {
+        return grid.queryAabb(-QUERY_RADIUS, 0, -QUERY_RADIUS, QUERY_RADIUS, 40, QUERY_RADIUS, RESULTS);
+    }
+
+    @Benchmark
+    public int queryFrustum() {
+        return grid.queryFrustum(PLANES, RESULTS);
+    }
+
+    @Benchmark
+    public int queryRay() {
+        return grid.queryRay(0, 20, 0, 1, -0.01f, 0.5f, RAY_LENGTH, RESULTS);
+    }
+
+    @Benchmark
+    public int moveEntities() {
+        // Nudge a random sample of entities like a frame of simulation would, so some of them change cells.
+        for (int i = 0; i < MOVES_PER_INVOCATION; i++) {
+            int entity = random.nextInt(ENTITY_COUNT);
+            positionsX[entity] += (float) random.nextDouble(-2, 2);
+            positionsZ[entity] += (float) random.nextDouble(-2, 2);
+            grid.move(handles[entity], positionsX[entity], positionsY[entity], positionsZ[entity]);
+        }
+
+        return grid.size();
+    }
+
+    @Benchmark
+    public int linearScanSphere() {
+        return scanSphere(0, 20, 0, QUERY_RADIUS);
+    }
+
+    @Benchmark
+    public int linearScanFrustum() {
+        return scanFrustum();
+    }
+
+    private int scanSphere(float x, float y, float z, float radius) {
+        int count = 0;
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            float dx = positionsX[i] - x;
+            float dy = positionsY[i] - y;
+            float dz = positionsZ[i] - z;
+            float reach = radii[i] + radius;
+            if (dx * dx + dy * dy + dz * dz <= reach * reach) scanResults[count++] = handles[i];
+        }
+
+        return count;
+    }
+
+    private int scanFrustum() {
+        int count = 0;
+
+        entities:
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            for (int plane = 0; plane < 24; plane += 4) {
+                float distance = PLANES[plane] * positionsX[i] + PLANES[plane + 1] * positionsY[i]
+                        + PLANES[plane + 2] * positionsZ[i] + PLANES[plane + 3];
+                if (distance < -radii[i]) continue entities;
+            }
+
+            scanResults[count++] = handles[i];
+        }
+
+        return count;
+    }
+
+    /**
+     * Build the view-projection matrix of a camera in the middle of the world looking across it, with the same
+     * frustum as MasterRenderer.
+     */
+    private void createViewProjection() {
+        float aspectRatio = 16f / 9;
+        float yScale = (float) ((1f / Math.tan(Math.toRadians(35))) * aspectRatio);
+        float farPlane = 1000;
+        float nearPlane = 0.1f;
+
+        Matrix4f projection = new Matrix4f();
+        projection.m00 = yScale / aspectRatio;
+        projection.m11 = yScale;
+        projection.m22 = -(farPlane + nearPlane) / (farPlane - nearPlane);
+        projection.m23 = -1;
+        projection.m32 = -(2 * nearPlane * farPlane) / (farPlane - nearPlane);
+        projection.m33 = 0;
+
+        Matrix4f view = EngineMath.createTransformationMatrix(0, -10, 0, 10, 30, 0, 1, new Matrix4f());
+        EngineMath.storeMatrix(Matrix4f.mul(projection, view, null), VIEW_PROJECTION, 0);
+        EngineMath.extractFrustumPlanes(VIEW_PROJECTION, PLANES);
+    }
+}
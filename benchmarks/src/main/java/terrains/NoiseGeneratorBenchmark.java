@@ -0,0 +1,50 @@
+package terrains;
+
+import benchmarks.BenchmarkDefaults;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for generating procedural terrain tiles on fork-join pools of different sizes, to show how generation
+ * throughput scales with cores. Determinism across pool sizes and seamless tile edges are checked by
+ * NoiseGeneratorTest in the engine module.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Thread)
+public class NoiseGeneratorBenchmark {
+    private static final long SEED = 676452;
+    private static final float MAX_HEIGHT = 40;
+
+    @Param({"1", "2", "4", "8"})
+    public int threadCount;
+
+    @Param({"129", "513"})
+    public int vertexCount;
+
+    private ForkJoinPool pool;
+    private NoiseGenerator generator;
+    private int tile = 0;
+
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(threadCount);
+        generator = new NoiseGenerator(SEED, vertexCount, MAX_HEIGHT, 5, 1.0 / 64, 0.6f, pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public HeightMap generateTile() {
+        // Walk along a row of tiles so every invocation generates different heights.
+        return generator.heightMap(tile++, 0);
+    }
+}
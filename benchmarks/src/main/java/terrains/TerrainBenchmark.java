@@ -0,0 +1,70 @@
+package terrains;
+
+import benchmarks.BenchmarkDefaults;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for computing height map normals, querying the terrain height under a batch of points and selecting the
+ * level of detail patches of a tile for a camera position.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Thread)
+public class TerrainBenchmark {
+    private static final int POINT_COUNT = 10000;
+    private static final float SIZE = 800;
+
+    @Param({"129", "1025"})
+    public int heightMapSize;
+
+    private HeightMap heightMap;
+    private Terrain terrain;
+    private List<Terrain> terrains;
+
+    private final float[] positionsX = new float[POINT_COUNT];
+    private final float[] positionsZ = new float[POINT_COUNT];
+    private final float[] heights = new float[POINT_COUNT];
+    private float[] instances;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        float[] samples = new float[heightMapSize * heightMapSize];
+        for (int i = 0; i < samples.length; i++) samples[i] = random.nextFloat() * 40;
+
+        heightMap = new HeightMap(heightMapSize, samples);
+        terrain = new Terrain(1, 0, heightMap);
+        terrains = List.of(terrain);
+        instances = new float[heightMapSize * heightMapSize * TerrainPatch.INSTANCE_DATA_LENGTH];
+
+        for (int i = 0; i < POINT_COUNT; i++) {
+            positionsX[i] = random.nextFloat() * SIZE;
+            positionsZ[i] = -random.nextFloat() * SIZE;
+        }
+    }
+
+    @Benchmark
+    public float[] computeNormals() {
+        return heightMap.computeNormals(SIZE / (heightMapSize - 1));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINT_COUNT)
+    public float[] heightsAt() {
+        terrain.heightsAt(positionsX, positionsZ, heights, 0, POINT_COUNT);
+        return heights;
+    }
+
+    @Benchmark
+    public int selectLod() {
+        TerrainQuadTree.selectAll(terrains, 400, 20, -100);
+        return terrain.quadTree().storeInstances(instances);
+    }
+}
@@ -0,0 +1,74 @@
+package terrains;
+
+import benchmarks.BenchmarkDefaults;
+import models.RawModel;
+import models.TexturedModel;
+import org.openjdk.jmh.annotations.*;
+import textures.ModelTexture;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for scattering the ground cover of one vegetation chunk over a random blend map, reported per chunk.
+ * Deterministic scattering is checked by VegetationFieldTest in the engine module.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Thread)
+public class VegetationBenchmark {
+    private static final int CHUNKS_PER_SIDE = (int) (Terrain.SIZE / VegetationField.CHUNK_SIZE);
+    private static final int BLEND_MAP_SIZE = 256;
+
+    private VegetationField field;
+    private Terrain terrain;
+
+    private float[] instances;
+    private int[] layerCounts;
+    private int chunk = 0;
+
+    @Setup
+    public void setUp() {
+        TexturedModel model = new TexturedModel(new RawModel(0, 0), new ModelTexture(0));
+
+        field = new VegetationField(
+                List.of(
+                        new VegetationLayer(model, BlendMap.BACKGROUND, 0.4f, 1.4f, 2.2f, 150),
+                        new VegetationLayer(model, BlendMap.GREEN, 0.3f, 1.8f, 2.6f, 150),
+                        new VegetationLayer(model, BlendMap.BACKGROUND, 0.01f, 0.7f, 1.1f, 250)
+                ),
+                createBlendMap(), 676452
+        );
+
+        terrain = new Terrain(1, 0, new NoiseGenerator(676452, 129, 40).heightMap(1, 0));
+        instances = new float[field.maxInstancesPerChunk() * VegetationField.INSTANCE_DATA_LENGTH];
+        layerCounts = new int[field.layers().size()];
+    }
+
+    @Benchmark
+    public int scatterChunk() {
+        // Walk over every chunk of the tile so the blend map weights vary between invocations.
+        int index = chunk++ % (CHUNKS_PER_SIDE * CHUNKS_PER_SIDE);
+        return field.scatter(
+                terrain, CHUNKS_PER_SIDE - index % CHUNKS_PER_SIDE, -(index / CHUNKS_PER_SIDE), instances,
+                layerCounts
+        );
+    }
+
+    private static BlendMap createBlendMap() {
+        Random random = new Random(42);
+        float[] weights = new float[BLEND_MAP_SIZE * BLEND_MAP_SIZE * 4];
+
+        for (int pixel = 0; pixel < BLEND_MAP_SIZE * BLEND_MAP_SIZE; pixel++) {
+            float green = random.nextFloat() * 0.5f;
+            weights[pixel * 4 + BlendMap.BACKGROUND] = 1 - green;
+            weights[pixel * 4 + BlendMap.GREEN] = green;
+        }
+
+        return new BlendMap(BLEND_MAP_SIZE, BLEND_MAP_SIZE, weights);
+    }
+}
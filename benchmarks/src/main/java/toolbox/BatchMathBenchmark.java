@@ -0,0 +1,139 @@
+package toolbox;
+
+import benchmarks.BenchmarkDefaults;
+import org.lwjgl.util.vector.Matrix4f;
+import org.openjdk.jmh.annotations.*;
+import simd.VectorBatchMath;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar and Vector API batch math implementations, and EngineMath as the per-entity baseline. The
+ * implementations are checked against each other by VectorBatchMathTest in the simd module.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(value = BenchmarkDefaults.FORKS, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class BatchMathBenchmark {
+    @Param({"scalar", "vector"})
+    public String implementation;
+
+    @Param({"100000"})
+    public int entityCount;
+
+    private BatchMath batchMath;
+
+    private float[] positionsX;
+    private float[] positionsY;
+    private float[] positionsZ;
+    private float[] rotationsX;
+    private float[] rotationsY;
+    private float[] rotationsZ;
+    private float[] scales;
+    private float[] radii;
+
+    private final float[] VIEW_PROJECTION = new float[16];
+    private final float[] PLANES = new float[24];
+    private final Matrix4f MATRIX = new Matrix4f();
+
+    private float[] modelMatrices;
+    private float[] results;
+    private int[] visibleIndices;
+
+    @Setup
+    public void setUp() {
+        batchMath = implementation.equals("vector") ? new VectorBatchMath() : new ScalarBatchMath();
+
+        positionsX = new float[entityCount];
+        positionsY = new float[entityCount];
+        positionsZ = new float[entityCount];
+        rotationsX = new float[entityCount];
+        rotationsY = new float[entityCount];
+        rotationsZ = new float[entityCount];
+        scales = new float[entityCount];
+        radii = new float[entityCount];
+
+        Random random = new Random(676452);
+        for (int i = 0; i < entityCount; i++) {
+            positionsX[i] = random.nextFloat() * 2000 - 1000;
+            positionsY[i] = random.nextFloat() * 20;
+            positionsZ[i] = random.nextFloat() * 2000 - 1000;
+            rotationsX[i] = random.nextFloat() * 20 - 10;
+            rotationsY[i] = random.nextFloat() * 360;
+            rotationsZ[i] = random.nextFloat() * 20 - 10;
+            scales[i] = random.nextFloat() + 0.5f;
+            radii[i] = random.nextFloat() * 10 + 1;
+        }
+
+        modelMatrices = new float[entityCount * 16];
+        results = new float[entityCount * 16];
+        visibleIndices = new int[entityCount];
+
+        createViewProjection();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100000)
+    public float[] engineMathModelMatrices() {
+        for (int i = 0; i < entityCount; i++) {
+            EngineMath.createTransformationMatrix(
+                    positionsX[i], positionsY[i], positionsZ[i], rotationsX[i], rotationsY[i], rotationsZ[i],
+                    scales[i], MATRIX
+            );
+            EngineMath.storeMatrix(MATRIX, modelMatrices, i * 16);
+        }
+
+        return modelMatrices;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100000)
+    public float[] computeModelMatrices() {
+        batchMath.computeModelMatrices(
+                positionsX, positionsY, positionsZ, rotationsX, rotationsY, rotationsZ, scales, entityCount,
+                modelMatrices
+        );
+
+        return modelMatrices;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100000)
+    public float[] multiplyMatrices() {
+        batchMath.multiplyMatrices(VIEW_PROJECTION, modelMatrices, entityCount, results);
+        return results;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100000)
+    public int cullSpheres() {
+        return batchMath.cullSpheres(PLANES, positionsX, positionsY, positionsZ, radii, entityCount, visibleIndices);
+    }
+
+    /**
+     * Build the view-projection matrix of a camera in the middle of the scene looking down the negative Z axis, with
+     * the same frustum as MasterRenderer.
+     */
+    private void createViewProjection() {
+        float aspectRatio = 16f / 9;
+        float yScale = (float) ((1f / Math.tan(Math.toRadians(35))) * aspectRatio);
+        float farPlane = 1000;
+        float nearPlane = 0.1f;
+
+        Matrix4f projection = new Matrix4f();
+        projection.m00 = yScale / aspectRatio;
+        projection.m11 = yScale;
+        projection.m22 = -(farPlane + nearPlane) / (farPlane - nearPlane);
+        projection.m23 = -1;
+        projection.m32 = -(2 * nearPlane * farPlane) / (farPlane - nearPlane);
+        projection.m33 = 0;
+
+        Matrix4f view = EngineMath.createTransformationMatrix(0, -10, 0, 10, 30, 0, 1, new Matrix4f());
+        EngineMath.storeMatrix(Matrix4f.mul(projection, view, null), VIEW_PROJECTION, 0);
+        EngineMath.extractFrustumPlanes(VIEW_PROJECTION, PLANES);
+    }
+}
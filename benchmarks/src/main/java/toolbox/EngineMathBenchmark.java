@@ -0,0 +1,114 @@
+package toolbox;
+
+import benchmarks.BenchmarkDefaults;
+import entities.Camera;
+import entities.Player;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the per-entity and per-frame matrix construction in EngineMath. The in-place and batch variants
+ * should report 0 B/op.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BenchmarkDefaults.WARMUP_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Measurement(iterations = BenchmarkDefaults.MEASUREMENT_ITERATIONS, time = BenchmarkDefaults.ITERATION_SECONDS)
+@Fork(BenchmarkDefaults.FORKS)
+@State(Scope.Thread)
+public class EngineMathBenchmark {
+    private static final int BATCH_SIZE = 1000;
+
+    private Vector3f translation;
+    private Vector3f rotation;
+    private float scale;
+
+    private Camera camera;
+
+    private final Matrix4f DESTINATION = new Matrix4f();
+    private final FloatBuffer BUFFER = BufferUtils.createFloatBuffer(16);
+
+    private float[] positionsX;
+    private float[] positionsY;
+    private float[] positionsZ;
+    private float[] rotationsX;
+    private float[] rotationsY;
+    private float[] rotationsZ;
+    private float[] scales;
+    private FloatBuffer batchBuffer;
+
+    @Setup
+    public void setUp() {
+        translation = new Vector3f(120.5f, 3.25f, -310.75f);
+        rotation = new Vector3f(12, 245, 7);
+        scale = 1.8f;
+
+        Player player = new Player(null, new Vector3f(100, 0, -50), new Vector3f(0, 35, 0), 1);
+        camera = new Camera(player);
+        camera.position().set(80, 35, 10);
+        camera.rotation().set(20, 145, 0);
+
+        positionsX = new float[BATCH_SIZE];
+        positionsY = new float[BATCH_SIZE];
+        positionsZ = new float[BATCH_SIZE];
+        rotationsX = new float[BATCH_SIZE];
+        rotationsY = new float[BATCH_SIZE];
+        rotationsZ = new float[BATCH_SIZE];
+        scales = new float[BATCH_SIZE];
+        batchBuffer = BufferUtils.createFloatBuffer(BATCH_SIZE * 16);
+
+        Random random = new Random(676452);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            positionsX[i] = random.nextFloat() * 800 - 400;
+            positionsZ[i] = random.nextFloat() * -600;
+            rotationsY[i] = random.nextFloat() * 360;
+            scales[i] = random.nextFloat() + 0.5f;
+        }
+    }
+
+    @Benchmark
+    public Matrix4f createTransformationMatrix() {
+        return EngineMath.createTransformationMatrix(translation, rotation, scale);
+    }
+
+    @Benchmark
+    public Matrix4f createTransformationMatrixInPlace() {
+        return EngineMath.createTransformationMatrix(translation, rotation, scale, DESTINATION);
+    }
+
+    @Benchmark
+    public FloatBuffer storeTransformationMatrix() {
+        BUFFER.clear();
+        EngineMath.storeTransformationMatrix(translation, rotation, scale, BUFFER);
+
+        return BUFFER;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public FloatBuffer storeTransformationMatrices() {
+        batchBuffer.clear();
+        EngineMath.storeTransformationMatrices(
+                positionsX, positionsY, positionsZ, rotationsX, rotationsY, rotationsZ, scales, 0, BATCH_SIZE,
+                batchBuffer
+        );
+
+        return batchBuffer;
+    }
+
+    @Benchmark
+    public Matrix4f createViewMatrix() {
+        return EngineMath.createViewMatrix(camera);
+    }
+
+    @Benchmark
+    public Matrix4f createViewMatrixInPlace() {
+        return EngineMath.createViewMatrix(camera, DESTINATION);
+    }
+}
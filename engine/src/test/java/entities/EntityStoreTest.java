@@ -0,0 +1,322 @@
+package entities;
+
+import jobs.JobSystem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.lwjgl.util.vector.ReadableVector3f;
+import org.lwjgl.util.vector.Vector3f;
+import toolbox.EngineMath;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the entity store against the object graph it replaces: the same world matrices after a step, read from the
+ * packed arrays and through the facades, ids that survive removals of other entities, culling and matrix rebuilding
+ * that only touch the entities they should, and parallel updates that give the same entities on any number of threads
+ * and mark exactly the entities they changed.
+ */
+class EntityStoreTest {
+    private static final float MATRIX_TOLERANCE = 1e-4f;
+    private static final int UPDATE_ENTITY_COUNT = 20_000;
+    private static final float DELTA_TIME = 1f / 60;
+
+    /**
+     * Six planes bounding the box from -10 to 10 along every axis, facing inwards.
+     */
+    private static final float[] BOX_PLANES = {
+            1, 0, 0, 10, -1, 0, 0, 10,
+            0, 1, 0, 10, 0, -1, 0, 10,
+            0, 0, 1, 10, 0, 0, -1, 10
+    };
+
+    @Test
+    void worldMatricesMatchTheObjectGraph() {
+        Random random = new Random(676452);
+        EntityStore store = new EntityStore(4);
+        Entity[] objects = new Entity[100];
+        int[] ids = new int[objects.length];
+
+        for (int i = 0; i < objects.length; i++) {
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 10;
+            float z = random.nextFloat() * 100;
+            float rotationX = random.nextFloat() * 360;
+            float rotationY = random.nextFloat() * 360;
+            float scale = random.nextFloat() + 0.5f;
+
+            objects[i] = new Entity(null, new Vector3f(x, y, z), new Vector3f(rotationX, rotationY, 0), scale);
+            ids[i] = store.create(null, 1, x, y, z, rotationX, rotationY, 0, scale, 0);
+        }
+
+        // Remove and recreate some entities so the store's ids and indices no longer line up.
+        for (int i = 0; i < objects.length; i += 7) {
+            ReadableVector3f position = objects[i].position();
+            ReadableVector3f rotation = objects[i].rotation();
+
+            store.remove(ids[i]);
+            ids[i] = store.create(
+                    null, 1, position.getX(), position.getY(), position.getZ(), rotation.getX(), rotation.getY(), 0,
+                    objects[i].scale(), 0
+            );
+        }
+
+        for (int i = 0; i < objects.length; i++) store.setVelocity(ids[i], 1, 0, -2);
+        store.integrate(1);
+        store.updateWorldMatrices();
+
+        float[] expected = new float[16];
+        float[] facade = new float[16];
+
+        for (int i = 0; i < objects.length; i++) {
+            objects[i].displace(1, 0, -2);
+            EngineMath.storeMatrix(objects[i].worldMatrix(), expected, 0);
+            EngineMath.storeMatrix(store.entity(ids[i]).worldMatrix(), facade, 0);
+            int offset = store.index(ids[i]) * 16;
+            float[] packed = Arrays.copyOfRange(store.worldMatrices(), offset, offset + 16);
+
+            assertArrayEquals(expected, packed, MATRIX_TOLERANCE, "Entity " + i + " in the packed arrays");
+            assertArrayEquals(expected, facade, MATRIX_TOLERANCE, "Entity " + i + " through its facade");
+        }
+    }
+
+    @Test
+    void idsSurviveRemovalsOfOtherEntities() {
+        EntityStore store = new EntityStore(4);
+        int[] ids = new int[50];
+        for (int i = 0; i < ids.length; i++) ids[i] = store.create(null, 1, i, 0, 0, 0, 0, 0, 1, 0);
+
+        for (int i = 0; i < ids.length; i += 3) store.remove(ids[i]);
+
+        for (int i = 0; i < ids.length; i++) {
+            int id = ids[i];
+
+            if (i % 3 == 0) {
+                assertThrows(IllegalArgumentException.class, () -> store.index(id));
+            }
+
+            else {
+                assertEquals(i, store.positionsX()[store.index(id)], "Entity " + i + " lost its position.");
+                assertEquals(id, store.id(store.index(id)));
+            }
+        }
+
+        int reused = store.create(null, 1, 100, 0, 0, 0, 0, 0, 1, 0);
+        assertEquals(ids[ids.length - 1 - (ids.length - 1) % 3], reused, "The last freed id should be reused first.");
+        assertEquals(100, store.positionsX()[store.index(reused)]);
+        assertEquals(ids.length - (ids.length + 2) / 3 + 1, store.size());
+    }
+
+    @Test
+    void onlyChangedEntitiesAreRebuilt() {
+        EntityStore store = new EntityStore(4);
+        int first = store.create(null, 1, 0, 0, 0, 0, 0, 0, 1, 0);
+        int second = store.create(null, 1, 5, 0, 0, 0, 0, 0, 1, 0);
+        int third = store.create(null, 1, 9, 0, 0, 0, 0, 0, 1, 0);
+
+        store.updateWorldMatrices();
+        assertFalse(store.isDirty(first) || store.isDirty(second) || store.isDirty(third));
+
+        store.displace(second, 1, 0, 0);
+        store.displace(third, 0, 0, 0);
+        assertFalse(store.isDirty(first));
+        assertTrue(store.isDirty(second));
+        assertFalse(store.isDirty(third));
+
+        store.updateWorldMatrices();
+        assertFalse(store.isDirty(second));
+        assertEquals(6, store.worldMatrices()[store.index(second) * 16 + 12]);
+    }
+
+    @Test
+    void cullingSkipsHiddenEntitiesAndScalesTheBoundingSpheres() {
+        EntityStore store = new EntityStore(4);
+        int inside = store.create(null, 1, 0, 0, 0, 0, 0, 0, 1, 0);
+        int outside = store.create(null, 1, 15, 0, 0, 0, 0, 0, 1, 0);
+        int scaled = store.create(null, 1, 0, 15, 0, 0, 0, 0, 1, 0);
+        int hidden = store.create(null, 1, 0, 0, 5, 0, 0, 0, 1, EntityStore.HIDDEN);
+
+        // Scaling the bounding sphere up to a radius of 6 makes it reach into the box.
+        store.setScale(scaled, 6);
+
+        int[] visible = new int[store.size()];
+        int count = store.cull(BOX_PLANES, visible);
+        int[] visibleIds = new int[count];
+        for (int i = 0; i < count; i++) visibleIds[i] = store.id(visible[i]);
+        Arrays.sort(visibleIds);
+
+        int[] expected = {inside, scaled};
+        Arrays.sort(expected);
+        assertArrayEquals(expected, visibleIds, "Entities " + outside + " and " + hidden + " should be culled.");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 4, 8})
+    void updatesAreIdenticalOnEveryThreadCount(int threadCount) {
+        EntityStore expected = createPursuers();
+        EntityStore actual = createPursuers();
+        Pursuit expectedPursuit = new Pursuit(UPDATE_ENTITY_COUNT);
+        Pursuit actualPursuit = new Pursuit(UPDATE_ENTITY_COUNT);
+
+        try (JobSystem inline = new JobSystem(0); JobSystem threaded = new JobSystem(threadCount)) {
+            for (int step = 0; step < 20; step++) {
+                expected.update(inline, expectedPursuit, DELTA_TIME);
+                actual.update(threaded, actualPursuit, DELTA_TIME);
+            }
+        }
+
+        expected.updateWorldMatrices();
+        actual.updateWorldMatrices();
+
+        // Bit for bit, not within a tolerance: the split between threads must not change any result.
+        assertArrayEquals(expected.positionsX(), actual.positionsX());
+        assertArrayEquals(expected.positionsZ(), actual.positionsZ());
+        assertArrayEquals(expected.velocitiesX(), actual.velocitiesX());
+        assertArrayEquals(expected.velocitiesZ(), actual.velocitiesZ());
+        assertArrayEquals(expected.rotationsY(), actual.rotationsY());
+        assertArrayEquals(expected.worldMatrices(), actual.worldMatrices());
+    }
+
+    @Test
+    void parallelUpdatesMarkTheEntitiesTheyChanged() {
+        EntityStore store = new EntityStore(UPDATE_ENTITY_COUNT);
+        for (int i = 0; i < UPDATE_ENTITY_COUNT; i++) {
+            store.create(null, 2, i, 0, -i, 0, 0, 0, 1, i % 3 == 0 ? EntityStore.STATIC : 0);
+        }
+
+        store.updateWorldMatrices();
+        int staticVersion = store.staticVersion();
+
+        try (JobSystem jobs = new JobSystem(4)) {
+            for (int step = 0; step < 5; step++) {
+                store.update(jobs, new Growth(), DELTA_TIME);
+
+                for (int i = 0; i < UPDATE_ENTITY_COUNT; i++) {
+                    boolean isStatic = i % 3 == 0;
+                    assertEquals(!isStatic, store.isDirty(store.id(i)), "Entity " + i + " in step " + step);
+                    assertEquals(2 * store.scales()[i], store.radii()[i], "Entity " + i + " in step " + step);
+                }
+
+                // Rebuilding trusts the count of dirty entities, so a lost or doubled mark leaves some out of date.
+                store.updateWorldMatrices();
+                for (int i = 0; i < UPDATE_ENTITY_COUNT; i++) assertFalse(store.isDirty(store.id(i)), "Entity " + i);
+            }
+        }
+
+        assertEquals(staticVersion, store.staticVersion());
+
+        float[] expected = new float[16];
+        for (int i = 0; i < UPDATE_ENTITY_COUNT; i++) {
+            Vector3f position = new Vector3f(store.positionsX()[i], store.positionsY()[i], store.positionsZ()[i]);
+            Vector3f rotation = new Vector3f(store.rotationsX()[i], store.rotationsY()[i], store.rotationsZ()[i]);
+            EngineMath.storeMatrix(
+                    EngineMath.createTransformationMatrix(position, rotation, store.scales()[i]), expected, 0
+            );
+            float[] packed = Arrays.copyOfRange(store.worldMatrices(), i * 16, i * 16 + 16);
+
+            assertArrayEquals(expected, packed, MATRIX_TOLERANCE, "Entity " + i);
+        }
+    }
+
+    private static EntityStore createPursuers() {
+        Random random = new Random(676452);
+        EntityStore store = new EntityStore(UPDATE_ENTITY_COUNT);
+
+        for (int i = 0; i < UPDATE_ENTITY_COUNT; i++) {
+            store.create(null, 1, random.nextFloat() * 4000 - 2000, 0, random.nextFloat() * -4000, 0, 0, 0, 1, 0);
+        }
+
+        return store;
+    }
+
+    /**
+     * Behaviour in which every entity that isn't static grows and rises, writing only the arrays the store marks.
+     */
+    private static final class Growth implements EntityBehaviour {
+        @Override
+        public void read(EntityStore store, int from, int to, float deltaTime) {
+        }
+
+        @Override
+        public void write(EntityStore store, int from, int to, float deltaTime) {
+            float[] positionsY = store.positionsY();
+            float[] scales = store.scales();
+
+            for (int i = from; i < to; i++) {
+                if ((store.flags(store.id(i)) & EntityStore.STATIC) != 0) continue;
+
+                positionsY[i] += deltaTime;
+                scales[i] *= 1.5f;
+            }
+        }
+    }
+
+    /**
+     * Behaviour in which every entity turns its velocity towards another entity and faces where it is going, so the
+     * read phase reads entities updated by other threads.
+     */
+    private static final class Pursuit implements EntityBehaviour {
+        private static final float SPEED = 5;
+        private static final float STEERING = 0.1f;
+
+        private final float[] NEXT_VELOCITIES_X;
+        private final float[] NEXT_VELOCITIES_Z;
+        private final float[] NEXT_YAWS;
+
+        private Pursuit(int capacity) {
+            this.NEXT_VELOCITIES_X = new float[capacity];
+            this.NEXT_VELOCITIES_Z = new float[capacity];
+            this.NEXT_YAWS = new float[capacity];
+        }
+
+        @Override
+        public void read(EntityStore store, int from, int to, float deltaTime) {
+            float[] positionsX = store.positionsX();
+            float[] positionsZ = store.positionsZ();
+            float[] velocitiesX = store.velocitiesX();
+            float[] velocitiesZ = store.velocitiesZ();
+            int size = store.size();
+
+            for (int i = from; i < to; i++) {
+                int target = (int) ((i * 7919L + 1) % size);
+                float dx = positionsX[target] - positionsX[i];
+                float dz = positionsZ[target] - positionsZ[i];
+                float length = (float) Math.sqrt(dx * dx + dz * dz);
+                if (length > 0) {
+                    dx *= SPEED / length;
+                    dz *= SPEED / length;
+                }
+
+                float velocityX = velocitiesX[i] + (dx - velocitiesX[i]) * STEERING;
+                float velocityZ = velocitiesZ[i] + (dz - velocitiesZ[i]) * STEERING;
+                NEXT_VELOCITIES_X[i] = velocityX;
+                NEXT_VELOCITIES_Z[i] = velocityZ;
+                NEXT_YAWS[i] = (float) Math.toDegrees(Math.atan2(velocityX, velocityZ));
+            }
+        }
+
+        @Override
+        public void write(EntityStore store, int from, int to, float deltaTime) {
+            float[] positionsX = store.positionsX();
+            float[] positionsZ = store.positionsZ();
+            float[] velocitiesX = store.velocitiesX();
+            float[] velocitiesZ = store.velocitiesZ();
+            float[] rotationsY = store.rotationsY();
+
+            for (int i = from; i < to; i++) {
+                velocitiesX[i] = NEXT_VELOCITIES_X[i];
+                velocitiesZ[i] = NEXT_VELOCITIES_Z[i];
+                positionsX[i] += NEXT_VELOCITIES_X[i] * deltaTime;
+                positionsZ[i] += NEXT_VELOCITIES_Z[i] * deltaTime;
+                rotationsY[i] = NEXT_YAWS[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package entities;
+
+import org.junit.jupiter.api.Test;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.ReadableVector3f;
+import org.lwjgl.util.vector.Vector;
+import org.lwjgl.util.vector.Vector3f;
+import toolbox.EngineMath;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the entity hierarchy: changing a parent dirties exactly its subtree and the cached world matrices are rebuilt
+ * from the moved parent, hierarchies reject cycles and store-backed entities, and the vectors of store-backed entities
+ * are live read-only views.
+ */
+class EntityTest {
+    private static final float MATRIX_TOLERANCE = 1e-4f;
+
+    @Test
+    void movingAParentRebuildsTheCachedWorldMatricesOfItsSubtree() {
+        Entity root = new Entity(null, new Vector3f(10, 0, -5), new Vector3f(0, 90, 0), 2);
+        Entity child = new Entity(null, new Vector3f(1, 2, 0), new Vector3f(30, 0, 0), 1);
+        Entity grandchild = new Entity(null, new Vector3f(0, 0, 3), new Vector3f(0, 0, 45), 0.5f);
+        Entity sibling = new Entity(null, new Vector3f(-1, 0, 0), new Vector3f(), 1);
+        child.setParent(root);
+        grandchild.setParent(child);
+        sibling.setParent(root);
+
+        Matrix4f cached = grandchild.worldMatrix();
+        assertSame(cached, grandchild.worldMatrix());
+        sibling.worldMatrix();
+        assertMatricesEqual(worldMatrix(grandchild), cached);
+        for (Entity entity : new Entity[] {root, child, grandchild, sibling}) assertFalse(entity.isDirty());
+
+        // Moving a child dirties only its own subtree.
+        child.rotate(0, 10, 0);
+        assertFalse(root.isDirty());
+        assertTrue(child.isDirty());
+        assertTrue(grandchild.isDirty());
+        assertFalse(sibling.isDirty());
+        assertMatricesEqual(worldMatrix(grandchild), grandchild.worldMatrix());
+
+        // Moving the root dirties everything below it, and the grandchild's cached matrix follows the root.
+        root.displace(5, 0, 0);
+        root.setScale(3);
+        for (Entity entity : new Entity[] {root, child, grandchild, sibling}) assertTrue(entity.isDirty());
+
+        assertMatricesEqual(worldMatrix(grandchild), grandchild.worldMatrix());
+        assertFalse(grandchild.isDirty());
+        assertFalse(child.isDirty());
+        assertFalse(root.isDirty());
+        assertTrue(sibling.isDirty());
+        assertMatricesEqual(worldMatrix(sibling), sibling.worldMatrix());
+
+        // Detaching makes the grandchild's transform its own again.
+        grandchild.setParent(null);
+        assertTrue(grandchild.isDirty());
+        assertEquals(2, root.children().size());
+        assertTrue(child.children().isEmpty());
+        assertMatricesEqual(worldMatrix(grandchild), grandchild.worldMatrix());
+    }
+
+    @Test
+    void hierarchiesCannotHaveCycles() {
+        Entity root = new Entity(null, new Vector3f(), new Vector3f(), 1);
+        Entity child = new Entity(null, new Vector3f(), new Vector3f(), 1);
+        child.setParent(root);
+
+        assertThrows(IllegalArgumentException.class, () -> root.setParent(child));
+        assertThrows(IllegalArgumentException.class, () -> root.setParent(root));
+        assertNull(root.parent());
+    }
+
+    @Test
+    void storeEntitiesCannotJoinAHierarchy() {
+        EntityStore store = new EntityStore(4);
+        Entity stored = store.entity(store.create(null, 1, 0, 0, 0, 0, 0, 0, 1, 0));
+        Entity object = new Entity(null, new Vector3f(), new Vector3f(), 1);
+
+        assertThrows(IllegalStateException.class, () -> stored.setParent(object));
+        assertThrows(IllegalStateException.class, () -> object.setParent(stored));
+        assertNull(object.parent());
+    }
+
+    @Test
+    void storeEntityVectorsAreLiveReadOnlyViews() {
+        EntityStore store = new EntityStore(2);
+        int first = store.create(null, 1, 1, 2, 3, 10, 20, 30, 1, 0);
+        int second = store.create(null, 1, 4, 5, 6, 40, 50, 60, 1, 0);
+
+        ReadableVector3f firstPosition = store.entity(first).position();
+        ReadableVector3f secondPosition = store.entity(second).position();
+        ReadableVector3f secondRotation = store.entity(second).rotation();
+        assertNotSame(firstPosition, secondPosition);
+        assertVectorEquals(1, 2, 3, firstPosition);
+        assertVectorEquals(4, 5, 6, secondPosition);
+
+        // The views follow the entity as it moves, as the store grows and as its slot moves on another's removal.
+        store.entity(second).displace(1, 1, 1);
+        store.entity(second).rotate(0, 0, 5);
+        for (int i = 0; i < 10; i++) store.create(null, 1, i, i, i, 0, 0, 0, 1, 0);
+        store.remove(first);
+
+        assertVectorEquals(5, 6, 7, secondPosition);
+        assertVectorEquals(40, 50, 65, secondRotation);
+        assertEquals(5 * 5 + 6 * 6 + 7 * 7, secondPosition.lengthSquared(), MATRIX_TOLERANCE);
+
+        assertThrows(UnsupportedOperationException.class, () -> ((Vector) secondPosition).negate());
+        assertThrows(UnsupportedOperationException.class, () -> ((Vector) secondRotation).scale(2));
+        assertVectorEquals(5, 6, 7, secondPosition);
+    }
+
+    /**
+     * Build the world matrix of an entity from scratch, multiplying the local matrices of its ancestors.
+     */
+    private static Matrix4f worldMatrix(Entity entity) {
+        Matrix4f local = EngineMath.createTransformationMatrix(
+                new Vector3f(entity.position()), new Vector3f(entity.rotation()), entity.scale()
+        );
+
+        return entity.parent() == null ? local : Matrix4f.mul(worldMatrix(entity.parent()), local, null);
+    }
+
+    private static void assertMatricesEqual(Matrix4f expected, Matrix4f actual) {
+        float[] expectedElements = new float[16];
+        float[] actualElements = new float[16];
+        EngineMath.storeMatrix(expected, expectedElements, 0);
+        EngineMath.storeMatrix(actual, actualElements, 0);
+
+        for (int element = 0; element < 16; element++) {
+            assertEquals(expectedElements[element], actualElements[element], MATRIX_TOLERANCE, "Element " + element);
+        }
+    }
+
+    private static void assertVectorEquals(float x, float y, float z, ReadableVector3f actual) {
+        assertEquals(x, actual.getX(), MATRIX_TOLERANCE);
+        assertEquals(y, actual.getY(), MATRIX_TOLERANCE);
+        assertEquals(z, actual.getZ(), MATRIX_TOLERANCE);
+    }
+}
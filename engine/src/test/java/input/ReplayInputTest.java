@@ -0,0 +1,180 @@
+package input;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lwjgl.input.Keyboard;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Records scripted input to a log file and replays it: every frame reads back as recorded, and logs with a truncated
+ * or corrupt header are rejected instead of replaying garbage.
+ */
+class ReplayInputTest {
+    private static final float TIMESTEP = 1f / 60;
+    private static final int FRAME_COUNT = 500;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replayReproducesEveryRecordedFrame() {
+        String filename = directory.resolve("input.log").toString();
+        RecordingInput recording = new RecordingInput(new ScriptedInput(), TIMESTEP, filename);
+        while (recording.poll()) { }
+        recording.close();
+
+        ScriptedInput expected = new ScriptedInput();
+        ReplayInput replay = new ReplayInput(filename);
+
+        while (expected.poll()) {
+            assertTrue(replay.poll(), "The replay ended before frame " + expected.frame + ".");
+            assertEquals(TIMESTEP, replay.deltaTime());
+
+            for (int key = 0; key < Keyboard.KEYBOARD_SIZE; key++) {
+                assertEquals(expected.isKeyDown(key), replay.isKeyDown(key),
+                        "Frame " + expected.frame + ", key " + key);
+            }
+
+            for (int button = 0; button < InputFrame.MOUSE_BUTTON_COUNT; button++) {
+                assertEquals(expected.isMouseButtonDown(button), replay.isMouseButtonDown(button),
+                        "Frame " + expected.frame + ", button " + button);
+            }
+
+            assertEquals(expected.mouseDX(), replay.mouseDX(), "Frame " + expected.frame);
+            assertEquals(clampToShort(expected.mouseDY()), replay.mouseDY(), "Frame " + expected.frame);
+            assertEquals(expected.mouseDWheel(), replay.mouseDWheel(), "Frame " + expected.frame);
+        }
+
+        assertFalse(replay.poll());
+        assertFalse(replay.poll());
+        assertEquals(FRAME_COUNT, replay.frameCount());
+    }
+
+    @Test
+    void logsWithABadHeaderAreRejected() throws IOException {
+        byte[] log = record();
+
+        // Every cut inside the header: the magic number, the version or the time step is missing.
+        for (int length = 0; length < 10; length++) {
+            assertRejected(Arrays.copyOf(log, length));
+        }
+
+        byte[] otherFile = log.clone();
+        otherFile[0] ^= 1;
+        assertRejected(otherFile);
+
+        byte[] otherVersion = log.clone();
+        otherVersion[5]++;
+        assertRejected(otherVersion);
+
+        for (float timestep : new float[] {0, -TIMESTEP, Float.NaN, Float.POSITIVE_INFINITY}) {
+            Path file = directory.resolve("timestep.log");
+            try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(file))) {
+                InputLog.writeHeader(output, timestep);
+            }
+
+            assertThrows(RuntimeException.class, () -> new ReplayInput(file.toString()), "Time step " + timestep);
+        }
+    }
+
+    @Test
+    void corruptFramesAreRejected() throws IOException {
+        byte[] log = record();
+
+        // The first frame's count of toggled keys, larger than the keyboard.
+        byte[] corrupt = log.clone();
+        corrupt[10] = (byte) 0xFF;
+
+        ReplayInput replay = new ReplayInput(write(corrupt));
+        assertThrows(RuntimeException.class, replay::poll);
+    }
+
+    @Test
+    void truncatedLogsEndAfterTheirLastWholeFrame() throws IOException {
+        byte[] log = record();
+        ReplayInput complete = new ReplayInput(write(log));
+        int wholeFrames = 0;
+        while (complete.poll()) wholeFrames++;
+        assertEquals(FRAME_COUNT, wholeFrames);
+
+        // Every frame costs at least 9 bytes, so cutting 5 bytes always splits the last frame.
+        ReplayInput truncated = new ReplayInput(write(Arrays.copyOf(log, log.length - 5)));
+        while (truncated.poll()) { }
+        assertEquals(FRAME_COUNT - 1, truncated.frameCount());
+    }
+
+    private byte[] record() throws IOException {
+        Path file = directory.resolve("recorded.log");
+        RecordingInput recording = new RecordingInput(new ScriptedInput(), TIMESTEP, file.toString());
+        while (recording.poll()) { }
+        recording.close();
+        return Files.readAllBytes(file);
+    }
+
+    private String write(byte[] log) throws IOException {
+        Path file = Files.createTempFile(directory, "input", ".log");
+        Files.write(file, log);
+        return file.toString();
+    }
+
+    private void assertRejected(byte[] log) throws IOException {
+        String filename = write(log);
+        assertThrows(RuntimeException.class, () -> new ReplayInput(filename), log.length + " bytes");
+    }
+
+    private static int clampToShort(int value) {
+        return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    }
+
+    /**
+     * Deterministic input: keys and buttons toggling at different rates and mouse deltas beyond the range of a short.
+     */
+    private static class ScriptedInput implements InputSource {
+        int frame = -1;
+
+        @Override
+        public boolean poll() {
+            return ++frame < FRAME_COUNT;
+        }
+
+        @Override
+        public boolean isKeyDown(int key) {
+            return (frame / (key % 7 + 1) + key) % 3 == 0;
+        }
+
+        @Override
+        public boolean isMouseButtonDown(int button) {
+            return (frame >> button & 1) != 0;
+        }
+
+        @Override
+        public int mouseDX() {
+            return frame * 37 - 9000;
+        }
+
+        @Override
+        public int mouseDY() {
+            return frame * frame * (frame % 2 == 0 ? 1 : -1);
+        }
+
+        @Override
+        public int mouseDWheel() {
+            return frame % 5 == 0 ? 120 : 0;
+        }
+
+        @Override
+        public float deltaTime() {
+            return 0.5f;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package jobs;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the job system on the calling thread and on worker threads: dependent jobs start after the jobs they depend
+ * on, even along chains too long to run recursively, failures reach the jobs depending on them, errors never leave a
+ * job unfinished, a parallel for covers its range exactly once, and closing waits for the jobs already scheduled.
+ */
+class JobSystemTest {
+    private static final int GRAPH_WIDTH = 64;
+    private static final int CHAIN_LENGTH = 100_000;
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 4})
+    void dependentJobsRunInOrder(int threadCount) {
+        try (JobSystem jobs = new JobSystem(threadCount)) {
+            AtomicInteger clock = new AtomicInteger();
+            int[] finishTimes = new int[GRAPH_WIDTH];
+            int[] startTimes = new int[GRAPH_WIDTH];
+
+            Job root = jobs.schedule(() -> startTimes[0] = clock.incrementAndGet());
+            Job[] row = new Job[GRAPH_WIDTH - 2];
+
+            for (int i = 0; i < row.length; i++) {
+                int slot = i + 1;
+                row[i] = jobs.schedule(() -> {
+                    startTimes[slot] = clock.incrementAndGet();
+                    finishTimes[slot] = clock.incrementAndGet();
+                }, root);
+            }
+
+            Job last = jobs.schedule(() -> startTimes[GRAPH_WIDTH - 1] = clock.incrementAndGet(), row);
+            assertTimeoutPreemptively(TIMEOUT, last::await);
+
+            for (int i = 1; i < GRAPH_WIDTH - 1; i++) {
+                assertTrue(startTimes[i] > startTimes[0], "Job " + i + " started before the root.");
+                assertTrue(finishTimes[i] < startTimes[GRAPH_WIDTH - 1], "Job " + i + " finished after the last.");
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 4})
+    void longChainsRunWithoutOverflowingTheStack(int threadCount) {
+        try (JobSystem jobs = new JobSystem(threadCount)) {
+            AtomicInteger clock = new AtomicInteger();
+            int[] startTimes = new int[CHAIN_LENGTH];
+
+            // Build the whole chain behind a job that has not been scheduled yet, so it is released in one go.
+            Job gate = new Job(() -> { });
+            Job previous = gate;
+            for (int i = 0; i < CHAIN_LENGTH; i++) {
+                int link = i;
+                previous = jobs.schedule(() -> startTimes[link] = clock.incrementAndGet(), previous);
+            }
+
+            gate.schedule(jobs, new Job[0]);
+            assertTimeoutPreemptively(TIMEOUT, previous::await);
+
+            for (int i = 0; i < CHAIN_LENGTH; i++) {
+                assertEquals(i + 1, startTimes[i], "Link " + i + " ran out of order.");
+            }
+        }
+    }
+
+    @Test
+    void closingWaitsForScheduledJobs() {
+        AtomicBoolean finished = new AtomicBoolean();
+
+        try (JobSystem jobs = new JobSystem(1)) {
+            jobs.schedule(() -> {
+                try {
+                    Thread.sleep(1500);
+                }
+
+                catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+
+                finished.set(true);
+            });
+        }
+
+        assertTrue(finished.get(), "Closing returned before the scheduled job finished.");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 4})
+    void failuresReachDependentJobs(int threadCount) {
+        try (JobSystem jobs = new JobSystem(threadCount)) {
+            Job failing = jobs.schedule(() -> {
+                throw new IllegalStateException("Expected failure.");
+            });
+            boolean[] ran = {false};
+            Job dependent = jobs.schedule(() -> ran[0] = true, failing);
+
+            RuntimeException e = assertThrows(RuntimeException.class, () -> assertTimeoutPreemptively(
+                    TIMEOUT, dependent::await
+            ));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            assertFalse(ran[0], "A job depending on a failed job ran.");
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 4})
+    void errorsStillFinishTheJob(int threadCount) {
+        try (JobSystem jobs = new JobSystem(threadCount)) {
+            Job failing = jobs.schedule(() -> {
+                throw new AssertionError("Expected error.");
+            });
+            Job dependent = jobs.schedule(() -> { }, failing);
+
+            RuntimeException e = assertThrows(RuntimeException.class, () -> assertTimeoutPreemptively(
+                    TIMEOUT, dependent::await
+            ));
+            assertInstanceOf(AssertionError.class, e.getCause());
+            assertTrue(failing.isDone());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 4})
+    void parallelForCoversTheRangeOnce(int threadCount) {
+        try (JobSystem jobs = new JobSystem(threadCount)) {
+            AtomicIntegerArray visits = new AtomicIntegerArray(10_007);
+            jobs.parallelFor(3, visits.length(), 64, (from, to) -> {
+                for (int i = from; i < to; i++) visits.incrementAndGet(i);
+            });
+
+            for (int i = 0; i < visits.length(); i++) {
+                assertEquals(i < 3 ? 0 : 1, visits.get(i), "Index " + i + " was visited the wrong number of times.");
+            }
+        }
+    }
+}
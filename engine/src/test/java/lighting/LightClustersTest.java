@@ -0,0 +1,190 @@
+package lighting;
+
+import entities.Camera;
+import jobs.JobSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector4f;
+import renderEngine.MasterRenderer;
+import testutil.Allocations;
+import toolbox.EngineMath;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Checks the light clusters against lighting every point with every light: each light reaching a point is listed in
+ * the point's cluster while clusters list only a small share of the lights, assigning on any number of threads gives
+ * the same clusters as on the calling thread, full clusters count the lights they drop, and assigning allocates
+ * nothing once warmed up.
+ */
+class LightClustersTest {
+    private static final float ASPECT_RATIO = 16f / 9;
+    private static final float WORLD_SIZE = 800;
+    private static final float SAMPLE_DEPTH = 400;
+    private static final int SAMPLE_COUNT = 20_000;
+    private static final int LIGHT_COUNT = 512;
+
+    private final Matrix4f PROJECTION_MATRIX = MasterRenderer.createProjectionMatrix(ASPECT_RATIO, new Matrix4f());
+    private final Matrix4f VIEW_MATRIX = new Matrix4f();
+
+    @BeforeEach
+    void setUp() {
+        Camera camera = new Camera();
+        camera.position().set(0, 15, 0);
+        camera.rotation().set(15, 30, 0);
+        EngineMath.createViewMatrix(camera, VIEW_MATRIX);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {256, 1024})
+    void everyLightReachingAPointIsInItsCluster(int lightCount) {
+        LightStore lights = createLights(lightCount);
+        LightClusters clusters = createClusters();
+        clusters.assign(lights, PROJECTION_MATRIX, VIEW_MATRIX, new JobSystem(0));
+
+        float[] points = new float[SAMPLE_COUNT * 3];
+        int[] pointClusters = new int[SAMPLE_COUNT];
+        createSamples(new Random(lightCount), clusters, points, pointClusters);
+
+        int[] ranges = clusters.clusterRanges();
+        int[] indices = clusters.lightIndices();
+        long reached = 0;
+        long listed = 0;
+
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            int offset = ranges[pointClusters[i] * 2];
+            int count = ranges[pointClusters[i] * 2 + 1];
+            listed += count;
+
+            for (int light = 0; light < lights.size(); light++) {
+                float toPointX = points[i * 3] - lights.positionsX()[light];
+                float toPointY = points[i * 3 + 1] - lights.positionsY()[light];
+                float toPointZ = points[i * 3 + 2] - lights.positionsZ()[light];
+                float distance = (float) Math.sqrt(toPointX * toPointX + toPointY * toPointY + toPointZ * toPointZ);
+                float spot = (toPointX * lights.directionsX()[light] + toPointY * lights.directionsY()[light]
+                        + toPointZ * lights.directionsZ()[light]) / distance;
+
+                if (distance >= lights.ranges()[light] || spot <= lights.outerCosines()[light]) continue;
+                reached++;
+
+                boolean found = false;
+                for (int j = offset; j < offset + count && !found; j++) found = indices[j] == light;
+                if (!found) fail("Light " + light + " reaches point " + i + " but not its cluster.");
+            }
+        }
+
+        assertEquals(0, clusters.overflowCount());
+        assertTrue(reached > 0, "No light reached any point.");
+        assertTrue(
+                listed <= (long) SAMPLE_COUNT * lightCount / 10,
+                "Clusters listed " + listed + " lights for " + reached + " that reached their points."
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 4})
+    void threadedAssignmentMatchesTheCallingThread(int threadCount) {
+        LightStore lights = createLights(LIGHT_COUNT);
+        LightClusters expected = createClusters();
+        LightClusters actual = createClusters();
+
+        try (JobSystem inline = new JobSystem(0); JobSystem threaded = new JobSystem(threadCount)) {
+            expected.assign(lights, PROJECTION_MATRIX, VIEW_MATRIX, inline);
+            actual.assign(lights, PROJECTION_MATRIX, VIEW_MATRIX, threaded);
+        }
+
+        assertEquals(expected.indexCount(), actual.indexCount());
+        assertArrayEquals(expected.clusterRanges(), actual.clusterRanges());
+        assertArrayEquals(expected.lightIndices(), actual.lightIndices());
+    }
+
+    @Test
+    void fullClustersCountTheLightsTheyDrop() {
+        LightStore lights = new LightStore(4);
+        for (int i = 0; i < 3; i++) lights.addPoint(0, 15, -50, 1, 1, 1, 5);
+
+        LightClusters clusters = new LightClusters(1, 1, 1, MasterRenderer.NEAR_PLANE, MasterRenderer.FAR_PLANE, 2);
+        clusters.assign(lights, PROJECTION_MATRIX, new Matrix4f(), new JobSystem(0));
+
+        assertEquals(1, clusters.overflowCount());
+        assertEquals(2, clusters.indexCount());
+        assertArrayEquals(new int[] {0, 2}, clusters.clusterRanges());
+    }
+
+    @Test
+    void assigningAllocatesNothing() {
+        LightStore lights = createLights(LIGHT_COUNT);
+        LightClusters clusters = createClusters();
+
+        // Only the calling thread's allocations are counted, so measure the inline assignment, once warmed up.
+        JobSystem inline = new JobSystem(0);
+        for (int i = 0; i < 100; i++) clusters.assign(lights, PROJECTION_MATRIX, VIEW_MATRIX, inline);
+
+        Allocations.assertAllocationFree(() -> {
+            for (int i = 0; i < 100; i++) clusters.assign(lights, PROJECTION_MATRIX, VIEW_MATRIX, inline);
+        });
+    }
+
+    private static LightStore createLights(int count) {
+        Random random = new Random(count);
+        LightStore store = new LightStore(count);
+
+        for (int i = 0; i < count; i++) {
+            float x = (random.nextFloat() * 2 - 1) * WORLD_SIZE / 2;
+            float y = random.nextFloat() * 20;
+            float z = (random.nextFloat() * 2 - 1) * WORLD_SIZE / 2;
+
+            if (i % 4 == 0) {
+                store.addSpot(
+                        x, y + 5, z, 1, 0.8f, 0.6f, 30, random.nextFloat() - 0.5f, -1, random.nextFloat() - 0.5f,
+                        10 + random.nextFloat() * 20, 35 + random.nextFloat() * 50
+                );
+            }
+
+            else {
+                store.addPoint(x, y, z, 1, 0.7f, 0.4f, 15 + random.nextFloat() * 25);
+            }
+        }
+
+        return store;
+    }
+
+    private static LightClusters createClusters() {
+        return new LightClusters(16, 9, 24, MasterRenderer.NEAR_PLANE, MasterRenderer.FAR_PLANE, 256);
+    }
+
+    /**
+     * Pick points spread over the screen and the depth in front of the camera, and find their clusters.
+     *
+     * @param random        Source of the points.
+     * @param clusters      Clusters the points are looked up in.
+     * @param points        Destination for the world positions of the points, three floats each.
+     * @param pointClusters Destination for the cluster of each point.
+     */
+    private void createSamples(Random random, LightClusters clusters, float[] points, int[] pointClusters) {
+        Matrix4f inverseView = Matrix4f.invert(VIEW_MATRIX, null);
+        Vector4f point = new Vector4f();
+
+        for (int i = 0; i < pointClusters.length; i++) {
+            float ndcX = random.nextFloat() * 2 - 1;
+            float ndcY = random.nextFloat() * 2 - 1;
+            float depth = MasterRenderer.NEAR_PLANE + random.nextFloat() * SAMPLE_DEPTH;
+
+            point.set(ndcX * depth / PROJECTION_MATRIX.m00, ndcY * depth / PROJECTION_MATRIX.m11, -depth, 1);
+            Matrix4f.transform(inverseView, point, point);
+
+            points[i * 3] = point.x;
+            points[i * 3 + 1] = point.y;
+            points[i * 3 + 2] = point.z;
+            pointClusters[i] = clusters.clusterAt(ndcX, ndcY, depth);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package physics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import testutil.Allocations;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the collision world: the sweep finds exactly the pairs that testing every pair of bounding boxes finds, also
+ * after bodies were removed, capsules are pushed out of boxes, each other and the ground, and a step allocates nothing
+ * once the world has warmed up.
+ */
+class CollisionWorldTest {
+    private static final int BOX_COUNT = 2000;
+    private static final int CAPSULE_COUNT = 400;
+    private static final float WORLD_SIZE = 600;
+    private static final float RADIUS = 1.5f;
+    private static final float HEIGHT = 4;
+    private static final float SPEED = 0.5f;
+    private static final float POSITION_TOLERANCE = 1e-4f;
+    private static final HeightField GROUND = (x, z) -> (float) (Math.sin(x * 0.01) * Math.cos(z * 0.01)) * 10;
+
+    private final float[] BOX_BOUNDS = new float[BOX_COUNT * 6];
+    private final int[] BOXES = new int[BOX_COUNT];
+    private final int[] CAPSULES = new int[CAPSULE_COUNT];
+    private final boolean[] IS_CAPSULE = new boolean[BOX_COUNT + CAPSULE_COUNT];
+    private final boolean[] REMOVED = new boolean[BOX_COUNT + CAPSULE_COUNT];
+    private final float[] VELOCITIES_X = new float[CAPSULE_COUNT];
+    private final float[] VELOCITIES_Z = new float[CAPSULE_COUNT];
+
+    private CollisionWorld world;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(676452);
+        world = new CollisionWorld(BOX_COUNT + CAPSULE_COUNT);
+
+        for (int i = 0; i < BOX_COUNT; i++) {
+            float x = random.nextFloat() * WORLD_SIZE;
+            float z = random.nextFloat() * WORLD_SIZE;
+            float halfWidth = random.nextFloat() + 0.5f;
+            float y = GROUND.heightAt(x, z);
+            float[] bounds = {x - halfWidth, y, z - halfWidth, x + halfWidth, y + 30, z + halfWidth};
+
+            System.arraycopy(bounds, 0, BOX_BOUNDS, i * 6, 6);
+            BOXES[i] = world.addBox(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+        }
+
+        for (int i = 0; i < CAPSULE_COUNT; i++) {
+            float x = random.nextFloat() * WORLD_SIZE;
+            float z = random.nextFloat() * WORLD_SIZE;
+            CAPSULES[i] = world.addCapsule(x, GROUND.heightAt(x, z), z, RADIUS, HEIGHT);
+            IS_CAPSULE[CAPSULES[i]] = true;
+
+            double angle = random.nextDouble() * 2 * Math.PI;
+            VELOCITIES_X[i] = (float) Math.cos(angle) * SPEED;
+            VELOCITIES_Z[i] = (float) Math.sin(angle) * SPEED;
+        }
+    }
+
+    @Test
+    void sweepFindsTheBruteForcePairs() {
+        int pairs = 0;
+
+        for (int i = 0; i < 50; i++) {
+            moveCapsules();
+            pairs += comparePairs();
+        }
+
+        for (int i = 0; i < BOX_COUNT; i += 10) remove(BOXES[i]);
+        for (int i = 0; i < CAPSULE_COUNT; i += 10) remove(CAPSULES[i]);
+        assertEquals(BOX_COUNT + CAPSULE_COUNT - BOX_COUNT / 10 - CAPSULE_COUNT / 10, world.bodyCount());
+
+        for (int i = 0; i < 50; i++) {
+            moveCapsules();
+            pairs += comparePairs();
+        }
+
+        assertTrue(pairs > 0, "No capsule ever touched anything.");
+    }
+
+    @Test
+    void capsulesArePushedOutOfWhatTheyTouch() {
+        CollisionWorld small = new CollisionWorld(4);
+        small.addBox(-1, 0, -1, 1, 10, 1);
+        int pushed = small.addCapsule(1.5f, 0, 0, 1, 3);
+        int falling = small.addCapsule(0.2f, 9, 0.1f, 1, 3);
+        int first = small.addCapsule(20, 0, 0, 1, 3);
+        int second = small.addCapsule(21, 0, 0, 1, 3);
+        int buried = small.addCapsule(-30, -5, 0, 1, 3);
+        small.step((x, z) -> 0);
+
+        assertEquals(2, small.x(pushed), POSITION_TOLERANCE, "A capsule in the side of a box was not pushed out.");
+        assertEquals(0, small.z(pushed), POSITION_TOLERANCE);
+
+        assertEquals(10, small.y(falling), POSITION_TOLERANCE, "A capsule sunk into a box was not stood on it.");
+        assertTrue(small.isGrounded(falling));
+
+        assertEquals(2, small.x(second) - small.x(first), POSITION_TOLERANCE, "Capsules were not pushed apart.");
+
+        assertEquals(0, small.y(buried), "A capsule under the ground was not stood on it.");
+        assertTrue(small.isGrounded(buried));
+    }
+
+    @Test
+    void stepsAllocateNothing() {
+        for (int i = 0; i < 100; i++) {
+            moveCapsules();
+            world.step(GROUND);
+        }
+
+        Allocations.assertAllocationFree(() -> {
+            for (int i = 0; i < 100; i++) {
+                moveCapsules();
+                world.step(GROUND);
+            }
+        });
+    }
+
+    /**
+     * Move every remaining capsule along its velocity and a little down, bouncing off the edges of the world, without
+     * stepping the world.
+     */
+    private void moveCapsules() {
+        for (int i = 0; i < CAPSULE_COUNT; i++) {
+            int body = CAPSULES[i];
+            if (REMOVED[body]) continue;
+
+            float x = world.x(body) + VELOCITIES_X[i];
+            float z = world.z(body) + VELOCITIES_Z[i];
+
+            if (x < 0 || x > WORLD_SIZE) VELOCITIES_X[i] = -VELOCITIES_X[i];
+            if (z < 0 || z > WORLD_SIZE) VELOCITIES_Z[i] = -VELOCITIES_Z[i];
+            world.setPosition(body, x, world.y(body) - SPEED, z);
+        }
+    }
+
+    private void remove(int body) {
+        world.remove(body);
+        REMOVED[body] = true;
+    }
+
+    /**
+     * Step the world and compare the pairs its sweep found with testing every pair of bounding boxes as they were
+     * before the step.
+     *
+     * @return Number of pairs found.
+     */
+    private int comparePairs() {
+        int bodyCount = BOX_COUNT + CAPSULE_COUNT;
+        float[] bounds = new float[bodyCount * 6];
+
+        for (int i = 0; i < BOX_COUNT; i++) System.arraycopy(BOX_BOUNDS, i * 6, bounds, BOXES[i] * 6, 6);
+
+        for (int body : CAPSULES) {
+            if (REMOVED[body]) continue;
+
+            float x = world.x(body);
+            float y = world.y(body);
+            float z = world.z(body);
+            float[] capsule = {x - RADIUS, y, z - RADIUS, x + RADIUS, y + HEIGHT, z + RADIUS};
+            System.arraycopy(capsule, 0, bounds, body * 6, 6);
+        }
+
+        long[] expected = new long[64];
+        int count = 0;
+
+        for (int first : CAPSULES) {
+            if (REMOVED[first]) continue;
+
+            for (int second = 0; second < bodyCount; second++) {
+                if (REMOVED[second] || second == first || IS_CAPSULE[second] && second < first) continue;
+
+                boolean overlaps = true;
+                for (int axis = 0; axis < 3; axis++) {
+                    if (bounds[first * 6 + axis] > bounds[second * 6 + 3 + axis]
+                            || bounds[second * 6 + axis] > bounds[first * 6 + 3 + axis]) {
+                        overlaps = false;
+                    }
+                }
+
+                if (!overlaps) continue;
+                if (count == expected.length) expected = Arrays.copyOf(expected, count * 2);
+                expected[count++] = ((long) Math.min(first, second) << 32) | Math.max(first, second);
+            }
+        }
+
+        world.step(GROUND);
+
+        long[] actual = new long[world.pairCount()];
+        for (int pair = 0; pair < actual.length; pair++) {
+            int first = world.pairBody(pair, 0);
+            int second = world.pairBody(pair, 1);
+            actual[pair] = ((long) Math.min(first, second) << 32) | Math.max(first, second);
+        }
+
+        expected = Arrays.copyOf(expected, count);
+        Arrays.sort(expected);
+        Arrays.sort(actual);
+        assertArrayEquals(expected, actual, "The sweep disagrees with testing every pair.");
+        return actual.length;
+    }
+}
@@ -0,0 +1,349 @@
+package picking;
+
+import OBJConverter.GeneratedMeshes;
+import OBJConverter.ModelData;
+import entities.Camera;
+import entities.EntityStore;
+import models.RawModel;
+import models.TexturedModel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+import org.lwjgl.util.vector.Vector4f;
+import physics.HeightField;
+import renderEngine.MasterRenderer;
+import testutil.Allocations;
+import textures.ModelTexture;
+import toolbox.EngineMath;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the picker against brute force over bumpy spheres scattered on rolling ground: unprojected rays pass through
+ * the points they were cast through, every pick matches testing every triangle of every entity in world space and a
+ * fine ray march of the ground, also after entities were moved, removed and hidden, rays must have a finite length,
+ * and picking allocates nothing once warmed up.
+ */
+class PickerTest {
+    private static final int ENTITY_COUNT = 20_000;
+    private static final float WORLD_SIZE = 2000;
+    private static final float CELL_SIZE = 40;
+    private static final float GROUND_TOP = 11;
+    private static final float GROUND_STEP = 1;
+    private static final float PICK_DISTANCE = 1000;
+    private static final int RAY_COUNT = 256;
+    private static final float FINE_GROUND_STEP = 0.02f;
+    private static final float ASPECT_RATIO = 16f / 9;
+
+    private static final HeightField GROUND = (x, z) -> (float) (8 * Math.sin(x / 40) * Math.cos(z / 55)
+            + 3 * Math.sin((x + z) / 17));
+
+    private final Matrix4f PROJECTION_MATRIX = MasterRenderer.createProjectionMatrix(ASPECT_RATIO, new Matrix4f());
+    private final PickResult RESULT = new PickResult();
+
+    private EntityStore store;
+    private Map<TexturedModel, ModelData> meshes;
+    private Picker picker;
+
+    @BeforeEach
+    void setUp() {
+        TexturedModel rock = new TexturedModel(new RawModel(1, 0), new ModelTexture(1));
+        TexturedModel boulder = new TexturedModel(new RawModel(2, 0), new ModelTexture(2));
+        meshes = Map.of(rock, GeneratedMeshes.bumpySphere(25, 3), boulder, GeneratedMeshes.bumpySphere(13, 4));
+
+        Random random = new Random(676452);
+        store = new EntityStore(ENTITY_COUNT);
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            TexturedModel model = i % 3 == 0 ? boulder : rock;
+            float x = random.nextFloat() * WORLD_SIZE;
+            float z = random.nextFloat() * WORLD_SIZE;
+
+            store.create(
+                    model, meshes.get(model).furthestPoint(), x, GROUND.heightAt(x, z) - 1, z,
+                    random.nextFloat() * 40 - 20, random.nextFloat() * 360, random.nextFloat() * 40 - 20,
+                    random.nextFloat() + 1, EntityStore.STATIC
+            );
+        }
+
+        picker = new Picker(store, meshes, CELL_SIZE, GROUND, GROUND_TOP, GROUND_STEP);
+
+        // The picker has to follow entities removed, moved and hidden after it was built.
+        for (int id = 0; id < ENTITY_COUNT; id += 97) store.remove(id);
+        for (int id = 1; id < ENTITY_COUNT; id += 89) {
+            if (id % 97 == 0) continue;
+
+            float x = random.nextFloat() * WORLD_SIZE;
+            float z = random.nextFloat() * WORLD_SIZE;
+            store.setPosition(id, x, GROUND.heightAt(x, z), z);
+        }
+        for (int id = 2; id < ENTITY_COUNT; id += 53) {
+            if (id % 97 != 0) store.setFlags(id, EntityStore.STATIC | EntityStore.HIDDEN);
+        }
+        picker.update();
+    }
+
+    @Test
+    void unprojectedRaysPassThroughTheirPoints() {
+        Random random = new Random(676453);
+        Camera camera = new Camera();
+        Matrix4f viewMatrix = new Matrix4f();
+        Matrix4f viewProjection = new Matrix4f();
+        Vector3f origin = new Vector3f();
+        Vector3f direction = new Vector3f();
+        Vector4f point = new Vector4f();
+
+        for (int i = 0; i < 10_000; i++) {
+            placeCamera(random, camera, viewMatrix);
+            Matrix4f.mul(PROJECTION_MATRIX, viewMatrix, viewProjection);
+
+            float ndcX = random.nextFloat() * 2 - 1;
+            float ndcY = random.nextFloat() * 2 - 1;
+            float depth = 1 + random.nextFloat() * 500;
+            EngineMath.unproject(ndcX, ndcY, PROJECTION_MATRIX, viewMatrix, origin, direction);
+
+            point.set(
+                    origin.x + direction.x * depth, origin.y + direction.y * depth, origin.z + direction.z * depth, 1
+            );
+            Matrix4f.transform(viewProjection, point, point);
+
+            assertEquals(0, Vector3f.sub(origin, camera.position(), null).length(), 1e-3f, "Ray " + i + " origin");
+            assertEquals(1, direction.length(), 1e-5f, "Ray " + i + " direction");
+            assertEquals(ndcX, point.x / point.w, 1e-3f, "Ray " + i + " projects elsewhere.");
+            assertEquals(ndcY, point.y / point.w, 1e-3f, "Ray " + i + " projects elsewhere.");
+        }
+    }
+
+    @Test
+    void picksMatchTestingEveryTriangle() {
+        float[] rays = createRays(new Random(676454), RAY_COUNT);
+        int entityHits = 0;
+        int groundHits = 0;
+
+        for (int ray = 0; ray < RAY_COUNT; ray++) {
+            float ox = rays[ray * 6];
+            float oy = rays[ray * 6 + 1];
+            float oz = rays[ray * 6 + 2];
+            float dx = rays[ray * 6 + 3];
+            float dy = rays[ray * 6 + 4];
+            float dz = rays[ray * 6 + 5];
+
+            double entityDistance = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < store.size(); i++) {
+                if ((store.flags(store.id(i)) & EntityStore.HIDDEN) != 0) continue;
+                float entry = sphereEntry(store.worldMatrices(), store.radii()[i], i * 16, ox, oy, oz, dx, dy, dz);
+                if (entry > PICK_DISTANCE) continue;
+
+                int[] indices = meshes.get(store.model(store.models()[i])).indices();
+                for (int triangle = 0; triangle < indices.length / 3; triangle++) {
+                    entityDistance = Math.min(entityDistance, intersectWorld(i, triangle, ox, oy, oz, dx, dy, dz));
+                }
+            }
+
+            double groundDistance = Double.POSITIVE_INFINITY;
+            for (int step = 0; step * FINE_GROUND_STEP <= PICK_DISTANCE; step++) {
+                float t = step * FINE_GROUND_STEP;
+                if (oy + dy * t <= GROUND.heightAt(ox + dx * t, oz + dz * t)) {
+                    groundDistance = t;
+                    break;
+                }
+            }
+
+            double expected = Math.min(entityDistance, groundDistance);
+            boolean hit = picker.pick(ox, oy, oz, dx, dy, dz, PICK_DISTANCE, RESULT);
+
+            if (expected > PICK_DISTANCE) {
+                assertFalse(hit, "Ray " + ray + " hit something beyond the pick distance.");
+                continue;
+            }
+
+            assertTrue(hit, "Ray " + ray + " missed what lies " + expected + " along it.");
+            assertEquals(expected, RESULT.distance(), 1e-3 * expected + FINE_GROUND_STEP, "Ray " + ray);
+
+            if (RESULT.kind() == PickResult.ENTITY) {
+                entityHits++;
+                int index = store.index(RESULT.entityId());
+                double distance = intersectWorld(index, RESULT.triangle(), ox, oy, oz, dx, dy, dz);
+
+                boolean hidden = (store.flags(RESULT.entityId()) & EntityStore.HIDDEN) != 0;
+                assertFalse(hidden, "Ray " + ray + " picked a hidden entity.");
+                assertEquals(distance, RESULT.distance(), 1e-3 * distance, "Ray " + ray + " missed its triangle.");
+            }
+
+            else {
+                groundHits++;
+                float height = GROUND.heightAt(RESULT.x(), RESULT.z());
+                assertEquals(height, RESULT.y(), 1e-2f, "Ray " + ray + " picked a point off the ground.");
+            }
+        }
+
+        assertTrue(
+                entityHits >= RAY_COUNT / 10 && groundHits >= RAY_COUNT / 10,
+                entityHits + " rays hit entities and " + groundHits + " the ground."
+        );
+    }
+
+    @Test
+    void raysMustHaveAFiniteLength() {
+        assertThrows(IllegalArgumentException.class, () -> picker.pick(
+                100, 5, 100, 1, 0, 0, Float.POSITIVE_INFINITY, RESULT
+        ));
+        assertThrows(IllegalArgumentException.class, () -> picker.pick(100, 5, 100, 1, 0, 0, Float.NaN, RESULT));
+
+        // A level ray under the ground's top that never meets the ground or an entity marches its whole length.
+        Picker empty = new Picker(new EntityStore(16), meshes, CELL_SIZE, (x, z) -> -100, 0, GROUND_STEP);
+        assertFalse(empty.pick(0, -50, 0, 1, 0, 0, 1e6f, RESULT));
+    }
+
+    @Test
+    void picksAllocateNothing() {
+        float[] rays = createRays(new Random(676455), RAY_COUNT);
+        for (int i = 0; i < 1000; i++) pick(rays, i % RAY_COUNT);
+
+        Allocations.assertAllocationFree(() -> {
+            for (int i = 0; i < 100; i++) pick(rays, i);
+        });
+    }
+
+    private void pick(float[] rays, int ray) {
+        int offset = ray * 6;
+        picker.pick(
+                rays[offset], rays[offset + 1], rays[offset + 2], rays[offset + 3], rays[offset + 4], rays[offset + 5],
+                PICK_DISTANCE, RESULT
+        );
+    }
+
+    /**
+     * Cast rays through random points of the screens of cameras scattered over the world, looking slightly down.
+     *
+     * @param random Source of the cameras and points.
+     * @param count  Number of rays.
+     * @return Origin and normalized direction of every ray, six floats each.
+     */
+    private float[] createRays(Random random, int count) {
+        float[] result = new float[count * 6];
+        Camera camera = new Camera();
+        Matrix4f viewMatrix = new Matrix4f();
+        Vector3f origin = new Vector3f();
+        Vector3f direction = new Vector3f();
+
+        for (int i = 0; i < count; i++) {
+            placeCamera(random, camera, viewMatrix);
+            EngineMath.unproject(
+                    random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1, PROJECTION_MATRIX, viewMatrix, origin,
+                    direction
+            );
+
+            result[i * 6] = origin.x;
+            result[i * 6 + 1] = origin.y;
+            result[i * 6 + 2] = origin.z;
+            result[i * 6 + 3] = direction.x;
+            result[i * 6 + 4] = direction.y;
+            result[i * 6 + 5] = direction.z;
+        }
+
+        return result;
+    }
+
+    private static void placeCamera(Random random, Camera camera, Matrix4f viewMatrix) {
+        float x = 500 + random.nextFloat() * (WORLD_SIZE - 1000);
+        float z = 500 + random.nextFloat() * (WORLD_SIZE - 1000);
+        camera.position().set(x, GROUND.heightAt(x, z) + 2 + random.nextFloat() * 30, z);
+        camera.rotation().set(5 + random.nextFloat() * 30, random.nextFloat() * 360, 0);
+        EngineMath.createViewMatrix(camera, viewMatrix);
+    }
+
+    /**
+     * Find where a ray enters the bounding sphere of an entity.
+     *
+     * @param matrices World matrices of the entities.
+     * @param radius   Radius of the entity's bounding sphere.
+     * @param m        Offset of the entity's world matrix.
+     * @param ox       Origin of the ray.
+     * @param oy       Origin of the ray.
+     * @param oz       Origin of the ray.
+     * @param dx       Normalized direction of the ray.
+     * @param dy       Normalized direction of the ray.
+     * @param dz       Normalized direction of the ray.
+     * @return Distance along the ray to the sphere, 0 if the ray starts inside, or positive infinity if it misses.
+     */
+    private static float sphereEntry(
+            float[] matrices, float radius, int m, float ox, float oy, float oz, float dx, float dy, float dz
+    ) {
+        float toCentreX = matrices[m + 12] - ox;
+        float toCentreY = matrices[m + 13] - oy;
+        float toCentreZ = matrices[m + 14] - oz;
+        float along = toCentreX * dx + toCentreY * dy + toCentreZ * dz;
+        float squaredDistance = toCentreX * toCentreX + toCentreY * toCentreY + toCentreZ * toCentreZ;
+        float squaredOffset = squaredDistance - along * along;
+
+        if (squaredDistance <= radius * radius) return 0;
+        if (along < 0 || squaredOffset > radius * radius) return Float.POSITIVE_INFINITY;
+        return along - (float) Math.sqrt(radius * radius - squaredOffset);
+    }
+
+    /**
+     * Intersect a ray with a triangle of an entity transformed into world space, from either side.
+     *
+     * @param index    Index of the entity.
+     * @param triangle Index of the triangle within the entity's model.
+     * @param ox       Origin of the ray.
+     * @param oy       Origin of the ray.
+     * @param oz       Origin of the ray.
+     * @param dx       Normalized direction of the ray.
+     * @param dy       Normalized direction of the ray.
+     * @param dz       Normalized direction of the ray.
+     * @return Distance along the ray to the triangle, or positive infinity if the ray misses it.
+     */
+    private double intersectWorld(int index, int triangle, float ox, float oy, float oz, float dx, float dy, float dz) {
+        ModelData mesh = meshes.get(store.model(store.models()[index]));
+        float[] matrices = store.worldMatrices();
+        double[] corners = new double[9];
+
+        for (int corner = 0; corner < 3; corner++) {
+            int vertex = mesh.indices()[triangle * 3 + corner] * 3;
+
+            for (int axis = 0; axis < 3; axis++) {
+                corners[corner * 3 + axis] = matrices[index * 16 + axis] * (double) mesh.vertices()[vertex]
+                        + matrices[index * 16 + 4 + axis] * (double) mesh.vertices()[vertex + 1]
+                        + matrices[index * 16 + 8 + axis] * (double) mesh.vertices()[vertex + 2]
+                        + matrices[index * 16 + 12 + axis];
+            }
+        }
+
+        double e1x = corners[3] - corners[0];
+        double e1y = corners[4] - corners[1];
+        double e1z = corners[5] - corners[2];
+        double e2x = corners[6] - corners[0];
+        double e2y = corners[7] - corners[1];
+        double e2z = corners[8] - corners[2];
+
+        double px = dy * e2z - dz * e2y;
+        double py = dz * e2x - dx * e2z;
+        double pz = dx * e2y - dy * e2x;
+        double determinant = e1x * px + e1y * py + e1z * pz;
+        if (Math.abs(determinant) < 1e-12) return Double.POSITIVE_INFINITY;
+
+        double tx = ox - corners[0];
+        double ty = oy - corners[1];
+        double tz = oz - corners[2];
+        double u = (tx * px + ty * py + tz * pz) / determinant;
+        if (u < 0 || u > 1) return Double.POSITIVE_INFINITY;
+
+        double qx = ty * e1z - tz * e1y;
+        double qy = tz * e1x - tx * e1z;
+        double qz = tx * e1y - ty * e1x;
+        double v = (dx * qx + dy * qy + dz * qz) / determinant;
+        if (v < 0 || u + v > 1) return Double.POSITIVE_INFINITY;
+
+        double t = (e2x * qx + e2y * qy + e2z * qz) / determinant;
+        return t >= 0 ? t : Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,235 @@
+package renderEngine;
+
+import OBJConverter.GeneratedMeshes;
+import OBJConverter.ModelData;
+import entities.Camera;
+import entities.Entity;
+import entities.EntityStore;
+import models.RawModel;
+import models.TexturedModel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector4f;
+import testutil.Allocations;
+import textures.ModelTexture;
+import toolbox.EngineMath;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks impostors without OpenGL, laying the atlas out without rendering it: every impostor shows the view rendered
+ * from the direction closest to the camera's and fits its model, the trees of the visible chunks are drawn exactly
+ * once as meshes or impostors with impostors only beyond the impostor distance, impostors cut the triangles drawn,
+ * and picking the chunks to draw allocates nothing.
+ */
+class ImpostorAtlasTest {
+    private static final int ENTITY_COUNT = 20_000;
+    private static final float WORLD_SIZE = 4000;
+    private static final float CHUNK_SIZE = 200;
+    private static final float IMPOSTOR_DISTANCE = 300;
+    private static final int VIEW_COUNT = 16;
+    private static final float ASPECT_RATIO = 16f / 9;
+    private static final float SIZE_TOLERANCE = 1e-3f;
+
+    private final TexturedModel TREE = new TexturedModel(new RawModel(1, 0), new ModelTexture(1));
+    private final TexturedModel LOW_POLY_TREE = new TexturedModel(new RawModel(2, 0), new ModelTexture(2));
+    private final Map<TexturedModel, ModelData> MESHES = Map.of(
+            TREE, GeneratedMeshes.sphere(25, 8), LOW_POLY_TREE, GeneratedMeshes.sphere(12, 5)
+    );
+    private final float[] PLANES = new float[24];
+    private final Camera CAMERA = new Camera();
+
+    private EntityStore store;
+    private ImpostorAtlas atlas;
+    private StaticBatcher impostorBatcher;
+    private StaticBatcher meshBatcher;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(676452);
+        store = new EntityStore(ENTITY_COUNT);
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            store.create(
+                    i % 3 == 0 ? LOW_POLY_TREE : TREE, 16, random.nextFloat() * WORLD_SIZE, 0,
+                    random.nextFloat() * WORLD_SIZE, 0, random.nextFloat() * 360, 0, random.nextFloat() + 1,
+                    EntityStore.STATIC
+            );
+        }
+
+        atlas = new ImpostorAtlas(MESHES, VIEW_COUNT);
+        impostorBatcher = createBatcher(atlas);
+        impostorBatcher.update(store, MESHES);
+        meshBatcher = createBatcher(null);
+        meshBatcher.update(store, MESHES);
+
+        CAMERA.position().set(WORLD_SIZE / 2, 20, WORLD_SIZE / 2);
+        CAMERA.rotation().set(5, 30, 0);
+        extractFrustumPlanes(CAMERA, PLANES);
+    }
+
+    @Test
+    void viewsAreRenderedFromTheClosestDirection() {
+        Random random = new Random(676453);
+        Camera viewCamera = new Camera();
+        viewCamera.position().set(0, 0, 0);
+        Matrix4f matrix = new Matrix4f();
+        Vector4f viewDirection = new Vector4f();
+        Vector4f modelDirection = new Vector4f();
+
+        for (int i = 0; i < 10_000; i++) {
+            float dx = random.nextFloat() * 2 - 1;
+            float dz = random.nextFloat() * 2 - 1;
+            float rotationY = random.nextFloat() * 720 - 360;
+            int view = ImpostorAtlas.viewIndex(dx, dz, rotationY, VIEW_COUNT);
+
+            // Direction the entity is seen from, in the model's own space.
+            EngineMath.createTransformationMatrix(0, 0, 0, 0, rotationY, 0, 1, matrix);
+            Matrix4f.invert(matrix, matrix);
+            modelDirection.set(dx, 0, dz, 0);
+            Matrix4f.transform(matrix, modelDirection, modelDirection);
+
+            // Direction the view's camera looked in when it was rendered.
+            viewCamera.rotation().set(0, view * 360f / VIEW_COUNT, 0);
+            EngineMath.createViewMatrix(viewCamera, matrix);
+            Matrix4f.invert(matrix, matrix);
+            viewDirection.set(0, 0, -1, 0);
+            Matrix4f.transform(matrix, viewDirection, viewDirection);
+
+            double angle = Math.toDegrees(Math.acos(Math.max(-1, Math.min(1, Vector4f.dot(
+                    viewDirection, modelDirection
+            ) / modelDirection.length() / viewDirection.length()))));
+
+            assertTrue(angle <= 180.0 / VIEW_COUNT + 1e-3, "View " + view + " was rendered " + angle + " degrees off.");
+        }
+    }
+
+    @Test
+    void instancesFitTheirModels() {
+        float[] instance = new float[ImpostorAtlas.INSTANCE_DATA_LENGTH * 2];
+        atlas.writeInstance(TREE, 1, 2, 3, 45, 2, instance, 0);
+        atlas.writeInstance(LOW_POLY_TREE, 4, 5, 6, 90, 3, instance, ImpostorAtlas.INSTANCE_DATA_LENGTH);
+
+        // The meshes are spheres resting on the ground, so their quads are half as wide as they are tall. The tree's
+        // rings pass through its widest point, the low poly tree's fall either side of it.
+        assertEquals(2, atlas.rowCount());
+        assertEquals(8 * 2, instance[4], SIZE_TOLERANCE);
+        assertEquals(0, instance[5], SIZE_TOLERANCE);
+        assertEquals(16 * 2, instance[6], SIZE_TOLERANCE);
+        assertTrue(instance[ImpostorAtlas.INSTANCE_DATA_LENGTH + 4] <= 5 * 3);
+        assertEquals(10 * 3, instance[ImpostorAtlas.INSTANCE_DATA_LENGTH + 6], SIZE_TOLERANCE);
+        assertNotEquals(instance[7], instance[ImpostorAtlas.INSTANCE_DATA_LENGTH + 7]);
+    }
+
+    @Test
+    void visibleTreesAreDrawnOnceAsMeshesOrDistantImpostors() {
+        float cameraX = CAMERA.position().x;
+        float cameraY = CAMERA.position().y;
+        float cameraZ = CAMERA.position().z;
+
+        meshBatcher.selectVisible(PLANES, cameraX, cameraY, cameraZ);
+        impostorBatcher.selectVisible(PLANES, cameraX, cameraY, cameraZ);
+
+        long meshOnlyTriangles = triangles(meshBatcher.visibleMeshes());
+        long meshTriangles = triangles(impostorBatcher.visibleMeshes());
+        long replacedTriangles = 0;
+        int impostorCount = impostorBatcher.visibleImpostorCount();
+        float[] instances = impostorBatcher.visibleImpostors();
+
+        Map<Long, Integer> entities = new HashMap<>();
+        for (int i = 0; i < store.size(); i++) {
+            entities.put(positionKey(store.positionsX()[i], store.positionsZ()[i]), i);
+        }
+
+        for (int impostor = 0; impostor < impostorCount; impostor++) {
+            int offset = impostor * ImpostorAtlas.INSTANCE_DATA_LENGTH;
+            Integer index = entities.remove(positionKey(instances[offset], instances[offset + 2]));
+            assertNotNull(index, "Impostor " + impostor + " is not a single tree.");
+
+            float dx = instances[offset] - cameraX;
+            float dy = instances[offset + 1] - cameraY;
+            float dz = instances[offset + 2] - cameraZ;
+            assertTrue(
+                    dx * dx + dy * dy + dz * dz > IMPOSTOR_DISTANCE * IMPOSTOR_DISTANCE,
+                    "Impostor " + impostor + " is within the impostor distance."
+            );
+
+            TexturedModel model = store.model(store.models()[index]);
+            float scale = store.scales()[index];
+            replacedTriangles += MESHES.get(model).indices().length / 3;
+
+            if (model == TREE) {
+                assertEquals(8 * scale, instances[offset + 4], SIZE_TOLERANCE * scale);
+                assertEquals(16 * scale, instances[offset + 6], SIZE_TOLERANCE * scale);
+            }
+        }
+
+        assertEquals(meshOnlyTriangles, meshTriangles + replacedTriangles, "Visible trees are not drawn exactly once.");
+
+        long impostorTriangles = meshTriangles + 2L * impostorCount;
+        assertTrue(impostorCount > 0, "No chunk was drawn as impostors.");
+        assertTrue(
+                impostorTriangles * 4 <= meshOnlyTriangles,
+                impostorTriangles + " triangles with impostors against " + meshOnlyTriangles + " without."
+        );
+    }
+
+    @Test
+    void selectingAllocatesNothing() {
+        for (int i = 0; i < 1000; i++) select();
+
+        Allocations.assertAllocationFree(() -> {
+            for (int i = 0; i < 100; i++) select();
+        });
+    }
+
+    private void select() {
+        impostorBatcher.selectVisible(PLANES, CAMERA.position().x, CAMERA.position().y, CAMERA.position().z);
+    }
+
+    private static StaticBatcher createBatcher(ImpostorAtlas impostors) {
+        return new StaticBatcher(
+                CHUNK_SIZE, impostors, IMPOSTOR_DISTANCE, mesh -> new RawModel(0, mesh.indices().length), model -> { }
+        );
+    }
+
+    /**
+     * Count the triangles of merged meshes, whose models were created with their index counts.
+     *
+     * @param meshes Merged meshes of chunks.
+     * @return Number of triangles.
+     */
+    private static long triangles(List<Entity> meshes) {
+        long triangles = 0;
+        for (Entity mesh : meshes) triangles += mesh.texturedModel().rawModel().vertexCount() / 3;
+        return triangles;
+    }
+
+    private static long positionKey(float x, float z) {
+        return (long) Float.floatToIntBits(x) << 32 | (Float.floatToIntBits(z) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Extract the frustum planes of a camera with the projection the master renderer uses on a 16:9 display.
+     *
+     * @param camera Camera to be looked through.
+     * @param planes Destination for the six frustum planes.
+     */
+    private static void extractFrustumPlanes(Camera camera, float[] planes) {
+        Matrix4f projectionMatrix = MasterRenderer.createProjectionMatrix(ASPECT_RATIO, new Matrix4f());
+
+        Matrix4f viewProjection = Matrix4f.mul(projectionMatrix, EngineMath.createViewMatrix(camera), null);
+        float[] matrix = new float[16];
+        EngineMath.storeMatrix(viewProjection, matrix, 0);
+        EngineMath.extractFrustumPlanes(matrix, planes);
+    }
+}
@@ -0,0 +1,92 @@
+package renderEngine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Feeds the resolution controller synthetic GPU times: the scale only changes once per sample window, in bounded
+ * steps on the scale grid, stays put while the load is inside the band around the budget, and settles instead of
+ * oscillating when the GPU time follows the pixel count.
+ */
+class ResolutionControllerTest {
+    private static final float BUDGET_MILLIS = 16;
+    private static final int WINDOW = 8;
+    private static final float MIN_SCALE = 0.5f;
+    private static final float MAX_STEP = 0.15f;
+    private static final float GRID = 0.05f;
+    private static final float TOLERANCE = 1e-4f;
+
+    @Test
+    void loadsInsideTheBandKeepTheScale() {
+        ResolutionController controller = new ResolutionController(BUDGET_MILLIS);
+
+        // Alternating 0.76 and 0.94 of the budget: every window averages inside the band.
+        for (int frame = 0; frame < 1000; frame++) {
+            controller.addSample(BUDGET_MILLIS * (frame % 2 == 0 ? 0.76f : 0.94f));
+        }
+
+        assertEquals(1, controller.scale());
+        assertEquals(0, controller.adjustmentCount());
+        assertEquals(BUDGET_MILLIS * 0.85f, controller.averageMillis(), TOLERANCE);
+    }
+
+    @Test
+    void theScaleChangesOncePerWindowInBoundedSteps() {
+        ResolutionController controller = new ResolutionController(BUDGET_MILLIS);
+
+        // Far over budget: the scale drops by the largest step at the end of every window until it reaches the floor.
+        float expected = 1;
+        for (int window = 0; window < 6; window++) {
+            for (int frame = 0; frame < WINDOW - 1; frame++) {
+                controller.addSample(BUDGET_MILLIS * 10);
+                assertEquals(expected, controller.scale(), TOLERANCE, "Window " + window + ", frame " + frame);
+            }
+
+            controller.addSample(BUDGET_MILLIS * 10);
+            expected = Math.max(MIN_SCALE, expected - MAX_STEP);
+            assertEquals(expected, controller.scale(), TOLERANCE, "Window " + window);
+        }
+
+        assertEquals(4, controller.adjustmentCount());
+
+        // Idle: the scale climbs back by the same steps and never beyond full resolution.
+        for (int frame = 0; frame < WINDOW * 10; frame++) controller.addSample(0);
+        assertEquals(1, controller.scale());
+        assertEquals(8, controller.adjustmentCount());
+    }
+
+    @ParameterizedTest
+    @ValueSource(floats = {10, 14, 17, 20, 24, 30, 40, 60, 100})
+    void scaleSettlesWhenGpuTimeFollowsThePixelCount(float fullResolutionMillis) {
+        ResolutionController controller = new ResolutionController(BUDGET_MILLIS);
+
+        float previous = controller.scale();
+        for (int frame = 0; frame < WINDOW * 20; frame++) {
+            float scale = controller.scale();
+            controller.addSample(fullResolutionMillis * scale * scale);
+
+            float step = Math.abs(controller.scale() - previous);
+            assertTrue(step <= MAX_STEP + TOLERANCE, "Step of " + step + " at frame " + frame + ".");
+            assertEquals(0, controller.scale() / GRID - Math.round(controller.scale() / GRID), TOLERANCE);
+            previous = controller.scale();
+        }
+
+        float settled = controller.scale();
+        float load = fullResolutionMillis * settled * settled / BUDGET_MILLIS;
+        assertTrue(load <= 0.95f || settled == MIN_SCALE, "Settled at " + settled + " over budget, load " + load);
+        assertTrue(load >= 0.75f || settled == 1, "Settled at " + settled + " under budget, load " + load);
+
+        int adjustments = controller.adjustmentCount();
+        for (int frame = 0; frame < 10_000; frame++) {
+            float scale = controller.scale();
+            controller.addSample(fullResolutionMillis * scale * scale);
+        }
+
+        assertEquals(settled, controller.scale(), "The scale kept moving after settling.");
+        assertEquals(adjustments, controller.adjustmentCount());
+    }
+}
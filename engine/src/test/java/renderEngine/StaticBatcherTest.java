@@ -0,0 +1,159 @@
+package renderEngine;
+
+import OBJConverter.GeneratedMeshes;
+import OBJConverter.ModelData;
+import entities.EntityStore;
+import models.RawModel;
+import models.TexturedModel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector4f;
+import textures.ModelTexture;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the static batcher without OpenGL, counting the indices of the merged meshes it uploads and deletes: merged
+ * vertices are the entities' vertices in world space inside the chunk's bounding sphere, every visible static entity
+ * is batched exactly once, and changes rebuild only the chunks they touch.
+ */
+class StaticBatcherTest {
+    private static final int ENTITY_COUNT = 2000;
+    private static final float CHUNK_SIZE = 200;
+    private static final float POSITION_TOLERANCE = 1e-3f;
+
+    private final TexturedModel TREE = new TexturedModel(new RawModel(1, 0), new ModelTexture(1));
+    private final TexturedModel ROCK = new TexturedModel(new RawModel(2, 0), new ModelTexture(2));
+    private final Map<TexturedModel, ModelData> MESHES = Map.of(
+            TREE, GeneratedMeshes.sphere(12, 8), ROCK, GeneratedMeshes.sphere(6, 2)
+    );
+
+    private EntityStore store;
+    private StaticBatcher batcher;
+    private long uploadedIndices;
+    private int uploads;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(676452);
+        store = new EntityStore(ENTITY_COUNT);
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            store.create(
+                    i % 3 == 0 ? ROCK : TREE, 8, random.nextFloat() * 800 - 400, 0, random.nextFloat() * -600, 0,
+                    random.nextFloat() * 360, 0, random.nextFloat() + 4, EntityStore.STATIC
+            );
+        }
+
+        // A moving entity is never batched.
+        store.create(TREE, 8, 0, 0, 0, 0, 0, 0, 1, 0);
+
+        uploadedIndices = 0;
+        uploads = 0;
+        batcher = new StaticBatcher(CHUNK_SIZE, mesh -> {
+            uploadedIndices += mesh.indices().length;
+            uploads++;
+            return new RawModel(0, mesh.indices().length);
+        }, model -> uploadedIndices -= model.vertexCount());
+    }
+
+    @Test
+    void mergedVerticesAreInWorldSpace() {
+        ModelData mesh = MESHES.get(TREE);
+        int[] members = {1, 2};
+        store.updateWorldMatrices();
+
+        StaticBatcher.MergedMesh merged = StaticBatcher.merge(
+                new ModelData[]{mesh, mesh}, store.worldMatrices(), members
+        );
+        int vertexCount = mesh.vertices().length / 3;
+
+        assertEquals(mesh.indices().length * 2, merged.indices().length);
+        assertEquals(vertexCount, merged.indices()[mesh.indices().length], "Indices of the second mesh are offset.");
+
+        for (int member = 0; member < members.length; member++) {
+            Matrix4f worldMatrix = store.entity(store.id(members[member])).worldMatrix();
+
+            for (int vertex = 0; vertex < vertexCount; vertex++) {
+                Vector4f expected = Matrix4f.transform(worldMatrix, new Vector4f(
+                        mesh.vertices()[vertex * 3], mesh.vertices()[vertex * 3 + 1], mesh.vertices()[vertex * 3 + 2],
+                        1
+                ), null);
+                int out = (member * vertexCount + vertex) * 3;
+
+                assertEquals(expected.x, merged.positions()[out], POSITION_TOLERANCE);
+                assertEquals(expected.y, merged.positions()[out + 1], POSITION_TOLERANCE);
+                assertEquals(expected.z, merged.positions()[out + 2], POSITION_TOLERANCE);
+
+                float dx = merged.positions()[out] - merged.centerX();
+                float dy = merged.positions()[out + 1] - merged.centerY();
+                float dz = merged.positions()[out + 2] - merged.centerZ();
+                assertTrue(
+                        dx * dx + dy * dy + dz * dz <= merged.radius() * merged.radius() * 1.0001f,
+                        "Merged vertex " + vertex + " is outside the bounding sphere."
+                );
+            }
+        }
+    }
+
+    @Test
+    void everyVisibleStaticEntityIsBatchedOnce() {
+        assertTrue(batcher.update(store, MESHES));
+        assertEquals(batchedIndices(), uploadedIndices);
+        assertTrue(batcher.chunkCount() < ENTITY_COUNT / 10, batcher.chunkCount() + " chunks.");
+
+        store.setFlags(store.id(5), EntityStore.STATIC | EntityStore.HIDDEN);
+        store.remove(store.id(6));
+
+        assertTrue(batcher.update(store, MESHES));
+        assertEquals(batchedIndices(), uploadedIndices);
+
+        batcher.cleanUp();
+        assertEquals(0, uploadedIndices);
+    }
+
+    @Test
+    void changesRebuildOnlyTheChunksTheyTouch() {
+        batcher.update(store, MESHES);
+        int built = uploads;
+
+        assertFalse(batcher.update(store, MESHES), "An unchanged store was batched again.");
+        assertEquals(built, uploads);
+
+        // Moving one entity half a chunk at a time rebuilds at most the chunk it left and the one it entered.
+        int moving = store.id(ENTITY_COUNT / 2);
+        for (int i = 0; i < 4; i++) {
+            store.displace(moving, i % 2 == 0 ? CHUNK_SIZE / 2 : -CHUNK_SIZE / 2, 0, 0);
+            int before = uploads;
+
+            assertTrue(batcher.update(store, MESHES));
+            assertTrue(uploads - before <= 2, "Moving one entity rebuilt " + (uploads - before) + " chunks.");
+        }
+
+        assertEquals(batchedIndices(), uploadedIndices);
+    }
+
+    /**
+     * Count the indices of every static entity that isn't hidden, which the merged meshes must hold between them.
+     *
+     * @return Number of indices.
+     */
+    private long batchedIndices() {
+        long indices = 0;
+
+        for (int i = 0; i < store.size(); i++) {
+            int flags = store.flags(store.id(i));
+            if ((flags & EntityStore.STATIC) == 0 || (flags & EntityStore.HIDDEN) != 0) continue;
+
+            indices += MESHES.get(store.model(store.models()[i])).indices().length;
+        }
+
+        return indices;
+    }
+}
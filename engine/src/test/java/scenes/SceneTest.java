@@ -0,0 +1,349 @@
+package scenes;
+
+import entities.EntityStore;
+import models.RawModel;
+import models.TexturedModel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import textures.ModelTexture;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks scene files end to end: every entity written reads back exactly after mapping the file and paging it in,
+ * paging loads exactly the regions within the load distance and removes them past the eviction distance, listeners
+ * hear of every region paged in and out, scenes without entities open and page as nothing, and files that aren't
+ * scenes, are of another version, use unknown models, are truncated or point outside themselves are reported instead
+ * of being read past their end.
+ */
+class SceneTest {
+    private static final int ENTITY_COUNT = 20_000;
+    private static final float WORLD_SIZE = 2000;
+    private static final float REGION_SIZE = 100;
+    private static final float LOAD_DISTANCE = 300;
+    private static final float EVICT_DISTANCE = 500;
+
+    private final TexturedModel[] MODELS = {
+            new TexturedModel(new RawModel(1, 0), new ModelTexture(1)),
+            new TexturedModel(new RawModel(2, 0), new ModelTexture(2))
+    };
+    private final BiFunction<String, String, TexturedModel> RESOLVER =
+            (model, texture) -> MODELS[model.equals("tree") ? 0 : 1];
+
+    @TempDir
+    File directory;
+
+    private File file;
+    private float[][] written;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(676452);
+        SceneWriter writer = new SceneWriter(REGION_SIZE);
+        writer.addModel("tree", "tree", 8);
+        writer.addModel("lowPolyTree", "lowPolyTree", 5);
+        written = new float[ENTITY_COUNT][];
+
+        // Each entity's Z rotation is its index, so it can be found again after loading.
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            float[] entity = {
+                    random.nextFloat() * WORLD_SIZE, random.nextFloat() * 40, random.nextFloat() * WORLD_SIZE,
+                    random.nextFloat() * 360, random.nextFloat() * 360, i, random.nextFloat() + 0.5f, i % 2,
+                    i % 3 == 0 ? EntityStore.STATIC : 0
+            };
+
+            written[i] = entity;
+            writer.addEntity(
+                    (int) entity[7], entity[0], entity[1], entity[2], entity[3], entity[4], entity[5], entity[6],
+                    (int) entity[8]
+            );
+        }
+
+        file = new File(directory, "scene.mpls");
+        writer.write(file);
+    }
+
+    @Test
+    void everyEntityReadsBackAsWritten() {
+        EntityStore store = new EntityStore(ENTITY_COUNT);
+
+        try (Scene scene = Scene.open(file, store, RESOLVER, Float.MAX_VALUE, Float.MAX_VALUE)) {
+            assertEquals(ENTITY_COUNT, scene.entityCount());
+            assertEquals(REGION_SIZE, scene.regionSize());
+            assertEquals("lowPolyTree", scene.modelName(1));
+
+            scene.update(0, 0);
+            assertEquals(ENTITY_COUNT, store.size());
+            assertEquals(scene.regionCount(), scene.loadedRegionCount());
+        }
+
+        boolean[] seen = new boolean[ENTITY_COUNT];
+
+        for (int index = 0; index < store.size(); index++) {
+            int id = store.id(index);
+            int entityIndex = (int) store.rotationsZ()[index];
+            float[] entity = written[entityIndex];
+            float[] actual = {
+                    store.positionsX()[index], store.positionsY()[index], store.positionsZ()[index],
+                    store.rotationsX()[index], store.rotationsY()[index], store.rotationsZ()[index],
+                    store.scales()[index]
+            };
+
+            assertFalse(seen[entityIndex], "Entity " + entityIndex + " was loaded twice.");
+            assertArrayEquals(Arrays.copyOf(entity, 7), actual, "Entity " + entityIndex + " read back differently.");
+            assertSame(MODELS[(int) entity[7]], store.texturedModel(id));
+            assertEquals((int) entity[8], store.flags(id));
+            assertEquals((entity[7] == 0 ? 8 : 5) * entity[6], store.radii()[index]);
+            seen[entityIndex] = true;
+        }
+    }
+
+    @Test
+    void pagingLoadsTheRegionsWithinTheLoadDistance() {
+        EntityStore store = new EntityStore(16);
+
+        try (Scene scene = Scene.open(file, store, RESOLVER, LOAD_DISTANCE, EVICT_DISTANCE)) {
+            scene.update(0, 0);
+
+            // Every entity within a region touching the load distance of the corner, and none other, is loaded.
+            int expected = 0;
+            for (float[] entity : written) {
+                float regionX = (float) Math.floor(entity[0] / REGION_SIZE) * REGION_SIZE;
+                float regionZ = (float) Math.floor(entity[2] / REGION_SIZE) * REGION_SIZE;
+                if (Math.hypot(regionX, regionZ) <= LOAD_DISTANCE) expected++;
+            }
+
+            assertEquals(expected, store.size());
+            assertEquals(expected, scene.loadedEntityCount());
+
+            scene.update(WORLD_SIZE / 2, WORLD_SIZE / 2);
+            assertTrue(store.size() > 0);
+            scene.update(WORLD_SIZE, WORLD_SIZE);
+            scene.update(0, 0);
+            assertEquals(expected, store.size(), "Paging across the scene and back changed the corner.");
+
+            scene.unloadAll();
+            assertEquals(0, store.size());
+            assertEquals(0, scene.loadedRegionCount());
+        }
+    }
+
+    @Test
+    void listenersFollowTheRegionsPagedInAndOut() {
+        EntityStore store = new EntityStore(16);
+        Set<Integer> followed = new HashSet<>();
+
+        try (Scene scene = Scene.open(file, store, RESOLVER, LOAD_DISTANCE, EVICT_DISTANCE)) {
+            scene.setListener(new SceneListener() {
+                @Override
+                public void regionLoaded(EntityStore loadedStore, int[] ids) {
+                    for (int id : ids) assertTrue(followed.add(id), "Entity " + id + " was reported loaded twice.");
+                }
+
+                @Override
+                public void regionEvicted(EntityStore evictedStore, int[] ids) {
+                    // The entities can still be read while the hook runs.
+                    for (int id : ids) {
+                        assertEquals(id, evictedStore.id(evictedStore.index(id)));
+                        assertTrue(followed.remove(id), "Entity " + id + " was evicted without being loaded.");
+                    }
+                }
+            });
+
+            scene.update(0, 0);
+            assertEquals(store.size(), followed.size());
+
+            scene.update(WORLD_SIZE, WORLD_SIZE);
+            scene.update(WORLD_SIZE / 2, 0);
+            assertEquals(store.size(), followed.size());
+            for (int i = 0; i < store.size(); i++) assertTrue(followed.contains(store.id(i)));
+
+            scene.unloadAll();
+            assertTrue(followed.isEmpty());
+        }
+    }
+
+    @Test
+    void scenesUsingUnknownModelsAreRejected() throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        BiFunction<String, String, TexturedModel> treesOnly =
+                (model, texture) -> model.equals("tree") ? MODELS[0] : null;
+        EntityStore store = new EntityStore(16);
+
+        IOException e = assertThrows(
+                IOException.class,
+                () -> new Scene(null, ByteBuffer.wrap(bytes), store, treesOnly, LOAD_DISTANCE, EVICT_DISTANCE)
+        );
+        assertTrue(e.getMessage().startsWith("Model 1 of the scene file, lowPolyTree"), e.getMessage());
+
+        RuntimeException wrapped = assertThrows(
+                RuntimeException.class, () -> Scene.open(file, store, treesOnly, LOAD_DISTANCE, EVICT_DISTANCE)
+        );
+        assertInstanceOf(IOException.class, wrapped.getCause());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void scenesWithoutEntitiesHaveNoRegions() throws IOException {
+        SceneWriter writer = new SceneWriter(REGION_SIZE);
+        writer.addModel("tree", "tree", 8);
+        File empty = new File(directory, "empty.mpls");
+        writer.write(empty);
+
+        EntityStore store = new EntityStore(16);
+        try (Scene scene = Scene.open(empty, store, RESOLVER, LOAD_DISTANCE, EVICT_DISTANCE)) {
+            assertEquals(0, scene.regionCount());
+            assertEquals(0, scene.update(0, 0));
+            assertEquals("tree", scene.modelName(0));
+        }
+
+        // A region that is listed but holds no entities loads as nothing.
+        ByteBuffer data = new SceneWriter(REGION_SIZE).toBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(SceneFormat.HEADER_BYTES, data.capacity());
+
+        ByteBuffer listed = ByteBuffer.allocate(SceneFormat.HEADER_BYTES + SceneFormat.INDEX_ENTRY_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        listed.put(data);
+        listed.putInt(16, 1);
+        listed.putLong(SceneFormat.HEADER_BYTES + 12, listed.capacity());
+
+        Scene scene = new Scene(null, listed, store, RESOLVER, LOAD_DISTANCE, EVICT_DISTANCE);
+        assertEquals(1, scene.update(0, 0));
+        assertEquals(1, scene.loadedRegionCount());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void otherFilesAndVersionsAreRejected() throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 0x12345678);
+        assertRejected(bytes, "Not a Maple scene");
+
+        bytes = Files.readAllBytes(file.toPath());
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putShort(4, (short) (SceneFormat.VERSION + 1));
+        assertRejected(bytes, "Unsupported scene file version");
+
+        assertRejected(new byte[64], "Not a Maple scene");
+        assertRejected(new byte[0], "Not a Maple scene");
+    }
+
+    @Test
+    void truncatedFilesAreRejected() throws IOException {
+        SceneWriter writer = new SceneWriter(REGION_SIZE);
+        writer.addModel("tree", "tree", 8);
+        writer.addModel("lowPolyTree", "lowPolyTree", 5);
+        for (int i = 0; i < 10; i++) writer.addEntity(i % 2, i * 60, 0, i * 30, 0, 0, 0, 1, 0);
+
+        ByteBuffer data = writer.toBuffer();
+        byte[] bytes = new byte[data.capacity()];
+        data.get(bytes);
+
+        // Cutting the file anywhere, in the header, the model table, the index or a block, must be reported.
+        for (int length = 0; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            IOException e = assertThrows(IOException.class, () -> open(truncated), "Cut at " + length + " bytes");
+            assertFalse(e.getMessage().isEmpty());
+        }
+
+        File cut = new File(directory, "cut.mpls");
+        Files.write(cut.toPath(), Arrays.copyOf(bytes, bytes.length - 1));
+        RuntimeException e = assertThrows(
+                RuntimeException.class,
+                () -> Scene.open(cut, new EntityStore(16), RESOLVER, LOAD_DISTANCE, EVICT_DISTANCE)
+        );
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    @Test
+    void blocksOutsideTheFileAreRejected() throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        ByteBuffer data = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int firstEntry = indexOffset(data);
+
+        data.putLong(firstEntry + 12, bytes.length);
+        assertRejected(bytes, "Region 0");
+
+        data.putLong(firstEntry + 12, -SceneFormat.ENTITY_BYTES);
+        assertRejected(bytes, "Region 0");
+
+        data.putLong(firstEntry + 12, Long.MAX_VALUE - 1);
+        assertRejected(bytes, "Region 0");
+
+        bytes = Files.readAllBytes(file.toPath());
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(firstEntry + 8, Integer.MAX_VALUE);
+        assertRejected(bytes, "Region 0");
+
+        bytes = Files.readAllBytes(file.toPath());
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(firstEntry + 8, -1);
+        assertRejected(bytes, "Region 0");
+
+        bytes = Files.readAllBytes(file.toPath());
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(16, Integer.MAX_VALUE);
+        assertRejected(bytes, "The region index");
+
+        bytes = Files.readAllBytes(file.toPath());
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(12, Integer.MAX_VALUE);
+        assertRejected(bytes, "The scene file's header");
+    }
+
+    @Test
+    void namesTooLongForTheModelTableAreRejected() throws IOException {
+        SceneWriter writer = new SceneWriter(REGION_SIZE);
+        String longest = "a".repeat(0xFFFF);
+
+        writer.addModel(longest, "tree", 1);
+        assertThrows(IllegalArgumentException.class, () -> writer.addModel(longest + "a", "tree", 1));
+        // Three bytes per character in UTF-8.
+        assertThrows(IllegalArgumentException.class, () -> writer.addModel("tree", "€".repeat(21_846), 1));
+
+        EntityStore store = new EntityStore(16);
+        try (Scene scene = new Scene(null, writer.toBuffer(), store, RESOLVER, 1, 1)) {
+            assertEquals(longest, scene.modelName(0));
+        }
+    }
+
+    private Scene open(byte[] bytes) throws IOException {
+        return new Scene(null, ByteBuffer.wrap(bytes), new EntityStore(16), RESOLVER, LOAD_DISTANCE, EVICT_DISTANCE);
+    }
+
+    private void assertRejected(byte[] bytes, String message) {
+        IOException e = assertThrows(IOException.class, () -> open(bytes));
+        assertTrue(e.getMessage().startsWith(message), e.getMessage());
+    }
+
+    /**
+     * Find the offset of the region index by skipping the model table.
+     *
+     * @param data Scene file.
+     * @return Offset of the first index entry.
+     */
+    private static int indexOffset(ByteBuffer data) {
+        int position = SceneFormat.HEADER_BYTES;
+
+        for (int model = 0; model < data.getInt(12); model++) {
+            position += 2 + (data.getShort(position) & 0xFFFF);
+            position += 2 + (data.getShort(position) & 0xFFFF) + 4;
+        }
+
+        return (position + 3) & ~3;
+    }
+}
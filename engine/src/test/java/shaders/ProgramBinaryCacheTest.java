@@ -0,0 +1,125 @@
+package shaders;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the program binary cache without OpenGL: keys change with everything the binary depends on, so an edited
+ * shader or a new driver misses, entries read back as written and replace older ones, and missing or corrupt entries
+ * fall back to compiling from source.
+ */
+class ProgramBinaryCacheTest {
+    private static final String DRIVER = "Vendor\nRenderer\n4.6.0";
+    private static final String VERTEX = "#version 400 core//\nvoid main() {}//\n";
+    private static final String FRAGMENT = "#version 400 core//\n#define FOG\nvoid main() {}//\n";
+
+    @TempDir
+    File directory;
+
+    @Test
+    void keysChangeWithEverythingTheBinaryDependsOn() {
+        ProgramBinaryCache cache = new ProgramBinaryCache(directory, DRIVER);
+        String key = cache.key("StaticShader", VERTEX, FRAGMENT, 4);
+
+        assertEquals(64, key.length());
+        assertTrue(key.matches("[0-9a-f]+"), key);
+        assertEquals(key, cache.key("StaticShader", new StringBuilder(VERTEX), new StringBuilder(FRAGMENT), 4));
+        assertEquals(key, new ProgramBinaryCache(directory, DRIVER).key("StaticShader", VERTEX, FRAGMENT, 4));
+
+        Set<String> keys = new HashSet<>(List.of(
+                key,
+                cache.key("VegetationShader", VERTEX, FRAGMENT, 4),
+                cache.key("StaticShader", VERTEX + "\n", FRAGMENT, 4),
+                cache.key("StaticShader", VERTEX, FRAGMENT.replace("FOG", "SPECULAR"), 4),
+                cache.key("StaticShader", VERTEX, FRAGMENT, 5),
+                new ProgramBinaryCache(directory, DRIVER.replace("4.6.0", "4.6.1")).key(
+                        "StaticShader", VERTEX, FRAGMENT, 4
+                ),
+                // Moving text from one source to the other is a different program too.
+                cache.key("StaticShader", VERTEX + FRAGMENT.charAt(0), FRAGMENT.substring(1), 4)
+        ));
+
+        assertEquals(7, keys.size());
+    }
+
+    @Test
+    void entriesReadBackAsWrittenAndReplaceOlderOnes() {
+        ProgramBinaryCache cache = new ProgramBinaryCache(new File(directory, "created/on/write"), DRIVER);
+        String key = cache.key("StaticShader", VERTEX, FRAGMENT, 0);
+        byte[] binary = {1, 2, 3, 4, 5, -1, -128};
+
+        cache.write(key, new ProgramBinaryCache.Entry(0x8E21, 123_456_789L, binary));
+        ProgramBinaryCache.Entry entry = cache.read(key);
+
+        assertNotNull(entry);
+        assertEquals(0x8E21, entry.format());
+        assertEquals(123_456_789L, entry.compileNanos());
+        assertArrayEquals(binary, entry.binary());
+
+        cache.write(key, new ProgramBinaryCache.Entry(7, 1, new byte[0]));
+        entry = cache.read(key);
+
+        assertNotNull(entry);
+        assertEquals(7, entry.format());
+        assertEquals(0, entry.binary().length);
+        assertEquals(0, cache.rejections());
+    }
+
+    @Test
+    void missingAndCorruptEntriesFallBackToCompiling() throws IOException {
+        ProgramBinaryCache cache = new ProgramBinaryCache(directory, DRIVER);
+        String key = cache.key("StaticShader", VERTEX, FRAGMENT, 0);
+
+        assertEquals(0, cache.load(key));
+        assertEquals(1, cache.misses());
+        assertEquals(0, cache.rejections());
+
+        cache.write(key, new ProgramBinaryCache.Entry(1, 2, new byte[100]));
+        Path file = directory.toPath().resolve(key + ".bin");
+        byte[] valid = Files.readAllBytes(file);
+
+        // Every truncation, another file format and a binary length beyond the file.
+        List<byte[]> corrupt = new ArrayList<>();
+        for (int length = 0; length < valid.length; length++) corrupt.add(Arrays.copyOf(valid, length));
+
+        byte[] otherFormat = valid.clone();
+        otherFormat[0]++;
+        corrupt.add(otherFormat);
+
+        byte[] hugeLength = valid.clone();
+        hugeLength[20] = 0x7F;
+        corrupt.add(hugeLength);
+
+        for (byte[] bytes : corrupt) {
+            Files.write(file, bytes);
+            int rejections = cache.rejections();
+            int misses = cache.misses();
+
+            assertEquals(0, cache.load(key), bytes.length + " bytes");
+            assertEquals(rejections + 1, cache.rejections());
+            assertEquals(misses + 1, cache.misses());
+        }
+
+        // Compiling from source again overwrites the corrupt entry.
+        cache.write(key, new ProgramBinaryCache.Entry(1, 2, new byte[100]));
+        assertNotNull(cache.read(key));
+        assertNull(cache.read(cache.key("StaticShader", VERTEX, FRAGMENT, 1)));
+        assertEquals(0, cache.hits());
+    }
+}
@@ -0,0 +1,96 @@
+package shaders;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import textures.ModelTexture;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks how materials select shader variants without OpenGL: the feature mask of every material, alpha testing
+ * derived from cutouts in the texture's alpha channel, and the defines injected into the shader source.
+ */
+class ShaderFeatureTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void materialsMapToTheFeaturesTheyUse() {
+        ModelTexture texture = new ModelTexture(1);
+        assertEquals(0, texture.shaderFeatures());
+
+        texture.setUseFakeLighting(true);
+        assertEquals(ShaderFeature.FAKE_LIGHTING.bit(), texture.shaderFeatures());
+
+        texture.setReflectivity(0.5f);
+        assertEquals(ShaderFeature.FAKE_LIGHTING.bit() | ShaderFeature.SPECULAR.bit(), texture.shaderFeatures());
+
+        // Both transparent textures and opaque ones with cutouts discard their see-through texels.
+        ModelTexture transparent = new ModelTexture(2);
+        transparent.setHasTransparency(true);
+        assertEquals(ShaderFeature.ALPHA_TEST.bit(), transparent.shaderFeatures());
+
+        ModelTexture cutout = new ModelTexture(3);
+        cutout.setHasCutouts(true);
+        assertEquals(ShaderFeature.ALPHA_TEST.bit(), cutout.shaderFeatures());
+
+        // Materials never ask for the global features; the renderers add those.
+        for (ModelTexture material : List.of(texture, transparent, cutout)) {
+            assertFalse(ShaderFeature.FOG.isIn(material.shaderFeatures()));
+            assertFalse(ShaderFeature.CLUSTERED_LIGHTS.isIn(material.shaderFeatures()));
+        }
+    }
+
+    @Test
+    void cutoutsAreTexelsWithAlphaBelowOneHalf() {
+        // A 3 by 2 image in a texture padded to 4 by 4, whose padding is fully transparent.
+        byte[] rgba = new byte[4 * 4 * 4];
+        for (int row = 0; row < 2; row++) {
+            for (int column = 0; column < 3; column++) rgba[(row * 4 + column) * 4 + 3] = (byte) 255;
+        }
+
+        assertFalse(ModelTexture.hasCutouts(rgba, 4, 3, 2), "The padding counted as a cutout.");
+
+        rgba[(4 + 2) * 4 + 3] = (byte) 128;
+        assertFalse(ModelTexture.hasCutouts(rgba, 4, 3, 2), "Alpha 128 is at least one half.");
+
+        rgba[(4 + 2) * 4 + 3] = (byte) 127;
+        assertTrue(ModelTexture.hasCutouts(rgba, 4, 3, 2));
+    }
+
+    @Test
+    void featuresAreDefinedRightAfterTheVersion() throws IOException {
+        Path file = directory.resolve("shader.glsl");
+        Files.writeString(file, "#version 400 core\n\nvoid main() {\n}\n");
+
+        int features = ShaderFeature.ALPHA_TEST.bit() | ShaderFeature.CLUSTERED_LIGHTS.bit();
+        String[] lines = ShaderProgram.readShader(file.toString(), features).toString().split("\n");
+
+        assertEquals("#version 400 core//", lines[0]);
+        assertEquals("#define ALPHA_TEST", lines[1]);
+        assertEquals("#define CLUSTERED_LIGHTS", lines[2]);
+        assertEquals("//", lines[3]);
+        assertEquals(6, lines.length);
+
+        String plain = ShaderProgram.readShader(file.toString(), 0).toString();
+        assertFalse(plain.contains("#define"));
+    }
+
+    @Test
+    void everyMaskIsAVariant() {
+        int all = 0;
+        for (ShaderFeature feature : ShaderFeature.values()) {
+            assertEquals(0, all & feature.bit(), feature + " shares a bit.");
+            all |= feature.bit();
+        }
+
+        assertEquals(ShaderFeature.VARIANT_COUNT - 1, all);
+    }
+}
@@ -0,0 +1,95 @@
+package shaders;
+
+import org.junit.jupiter.api.Test;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+import toolbox.EngineMath;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the uniform shadow copy without OpenGL: a load is only skipped when the value is bit for bit the one loaded
+ * before at the same location, every load is counted as issued or skipped, and matrices are packed for upload in
+ * column-major order.
+ */
+class ShaderProgramTest {
+    private final Matrix4f MATRIX = EngineMath.createTransformationMatrix(
+            new Vector3f(10, 2, -30), new Vector3f(0, 45, 0), 2
+    );
+
+    @Test
+    void onlyIdenticalMatricesAreUnchanged() {
+        int[] shadow = new int[32];
+
+        assertFalse(UniformShadow.updateShadow(shadow, 0, MATRIX), "A fresh shadow held the matrix.");
+        assertTrue(UniformShadow.updateShadow(shadow, 0, MATRIX));
+        assertFalse(UniformShadow.updateShadow(shadow, 16, MATRIX), "Locations share their shadows.");
+
+        for (int element = 0; element < 16; element++) {
+            Matrix4f changed = new Matrix4f(MATRIX);
+            FloatBuffer values = FloatBuffer.allocate(16);
+            changed.store(values);
+            values.put(element, Math.nextUp(values.get(element)));
+            changed.load(values.rewind());
+
+            assertFalse(UniformShadow.updateShadow(shadow, 0, changed), "Element " + element + " changed unnoticed.");
+            assertFalse(UniformShadow.updateShadow(shadow, 0, MATRIX));
+            assertTrue(UniformShadow.updateShadow(shadow, 0, MATRIX));
+        }
+    }
+
+    @Test
+    void unchangedUniformsSkipTheUploadAndChangedOnesIssueIt() {
+        UniformShadow uniforms = new UniformShadow(4);
+        ShaderProgram.resetUniformStatistics();
+
+        assertFalse(uniforms.isUnchanged(0, 7), "Nothing was loaded yet.");
+        assertTrue(uniforms.isUnchanged(0, 7));
+        assertFalse(uniforms.isUnchanged(0, 8));
+        assertFalse(uniforms.isUnchanged(1, 8), "Locations share their shadows.");
+
+        // Floats compare as raw bits: zero and negative zero differ, and the same NaN is unchanged.
+        assertFalse(uniforms.isUnchanged(2, Float.floatToRawIntBits(0f)));
+        assertFalse(uniforms.isUnchanged(2, Float.floatToRawIntBits(-0f)));
+        assertFalse(uniforms.isUnchanged(2, Float.floatToRawIntBits(Float.NaN)));
+        assertTrue(uniforms.isUnchanged(2, Float.floatToRawIntBits(Float.NaN)));
+
+        assertFalse(uniforms.isUnchanged(3, 1, 2, 3));
+        assertTrue(uniforms.isUnchanged(3, 1, 2, 3));
+        assertFalse(uniforms.isUnchanged(3, 1, 2, 4), "A changed Z component was skipped.");
+        assertFalse(uniforms.isUnchanged(3, 0, 2, 4), "A changed X component was skipped.");
+
+        assertFalse(uniforms.isUnchanged(1, MATRIX), "A matrix hid behind the integer at its location.");
+        assertTrue(uniforms.isUnchanged(1, MATRIX));
+        assertEquals(10, ShaderProgram.uniformsIssued());
+        assertEquals(4, ShaderProgram.uniformsSkipped());
+
+        // Uniforms compiled out of the program are always skipped; locations beyond the shadow are always issued.
+        assertTrue(uniforms.isUnchanged(-1, 7));
+        assertTrue(uniforms.isUnchanged(-1, MATRIX));
+        assertFalse(uniforms.isUnchanged(4, 7));
+        assertFalse(uniforms.isUnchanged(4, 7));
+        assertEquals(12, ShaderProgram.uniformsIssued());
+        assertEquals(6, ShaderProgram.uniformsSkipped());
+
+        ShaderProgram.resetUniformStatistics();
+        assertEquals(0, ShaderProgram.uniformsIssued());
+        assertEquals(0, ShaderProgram.uniformsSkipped());
+    }
+
+    @Test
+    void matricesArePackedColumnMajor() {
+        FloatBuffer buffer = ShaderProgram.storeMatrix(MATRIX);
+
+        assertEquals(16, buffer.remaining());
+        assertEquals(MATRIX.m00, buffer.get(0));
+        assertEquals(MATRIX.m01, buffer.get(1));
+        assertEquals(MATRIX.m10, buffer.get(4));
+        assertEquals(MATRIX.m30, buffer.get(12));
+        assertEquals(MATRIX.m32, buffer.get(14));
+    }
+}
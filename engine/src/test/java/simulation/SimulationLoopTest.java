@@ -0,0 +1,199 @@
+package simulation;
+
+import org.junit.jupiter.api.Test;
+import org.lwjgl.util.vector.Vector3f;
+
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the simulation loop in both modes: a render thread racing the simulation thread only ever interpolates
+ * between whole snapshots moving forward and stays one step behind when it misses snapshots, errors on the simulation
+ * thread reach the render thread, and the single-threaded loop interpolates between the last two steps even when a
+ * frame runs several of them.
+ */
+class SimulationLoopTest {
+    private static final float TIMESTEP = 1f / 60;
+    private static final float TOLERANCE = 1e-4f;
+
+    @Test
+    void renderThreadRacingTheSimulationSeesWholeSnapshots() {
+        // Every transform is captured at the step's count along X, so a torn snapshot shows up as unequal transforms.
+        int transformCount = 2000;
+        Vector3f rotation = new Vector3f();
+        float[] count = {0};
+        SimulationLoop loop = new SimulationLoop(new Simulation() {
+            @Override
+            public void step(float deltaTime) {
+                count[0]++;
+            }
+
+            @Override
+            public void capture(TransformSnapshot snapshot) {
+                for (int slot = 0; slot < transformCount; slot++) {
+                    snapshot.set(slot, new Vector3f(count[0], slot, 0), rotation, 1);
+                }
+            }
+        }, 1e-5f, transformCount, true);
+
+        Vector3f position = new Vector3f();
+        float last = 0;
+        loop.start();
+
+        try {
+            for (int frame = 0; frame < 20_000; frame++) {
+                loop.update(0);
+                loop.interpolate(0, position, rotation);
+                float first = position.x;
+                assertTrue(first >= last, "Frame " + frame + " went back from " + last + " to " + first + ".");
+
+                for (int slot = 1; slot < transformCount; slot++) {
+                    loop.interpolate(slot, position, rotation);
+                    if (position.x != first) assertEquals(first, position.x, "Frame " + frame + ", slot " + slot);
+                }
+
+                last = first;
+            }
+        }
+
+        finally {
+            loop.stop();
+        }
+
+        assertTrue(last > 0, "The simulation never stepped.");
+    }
+
+    @Test
+    void framesMissingSnapshotsStayOneStepBehindAndMoveForward() {
+        // A transform moving one unit along X per step, drawn by a render thread too slow to see every snapshot.
+        Vector3f position = new Vector3f();
+        Vector3f rotation = new Vector3f();
+        SimulationLoop loop = new SimulationLoop(new Simulation() {
+            @Override
+            public void step(float deltaTime) {
+                position.x += 1;
+            }
+
+            @Override
+            public void capture(TransformSnapshot snapshot) {
+                snapshot.set(0, position, rotation, 1);
+            }
+        }, 1e-3f, 1, true);
+
+        Vector3f interpolatedPosition = new Vector3f();
+        Vector3f interpolatedRotation = new Vector3f();
+        float last = 0;
+        loop.start();
+
+        try {
+            for (int frame = 0; frame < 200; frame++) {
+                LockSupport.parkNanos(frame % 7 * 1_000_000L);
+                loop.update(0);
+                loop.interpolate(0, interpolatedPosition, interpolatedRotation);
+                float x = interpolatedPosition.x;
+                long tick = loop.currentTick();
+
+                assertTrue(x >= last, "Frame " + frame + " went back from " + last + " to " + x + ".");
+                assertTrue(x <= tick + TOLERANCE, "Frame " + frame + " at " + x + " ran ahead of tick " + tick + ".");
+                assertTrue(
+                        x >= tick - 1 - TOLERANCE,
+                        "Frame " + frame + " at " + x + " lagged more than a step behind tick " + tick + "."
+                );
+                last = x;
+            }
+        }
+
+        finally {
+            loop.stop();
+        }
+
+        assertTrue(loop.droppedSnapshots() > 0, "The render thread never missed a snapshot.");
+    }
+
+    @Test
+    void errorsOnTheSimulationThreadReachTheRenderThread() {
+        SimulationLoop loop = new SimulationLoop(new Simulation() {
+            @Override
+            public void step(float deltaTime) {
+                throw new AssertionError("Expected error.");
+            }
+
+            @Override
+            public void capture(TransformSnapshot snapshot) {
+            }
+        }, 1e-3f, 1, true);
+
+        loop.start();
+
+        try {
+            RuntimeException e = assertThrows(RuntimeException.class, () -> {
+                long deadline = System.nanoTime() + 10_000_000_000L;
+                while (System.nanoTime() < deadline) loop.update(0);
+            });
+            assertInstanceOf(AssertionError.class, e.getCause());
+        }
+
+        finally {
+            loop.stop();
+        }
+    }
+
+    @Test
+    void singleThreadedLoopInterpolatesBetweenTheLastTwoSteps() {
+        // A transform moving one unit along X per step while turning 20 degrees, across 360.
+        Vector3f position = new Vector3f();
+        Vector3f rotation = new Vector3f(0, 340, 0);
+        SimulationLoop loop = new SimulationLoop(new Simulation() {
+            @Override
+            public void step(float deltaTime) {
+                position.x += 1;
+                rotation.y = (rotation.y + 20) % 360;
+            }
+
+            @Override
+            public void capture(TransformSnapshot snapshot) {
+                snapshot.set(0, position, rotation, 1);
+            }
+        }, TIMESTEP, 1, false);
+
+        Vector3f interpolatedPosition = new Vector3f();
+        Vector3f interpolatedRotation = new Vector3f();
+        loop.start();
+
+        loop.update(TIMESTEP * 2.5f);
+        loop.update(TIMESTEP);
+        loop.interpolate(0, interpolatedPosition, interpolatedRotation);
+
+        // Steps 2 and 3 put the transform at X 2 and 3, turned to 20 and 40 degrees.
+        assertEquals(3, loop.currentTick());
+        assertEquals(0.5f, loop.alpha(), TOLERANCE);
+        assertEquals(2.5f, interpolatedPosition.x, TOLERANCE);
+        assertEquals(30, interpolatedRotation.y, 1e-3f);
+
+        // A frame running three steps interpolates between the last two of them, not from the frame before.
+        loop.update(TIMESTEP * 3);
+        loop.interpolate(0, interpolatedPosition, interpolatedRotation);
+
+        assertEquals(6, loop.currentTick());
+        assertEquals(5.5f, interpolatedPosition.x, TOLERANCE);
+    }
+
+    @Test
+    void rotationsTurnTheShortWay() {
+        Vector3f position = new Vector3f();
+        Vector3f interpolatedPosition = new Vector3f();
+        Vector3f interpolatedRotation = new Vector3f();
+
+        TransformSnapshot from = new TransformSnapshot(1);
+        TransformSnapshot to = new TransformSnapshot(1);
+        from.set(0, position, new Vector3f(0, 350, 0), 1);
+        to.set(0, position, new Vector3f(0, 10, 0), 1);
+        TransformSnapshot.interpolate(from, to, 0.5f, 0, interpolatedPosition, interpolatedRotation);
+
+        assertEquals(360, interpolatedRotation.y, 1e-3f, "Turning from 350 to 10 degrees went the long way.");
+    }
+}
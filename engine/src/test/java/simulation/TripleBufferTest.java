@@ -0,0 +1,48 @@
+package simulation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Races a producer thread against a consumer through a triple buffer: the consumer never sees a half-written value or
+ * an older value than the last one it saw, and every published value is either acquired or counted as dropped.
+ */
+class TripleBufferTest {
+    private static final int SNAPSHOT_FLOATS = 1000 * 7;
+    private static final int STRESS_SNAPSHOTS = 200_000;
+
+    @Test
+    void consumerRacingAProducerSeesWholeValuesInOrder() throws InterruptedException {
+        TripleBuffer<float[]> buffer = new TripleBuffer<>(() -> new float[SNAPSHOT_FLOATS]);
+
+        Thread producer = new Thread(() -> {
+            for (int tick = 1; tick <= STRESS_SNAPSHOTS; tick++) {
+                Arrays.fill(buffer.back(), tick);
+                buffer.publish();
+            }
+        });
+        producer.start();
+
+        float lastTick = 0;
+        while (producer.isAlive() || buffer.hasFresh()) {
+            float[] snapshot = buffer.acquire();
+            float tick = snapshot[0];
+            assertTrue(tick >= lastTick, "Acquired snapshot " + tick + " after snapshot " + lastTick + ".");
+
+            for (float value : snapshot) {
+                if (value != tick) assertEquals(tick, value, "Snapshot " + tick + " was half written.");
+            }
+
+            lastTick = tick;
+        }
+
+        producer.join();
+
+        assertEquals(STRESS_SNAPSHOTS, lastTick);
+        assertEquals(buffer.published(), buffer.acquired() + buffer.dropped());
+    }
+}
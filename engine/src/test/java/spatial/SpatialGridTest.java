@@ -0,0 +1,270 @@
+package spatial;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.util.vector.Matrix4f;
+import toolbox.EngineMath;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks every query of the spatial grid against a linear scan over the same bounding spheres, before and after items
+ * are moved, resized and removed, including items too large for their cells and rays along the grid's axes.
+ */
+class SpatialGridTest {
+    private static final int ENTITY_COUNT = 20_000;
+    private static final float WORLD_SIZE = 1000;
+    private static final float CELL_SIZE = 16;
+    private static final int QUERY_COUNT = 50;
+
+    private final QueryResults RESULTS = new QueryResults(1024);
+    private final float[] PLANES = new float[24];
+
+    private SpatialGrid<Integer> grid;
+    private float[] positionsX;
+    private float[] positionsY;
+    private float[] positionsZ;
+    private float[] radii;
+    private int[] handles;
+    private boolean[] removed;
+    private int[] scanResults;
+
+    @BeforeEach
+    void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        grid = new SpatialGrid<>(CELL_SIZE, ENTITY_COUNT);
+
+        positionsX = new float[ENTITY_COUNT];
+        positionsY = new float[ENTITY_COUNT];
+        positionsZ = new float[ENTITY_COUNT];
+        radii = new float[ENTITY_COUNT];
+        handles = new int[ENTITY_COUNT];
+        removed = new boolean[ENTITY_COUNT];
+        scanResults = new int[ENTITY_COUNT];
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            positionsX[i] = (float) random.nextDouble(-WORLD_SIZE / 2, WORLD_SIZE / 2);
+            positionsY[i] = (float) random.nextDouble(0, 40);
+            positionsZ[i] = (float) random.nextDouble(-WORLD_SIZE / 2, WORLD_SIZE / 2);
+            // A few entities are larger than half a cell, so the oversized list is exercised too.
+            radii[i] = i % 100 == 0 ? 20 : (float) random.nextDouble(0.5, 3);
+            handles[i] = grid.insert(i, positionsX[i], positionsY[i], positionsZ[i], radii[i]);
+        }
+
+        float aspectRatio = 16f / 9;
+        float yScale = (float) ((1f / Math.tan(Math.toRadians(35))) * aspectRatio);
+        float farPlane = 300;
+        float nearPlane = 0.1f;
+
+        Matrix4f projection = new Matrix4f();
+        projection.m00 = yScale / aspectRatio;
+        projection.m11 = yScale;
+        projection.m22 = -(farPlane + nearPlane) / (farPlane - nearPlane);
+        projection.m23 = -1;
+        projection.m32 = -(2 * nearPlane * farPlane) / (farPlane - nearPlane);
+        projection.m33 = 0;
+
+        float[] viewProjection = new float[16];
+        Matrix4f view = EngineMath.createTransformationMatrix(0, -10, 0, 10, 30, 0, 1, new Matrix4f());
+        EngineMath.storeMatrix(Matrix4f.mul(projection, view, null), viewProjection, 0);
+        EngineMath.extractFrustumPlanes(viewProjection, PLANES);
+    }
+
+    @Test
+    void queriesMatchALinearScan() {
+        compareQueries(new SplittableRandom(7));
+    }
+
+    @Test
+    void queriesMatchALinearScanAfterUpdates() {
+        SplittableRandom random = new SplittableRandom(8);
+
+        for (int i = 0; i < ENTITY_COUNT; i += 3) {
+            positionsX[i] += (float) random.nextDouble(-40, 40);
+            positionsY[i] = (float) random.nextDouble(-10, 60);
+            positionsZ[i] += (float) random.nextDouble(-40, 40);
+            grid.move(handles[i], positionsX[i], positionsY[i], positionsZ[i]);
+        }
+
+        for (int i = 1; i < ENTITY_COUNT; i += 50) {
+            // Swap items between the cells and the oversized list both ways.
+            radii[i] = radii[i] > CELL_SIZE / 2 ? 1 : CELL_SIZE;
+            grid.resize(handles[i], radii[i]);
+        }
+
+        int removedCount = 0;
+        for (int i = 2; i < ENTITY_COUNT; i += 7) {
+            grid.remove(handles[i]);
+            removed[i] = true;
+            removedCount++;
+        }
+
+        assertEquals(ENTITY_COUNT - removedCount, grid.size());
+        compareQueries(new SplittableRandom(9));
+    }
+
+    @Test
+    void rayHitDistancesMatchALinearScan() {
+        grid.queryRay(-WORLD_SIZE / 2, 20, 3, 1, 0, 0.01f, WORLD_SIZE, RESULTS);
+        assertEquals(scanRay(-WORLD_SIZE / 2, 20, 3, 1, 0, 0.01f, WORLD_SIZE), RESULTS.size());
+
+        for (int i = 0; i < RESULTS.size(); i++) {
+            int entity = grid.item(RESULTS.handle(i));
+            float expected = entryDistance(entity, -WORLD_SIZE / 2, 20, 3, 1, 0, 0.01f);
+            assertEquals(expected, RESULTS.distance(i), 1e-3f, "Hit distance of entity " + entity);
+        }
+    }
+
+    @Test
+    void rayQueriesRejectNonFiniteLengths() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> grid.queryRay(0, 20, 0, 1, 0, 1, Float.POSITIVE_INFINITY, RESULTS)
+        );
+        assertThrows(IllegalArgumentException.class, () -> grid.queryRay(0, 20, 0, 1, 0, 1, Float.NaN, RESULTS));
+    }
+
+    private void compareQueries(SplittableRandom queries) {
+        for (int query = 0; query < QUERY_COUNT; query++) {
+            float x = (float) queries.nextDouble(-WORLD_SIZE / 2, WORLD_SIZE / 2);
+            float z = (float) queries.nextDouble(-WORLD_SIZE / 2, WORLD_SIZE / 2);
+            float size = (float) queries.nextDouble(1, 100);
+
+            grid.querySphere(x, 20, z, size, RESULTS);
+            compare("sphere", scanSphere(x, 20, z, size));
+
+            grid.queryAabb(x - size, 10, z - size, x + size / 2, 30, z + size / 3, RESULTS);
+            compare("box", scanAabb(x - size, 10, z - size, x + size / 2, 30, z + size / 3));
+
+            float dx = (float) queries.nextDouble(-1, 1);
+            float dy = (float) queries.nextDouble(-0.1, 0.1);
+            float dz = (float) queries.nextDouble(-1, 1);
+            grid.queryRay(x, 20, z, dx, dy, dz, size * 10, RESULTS);
+            compare("ray", scanRay(x, 20, z, dx, dy, dz, size * 10));
+        }
+
+        grid.queryRay(3, 20, 5, 0, 0, 1, WORLD_SIZE, RESULTS);
+        compare("ray along Z", scanRay(3, 20, 5, 0, 0, 1, WORLD_SIZE));
+
+        grid.queryRay(3, 20, 5, -1, 0, 0, WORLD_SIZE, RESULTS);
+        compare("ray along X", scanRay(3, 20, 5, -1, 0, 0, WORLD_SIZE));
+
+        grid.queryRay(3, 100, 5, 0, -1, 0, WORLD_SIZE, RESULTS);
+        compare("vertical ray", scanRay(3, 100, 5, 0, -1, 0, WORLD_SIZE));
+
+        grid.queryFrustum(PLANES, RESULTS);
+        compare("frustum", scanFrustum());
+    }
+
+    private int scanSphere(float x, float y, float z, float radius) {
+        int count = 0;
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            if (removed[i]) continue;
+
+            float dx = positionsX[i] - x;
+            float dy = positionsY[i] - y;
+            float dz = positionsZ[i] - z;
+            float reach = radii[i] + radius;
+            if (dx * dx + dy * dy + dz * dz <= reach * reach) scanResults[count++] = handles[i];
+        }
+
+        return count;
+    }
+
+    private int scanAabb(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int count = 0;
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            if (removed[i]) continue;
+
+            float dx = positionsX[i] - Math.max(minX, Math.min(maxX, positionsX[i]));
+            float dy = positionsY[i] - Math.max(minY, Math.min(maxY, positionsY[i]));
+            float dz = positionsZ[i] - Math.max(minZ, Math.min(maxZ, positionsZ[i]));
+            if (dx * dx + dy * dy + dz * dz <= radii[i] * radii[i]) scanResults[count++] = handles[i];
+        }
+
+        return count;
+    }
+
+    private int scanFrustum() {
+        int count = 0;
+
+        entities:
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            if (removed[i]) continue;
+
+            for (int plane = 0; plane < 24; plane += 4) {
+                float distance = PLANES[plane] * positionsX[i] + PLANES[plane + 1] * positionsY[i]
+                        + PLANES[plane + 2] * positionsZ[i] + PLANES[plane + 3];
+                if (distance < -radii[i]) continue entities;
+            }
+
+            scanResults[count++] = handles[i];
+        }
+
+        return count;
+    }
+
+    private int scanRay(float originX, float originY, float originZ, float dx, float dy, float dz, float maxDistance) {
+        int count = 0;
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            if (removed[i]) continue;
+
+            float entry = entryDistance(i, originX, originY, originZ, dx, dy, dz);
+            if (entry >= 0 && entry <= maxDistance) scanResults[count++] = handles[i];
+        }
+
+        return count;
+    }
+
+    /**
+     * Find the distance along a ray to where it enters an entity's bounding sphere, or 0 if it starts inside.
+     *
+     * @param i       Index of the entity.
+     * @param originX X position of the ray's origin.
+     * @param originY Y position of the ray's origin.
+     * @param originZ Z position of the ray's origin.
+     * @param dx      X component of the ray's direction.
+     * @param dy      Y component of the ray's direction.
+     * @param dz      Z component of the ray's direction.
+     * @return Distance to the sphere, or -1 if the ray misses it or it lies behind the origin.
+     */
+    private float entryDistance(int i, float originX, float originY, float originZ, float dx, float dy, float dz) {
+        float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        dx /= length;
+        dy /= length;
+        dz /= length;
+
+        float toCentreX = positionsX[i] - originX;
+        float toCentreY = positionsY[i] - originY;
+        float toCentreZ = positionsZ[i] - originZ;
+        float along = toCentreX * dx + toCentreY * dy + toCentreZ * dz;
+        float squaredMiss = toCentreX * toCentreX + toCentreY * toCentreY + toCentreZ * toCentreZ - along * along;
+        if (squaredMiss > radii[i] * radii[i]) return -1;
+
+        float halfChord = (float) Math.sqrt(radii[i] * radii[i] - squaredMiss);
+        if (along + halfChord < 0) return -1;
+        return Math.max(0, along - halfChord);
+    }
+
+    private void compare(String query, int expectedCount) {
+        int[] expected = Arrays.copyOf(scanResults, expectedCount);
+        int[] actual = new int[RESULTS.size()];
+
+        for (int i = 0; i < actual.length; i++) {
+            actual[i] = RESULTS.handle(i);
+        }
+
+        Arrays.sort(expected);
+        Arrays.sort(actual);
+
+        assertArrayEquals(expected, actual, "The " + query + " query disagrees with a linear scan.");
+    }
+}
@@ -0,0 +1,124 @@
+package terrains;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks the constant-time height queries on a curved 17-vertex grid: the heights at cell corners are the vertex
+ * heights, edge midpoints and points inside a cell lie on the mesh triangle over them, points outside the grid take
+ * the height of its nearest edge, and a terrain tile maps world positions onto the grid.
+ */
+class HeightMapTest {
+    private static final int VERTEX_COUNT = 17;
+    private static final float TOLERANCE = 1e-4f;
+
+    private HeightMap heightMap;
+
+    @BeforeEach
+    void setUp() {
+        float[] heights = new float[VERTEX_COUNT * VERTEX_COUNT];
+        for (int z = 0; z < VERTEX_COUNT; z++) {
+            for (int x = 0; x < VERTEX_COUNT; x++) heights[z * VERTEX_COUNT + x] = vertexHeight(x, z);
+        }
+
+        heightMap = new HeightMap(VERTEX_COUNT, heights);
+    }
+
+    @Test
+    void cellCornersAreTheVertexHeights() {
+        for (int z = 0; z < VERTEX_COUNT; z++) {
+            for (int x = 0; x < VERTEX_COUNT; x++) {
+                assertEquals(vertexHeight(x, z), heightMap.interpolate(x, z), TOLERANCE, "Vertex " + x + ", " + z);
+                assertEquals(vertexHeight(x, z), heightMap.height(x, z));
+            }
+        }
+    }
+
+    @Test
+    void midpointsLieOnTheMeshTriangles() {
+        for (int z = 0; z < VERTEX_COUNT - 1; z++) {
+            for (int x = 0; x < VERTEX_COUNT - 1; x++) {
+                String cell = "Cell " + x + ", " + z;
+                float h00 = vertexHeight(x, z);
+                float h10 = vertexHeight(x + 1, z);
+                float h01 = vertexHeight(x, z + 1);
+                float h11 = vertexHeight(x + 1, z + 1);
+
+                // Edge midpoints average their two vertices, and so does the centre on the shared diagonal.
+                assertEquals((h00 + h10) / 2, heightMap.interpolate(x + 0.5f, z), TOLERANCE, cell);
+                assertEquals((h00 + h01) / 2, heightMap.interpolate(x, z + 0.5f), TOLERANCE, cell);
+                assertEquals((h10 + h01) / 2, heightMap.interpolate(x + 0.5f, z + 0.5f), TOLERANCE, cell);
+
+                // The centroids of the two triangles average their three vertices.
+                float third = 1 / 3f;
+                assertEquals((h00 + h10 + h01) / 3, heightMap.interpolate(x + third, z + third), TOLERANCE, cell);
+                assertEquals(
+                        (h11 + h10 + h01) / 3, heightMap.interpolate(x + 2 * third, z + 2 * third), TOLERANCE, cell
+                );
+            }
+        }
+    }
+
+    @Test
+    void pointsOutsideTheGridTakeTheHeightOfTheNearestEdge() {
+        int last = VERTEX_COUNT - 1;
+
+        assertEquals(vertexHeight(0, 0), heightMap.interpolate(-5, -0.5f), TOLERANCE);
+        assertEquals(vertexHeight(last, last), heightMap.interpolate(last + 100, 1e9f), TOLERANCE);
+        assertEquals(vertexHeight(last, 0), heightMap.interpolate(Float.MAX_VALUE, -Float.MAX_VALUE), TOLERANCE);
+        assertEquals(vertexHeight(0, 7), heightMap.interpolate(-1, 7), TOLERANCE);
+        assertEquals(
+                (vertexHeight(3, last) + vertexHeight(4, last)) / 2, heightMap.interpolate(3.5f, last + 2),
+                TOLERANCE
+        );
+
+        assertEquals(vertexHeight(0, 0), heightMap.height(-1, -1));
+        assertEquals(vertexHeight(last, 2), heightMap.height(last + 1, 2));
+    }
+
+    @Test
+    void terrainsMapWorldPositionsOntoTheGrid() {
+        // A tile one step along X from the origin, whose grid runs along the negative X and Z axes from its corner.
+        Terrain terrain = new Terrain(1, 0, heightMap);
+        float cellSize = Terrain.SIZE / (VERTEX_COUNT - 1);
+        Random random = new Random(35);
+
+        float[] positionsX = new float[100];
+        float[] positionsZ = new float[100];
+        float[] heights = new float[100];
+
+        for (int i = 0; i < positionsX.length; i++) {
+            float gridX = random.nextFloat() * (VERTEX_COUNT - 1);
+            float gridZ = random.nextFloat() * (VERTEX_COUNT - 1);
+            positionsX[i] = Terrain.SIZE - gridX * cellSize;
+            positionsZ[i] = -gridZ * cellSize;
+
+            assertEquals(
+                    heightMap.interpolate(gridX, gridZ), terrain.heightAt(positionsX[i], positionsZ[i]), TOLERANCE
+            );
+        }
+
+        terrain.heightsAt(positionsX, positionsZ, heights, 0, positionsX.length);
+        for (int i = 0; i < heights.length; i++) {
+            assertEquals(terrain.heightAt(positionsX[i], positionsZ[i]), heights[i], TOLERANCE);
+        }
+
+        assertEquals(vertexHeight(0, 0), terrain.heightAt(Terrain.SIZE, 0), TOLERANCE);
+        assertEquals(vertexHeight(2, 3), terrain.heightAt(Terrain.SIZE - 2 * cellSize, -3 * cellSize), TOLERANCE);
+    }
+
+    @Test
+    void heightMapsNeedOneHeightPerVertex() {
+        assertThrows(IllegalArgumentException.class, () -> new HeightMap(1, new float[1]));
+        assertThrows(IllegalArgumentException.class, () -> new HeightMap(4, new float[15]));
+    }
+
+    private static float vertexHeight(int x, int z) {
+        return x * x * 0.25f - 3 * z + x * z * 0.5f;
+    }
+}
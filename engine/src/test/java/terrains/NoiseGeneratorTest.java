@@ -0,0 +1,75 @@
+package terrains;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the procedural terrain is the same on every pool size, down to the bit, and that neighbouring tiles
+ * agree on the heights of their shared edges so the streamed terrain has no seams.
+ */
+class NoiseGeneratorTest {
+    private static final long SEED = 676452;
+    private static final int VERTEX_COUNT = 129;
+    private static final float MAX_HEIGHT = 40;
+    private static final int TILE_RADIUS = 3;
+
+    private ForkJoinPool single;
+    private ForkJoinPool parallel;
+
+    @BeforeEach
+    void setUp() {
+        single = new ForkJoinPool(1);
+        parallel = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        single.shutdown();
+        parallel.shutdown();
+    }
+
+    @Test
+    void heightsAreIdenticalOnEveryPoolSize() {
+        NoiseGenerator reference = generator(single);
+        NoiseGenerator generator = generator(parallel);
+
+        for (int gridZ = -1; gridZ <= 1; gridZ++) {
+            for (int gridX = -1; gridX <= 1; gridX++) {
+                assertArrayEquals(
+                        reference.heightMap(gridX, gridZ).heights(), generator.heightMap(gridX, gridZ).heights(),
+                        "Tile " + gridX + ", " + gridZ + " differs from the single-threaded heights."
+                );
+            }
+        }
+    }
+
+    @Test
+    void neighboursAgreeOnTheirSharedEdges() {
+        NoiseGenerator generator = generator(parallel);
+        int last = VERTEX_COUNT - 1;
+
+        for (int gridZ = -TILE_RADIUS; gridZ < TILE_RADIUS; gridZ++) {
+            for (int gridX = -TILE_RADIUS; gridX < TILE_RADIUS; gridX++) {
+                float[] tile = generator.heightMap(gridX, gridZ).heights();
+                float[] nextX = generator.heightMap(gridX - 1, gridZ).heights();
+                float[] nextZ = generator.heightMap(gridX, gridZ - 1).heights();
+
+                // Columns and rows run along the negative X and Z axes, so the last column meets the next tile's first.
+                for (int i = 0; i < VERTEX_COUNT; i++) {
+                    assertEquals(tile[i * VERTEX_COUNT + last], nextX[i * VERTEX_COUNT], "Seam along X at row " + i);
+                    assertEquals(tile[last * VERTEX_COUNT + i], nextZ[i], "Seam along Z at column " + i);
+                }
+            }
+        }
+    }
+
+    private static NoiseGenerator generator(ForkJoinPool pool) {
+        return new NoiseGenerator(SEED, VERTEX_COUNT, MAX_HEIGHT, 5, 1.0 / 64, 0.6f, pool);
+    }
+}
@@ -0,0 +1,185 @@
+package terrains;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Checks the level of detail selection over two neighbouring 257-vertex tiles from random cameras: the stitched
+ * patches form a watertight mesh within and across the tiles, neighbouring patches never differ by more than one
+ * level, and far fewer triangles are drawn than the full-resolution mesh has.
+ */
+class TerrainQuadTreeTest {
+    private static final int VERTEX_COUNT = 257;
+    private static final int CAMERA_COUNT = 40;
+
+    private List<Terrain> terrains;
+
+    @BeforeEach
+    void setUp() {
+        float[] heights = new float[VERTEX_COUNT * VERTEX_COUNT];
+        for (int z = 0; z < VERTEX_COUNT; z++) {
+            for (int x = 0; x < VERTEX_COUNT; x++) {
+                heights[z * VERTEX_COUNT + x] = (float) (30 * Math.sin(x / 20.0) * Math.cos(z / 33.0));
+            }
+        }
+
+        HeightMap heightMap = new HeightMap(VERTEX_COUNT, heights);
+        terrains = List.of(new Terrain(0, 0, heightMap), new Terrain(1, 0, heightMap));
+    }
+
+    @Test
+    void meshIsWatertightWithinAndAcrossTiles() {
+        Random random = new Random(676452);
+
+        for (int camera = 0; camera < CAMERA_COUNT; camera++) {
+            selectFromRandomCamera(random);
+
+            Map<Long, Integer> edges = new HashMap<>();
+            for (Terrain terrain : terrains) addEdges(terrain, edges);
+
+            int last = VERTEX_COUNT - 1;
+            for (Map.Entry<Long, Integer> edge : edges.entrySet()) {
+                long key = edge.getKey();
+                int x0 = (int) (key >>> 48 & 0xFFFF) - last;
+                int z0 = (int) (key >>> 32 & 0xFFFF) - last;
+                int x1 = (int) (key >>> 16 & 0xFFFF) - last;
+                int z1 = (int) (key & 0xFFFF) - last;
+
+                // The two tiles span -last to last along X and -last to 0 along Z on the global vertex grid.
+                boolean outside = x0 == x1 && Math.abs(x0) == last || z0 == z1 && (z0 == 0 || z0 == -last);
+                int expected = outside ? 1 : 2;
+
+                if (edge.getValue() != expected) {
+                    fail("Edge (" + x0 + ", " + z0 + ") to (" + x1 + ", " + z1 + ") is shared by " + edge.getValue()
+                            + " triangles from camera " + camera + ".");
+                }
+            }
+        }
+    }
+
+    @Test
+    void neighboursDifferByAtMostOneLevel() {
+        Random random = new Random(676453);
+        float patchSize = TerrainPatch.PATCH_CELLS * terrains.get(0).cellSize();
+        int patches = (VERTEX_COUNT - 1) / TerrainPatch.PATCH_CELLS;
+
+        for (int camera = 0; camera < CAMERA_COUNT; camera++) {
+            selectFromRandomCamera(random);
+
+            for (int row = 0; row < patches; row++) {
+                for (int column = 0; column < patches * 2; column++) {
+                    float x = Terrain.SIZE - (column + 0.5f) * patchSize;
+                    float z = -(row + 0.5f) * patchSize;
+                    int level = levelAt(x, z);
+
+                    if (column + 1 < patches * 2) {
+                        assertTrue(Math.abs(level - levelAt(x - patchSize, z)) <= 1, "Levels jump along X.");
+                    }
+
+                    if (row + 1 < patches) {
+                        assertTrue(Math.abs(level - levelAt(x, z - patchSize)) <= 1, "Levels jump along Z.");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void selectionDrawsAFractionOfTheTriangles() {
+        Random random = new Random(676454);
+        long fullTriangles = 2L * (VERTEX_COUNT - 1) * (VERTEX_COUNT - 1) * 2;
+        long selected = 0;
+
+        for (int camera = 0; camera < CAMERA_COUNT; camera++) {
+            selectFromRandomCamera(random);
+            for (Terrain terrain : terrains) selected += terrain.quadTree().selectedTriangles();
+        }
+
+        double fraction = (double) selected / CAMERA_COUNT / fullTriangles;
+        assertTrue(fraction < 0.25, "On average " + fraction + " of the full triangle count was drawn.");
+    }
+
+    private void selectFromRandomCamera(Random random) {
+        float x = (random.nextFloat() * 2 - 1) * Terrain.SIZE;
+        float z = -random.nextFloat() * Terrain.SIZE;
+        float y = random.nextFloat() * 100;
+        TerrainQuadTree.selectAll(terrains, x, y, z);
+    }
+
+    private int levelAt(float x, float z) {
+        int level = Terrain.at(terrains, x, z).quadTree().levelAt(x, z);
+        assertTrue(level >= 0);
+        return level;
+    }
+
+    /**
+     * Count the edges of every non-degenerate triangle of a tile's selected patches on the global vertex grid, moving
+     * stitched vertices the way the terrain vertex shader does.
+     *
+     * @param terrain Tile whose selection is to be added.
+     * @param edges   Number of triangles sharing each edge, by edge key.
+     */
+    private static void addEdges(Terrain terrain, Map<Long, Integer> edges) {
+        TerrainQuadTree quadTree = terrain.quadTree();
+        float[] instances = new float[quadTree.selectedCount() * TerrainPatch.INSTANCE_DATA_LENGTH];
+        int count = quadTree.storeInstances(instances);
+
+        int offsetX = Math.round(terrain.x() / terrain.cellSize());
+        int offsetZ = Math.round(terrain.z() / terrain.cellSize());
+        float[] positions = TerrainPatch.positions();
+        int[] indices = TerrainPatch.indices();
+        int[] vertices = new int[6];
+
+        for (int patch = 0; patch < count; patch++) {
+            int offset = patch * TerrainPatch.INSTANCE_DATA_LENGTH;
+            int stitches = (int) instances[offset + 3];
+            int step = (int) instances[offset + 2];
+
+            for (int i = 0; i < indices.length; i += 3) {
+                for (int corner = 0; corner < 3; corner++) {
+                    int localX = (int) positions[indices[i + corner] * 2];
+                    int localZ = (int) positions[indices[i + corner] * 2 + 1];
+
+                    if (localZ == 0 && (stitches & TerrainPatch.NORTH) != 0) localX &= ~1;
+                    if (localZ == TerrainPatch.PATCH_CELLS && (stitches & TerrainPatch.SOUTH) != 0) localX &= ~1;
+                    if (localX == 0 && (stitches & TerrainPatch.WEST) != 0) localZ &= ~1;
+                    if (localX == TerrainPatch.PATCH_CELLS && (stitches & TerrainPatch.EAST) != 0) localZ &= ~1;
+
+                    // Columns and rows run along the negative X and Z axes from the tile's corner.
+                    vertices[corner * 2] = offsetX - ((int) instances[offset] + localX * step);
+                    vertices[corner * 2 + 1] = offsetZ - ((int) instances[offset + 1] + localZ * step);
+                }
+
+                if (same(vertices, 0, 1) || same(vertices, 1, 2) || same(vertices, 0, 2)) continue;
+
+                addEdge(vertices, 0, 1, edges);
+                addEdge(vertices, 1, 2, edges);
+                addEdge(vertices, 2, 0, edges);
+            }
+        }
+
+        assertEquals(count, quadTree.selectedCount());
+    }
+
+    private static boolean same(int[] vertices, int a, int b) {
+        return vertices[a * 2] == vertices[b * 2] && vertices[a * 2 + 1] == vertices[b * 2 + 1];
+    }
+
+    private static void addEdge(int[] vertices, int a, int b, Map<Long, Integer> edges) {
+        int last = VERTEX_COUNT - 1;
+        long first = (long) (vertices[a * 2] + last) << 16 | (vertices[a * 2 + 1] + last);
+        long second = (long) (vertices[b * 2] + last) << 16 | (vertices[b * 2 + 1] + last);
+        long key = Math.min(first, second) << 32 | Math.max(first, second);
+
+        edges.merge(key, 1, Integer::sum);
+    }
+}
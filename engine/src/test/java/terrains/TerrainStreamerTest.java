@@ -0,0 +1,105 @@
+package terrains;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the terrain streamer without uploading any textures: walking across the grid keeps the tiles within the load
+ * radius resident and evicts the rest, hovering over a tile boundary evicts nothing, and a tile whose source failed is
+ * requested again instead of staying pending forever.
+ */
+class TerrainStreamerTest {
+    private static final int VERTEX_COUNT = 65;
+    private static final int LOAD_RADIUS = 1;
+    private static final int EVICT_RADIUS = 2;
+    private static final int WORKER_COUNT = 2;
+    private static final TileSource FLAT = (x, z) -> HeightMap.flat(VERTEX_COUNT);
+
+    private TerrainStreamer streamer;
+
+    @AfterEach
+    void tearDown() {
+        if (streamer != null) streamer.cleanUp();
+    }
+
+    @Test
+    void walkKeepsTheLoadRadiusResident() {
+        streamer = new TerrainStreamer(FLAT, LOAD_RADIUS, EVICT_RADIUS, WORKER_COUNT, 0);
+
+        for (int gridX = 0; gridX < 25; gridX++) {
+            float worldX = centre(gridX);
+            streamer.loadAround(worldX, centre(0));
+
+            for (int x = -LOAD_RADIUS; x <= LOAD_RADIUS; x++) {
+                for (int z = -LOAD_RADIUS; z <= LOAD_RADIUS; z++) {
+                    assertNotNull(
+                            streamer.terrainAt(centre(gridX + x), centre(z)),
+                            "Tile " + (gridX + x) + ", " + z + " is not resident."
+                    );
+                }
+            }
+
+            for (Terrain terrain : streamer.terrains()) {
+                int tileX = Terrain.gridPosition(terrain.x() - 1);
+                assertTrue(Math.abs(tileX - gridX) <= EVICT_RADIUS, "Tile " + tileX + " was not evicted.");
+            }
+
+            assertEquals(0, streamer.pendingCount());
+        }
+
+        assertTrue(streamer.tilesEvicted() > 0);
+    }
+
+    @Test
+    void hoveringOverABoundaryEvictsNothing() {
+        streamer = new TerrainStreamer(FLAT, LOAD_RADIUS, EVICT_RADIUS, WORKER_COUNT, 0);
+        streamer.loadAround(centre(0), centre(0));
+
+        for (int i = 0; i < 100; i++) {
+            streamer.loadAround(i % 2 == 0 ? 1 : -1, centre(0));
+        }
+
+        assertEquals(0, streamer.tilesEvicted());
+        assertEquals(0, streamer.pendingCount());
+    }
+
+    @Test
+    void failedTilesAreRequestedAgain() {
+        Set<Integer> failedOnce = ConcurrentHashMap.newKeySet();
+        TileSource source = (x, z) -> {
+            if (x == 1 && z == 0 && failedOnce.add(x)) throw new IllegalStateException("Unreadable tile.");
+            return FLAT.heightMap(x, z);
+        };
+
+        streamer = new TerrainStreamer(source, LOAD_RADIUS, EVICT_RADIUS, WORKER_COUNT, 0);
+        streamer.loadAround(centre(0), centre(0));
+
+        assertEquals(1, streamer.tilesFailed());
+        assertEquals(0, streamer.pendingCount());
+        assertNull(streamer.terrainAt(centre(1), centre(0)));
+
+        streamer.loadAround(centre(0), centre(0));
+
+        assertEquals(0, streamer.pendingCount());
+        assertNotNull(streamer.terrainAt(centre(1), centre(0)));
+        assertEquals((2 * LOAD_RADIUS + 1) * (2 * LOAD_RADIUS + 1), streamer.residentCount());
+    }
+
+    /**
+     * Find the world position of the middle of a tile along either axis.
+     *
+     * @param grid Position of the tile on the terrain grid.
+     * @return World position of the middle of the tile.
+     */
+    private static float centre(int grid) {
+        return (grid - 0.5f) * Terrain.SIZE;
+    }
+}
@@ -0,0 +1,118 @@
+package terrains;
+
+import models.RawModel;
+import models.TexturedModel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import textures.ModelTexture;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that ground cover is scattered deterministically per chunk, that every instance lies within its chunk on the
+ * terrain and within its layer's scale range, and that the blend map controls the density of each layer.
+ */
+class VegetationFieldTest {
+    private static final int BLEND_MAP_SIZE = 256;
+    private static final long SEED = 676452;
+
+    private final TexturedModel MODEL = new TexturedModel(new RawModel(0, 0), new ModelTexture(0));
+    private final List<VegetationLayer> LAYERS = List.of(
+            new VegetationLayer(MODEL, BlendMap.BACKGROUND, 0.4f, 1.4f, 2.2f, 150),
+            new VegetationLayer(MODEL, BlendMap.GREEN, 0.3f, 1.8f, 2.6f, 150),
+            new VegetationLayer(MODEL, BlendMap.BACKGROUND, 0.01f, 0.7f, 1.1f, 250)
+    );
+
+    private Terrain terrain;
+
+    @BeforeEach
+    void setUp() {
+        terrain = new Terrain(1, 0, new NoiseGenerator(SEED, 129, 40).heightMap(1, 0));
+    }
+
+    @Test
+    void chunksScatterIdenticallyEveryTime() {
+        VegetationField field = new VegetationField(LAYERS, randomBlendMap(), SEED);
+        float[] expected = scatter(field, 10, -3);
+
+        // Scattering another chunk in between must not shift the next one.
+        scatter(field, 11, -3);
+
+        assertArrayEquals(expected, scatter(field, 10, -3));
+        assertArrayEquals(expected, scatter(new VegetationField(LAYERS, randomBlendMap(), SEED), 10, -3));
+    }
+
+    @Test
+    void instancesLieWithinTheirChunkOnTheGround() {
+        VegetationField field = new VegetationField(LAYERS, randomBlendMap(), SEED);
+        float[] instances = new float[field.maxInstancesPerChunk() * VegetationField.INSTANCE_DATA_LENGTH];
+        int[] layerCounts = new int[LAYERS.size()];
+
+        int chunkX = 4;
+        int chunkZ = -7;
+        int count = field.scatter(terrain, chunkX, chunkZ, instances, layerCounts);
+        assertEquals(count, Arrays.stream(layerCounts).sum());
+
+        int instance = 0;
+        for (int layer = 0; layer < LAYERS.size(); layer++) {
+            VegetationLayer rule = LAYERS.get(layer);
+
+            for (int i = 0; i < layerCounts[layer]; i++, instance++) {
+                int offset = instance * VegetationField.INSTANCE_DATA_LENGTH;
+                float x = instances[offset];
+                float z = instances[offset + 2];
+                float scale = instances[offset + 3];
+
+                assertEquals(chunkX, VegetationField.chunkPosition(x), "Instance " + instance + " left its chunk.");
+                assertEquals(chunkZ, VegetationField.chunkPosition(z), "Instance " + instance + " left its chunk.");
+                assertEquals(terrain.heightAt(x, z), instances[offset + 1]);
+                assertTrue(scale >= rule.minScale() && scale <= rule.maxScale(), "Scale " + scale + " out of range.");
+            }
+        }
+    }
+
+    @Test
+    void blendMapControlsTheDensity() {
+        float[] weights = new float[BLEND_MAP_SIZE * BLEND_MAP_SIZE * 4];
+        for (int pixel = 0; pixel < BLEND_MAP_SIZE * BLEND_MAP_SIZE; pixel++) {
+            weights[pixel * 4 + BlendMap.BACKGROUND] = 1;
+        }
+
+        BlendMap backgroundOnly = new BlendMap(BLEND_MAP_SIZE, BLEND_MAP_SIZE, weights);
+        VegetationField field = new VegetationField(LAYERS, backgroundOnly, SEED);
+        float[] instances = new float[field.maxInstancesPerChunk() * VegetationField.INSTANCE_DATA_LENGTH];
+        int[] layerCounts = new int[LAYERS.size()];
+        field.scatter(terrain, 10, -3, instances, layerCounts);
+
+        float area = VegetationField.CHUNK_SIZE * VegetationField.CHUNK_SIZE;
+        assertEquals(Math.round(LAYERS.get(0).density() * area), layerCounts[0]);
+        assertEquals(0, layerCounts[1]);
+        assertEquals(Math.round(LAYERS.get(2).density() * area), layerCounts[2]);
+    }
+
+    private float[] scatter(VegetationField field, int chunkX, int chunkZ) {
+        float[] instances = new float[field.maxInstancesPerChunk() * VegetationField.INSTANCE_DATA_LENGTH];
+        int count = field.scatter(terrain, chunkX, chunkZ, instances, new int[LAYERS.size()]);
+        assertTrue(count > 0);
+        return Arrays.copyOf(instances, count * VegetationField.INSTANCE_DATA_LENGTH);
+    }
+
+    private static BlendMap randomBlendMap() {
+        Random random = new Random(42);
+        float[] weights = new float[BLEND_MAP_SIZE * BLEND_MAP_SIZE * 4];
+
+        for (int pixel = 0; pixel < BLEND_MAP_SIZE * BLEND_MAP_SIZE; pixel++) {
+            float green = random.nextFloat() * 0.5f;
+            weights[pixel * 4 + BlendMap.BACKGROUND] = 1 - green;
+            weights[pixel * 4 + BlendMap.GREEN] = green;
+        }
+
+        return new BlendMap(BLEND_MAP_SIZE, BLEND_MAP_SIZE, weights);
+    }
+}
@@ -0,0 +1,42 @@
+package testutil;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Assertions on the heap allocations of code that must not allocate once warmed up, such as per-frame systems.
+ */
+public final class Allocations {
+    /**
+     * Number of times a workload is measured before it counts as allocating.
+     */
+    private static final int ROUNDS = 5;
+
+    private Allocations() { }
+
+    /**
+     * Assert that a workload allocates nothing on the calling thread. Only the calling thread's allocations are
+     * counted, and the workload should already be warmed up so that it runs compiled.
+     * <p>
+     * The workload is measured up to five times and passes as soon as one run allocates nothing. The engine relies on
+     * escape analysis to keep short-lived vectors off the heap, and when the compiler deoptimises a frame those
+     * objects are rebuilt on the heap, so a warmed-up workload can still allocate a few hundred bytes once while the
+     * compiler settles, depending on what ran before it. Code that really allocates does so on every run and fails
+     * all five.
+     *
+     * @param workload Code to be measured, typically many calls of the operation under test.
+     */
+    public static void assertAllocationFree(Runnable workload) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocated = Long.MAX_VALUE;
+
+        for (int round = 0; round < ROUNDS && allocated > 0; round++) {
+            long before = threads.getCurrentThreadAllocatedBytes();
+            workload.run();
+            allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        }
+
+        assertEquals(0, allocated, "Every run of the workload allocated, " + allocated + " bytes in the last.");
+    }
+}
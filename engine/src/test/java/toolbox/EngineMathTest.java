@@ -0,0 +1,97 @@
+package toolbox;
+
+import org.junit.jupiter.api.Test;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks every closed-form transformation matrix variant against the chain of translations, rotations and scales it
+ * replaces, across random transforms.
+ */
+class EngineMathTest {
+    private static final int TRANSFORM_COUNT = 1000;
+    private static final Vector3f X_AXIS = new Vector3f(1, 0, 0);
+    private static final Vector3f Y_AXIS = new Vector3f(0, 1, 0);
+    private static final Vector3f Z_AXIS = new Vector3f(0, 0, 1);
+
+    @Test
+    void transformationMatricesMatchTheRotationChain() {
+        Random random = new Random(29);
+        float[] positionsX = new float[TRANSFORM_COUNT];
+        float[] positionsY = new float[TRANSFORM_COUNT];
+        float[] positionsZ = new float[TRANSFORM_COUNT];
+        float[] rotationsX = new float[TRANSFORM_COUNT];
+        float[] rotationsY = new float[TRANSFORM_COUNT];
+        float[] rotationsZ = new float[TRANSFORM_COUNT];
+        float[] scales = new float[TRANSFORM_COUNT];
+
+        for (int i = 0; i < TRANSFORM_COUNT; i++) {
+            positionsX[i] = (random.nextFloat() - 0.5f) * 2000;
+            positionsY[i] = (random.nextFloat() - 0.5f) * 200;
+            positionsZ[i] = (random.nextFloat() - 0.5f) * 2000;
+            rotationsX[i] = (random.nextFloat() - 0.5f) * 720;
+            rotationsY[i] = (random.nextFloat() - 0.5f) * 720;
+            rotationsZ[i] = (random.nextFloat() - 0.5f) * 720;
+            scales[i] = 0.1f + random.nextFloat() * 10;
+        }
+
+        float[] batch = new float[TRANSFORM_COUNT * 16];
+        new ScalarBatchMath().computeModelMatrices(
+                positionsX, positionsY, positionsZ, rotationsX, rotationsY, rotationsZ, scales, TRANSFORM_COUNT, batch
+        );
+
+        FloatBuffer buffer = BufferUtils.createFloatBuffer(TRANSFORM_COUNT * 16);
+        EngineMath.storeTransformationMatrices(
+                positionsX, positionsY, positionsZ, rotationsX, rotationsY, rotationsZ, scales, 0, TRANSFORM_COUNT,
+                buffer
+        );
+        buffer.flip();
+
+        float[] expected = new float[16];
+        float[] actual = new float[16];
+        Matrix4f matrix = new Matrix4f();
+
+        for (int i = 0; i < TRANSFORM_COUNT; i++) {
+            Vector3f position = new Vector3f(positionsX[i], positionsY[i], positionsZ[i]);
+            Vector3f rotation = new Vector3f(rotationsX[i], rotationsY[i], rotationsZ[i]);
+
+            Matrix4f chain = new Matrix4f();
+            chain.translate(position);
+            chain.rotate((float) Math.toRadians(rotation.x), X_AXIS);
+            chain.rotate((float) Math.toRadians(rotation.y), Y_AXIS);
+            chain.rotate((float) Math.toRadians(rotation.z), Z_AXIS);
+            chain.scale(new Vector3f(scales[i], scales[i], scales[i]));
+            EngineMath.storeMatrix(chain, expected, 0);
+
+            // Rounding grows with the scale; the translation is copied exactly in both.
+            float tolerance = 2e-6f * Math.max(1, scales[i]);
+            String transform = "Transform " + i + ": " + position + ", " + rotation + ", " + scales[i];
+
+            EngineMath.storeMatrix(EngineMath.createTransformationMatrix(position, rotation, scales[i]), actual, 0);
+            assertMatrixEquals(expected, actual, 0, tolerance, "Matrix4f, " + transform);
+
+            EngineMath.createTransformationMatrix(position, rotation, scales[i], matrix);
+            EngineMath.storeMatrix(matrix, actual, 0);
+            assertMatrixEquals(expected, actual, 0, tolerance, "Matrix4f in place, " + transform);
+
+            buffer.get(actual);
+            assertMatrixEquals(expected, actual, 0, tolerance, "FloatBuffer, " + transform);
+
+            assertMatrixEquals(expected, batch, i * 16, tolerance, "Batch, " + transform);
+        }
+    }
+
+    private static void assertMatrixEquals(
+            float[] expected, float[] actual, int offset, float tolerance, String message
+    ) {
+        for (int element = 0; element < 16; element++) {
+            assertEquals(expected[element], actual[offset + element], tolerance, message + ", element " + element);
+        }
+    }
+}
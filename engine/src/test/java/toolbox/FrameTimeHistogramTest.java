@@ -0,0 +1,48 @@
+package toolbox;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the histogram's percentile estimates against frame times whose percentiles are known.
+ */
+class FrameTimeHistogramTest {
+    private static final float TOLERANCE = 1e-6f;
+
+    @Test
+    void percentilesAreTheUpperBoundsOfTheirBuckets() {
+        // 1 ms buckets up to 20 ms: 90 frames of 2.5 ms, 9 of 7.5 ms and one 50 ms hitch beyond the last bucket.
+        FrameTimeHistogram histogram = new FrameTimeHistogram(1, 20);
+        for (int i = 0; i < 90; i++) histogram.record(2_500_000);
+        for (int i = 0; i < 9; i++) histogram.record(7_500_000);
+        histogram.record(50_000_000);
+
+        assertEquals(100, histogram.frameCount());
+        assertEquals(3, histogram.percentileMillis(1), TOLERANCE);
+        assertEquals(3, histogram.percentileMillis(50), TOLERANCE);
+        assertEquals(3, histogram.percentileMillis(90), TOLERANCE);
+        assertEquals(8, histogram.percentileMillis(91), TOLERANCE);
+        assertEquals(8, histogram.percentileMillis(99), TOLERANCE);
+
+        // Percentiles landing in the overflow are the slowest frame itself.
+        assertEquals(50, histogram.percentileMillis(99.9f), TOLERANCE);
+        assertEquals(50, histogram.percentileMillis(100), TOLERANCE);
+    }
+
+    @Test
+    void framesOnABucketBoundaryCountTowardTheSlowerBucket() {
+        FrameTimeHistogram histogram = new FrameTimeHistogram(0.5f, 10);
+        histogram.record(1_000_000);
+
+        assertEquals(1.5f, histogram.percentileMillis(50), TOLERANCE);
+    }
+
+    @Test
+    void emptyHistogramsHaveNoFrameTimes() {
+        FrameTimeHistogram histogram = new FrameTimeHistogram(1, 20);
+
+        assertEquals(0, histogram.frameCount());
+        assertEquals(0, histogram.percentileMillis(50));
+    }
+}
@@ -0,0 +1,141 @@
+package simd;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import toolbox.BatchMath;
+import toolbox.ScalarBatchMath;
+
+/**
+ * Batch math on the Java Vector API. Model matrices and frustum tests process one body per lane; matrix products
+ * process one matrix column per 128-bit vector. Tails that do not fill a whole vector fall back to the scalar code.
+ */
+public class VectorBatchMath implements BatchMath {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> COLUMN_SPECIES = FloatVector.SPECIES_128;
+    private static final int LANES = SPECIES.length();
+
+    private static final float DEGREES_TO_RADIANS = (float) (Math.PI / 180);
+
+    /**
+     * Offsets of the same matrix element of consecutive bodies, used to scatter one vector into 16-float matrices.
+     */
+    private static final int[] MATRIX_STRIDE = new int[LANES];
+
+    static {
+        for (int i = 0; i < LANES; i++) MATRIX_STRIDE[i] = i * 16;
+    }
+
+    @Override
+    public void computeModelMatrices(
+            float[] positionsX, float[] positionsY, float[] positionsZ, float[] rotationsX, float[] rotationsY,
+            float[] rotationsZ, float[] scales, int count, float[] matrices
+    ) {
+        FloatVector zero = FloatVector.zero(SPECIES);
+        FloatVector one = FloatVector.broadcast(SPECIES, 1);
+
+        int upperBound = SPECIES.loopBound(count);
+        int i = 0;
+
+        for (; i < upperBound; i += LANES) {
+            FloatVector radiansX = FloatVector.fromArray(SPECIES, rotationsX, i).mul(DEGREES_TO_RADIANS);
+            FloatVector radiansY = FloatVector.fromArray(SPECIES, rotationsY, i).mul(DEGREES_TO_RADIANS);
+            FloatVector radiansZ = FloatVector.fromArray(SPECIES, rotationsZ, i).mul(DEGREES_TO_RADIANS);
+
+            FloatVector sinX = radiansX.lanewise(VectorOperators.SIN);
+            FloatVector cosX = radiansX.lanewise(VectorOperators.COS);
+            FloatVector sinY = radiansY.lanewise(VectorOperators.SIN);
+            FloatVector cosY = radiansY.lanewise(VectorOperators.COS);
+            FloatVector sinZ = radiansZ.lanewise(VectorOperators.SIN);
+            FloatVector cosZ = radiansZ.lanewise(VectorOperators.COS);
+            FloatVector scale = FloatVector.fromArray(SPECIES, scales, i);
+
+            FloatVector sinXSinY = sinX.mul(sinY);
+            FloatVector cosXSinY = cosX.mul(sinY);
+
+            int offset = i * 16;
+
+            cosY.mul(cosZ).mul(scale).intoArray(matrices, offset, MATRIX_STRIDE, 0);
+            sinXSinY.mul(cosZ).add(cosX.mul(sinZ)).mul(scale).intoArray(matrices, offset + 1, MATRIX_STRIDE, 0);
+            sinX.mul(sinZ).sub(cosXSinY.mul(cosZ)).mul(scale).intoArray(matrices, offset + 2, MATRIX_STRIDE, 0);
+            zero.intoArray(matrices, offset + 3, MATRIX_STRIDE, 0);
+
+            cosY.mul(sinZ).neg().mul(scale).intoArray(matrices, offset + 4, MATRIX_STRIDE, 0);
+            cosX.mul(cosZ).sub(sinXSinY.mul(sinZ)).mul(scale).intoArray(matrices, offset + 5, MATRIX_STRIDE, 0);
+            cosXSinY.mul(sinZ).add(sinX.mul(cosZ)).mul(scale).intoArray(matrices, offset + 6, MATRIX_STRIDE, 0);
+            zero.intoArray(matrices, offset + 7, MATRIX_STRIDE, 0);
+
+            sinY.mul(scale).intoArray(matrices, offset + 8, MATRIX_STRIDE, 0);
+            sinX.mul(cosY).neg().mul(scale).intoArray(matrices, offset + 9, MATRIX_STRIDE, 0);
+            cosX.mul(cosY).mul(scale).intoArray(matrices, offset + 10, MATRIX_STRIDE, 0);
+            zero.intoArray(matrices, offset + 11, MATRIX_STRIDE, 0);
+
+            FloatVector.fromArray(SPECIES, positionsX, i).intoArray(matrices, offset + 12, MATRIX_STRIDE, 0);
+            FloatVector.fromArray(SPECIES, positionsY, i).intoArray(matrices, offset + 13, MATRIX_STRIDE, 0);
+            FloatVector.fromArray(SPECIES, positionsZ, i).intoArray(matrices, offset + 14, MATRIX_STRIDE, 0);
+            one.intoArray(matrices, offset + 15, MATRIX_STRIDE, 0);
+        }
+
+        ScalarBatchMath.computeModelMatrices(
+                positionsX, positionsY, positionsZ, rotationsX, rotationsY, rotationsZ, scales, i, count, matrices
+        );
+    }
+
+    @Override
+    public void multiplyMatrices(float[] left, float[] matrices, int count, float[] results) {
+        FloatVector column0 = FloatVector.fromArray(COLUMN_SPECIES, left, 0);
+        FloatVector column1 = FloatVector.fromArray(COLUMN_SPECIES, left, 4);
+        FloatVector column2 = FloatVector.fromArray(COLUMN_SPECIES, left, 8);
+        FloatVector column3 = FloatVector.fromArray(COLUMN_SPECIES, left, 12);
+
+        int end = count * 16;
+
+        for (int offset = 0; offset < end; offset += 4) {
+            column0.mul(matrices[offset])
+                    .add(column1.mul(matrices[offset + 1]))
+                    .add(column2.mul(matrices[offset + 2]))
+                    .add(column3.mul(matrices[offset + 3]))
+                    .intoArray(results, offset);
+        }
+    }
+
+    @Override
+    public int cullSpheres(
+            float[] planes, float[] centersX, float[] centersY, float[] centersZ, float[] radii, int count,
+            int[] visibleIndices
+    ) {
+        int upperBound = SPECIES.loopBound(count);
+        int visibleCount = 0;
+        int i = 0;
+
+        for (; i < upperBound; i += LANES) {
+            FloatVector x = FloatVector.fromArray(SPECIES, centersX, i);
+            FloatVector y = FloatVector.fromArray(SPECIES, centersY, i);
+            FloatVector z = FloatVector.fromArray(SPECIES, centersZ, i);
+            FloatVector negativeRadius = FloatVector.fromArray(SPECIES, radii, i).neg();
+
+            VectorMask<Float> visible = SPECIES.maskAll(true);
+
+            for (int plane = 0; plane < 24 && visible.anyTrue(); plane += 4) {
+                FloatVector distance = x.mul(planes[plane])
+                        .add(y.mul(planes[plane + 1]))
+                        .add(z.mul(planes[plane + 2]))
+                        .add(planes[plane + 3]);
+
+                visible = visible.and(distance.compare(VectorOperators.GE, negativeRadius));
+            }
+
+            long bits = visible.toLong();
+
+            while (bits != 0) {
+                visibleIndices[visibleCount++] = i + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+
+        return ScalarBatchMath.cullSpheres(
+                planes, centersX, centersY, centersZ, radii, i, count, visibleIndices, visibleCount
+        );
+    }
+}
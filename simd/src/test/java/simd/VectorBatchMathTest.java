@@ -0,0 +1,121 @@
+package simd;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.util.vector.Matrix4f;
+import toolbox.EngineMath;
+import toolbox.ScalarBatchMath;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the Vector API batch math agrees with the scalar implementation: matrix products and culling exactly,
+ * model matrices to within a small tolerance since the vector sine and cosine are computed in single precision. The
+ * entity count is not a multiple of any vector length, so the scalar tails are covered too.
+ */
+class VectorBatchMathTest {
+    private static final int ENTITY_COUNT = 10_007;
+    private static final float MODEL_MATRIX_TOLERANCE = 1e-4f;
+
+    private final ScalarBatchMath SCALAR = new ScalarBatchMath();
+    private final VectorBatchMath VECTOR = new VectorBatchMath();
+
+    private final float[] POSITIONS_X = new float[ENTITY_COUNT];
+    private final float[] POSITIONS_Y = new float[ENTITY_COUNT];
+    private final float[] POSITIONS_Z = new float[ENTITY_COUNT];
+    private final float[] ROTATIONS_X = new float[ENTITY_COUNT];
+    private final float[] ROTATIONS_Y = new float[ENTITY_COUNT];
+    private final float[] ROTATIONS_Z = new float[ENTITY_COUNT];
+    private final float[] SCALES = new float[ENTITY_COUNT];
+    private final float[] RADII = new float[ENTITY_COUNT];
+    private final float[] VIEW_PROJECTION = new float[16];
+    private final float[] PLANES = new float[24];
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(676452);
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            POSITIONS_X[i] = random.nextFloat() * 2000 - 1000;
+            POSITIONS_Y[i] = random.nextFloat() * 20;
+            POSITIONS_Z[i] = random.nextFloat() * 2000 - 1000;
+            ROTATIONS_X[i] = random.nextFloat() * 20 - 10;
+            ROTATIONS_Y[i] = random.nextFloat() * 720 - 360;
+            ROTATIONS_Z[i] = random.nextFloat() * 20 - 10;
+            SCALES[i] = random.nextFloat() + 0.5f;
+            RADII[i] = random.nextFloat() * 10 + 1;
+        }
+
+        float aspectRatio = 16f / 9;
+        float yScale = (float) ((1f / Math.tan(Math.toRadians(35))) * aspectRatio);
+        float farPlane = 1000;
+        float nearPlane = 0.1f;
+
+        Matrix4f projection = new Matrix4f();
+        projection.m00 = yScale / aspectRatio;
+        projection.m11 = yScale;
+        projection.m22 = -(farPlane + nearPlane) / (farPlane - nearPlane);
+        projection.m23 = -1;
+        projection.m32 = -(2 * nearPlane * farPlane) / (farPlane - nearPlane);
+        projection.m33 = 0;
+
+        Matrix4f view = EngineMath.createTransformationMatrix(0, -10, 0, 10, 30, 0, 1, new Matrix4f());
+        EngineMath.storeMatrix(Matrix4f.mul(projection, view, null), VIEW_PROJECTION, 0);
+        EngineMath.extractFrustumPlanes(VIEW_PROJECTION, PLANES);
+    }
+
+    @Test
+    void modelMatricesMatchWithinTolerance() {
+        float[] expected = scalarModelMatrices();
+        float[] actual = new float[ENTITY_COUNT * 16];
+        VECTOR.computeModelMatrices(
+                POSITIONS_X, POSITIONS_Y, POSITIONS_Z, ROTATIONS_X, ROTATIONS_Y, ROTATIONS_Z, SCALES, ENTITY_COUNT,
+                actual
+        );
+
+        for (int i = 0; i < expected.length; i++) {
+            float error = Math.abs(expected[i] - actual[i]) / Math.max(1, Math.abs(expected[i]));
+            assertTrue(error <= MODEL_MATRIX_TOLERANCE, "Model matrix element " + i + " differs by " + error + ".");
+        }
+    }
+
+    @Test
+    void matrixProductsMatchExactly() {
+        float[] matrices = scalarModelMatrices();
+        float[] expected = new float[ENTITY_COUNT * 16];
+        float[] actual = new float[ENTITY_COUNT * 16];
+
+        SCALAR.multiplyMatrices(VIEW_PROJECTION, matrices, ENTITY_COUNT, expected);
+        VECTOR.multiplyMatrices(VIEW_PROJECTION, matrices, ENTITY_COUNT, actual);
+
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    void cullingMatchesExactly() {
+        int[] expected = new int[ENTITY_COUNT];
+        int[] actual = new int[ENTITY_COUNT];
+
+        int expectedCount = SCALAR.cullSpheres(
+                PLANES, POSITIONS_X, POSITIONS_Y, POSITIONS_Z, RADII, ENTITY_COUNT, expected
+        );
+        int actualCount = VECTOR.cullSpheres(PLANES, POSITIONS_X, POSITIONS_Y, POSITIONS_Z, RADII, ENTITY_COUNT, actual);
+
+        assertTrue(expectedCount > 0 && expectedCount < ENTITY_COUNT, "The frustum should cull some entities.");
+        assertEquals(expectedCount, actualCount);
+        assertArrayEquals(Arrays.copyOf(expected, expectedCount), Arrays.copyOf(actual, actualCount));
+    }
+
+    private float[] scalarModelMatrices() {
+        float[] matrices = new float[ENTITY_COUNT * 16];
+        SCALAR.computeModelMatrices(
+                POSITIONS_X, POSITIONS_Y, POSITIONS_Z, ROTATIONS_X, ROTATIONS_Y, ROTATIONS_Z, SCALES, ENTITY_COUNT,
+                matrices
+        );
+        return matrices;
+    }
+}
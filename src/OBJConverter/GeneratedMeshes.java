@@ -0,0 +1,85 @@
+package OBJConverter;
+
+/**
+ * Model data generated in code rather than loaded from OBJ files, used where no model files are available, such as
+ * the tests and benchmarks.
+ */
+public final class GeneratedMeshes {
+    private GeneratedMeshes() { }
+
+    /**
+     * Create a sphere resting on the origin.
+     *
+     * @param rings  Number of rings of vertices from pole to pole, and of vertices around each ring.
+     * @param radius Radius of the sphere.
+     * @return Vertex data of the sphere.
+     */
+    public static ModelData sphere(int rings, float radius) {
+        return sphere(rings, radius, 0);
+    }
+
+    /**
+     * Create a bumpy sphere resting on the origin, so that rays can hit it more than twice.
+     *
+     * @param rings  Number of rings of vertices from pole to pole, and of vertices around each ring.
+     * @param radius Largest distance of a vertex from the centre of the sphere.
+     * @return Vertex data of the sphere.
+     */
+    public static ModelData bumpySphere(int rings, float radius) {
+        return sphere(rings, radius, 0.2);
+    }
+
+    /**
+     * Create a sphere resting on the origin whose surface rises and falls around a ring.
+     *
+     * @param rings     Number of rings of vertices from pole to pole, and of vertices around each ring.
+     * @param radius    Largest distance of a vertex from the centre of the sphere.
+     * @param bumpiness Fraction of the radius the surface falls below it at most.
+     * @return Vertex data of the sphere.
+     */
+    private static ModelData sphere(int rings, float radius, double bumpiness) {
+        if (rings < 2) throw new IllegalArgumentException("A sphere needs at least two rings.");
+
+        int vertexCount = rings * rings;
+        float[] vertices = new float[vertexCount * 3];
+        float[] textureCoordinates = new float[vertexCount * 2];
+        float[] normals = new float[vertexCount * 3];
+        int[] indices = new int[(rings - 1) * (rings - 1) * 6];
+
+        for (int ring = 0; ring < rings; ring++) {
+            double latitude = Math.PI * ring / (rings - 1);
+
+            for (int segment = 0; segment < rings; segment++) {
+                double longitude = 2 * Math.PI * segment / (rings - 1);
+                double bump = radius * (1 - bumpiness + bumpiness * Math.sin(5 * longitude) * Math.sin(3 * latitude));
+                int vertex = ring * rings + segment;
+
+                normals[vertex * 3] = (float) (Math.sin(latitude) * Math.cos(longitude));
+                normals[vertex * 3 + 1] = (float) Math.cos(latitude);
+                normals[vertex * 3 + 2] = (float) (Math.sin(latitude) * Math.sin(longitude));
+                vertices[vertex * 3] = (float) (normals[vertex * 3] * bump);
+                vertices[vertex * 3 + 1] = (float) (normals[vertex * 3 + 1] * bump + radius);
+                vertices[vertex * 3 + 2] = (float) (normals[vertex * 3 + 2] * bump);
+                textureCoordinates[vertex * 2] = (float) segment / (rings - 1);
+                textureCoordinates[vertex * 2 + 1] = (float) ring / (rings - 1);
+            }
+        }
+
+        int index = 0;
+        for (int ring = 0; ring < rings - 1; ring++) {
+            for (int segment = 0; segment < rings - 1; segment++) {
+                int topLeft = ring * rings + segment;
+                int bottomLeft = topLeft + rings;
+
+                indices[index++] = topLeft;
+                indices[index++] = bottomLeft;
+                indices[index++] = topLeft + 1;
+                indices[index++] = topLeft + 1;
+                indices[index++] = bottomLeft;
+                indices[index++] = bottomLeft + 1;
+            }
+        }
+
+        return new ModelData(vertices, textureCoordinates, normals, indices, radius * 2);
+    }
+}
@@ -22,8 +22,17 @@ public class OBJFileLoader {
      * @return Model data of the OBJ file.
      */
     public static ModelData loadOBJ(String filename) {
+        return loadOBJ(new File(RES_DIRECTORY_PATH + filename + ".obj"));
+    }
+
+    /**
+     * Load an OBJ file from an arbitrary location into new model data.
+     *
+     * @param objFile OBJ file to be loaded.
+     * @return Model data of the OBJ file.
+     */
+    public static ModelData loadOBJ(File objFile) {
         FileReader fileReader = null;
-        File objFile = new File(RES_DIRECTORY_PATH + filename + ".obj");
 
         try {
             fileReader = new FileReader(objFile);
@@ -0,0 +1,83 @@
+package engineTests;
+
+import entities.Camera;
+import entities.Player;
+import input.SharedInput;
+import physics.CollisionWorld;
+import physics.HeightField;
+import simulation.Simulation;
+import simulation.TransformSnapshot;
+import terrains.Terrain;
+import terrains.TerrainStreamer;
+
+/**
+ * Game logic of the test scene: the camera following the player, the player running over the streamed terrain, and the
+ * player colliding with the trees. Its snapshots hold the player's transform and the camera's.
+ */
+public class GameSimulation implements Simulation {
+    public static final int PLAYER = 0;
+    public static final int CAMERA = 1;
+    public static final int TRANSFORM_COUNT = 2;
+
+    private final Player PLAYER_ENTITY;
+    private final Camera CAMERA_ENTITY;
+    private final SharedInput INPUT;
+    private final CollisionWorld COLLISION_WORLD;
+    private final SceneryColliders SCENERY_COLLIDERS;
+    private final int PLAYER_BODY;
+    private final TerrainStreamer TERRAIN_STREAMER;
+    private final HeightField GROUND;
+
+    /**
+     * Create a new simulation of the test scene.
+     *
+     * @param player          Player, owned by the simulation from now on.
+     * @param camera          Camera following the player, owned by the simulation from now on.
+     * @param input           Input offered by the render thread.
+     * @param collisionWorld  Collision world holding the trees and the player.
+     * @param colliders       Trunk boxes of the trees, applied to the collision world before every step.
+     * @param playerBody      Handle of the player's capsule in the collision world.
+     * @param terrainStreamer Terrain streamer keeping the tiles around the player resident.
+     */
+    public GameSimulation(
+            Player player, Camera camera, SharedInput input, CollisionWorld collisionWorld,
+            SceneryColliders colliders, int playerBody, TerrainStreamer terrainStreamer
+    ) {
+        this.PLAYER_ENTITY = player;
+        this.CAMERA_ENTITY = camera;
+        this.INPUT = input;
+        this.COLLISION_WORLD = collisionWorld;
+        this.SCENERY_COLLIDERS = colliders;
+        this.PLAYER_BODY = playerBody;
+        this.TERRAIN_STREAMER = terrainStreamer;
+        this.GROUND = (x, z) -> {
+            Terrain terrain = terrainStreamer.terrainAt(x, z);
+            return terrain != null ? terrain.heightAt(x, z) : 0;
+        };
+    }
+
+    @Override
+    public void step(float deltaTime) {
+        INPUT.poll();
+
+        float x = PLAYER_ENTITY.position().getX();
+        float z = PLAYER_ENTITY.position().getZ();
+
+        CAMERA_ENTITY.move(INPUT);
+        PLAYER_ENTITY.move(INPUT, TERRAIN_STREAMER.terrainAt(x, z));
+
+        SCENERY_COLLIDERS.apply(COLLISION_WORLD);
+        COLLISION_WORLD.setPosition(
+                PLAYER_BODY, PLAYER_ENTITY.position().getX(), PLAYER_ENTITY.position().getY(),
+                PLAYER_ENTITY.position().getZ()
+        );
+        COLLISION_WORLD.step(GROUND);
+        PLAYER_ENTITY.collide(COLLISION_WORLD, PLAYER_BODY);
+    }
+
+    @Override
+    public void capture(TransformSnapshot snapshot) {
+        snapshot.set(PLAYER, PLAYER_ENTITY.position(), PLAYER_ENTITY.rotation(), PLAYER_ENTITY.scale());
+        snapshot.set(CAMERA, CAMERA_ENTITY.position(), CAMERA_ENTITY.rotation(), 1);
+    }
+}
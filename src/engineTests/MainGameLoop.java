@@ -1,30 +1,124 @@
 package engineTests;
 
+import OBJConverter.ModelData;
 import OBJConverter.OBJFileLoader;
 import entities.Camera;
 import entities.Entity;
+import entities.EntityStore;
 import entities.Light;
 import entities.Player;
+import input.InputSource;
+import input.LiveInput;
+import input.RecordingInput;
+import input.ReplayInput;
+import input.SharedInput;
+import jobs.JobSystem;
+import lighting.LightStore;
 import models.TexturedModel;
+import org.lwjgl.input.Mouse;
 import org.lwjgl.opengl.Display;
 import org.lwjgl.util.vector.Vector3f;
+import physics.CollisionWorld;
+import picking.PickResult;
+import picking.Picker;
 import renderEngine.DisplayManager;
+import renderEngine.ImpostorAtlas;
 import renderEngine.Loader;
 import renderEngine.MasterRenderer;
+import renderEngine.StaticBatcher;
+import scenes.Scene;
+import scenes.SceneWriter;
+import shaders.ProgramBinaryCache;
+import shaders.ShaderProgram;
+import simulation.SimulationLoop;
+import terrains.BlendMap;
+import terrains.HeightMap;
+import terrains.NoiseGenerator;
 import terrains.Terrain;
-import textures.ModelTexture;
+import terrains.TerrainStreamer;
+import terrains.TileSource;
+import terrains.VegetationField;
+import terrains.VegetationLayer;
 import textures.TerrainTexture;
 import textures.TerrainTexturePack;
+import toolbox.FrameTimeHistogram;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 /**
  * Main game loop for the game engine and entry point for testing the engine.
+ * <p>
+ * Run with {@code --record <file>} to record the session's input at a fixed time step, or with
+ * {@code --replay <file>} to replay a recording uncapped and print a per-frame timing histogram and the engine's
+ * statistics at the end. Run with {@code --heightmap <name>} to shape every terrain tile with a height map image from
+ * the resources folder, or with {@code --tiles <prefix>} to stream each tile from its own raw height map named
+ * {@code <prefix>_<gridX>_<gridZ>.r16}.
+ * Otherwise the terrain is generated procedurally, from the seed given with {@code --seed <number>} if any.
+ * <p>
+ * The trees are scattered at random, unless {@code --scene <file>} pages them in from a scene file around the camera.
+ * Run with {@code --save-scene <file>} to write the scattered trees to a scene file. Lamps of random colors, a
+ * quarter of them spot lights shining down, are scattered around the start; {@code --lights <count>} sets how many.
+ * Chunks of trees farther than {@code --impostor-distance <units>} from the camera are drawn as billboard impostors.
+ * Clicking with the left mouse button prints the tree or point of the ground under the cursor.
+ * <p>
+ * The player, the camera and collisions are simulated at a fixed step on a thread of their own, and every frame draws
+ * them interpolated between the last two steps. Run with {@code --single-threaded} to run the steps on the render
+ * thread instead, for debugging; recording and replaying always do, so every frame is exactly one step.
  */
 public class MainGameLoop {
+    private static final float FIXED_TIMESTEP = 1f / 60;
+    private static final float MAX_TERRAIN_HEIGHT = 40;
+    private static final int TERRAIN_VERTEX_COUNT = 129;
+    private static final long DEFAULT_TERRAIN_SEED = 676452;
+    private static final int TERRAIN_LOAD_RADIUS = 2;
+    private static final int TERRAIN_EVICT_RADIUS = 3;
+    private static final long TERRAIN_UPLOAD_BUDGET_NANOS = 2_000_000;
+    private static final float STATIC_CHUNK_SIZE = 200;
+    private static final float TRUNK_WIDTH_FRACTION = 0.1f;
+    private static final float PLAYER_RADIUS = 1.5f;
+    private static final float PLAYER_HEIGHT = 4;
+    private static final float SCENE_REGION_SIZE = 100;
+    private static final float SCENE_LOAD_DISTANCE = 600;
+    private static final float SCENE_EVICT_DISTANCE = 800;
+    private static final int DEFAULT_LAMP_COUNT = 256;
+    private static final float LAMP_SPREAD = 400;
+    private static final float LAMP_HEIGHT = 4;
+    private static final float DEFAULT_IMPOSTOR_DISTANCE = 250;
+    private static final int IMPOSTOR_VIEWS = 16;
+    private static final int IMPOSTOR_RESOLUTION = 128;
+    private static final float PICK_CELL_SIZE = 100;
+    private static final float PICK_DISTANCE = 1000;
+    private static final String SHADER_CACHE_DIRECTORY = "cache/shaders";
+
     public static void main(String[] args) {
+        String recordFile = null;
+        String replayFile = null;
+        String heightMapFile = null;
+        String tilePrefix = null;
+        String sceneFile = null;
+        String saveSceneFile = null;
+        long terrainSeed = DEFAULT_TERRAIN_SEED;
+        int lampCount = DEFAULT_LAMP_COUNT;
+        float impostorDistance = DEFAULT_IMPOSTOR_DISTANCE;
+
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--record")) recordFile = args[++i];
+            else if (args[i].equals("--replay")) replayFile = args[++i];
+            else if (args[i].equals("--heightmap")) heightMapFile = args[++i];
+            else if (args[i].equals("--tiles")) tilePrefix = args[++i];
+            else if (args[i].equals("--seed")) terrainSeed = Long.parseLong(args[++i]);
+            else if (args[i].equals("--scene")) sceneFile = args[++i];
+            else if (args[i].equals("--save-scene")) saveSceneFile = args[++i];
+            else if (args[i].equals("--lights")) lampCount = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--impostor-distance")) impostorDistance = Float.parseFloat(args[++i]);
+        }
+
+        boolean singleThreaded = List.of(args).contains("--single-threaded");
+
         DisplayManager.createDisplay();
         Loader loader = new Loader();
 
@@ -37,35 +131,42 @@ public class MainGameLoop {
         TerrainTexturePack texturePack = new TerrainTexturePack(backgroundTexture, rTexture, gTexture, bTexture);
         TerrainTexture blendMap = new TerrainTexture(loader.loadTexture("blendMap"));
 
-        // Model data.
+        // Model data. The trees keep their OBJ data for the radius of their bounding spheres.
+        ModelData treeData = OBJFileLoader.loadOBJ("tree");
         TexturedModel tree = new TexturedModel(
-                OBJFileLoader.loadOBJToVAO("tree", loader),
-                new ModelTexture(loader.loadTexture("tree"))
+                loader.loadToVAO(
+                        treeData.vertices(), treeData.textureCoordinates(), treeData.normals(), treeData.indices()
+                ),
+                loader.loadModelTexture("tree")
         );
 
         TexturedModel grass = new TexturedModel(
                 OBJFileLoader.loadOBJToVAO("grassModel", loader),
-                new ModelTexture(loader.loadTexture("grassTexture"))
+                loader.loadModelTexture("grassTexture")
         );
 
         TexturedModel flower = new TexturedModel(
                 OBJFileLoader.loadOBJToVAO("grassModel", loader),
-                new ModelTexture(loader.loadTexture("flower"))
+                loader.loadModelTexture("flower")
         );
 
         TexturedModel fern = new TexturedModel(
                 OBJFileLoader.loadOBJToVAO("fern", loader),
-                new ModelTexture(loader.loadTexture("fern"))
+                loader.loadModelTexture("fern")
         );
 
+        ModelData lowPolyTreeData = OBJFileLoader.loadOBJ("lowPolyTree");
         TexturedModel lowPolyTree = new TexturedModel(
-                OBJFileLoader.loadOBJToVAO("lowPolyTree", loader),
-                new ModelTexture(loader.loadTexture("lowPolyTree"))
+                loader.loadToVAO(
+                        lowPolyTreeData.vertices(), lowPolyTreeData.textureCoordinates(), lowPolyTreeData.normals(),
+                        lowPolyTreeData.indices()
+                ),
+                loader.loadModelTexture("lowPolyTree")
         );
 
         TexturedModel stanfordBunny = new TexturedModel(
                 OBJFileLoader.loadOBJToVAO("bunny", loader),
-                new ModelTexture(loader.loadTexture("white"))
+                loader.loadModelTexture("white")
         );
 
         grass.texture().setHasTransparency(true);
@@ -76,72 +177,260 @@ public class MainGameLoop {
 
         fern.texture().setHasTransparency(true);
 
-        // Entity spawning.
+        // Entity spawning, unless the scenery comes from a scene file. The scenery is kept in an entity store; the list
+        // holds the entity facades of the spawned trees.
+        EntityStore scenery = new EntityStore(300);
         List<Entity> entities = new ArrayList<>();
         Random random = new Random(676452);
 
-        for (int i = 0; i < 400; i++) {
-            if (i % 7 == 0) {
-                entities.add(new Entity(
-                        grass,
-                        new Vector3f(random.nextFloat() * 400 - 200, 0, random.nextFloat() * -400),
-                        new Vector3f(), 1.8f
-                ));
-
-                entities.add(new Entity(
-                        flower,
-                        new Vector3f(random.nextFloat() * 400 - 200, 0, random.nextFloat() * -400),
-                        new Vector3f(), 2.3f
-                ));
-            }
+        if (sceneFile == null) {
+            for (int i = 0; i < 400; i++) {
+                if (i % 3 == 0) {
+                    float x = random.nextFloat() * 800 - 400;
+                    float z = random.nextFloat() * -600;
+                    float rotation = random.nextFloat() * 360;
+                    float scale = random.nextFloat() * 0.1f + 0.6f;
+                    entities.add(scenery.entity(scenery.create(
+                            lowPolyTree, lowPolyTreeData.furthestPoint(), x, 0, z, 0, rotation, 0, scale,
+                            EntityStore.STATIC
+                    )));
 
-            if (i % 3 == 0) {
-                entities.add(new Entity(
-                        fern,
-                        new Vector3f(random.nextFloat() * 400 - 200, 0, random.nextFloat() * -400),
-                        new Vector3f(0, random.nextFloat() * 360, 0), 0.9f
-                ));
-
-                entities.add(new Entity(
-                        lowPolyTree,
-                        new Vector3f(random.nextFloat() * 800 - 400, 0, random.nextFloat() * -600),
-                        new Vector3f(0, random.nextFloat() * 360, 0), random.nextFloat() * 0.1f + 0.6f
-                ));
-
-                entities.add(new Entity(
-                        tree,
-                        new Vector3f(random.nextFloat() * 800 - 400, 0, random.nextFloat() * -600),
-                        new Vector3f(), random.nextFloat() + 4
-                ));
+                    x = random.nextFloat() * 800 - 400;
+                    z = random.nextFloat() * -600;
+                    scale = random.nextFloat() + 4;
+                    entities.add(scenery.entity(scenery.create(
+                            tree, treeData.furthestPoint(), x, 0, z, 0, 0, 0, scale, EntityStore.STATIC
+                    )));
+                }
             }
         }
 
+        // Ground cover, scattered from the blend map: grass and ferns on the background texture, flowers on green.
+        VegetationField vegetation = new VegetationField(
+                List.of(
+                        new VegetationLayer(grass, BlendMap.BACKGROUND, 0.4f, 1.4f, 2.2f, 150),
+                        new VegetationLayer(flower, BlendMap.GREEN, 0.3f, 1.8f, 2.6f, 150),
+                        new VegetationLayer(fern, BlendMap.BACKGROUND, 0.01f, 0.7f, 1.1f, 250)
+                ),
+                BlendMap.loadImage("blendMap"), terrainSeed
+        );
+
         Player player = new Player(stanfordBunny, new Vector3f(100, 0, -50), new Vector3f(), 1);
 
         Light light = new Light(new Vector3f(20000, 40000, 20000), new Vector3f(1, 1, 1));
 
-        Terrain terrain = new Terrain(0, 0, loader, texturePack, blendMap);
-        Terrain terrain2 = new Terrain(1, 0, loader, texturePack, blendMap);
+        TileSource tileSource;
+
+        if (tilePrefix != null) {
+            tileSource = TileSource.rawFiles(tilePrefix, MAX_TERRAIN_HEIGHT);
+        }
+
+        else if (heightMapFile != null) {
+            HeightMap heightMap = HeightMap.loadImage(heightMapFile, MAX_TERRAIN_HEIGHT);
+            tileSource = (gridX, gridZ) -> heightMap;
+        }
+
+        else {
+            tileSource = new NoiseGenerator(terrainSeed, TERRAIN_VERTEX_COUNT, MAX_TERRAIN_HEIGHT);
+        }
+
+        TerrainStreamer terrainStreamer = new TerrainStreamer(
+                tileSource, loader, texturePack, blendMap, TERRAIN_LOAD_RADIUS, TERRAIN_EVICT_RADIUS,
+                TERRAIN_UPLOAD_BUDGET_NANOS, Math.max(1, Runtime.getRuntime().availableProcessors() - 1)
+        );
+
+        terrainStreamer.loadAround(player.position().getX(), player.position().getZ());
+        for (Terrain terrain : terrainStreamer.terrains()) terrain.snapToGround(entities);
+
+        // Every tree blocks the player with a box around its trunk. Scattered trees get theirs once, while paged trees
+        // gain and lose theirs as their regions are paged in and out.
+        SceneryColliders sceneryColliders = new SceneryColliders(TRUNK_WIDTH_FRACTION);
+        for (int i = 0; i < scenery.size(); i++) sceneryColliders.add(scenery, scenery.id(i));
+
+        // Scene files hold trees already standing on the terrain, so they are paged in without snapping.
+        Scene scene = null;
+        if (sceneFile != null) {
+            Map<String, TexturedModel> sceneModels = Map.of("tree", tree, "lowPolyTree", lowPolyTree);
+            scene = Scene.open(
+                    new File(sceneFile), scenery, (model, texture) -> sceneModels.get(model), SCENE_LOAD_DISTANCE,
+                    SCENE_EVICT_DISTANCE
+            );
+            scene.setListener(sceneryColliders);
+            scene.update(player.position().getX(), player.position().getZ());
+        }
+
+        if (saveSceneFile != null) {
+            SceneWriter sceneWriter = new SceneWriter(SCENE_REGION_SIZE);
+            int treeIndex = sceneWriter.addModel("tree", "tree", treeData.furthestPoint());
+            int lowPolyTreeIndex = sceneWriter.addModel("lowPolyTree", "lowPolyTree", lowPolyTreeData.furthestPoint());
+            sceneWriter.addEntities(scenery, model -> model == tree ? treeIndex : lowPolyTreeIndex);
+            sceneWriter.write(new File(saveSceneFile));
+        }
+
+        // The player is a capsule in the collision world, beside the trunk boxes the simulation adds from the queue.
+        CollisionWorld collisionWorld = new CollisionWorld(scenery.size() + 1);
+        int playerBody = collisionWorld.addCapsule(
+                player.position().getX(), player.position().getY(), player.position().getZ(), PLAYER_RADIUS,
+                PLAYER_HEIGHT
+        );
+
+        // Lamps standing a little above the ground around the start, every fourth one a spot light shining down.
+        LightStore lamps = new LightStore(lampCount);
+        Random lampRandom = new Random(terrainSeed);
+        for (int i = 0; i < lampCount; i++) {
+            float x = player.position().getX() + (lampRandom.nextFloat() * 2 - 1) * LAMP_SPREAD;
+            float z = player.position().getZ() + (lampRandom.nextFloat() * 2 - 1) * LAMP_SPREAD;
+            Terrain ground = Terrain.at(terrainStreamer.terrains(), x, z);
+            float y = (ground != null ? ground.heightAt(x, z) : 0) + LAMP_HEIGHT;
+            float red = 0.5f + lampRandom.nextFloat() * 0.5f;
+            float green = 0.3f + lampRandom.nextFloat() * 0.5f;
+            float blue = lampRandom.nextFloat() * 0.6f;
+
+            if (i % 4 == 0) lamps.addSpot(x, y + LAMP_HEIGHT, z, red, green, blue, 30, 0, -1, 0, 20, 35);
+            else lamps.addPoint(x, y, z, red, green, blue, 15 + lampRandom.nextFloat() * 25);
+        }
 
         Camera camera = new Camera(player);
-        MasterRenderer renderer = new MasterRenderer();
 
-        while (!Display.isCloseRequested()) {
-            camera.move();
-            player.move();
+        ProgramBinaryCache shaderCache = new ProgramBinaryCache(new File(SHADER_CACHE_DIRECTORY));
+        ShaderProgram.setBinaryCache(shaderCache);
+
+        JobSystem renderJobs = new JobSystem(Math.max(0, Runtime.getRuntime().availableProcessors() - 2));
+        MasterRenderer renderer = new MasterRenderer(loader, renderJobs);
+
+        // The scenery never moves, so it is merged into one mesh per texture and chunk, culled chunk by chunk, and
+        // chunks far enough away are drawn as impostors rendered from the tree models once, here.
+        Map<TexturedModel, ModelData> sceneryMeshes = Map.of(tree, treeData, lowPolyTree, lowPolyTreeData);
+        ImpostorAtlas impostorAtlas = new ImpostorAtlas(sceneryMeshes, light, IMPOSTOR_VIEWS, IMPOSTOR_RESOLUTION);
+        StaticBatcher staticBatcher = new StaticBatcher(loader, STATIC_CHUNK_SIZE, impostorAtlas, impostorDistance);
+        float[] frustumPlanes = new float[24];
+        if (replayFile != null) shaderCache.print(System.out);
+
+        // Clicked trees are found through their meshes, and the ground under them is marched at half the spacing of
+        // its vertices.
+        Picker picker = new Picker(
+                scenery, sceneryMeshes, PICK_CELL_SIZE, (x, z) -> {
+                    Terrain terrain = terrainStreamer.terrainAt(x, z);
+                    return terrain != null ? terrain.heightAt(x, z) : 0;
+                },
+                MAX_TERRAIN_HEIGHT, Terrain.SIZE / (TERRAIN_VERTEX_COUNT - 1) / 2
+        );
+        PickResult pickResult = new PickResult();
+        Vector3f rayOrigin = new Vector3f();
+        Vector3f rayDirection = new Vector3f();
+        boolean wasClicking = false;
+
+        InputSource input;
+        FrameTimeHistogram histogram = null;
+
+        if (replayFile != null) {
+            input = new ReplayInput(replayFile);
+            histogram = new FrameTimeHistogram(0.25f, 200);
+            DisplayManager.setFpsCap(0);
+        }
+
+        else if (recordFile != null) {
+            input = new RecordingInput(new LiveInput(), FIXED_TIMESTEP, recordFile);
+            DisplayManager.setFpsCap(Math.round(1 / FIXED_TIMESTEP));
+        }
+
+        else {
+            input = new LiveInput();
+        }
+
+        // From here on the player and the camera belong to the simulation; the render thread draws copies of them
+        // placed from the snapshots.
+        SharedInput sharedInput = new SharedInput(FIXED_TIMESTEP);
+        SimulationLoop simulationLoop = new SimulationLoop(
+                new GameSimulation(
+                        player, camera, sharedInput, collisionWorld, sceneryColliders, playerBody, terrainStreamer
+                ),
+                FIXED_TIMESTEP, GameSimulation.TRANSFORM_COUNT,
+                !singleThreaded && recordFile == null && replayFile == null
+        );
+
+        Entity playerView = new Entity(stanfordBunny, new Vector3f(player.position()), new Vector3f(), 1);
+        Camera cameraView = new Camera();
+        Vector3f interpolatedPosition = new Vector3f();
+        Vector3f interpolatedRotation = new Vector3f();
+
+        simulationLoop.start();
+        long lastFrameStart = System.nanoTime();
+
+        while (!Display.isCloseRequested() && input.poll()) {
+            sharedInput.offer(input);
+            simulationLoop.update(input.deltaTime());
+
+            float playerScale = simulationLoop.interpolate(
+                    GameSimulation.PLAYER, interpolatedPosition, interpolatedRotation
+            );
+            playerView.setPosition(interpolatedPosition);
+            playerView.setRotation(interpolatedRotation);
+            playerView.setScale(playerScale);
+            simulationLoop.interpolate(GameSimulation.CAMERA, cameraView.position(), cameraView.rotation());
+
+            terrainStreamer.update(interpolatedPosition.x, interpolatedPosition.z);
+            if (scene != null) scene.update(cameraView.position().x, cameraView.position().z);
+
+            renderer.processEntity(playerView);
 
-            renderer.processEntity(player);
+            for (Terrain terrain : terrainStreamer.terrains()) renderer.processTerrain(terrain);
+            renderer.processVegetation(vegetation);
+            renderer.processLights(lamps);
 
-            renderer.processTerrain(terrain);
-            renderer.processTerrain(terrain2);
+            staticBatcher.update(scenery, sceneryMeshes);
+            renderer.extractFrustumPlanes(cameraView, frustumPlanes);
+            staticBatcher.processVisible(renderer, frustumPlanes, cameraView.position());
+            renderer.render(light, cameraView);
 
-            for (Entity entity : entities) renderer.processEntity(entity);
-            renderer.render(light, camera);
+            boolean clicking = input.isMouseButtonDown(0);
+            if (clicking && !wasClicking) {
+                picker.update();
+                renderer.mouseRay(cameraView, Mouse.getX(), Mouse.getY(), rayOrigin, rayDirection);
+
+                if (picker.pick(
+                        rayOrigin.x, rayOrigin.y, rayOrigin.z, rayDirection.x, rayDirection.y, rayDirection.z,
+                        PICK_DISTANCE, pickResult
+                )) {
+                    System.out.printf(
+                            "Picked %s at (%.1f, %.1f, %.1f), %.1f units away%n",
+                            pickResult.kind() == PickResult.ENTITY ? "tree " + pickResult.entityId() : "the ground",
+                            pickResult.x(), pickResult.y(), pickResult.z(), pickResult.distance()
+                    );
+                }
+            }
+            wasClicking = clicking;
 
             DisplayManager.updateDisplay();
+
+            long frameStart = System.nanoTime();
+            if (histogram != null) histogram.record(frameStart - lastFrameStart);
+            lastFrameStart = frameStart;
         }
 
+        simulationLoop.stop();
+        if (input instanceof RecordingInput recordingInput) recordingInput.close();
+        if (histogram != null) {
+            histogram.print(System.out);
+            System.out.printf("Final resolution scale: %.2f%n", renderer.resolutionScale());
+            System.out.printf(
+                    "Uniform uploads: %d issued, %d skipped%n",
+                    ShaderProgram.uniformsIssued(), ShaderProgram.uniformsSkipped()
+            );
+            terrainStreamer.print(System.out);
+            collisionWorld.print(System.out);
+            simulationLoop.print(System.out);
+            renderer.lightClusters().print(System.out);
+            if (scene != null) scene.print(System.out);
+        }
+
+        if (scene != null) scene.close();
+
+        terrainStreamer.cleanUp();
+        staticBatcher.cleanUp();
+        impostorAtlas.cleanUp();
         renderer.cleanUp();
+        renderJobs.close();
         loader.cleanUp();
         DisplayManager.closeDisplay();
     }
@@ -0,0 +1,95 @@
+package engineTests;
+
+import entities.EntityStore;
+import physics.CollisionWorld;
+import scenes.SceneListener;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Collision boxes around the trunks of the trees, kept in step with the scenery as a scene pages it in and out. The
+ * scenery is paged on the render thread while the collision world belongs to the simulation, so changes are queued
+ * here and applied by the simulation before its next step.
+ */
+public class SceneryColliders implements SceneListener {
+    private final float TRUNK_WIDTH_FRACTION;
+    private final ConcurrentLinkedQueue<Change> CHANGES = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, Integer> BODIES = new HashMap<>();
+
+    /**
+     * Create a new set of trunk colliders.
+     *
+     * @param trunkWidthFraction Half the width of a trunk box as a fraction of the tree's bounding radius.
+     */
+    public SceneryColliders(float trunkWidthFraction) {
+        this.TRUNK_WIDTH_FRACTION = trunkWidthFraction;
+    }
+
+    /**
+     * Queue a box around the trunk of a tree, as high as the tree's bounding radius.
+     *
+     * @param store Entity store holding the tree.
+     * @param id    Id of the tree.
+     */
+    public void add(EntityStore store, int id) {
+        int index = store.index(id);
+        float halfWidth = store.radii()[index] * TRUNK_WIDTH_FRACTION;
+        float x = store.positionsX()[index];
+        float y = store.positionsY()[index];
+        float z = store.positionsZ()[index];
+        float height = store.radii()[index];
+
+        CHANGES.add(new Change(id, new float[] {
+                x - halfWidth, y, z - halfWidth, x + halfWidth, y + height, z + halfWidth
+        }));
+    }
+
+    /**
+     * Queue the removal of the box around the trunk of a tree.
+     *
+     * @param id Id of the tree.
+     */
+    public void remove(int id) {
+        CHANGES.add(new Change(id, null));
+    }
+
+    @Override
+    public void regionLoaded(EntityStore store, int[] ids) {
+        for (int id : ids) add(store, id);
+    }
+
+    @Override
+    public void regionEvicted(EntityStore store, int[] ids) {
+        for (int id : ids) remove(id);
+    }
+
+    /**
+     * Add and remove the queued boxes, in the order they were queued. Simulation thread only.
+     *
+     * @param world Collision world holding the boxes.
+     */
+    public void apply(CollisionWorld world) {
+        Change change;
+
+        while ((change = CHANGES.poll()) != null) {
+            if (change.box() == null) {
+                Integer body = BODIES.remove(change.id());
+                if (body != null) world.remove(body);
+                continue;
+            }
+
+            float[] box = change.box();
+            BODIES.put(change.id(), world.addBox(box[0], box[1], box[2], box[3], box[4], box[5]));
+        }
+    }
+
+    /**
+     * Queued change to the box of a tree.
+     *
+     * @param id  Id of the tree.
+     * @param box Smallest and largest X, Y and Z of the box to add, or null to remove it.
+     */
+    private record Change(int id, float[] box) { }
+}
@@ -1,6 +1,6 @@
 package entities;
 
-import org.lwjgl.input.Mouse;
+import input.InputSource;
 import org.lwjgl.util.vector.Vector2f;
 import org.lwjgl.util.vector.Vector3f;
 
@@ -24,33 +24,47 @@ public class Camera {
         this.PLAYER = player;
     }
 
+    /**
+     * Create a new camera that follows no player and is only ever placed by its owner, such as the render thread's
+     * copy of a camera simulated on another thread. It must not be moved with {@link #move(InputSource)}.
+     */
+    public Camera() {
+        this(null);
+    }
+
     /**
      * Move the camera in all three axes to follow the player from a third-person perspective.
+     *
+     * @param input Input source for the current frame.
      */
-    public void move() {
-        calculateZoom();
-        calculateAngleAroundPlayer();
-        calculatePitch();
+    public void move(InputSource input) {
+        calculateZoom(input);
+        calculateAngleAroundPlayer(input);
+        calculatePitch(input);
 
         calculatePosition();
-        rotation().y = 180 - (PLAYER.rotation().y + angleAroundPlayer);
+        rotation().y = 180 - (PLAYER.rotation().getY() + angleAroundPlayer);
     }
 
     /**
      * Calculate and change the distance of the camera from the player based on the mouse wheel scrolling.
+     *
+     * @param input Input source for the current frame.
      */
-    private void calculateZoom() {
-        float zoomLevel = Mouse.getDWheel() * 0.1f;
+    private void calculateZoom(InputSource input) {
+        float zoomLevel = input.mouseDWheel() * 0.1f;
         distanceFromPlayer -= zoomLevel;
     }
 
     /**
      * Calculate and change the angle of the camera's yaw around the player based on the mouse movement in
      * the horizontal direction.
+     *
+     * @param input Input source for the current frame.
      */
-    private void calculateAngleAroundPlayer() {
-        if (Mouse.isButtonDown(1)) {
-            float angleDelta = Mouse.getDX() * 0.3f;
+    private void calculateAngleAroundPlayer(InputSource input) {
+        if (input.isMouseButtonDown(1)) {
+            float angleDelta = input.mouseDX() * 0.3f;
             angleAroundPlayer -= angleDelta;
         }
     }
@@ -58,10 +72,12 @@ public class Camera {
     /**
      * Calculate and change the angle of the camera's pitch around the player based on the mouse movement in
      * the vertical direction.
+     *
+     * @param input Input source for the current frame.
      */
-    private void calculatePitch() {
-        if (Mouse.isButtonDown(1)) {
-            float pitchDelta = Mouse.getDY() * 0.1f;
+    private void calculatePitch(InputSource input) {
+        if (input.isMouseButtonDown(1)) {
+            float pitchDelta = input.mouseDY() * 0.1f;
             rotation().x -= pitchDelta;
         }
     }
@@ -75,15 +91,15 @@ public class Camera {
                 (float) (distanceFromPlayer * Math.sin(Math.toRadians(rotation().x)))
         );
 
-        float theta = PLAYER.rotation().y + angleAroundPlayer;
+        float theta = PLAYER.rotation().getY() + angleAroundPlayer;
         Vector2f offset = new Vector2f(
                 (float) (distance.x * Math.sin(Math.toRadians(theta))),
                 (float) (distance.x * Math.cos(Math.toRadians(theta)))
         );
 
-        POSITION.x = PLAYER.position().x - offset.x;
-        POSITION.y = PLAYER.position().y + distance.y;
-        POSITION.z = PLAYER.position().z - offset.y;
+        POSITION.x = PLAYER.position().getX() - offset.x;
+        POSITION.y = PLAYER.position().getY() + distance.y;
+        POSITION.z = PLAYER.position().getZ() - offset.y;
     }
 
     public Vector3f position() {
@@ -1,17 +1,48 @@
 package entities;
 
 import models.TexturedModel;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.ReadableVector3f;
+import org.lwjgl.util.vector.Vector;
 import org.lwjgl.util.vector.Vector3f;
+import toolbox.EngineMath;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Entity class containing a textured model, positional and rotational data. Can be rendered to the display.
+ * <p>
+ * The position and rotation are only exposed read-only; they change through {@link #displace}, {@link #rotate} and
+ * the setters, which mark the cached world matrix dirty. The matrix is rebuilt lazily the next time it is requested,
+ * so an entity that never moves never recomputes it. An entity may be attached to a parent, in which case its
+ * transform is relative to the parent and any change to the parent also dirties the whole subtree.
+ * <p>
+ * An entity may also be a facade over an entity kept in an {@link EntityStore}, in which case every call reads or
+ * writes the store's arrays. Such entities cannot be part of a hierarchy, and their {@link #position()} and
+ * {@link #rotation()} are live read-only views of the store's arrays, one pair per entity, which throw if cast back to
+ * a vector and modified.
  */
 public class Entity {
     private TexturedModel texturedModel;
-    private Vector3f position;
-    private Vector3f rotation;
+    private final Vector3f POSITION = new Vector3f();
+    private final Vector3f ROTATION = new Vector3f();
     private float scale;
 
+    private final Matrix4f LOCAL_MATRIX;
+    private final Matrix4f WORLD_MATRIX = new Matrix4f();
+    private boolean dirty = true;
+
+    private final EntityStore STORE;
+    private final int ID;
+    private final StoreView POSITION_VIEW;
+    private final StoreView ROTATION_VIEW;
+
+    private Entity parent = null;
+    private List<Entity> children = null;
+
     /**
      * Create a new entity that can be rendered to the display.
      *
@@ -22,9 +53,28 @@ public class Entity {
      */
     public Entity(TexturedModel texturedModel, Vector3f position, Vector3f rotation, float scale) {
         this.texturedModel = texturedModel;
-        this.position = position;
-        this.rotation = rotation;
+        this.POSITION.set(position);
+        this.ROTATION.set(rotation);
         this.scale = scale;
+        this.LOCAL_MATRIX = new Matrix4f();
+        this.STORE = null;
+        this.ID = -1;
+        this.POSITION_VIEW = null;
+        this.ROTATION_VIEW = null;
+    }
+
+    /**
+     * Create a facade over an entity kept in an entity store.
+     *
+     * @param store Store holding the entity's components.
+     * @param id    Id of the entity in the store.
+     */
+    Entity(EntityStore store, int id) {
+        this.LOCAL_MATRIX = null;
+        this.STORE = store;
+        this.ID = id;
+        this.POSITION_VIEW = new StoreView(store, id, false);
+        this.ROTATION_VIEW = new StoreView(store, id, true);
     }
 
     /**
@@ -33,7 +83,28 @@ public class Entity {
      * @param displacement Displacement by which the entity is to be moved.
      */
     public void displace(Vector3f displacement) {
-        Vector3f.add(this.position, displacement, this.position);
+        displace(displacement.x, displacement.y, displacement.z);
+    }
+
+    /**
+     * Displace the entity by a new displacement.
+     *
+     * @param dx Displacement along the X axis.
+     * @param dy Displacement along the Y axis.
+     * @param dz Displacement along the Z axis.
+     */
+    public void displace(float dx, float dy, float dz) {
+        if (STORE != null) {
+            STORE.displace(ID, dx, dy, dz);
+            return;
+        }
+
+        if (dx == 0 && dy == 0 && dz == 0) return;
+
+        POSITION.x += dx;
+        POSITION.y += dy;
+        POSITION.z += dz;
+        markDirty();
     }
 
     /**
@@ -42,38 +113,244 @@ public class Entity {
      * @param angularRotation Rotation by which the entity is to be rotated.
      */
     public void rotate(Vector3f angularRotation) {
-        Vector3f.add(this.rotation, angularRotation, this.rotation);
+        rotate(angularRotation.x, angularRotation.y, angularRotation.z);
+    }
+
+    /**
+     * Rotate the entity by a new angular displacement.
+     *
+     * @param dx Rotation around the X axis in degrees.
+     * @param dy Rotation around the Y axis in degrees.
+     * @param dz Rotation around the Z axis in degrees.
+     */
+    public void rotate(float dx, float dy, float dz) {
+        if (STORE != null) {
+            STORE.rotate(ID, dx, dy, dz);
+            return;
+        }
+
+        if (dx == 0 && dy == 0 && dz == 0) return;
+
+        ROTATION.x += dx;
+        ROTATION.y += dy;
+        ROTATION.z += dz;
+        markDirty();
+    }
+
+    /**
+     * Get the world matrix of the entity, rebuilding it first if the entity or one of its ancestors changed since
+     * the last call. The returned matrix is owned by the entity and must not be modified.
+     *
+     * @return World matrix of the entity.
+     */
+    public Matrix4f worldMatrix() {
+        if (STORE != null) return STORE.worldMatrix(ID, WORLD_MATRIX);
+
+        if (dirty) {
+            EngineMath.createTransformationMatrix(POSITION, ROTATION, scale, LOCAL_MATRIX);
+
+            if (parent != null) Matrix4f.mul(parent.worldMatrix(), LOCAL_MATRIX, WORLD_MATRIX);
+            else WORLD_MATRIX.load(LOCAL_MATRIX);
+
+            dirty = false;
+        }
+
+        return WORLD_MATRIX;
+    }
+
+    /**
+     * Attach the entity to a parent, making its transform relative to the parent. Detaches it from any previous
+     * parent first.
+     *
+     * @param parent New parent, or null to detach the entity.
+     */
+    public void setParent(Entity parent) {
+        if (this.parent == parent) return;
+
+        if (STORE != null || (parent != null && parent.STORE != null)) {
+            throw new IllegalStateException("Entities kept in an entity store cannot be part of a hierarchy.");
+        }
+
+        for (Entity ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+            if (ancestor == this) throw new IllegalArgumentException("An entity cannot be its own ancestor.");
+        }
+
+        if (this.parent != null) this.parent.children.remove(this);
+
+        this.parent = parent;
+
+        if (parent != null) {
+            if (parent.children == null) parent.children = new ArrayList<>();
+            parent.children.add(this);
+        }
+
+        markDirty();
+    }
+
+    public Entity parent() {
+        return parent;
+    }
+
+    public List<Entity> children() {
+        return children == null ? Collections.emptyList() : Collections.unmodifiableList(children);
+    }
+
+    /**
+     * Check if the world matrix has to be rebuilt before it can be used.
+     *
+     * @return True if the world matrix is out of date, else false.
+     */
+    public boolean isDirty() {
+        return STORE != null ? STORE.isDirty(ID) : dirty;
+    }
+
+    /**
+     * Mark the world matrix of the entity and all its descendants out of date. A dirty entity always has dirty
+     * descendants, so the walk stops at entities that are already dirty.
+     */
+    private void markDirty() {
+        if (dirty) return;
+
+        dirty = true;
+
+        if (children != null) {
+            for (Entity child : children) child.markDirty();
+        }
     }
 
     public TexturedModel texturedModel() {
-        return texturedModel;
+        return STORE != null ? STORE.texturedModel(ID) : texturedModel;
     }
 
     public void setTexturedModel(TexturedModel texturedModel) {
-        this.texturedModel = texturedModel;
+        if (STORE != null) STORE.setTexturedModel(ID, texturedModel);
+        else this.texturedModel = texturedModel;
     }
 
-    public Vector3f position() {
-        return position;
+    public ReadableVector3f position() {
+        return STORE != null ? POSITION_VIEW : POSITION;
     }
 
-    public void setPosition(Vector3f position) {
-        this.position = position;
+    public void setPosition(ReadableVector3f position) {
+        setPosition(position.getX(), position.getY(), position.getZ());
     }
 
-    public Vector3f rotation() {
-        return rotation;
+    public void setPosition(float x, float y, float z) {
+        if (STORE != null) {
+            STORE.setPosition(ID, x, y, z);
+            return;
+        }
+
+        POSITION.set(x, y, z);
+        markDirty();
     }
 
-    public void setRotation(Vector3f rotation) {
-        this.rotation = rotation;
+    public ReadableVector3f rotation() {
+        return STORE != null ? ROTATION_VIEW : ROTATION;
+    }
+
+    public void setRotation(ReadableVector3f rotation) {
+        setRotation(rotation.getX(), rotation.getY(), rotation.getZ());
+    }
+
+    public void setRotation(float x, float y, float z) {
+        if (STORE != null) {
+            STORE.setRotation(ID, x, y, z);
+            return;
+        }
+
+        ROTATION.set(x, y, z);
+        markDirty();
     }
 
     public float scale() {
-        return scale;
+        return STORE != null ? STORE.scales()[STORE.index(ID)] : scale;
     }
 
     public void setScale(float scale) {
+        if (STORE != null) {
+            STORE.setScale(ID, scale);
+            return;
+        }
+
         this.scale = scale;
+        markDirty();
+    }
+
+    /**
+     * Live read-only view of the position or rotation of an entity kept in an entity store. The store's arrays are
+     * looked up on every read, since they move when the store grows and the entity's slot moves when others are
+     * removed.
+     */
+    private static final class StoreView extends Vector implements ReadableVector3f {
+        private final EntityStore STORE;
+        private final int ID;
+        private final boolean ROTATION;
+
+        private StoreView(EntityStore store, int id, boolean rotation) {
+            this.STORE = store;
+            this.ID = id;
+            this.ROTATION = rotation;
+        }
+
+        @Override
+        public float getX() {
+            int index = STORE.index(ID);
+            return ROTATION ? STORE.rotationsX()[index] : STORE.positionsX()[index];
+        }
+
+        @Override
+        public float getY() {
+            int index = STORE.index(ID);
+            return ROTATION ? STORE.rotationsY()[index] : STORE.positionsY()[index];
+        }
+
+        @Override
+        public float getZ() {
+            int index = STORE.index(ID);
+            return ROTATION ? STORE.rotationsZ()[index] : STORE.positionsZ()[index];
+        }
+
+        @Override
+        public float lengthSquared() {
+            float x = getX();
+            float y = getY();
+            float z = getZ();
+            return x * x + y * y + z * z;
+        }
+
+        @Override
+        public Vector store(FloatBuffer buffer) {
+            buffer.put(getX());
+            buffer.put(getY());
+            buffer.put(getZ());
+            return this;
+        }
+
+        @Override
+        public Vector load(FloatBuffer buffer) {
+            throw readOnly();
+        }
+
+        @Override
+        public Vector negate() {
+            throw readOnly();
+        }
+
+        @Override
+        public Vector scale(float scale) {
+            throw readOnly();
+        }
+
+        @Override
+        public String toString() {
+            return "StoreView[" + getX() + ", " + getY() + ", " + getZ() + "]";
+        }
+
+        private static UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException(
+                    "The transform of an entity kept in an entity store changes through the entity, not its vectors."
+            );
+        }
     }
 }
@@ -0,0 +1,36 @@
+package entities;
+
+/**
+ * Per-entity game logic run by {@link EntityStore#update}, such as AI or animation. Ranges of entities are updated in
+ * parallel, so every update is split into two phases separated by a barrier:
+ * <ul>
+ *     <li>In the read phase, an entity may read the components of any entity in the store, but may only write to
+ *     state the behaviour keeps for that entity's own index, such as where it decided to go.</li>
+ *     <li>In the write phase, an entity applies what it decided to its own components, writing straight into the
+ *     component arrays at its own index and reading nothing of other entities. The store marks the changed
+ *     entities itself afterwards, so the write phase never calls {@link EntityStore#markDirty(int)}.</li>
+ * </ul>
+ * Since nothing an entity reads changes before every entity has finished reading, the result does not depend on how
+ * the entities were split between threads, nor on how many threads there were.
+ */
+public interface EntityBehaviour {
+    /**
+     * Decide what a range of entities will do this step.
+     *
+     * @param store     Store holding the entities.
+     * @param from      Index of the first entity of the range.
+     * @param to        Index after the last entity of the range.
+     * @param deltaTime Time step in seconds.
+     */
+    void read(EntityStore store, int from, int to, float deltaTime);
+
+    /**
+     * Apply what a range of entities decided in the read phase to their own components.
+     *
+     * @param store     Store holding the entities.
+     * @param from      Index of the first entity of the range.
+     * @param to        Index after the last entity of the range.
+     * @param deltaTime Time step in seconds.
+     */
+    void write(EntityStore store, int from, int to, float deltaTime);
+}
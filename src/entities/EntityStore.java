@@ -0,0 +1,678 @@
+package entities;
+
+import jobs.JobSystem;
+import models.TexturedModel;
+import org.lwjgl.util.vector.Matrix4f;
+import toolbox.BatchMath;
+import toolbox.ScalarBatchMath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Struct-of-arrays storage for entities. Every component lives in its own primitive array, packed so that the live
+ * entities occupy indices 0 to {@link #size()} - 1 without gaps, and systems such as movement, culling and matrix
+ * building run as linear loops over those arrays.
+ * <p>
+ * Entities are identified by ids that stay valid until they are removed, while their index in the arrays may change:
+ * removing an entity moves the last one into its slot. {@link #entity(int)} returns a thin {@link Entity} facade
+ * over an id for code written against the object API, such as the render batches. The arrays returned by the getters
+ * are replaced when the store grows, so systems should fetch them again after adding entities.
+ */
+public class EntityStore {
+    /**
+     * Flag for entities that are not expected to move.
+     */
+    public static final int STATIC = 1;
+
+    /**
+     * Flag for entities that are skipped when culling.
+     */
+    public static final int HIDDEN = 1 << 1;
+
+    /**
+     * Internal flag for entities whose world matrix is out of date.
+     */
+    private static final int DIRTY = 1 << 31;
+
+    private static final int UPDATE_GRAIN_SIZE = 1024;
+
+    private final BatchMath BATCH_MATH = BatchMath.get();
+
+    private final List<TexturedModel> MODELS = new ArrayList<>();
+    private final Map<TexturedModel, Integer> MODEL_IDS = new HashMap<>();
+
+    private float[] positionsX;
+    private float[] positionsY;
+    private float[] positionsZ;
+    private float[] rotationsX;
+    private float[] rotationsY;
+    private float[] rotationsZ;
+    private float[] scales;
+    private float[] velocitiesX;
+    private float[] velocitiesY;
+    private float[] velocitiesZ;
+    private float[] boundingRadii;
+    private float[] radii;
+    private int[] models;
+    private int[] flags;
+    private float[] worldMatrices;
+    private int[] ids;
+
+    private int[] indices;
+    private Entity[] facades;
+    private int freeId = -1;
+    private int idCount = 0;
+
+    private int size = 0;
+    private int dirtyCount = 0;
+    private int staticVersion = 0;
+
+    /**
+     * Create a new empty entity store.
+     *
+     * @param initialCapacity Number of entities the store can hold before its arrays have to grow.
+     */
+    public EntityStore(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+
+        allocateComponents(capacity);
+        indices = new int[capacity];
+        facades = new Entity[capacity];
+    }
+
+    /**
+     * Add a new entity to the store.
+     *
+     * @param texturedModel  Textured model for the entity.
+     * @param boundingRadius Radius of the model's bounding sphere around its origin, at a scale of 1.
+     * @param x              X position of the entity.
+     * @param y              Y position of the entity.
+     * @param z              Z position of the entity.
+     * @param rotationX      Rotation around the X axis in degrees.
+     * @param rotationY      Rotation around the Y axis in degrees.
+     * @param rotationZ      Rotation around the Z axis in degrees.
+     * @param scale          Scale of the entity.
+     * @param flags          Bit mask of {@link #STATIC} and {@link #HIDDEN}.
+     * @return Id of the entity, valid until it is removed.
+     */
+    public int create(
+            TexturedModel texturedModel, float boundingRadius, float x, float y, float z, float rotationX,
+            float rotationY, float rotationZ, float scale, int flags
+    ) {
+        if (size == positionsX.length) allocateComponents(size * 2);
+
+        int id;
+
+        if (freeId != -1) {
+            id = freeId;
+            freeId = indices[id];
+        }
+
+        else {
+            if (idCount == indices.length) {
+                indices = Arrays.copyOf(indices, idCount * 2);
+                facades = Arrays.copyOf(facades, idCount * 2);
+            }
+
+            id = idCount++;
+        }
+
+        int index = size++;
+        indices[id] = index;
+        ids[index] = id;
+
+        positionsX[index] = x;
+        positionsY[index] = y;
+        positionsZ[index] = z;
+        rotationsX[index] = rotationX;
+        rotationsY[index] = rotationY;
+        rotationsZ[index] = rotationZ;
+        scales[index] = scale;
+        velocitiesX[index] = 0;
+        velocitiesY[index] = 0;
+        velocitiesZ[index] = 0;
+        boundingRadii[index] = boundingRadius;
+        radii[index] = boundingRadius * scale;
+        models[index] = modelId(texturedModel);
+        this.flags[index] = (flags & ~DIRTY) | DIRTY;
+        dirtyCount++;
+        if ((flags & STATIC) != 0) staticVersion++;
+
+        return id;
+    }
+
+    /**
+     * Remove an entity from the store, moving the last entity into its slot. Its id and facade become invalid.
+     *
+     * @param id Id of the entity.
+     */
+    public void remove(int id) {
+        int index = index(id);
+        int last = --size;
+
+        if ((flags[index] & DIRTY) != 0) dirtyCount--;
+        if ((flags[index] & STATIC) != 0) staticVersion++;
+
+        if (index != last) {
+            positionsX[index] = positionsX[last];
+            positionsY[index] = positionsY[last];
+            positionsZ[index] = positionsZ[last];
+            rotationsX[index] = rotationsX[last];
+            rotationsY[index] = rotationsY[last];
+            rotationsZ[index] = rotationsZ[last];
+            scales[index] = scales[last];
+            velocitiesX[index] = velocitiesX[last];
+            velocitiesY[index] = velocitiesY[last];
+            velocitiesZ[index] = velocitiesZ[last];
+            boundingRadii[index] = boundingRadii[last];
+            radii[index] = radii[last];
+            models[index] = models[last];
+            flags[index] = flags[last];
+            System.arraycopy(worldMatrices, last * 16, worldMatrices, index * 16, 16);
+
+            ids[index] = ids[last];
+            indices[ids[index]] = index;
+        }
+
+        indices[id] = freeId;
+        facades[id] = null;
+        freeId = id;
+        ids[last] = -1;
+    }
+
+    /**
+     * Get the facade of an entity, creating it the first time it is requested.
+     *
+     * @param id Id of the entity.
+     * @return Entity facade reading and writing the entity's components in the store.
+     */
+    public Entity entity(int id) {
+        index(id);
+
+        Entity facade = facades[id];
+        if (facade == null) {
+            facade = new Entity(this, id);
+            facades[id] = facade;
+        }
+
+        return facade;
+    }
+
+    /**
+     * Move every entity by its velocity over a time step. Entities with no velocity are left untouched.
+     *
+     * @param deltaTime Time step in seconds.
+     */
+    public void integrate(float deltaTime) {
+        for (int i = 0; i < size; i++) {
+            float vx = velocitiesX[i];
+            float vy = velocitiesY[i];
+            float vz = velocitiesZ[i];
+            if (vx == 0 && vy == 0 && vz == 0) continue;
+
+            positionsX[i] += vx * deltaTime;
+            positionsY[i] += vy * deltaTime;
+            positionsZ[i] += vz * deltaTime;
+            markDirty(i);
+        }
+    }
+
+    /**
+     * Run a behaviour over every entity in parallel ranges on a job system: the read phase over the whole store, then
+     * the write phase. Each range of the write phase then marks the world matrices of its entities that aren't static
+     * out of date and scales their bounding spheres, and the number of entities it marked is added up once every range
+     * has finished. Behaviours must leave static entities as they are, and must not call {@link #markDirty(int)} or
+     * the setters, which are not safe to call from several threads.
+     *
+     * @param jobs      Job system running the ranges.
+     * @param behaviour Behaviour of the entities.
+     * @param deltaTime Time step in seconds.
+     */
+    public void update(JobSystem jobs, EntityBehaviour behaviour, float deltaTime) {
+        AtomicInteger marked = new AtomicInteger();
+
+        jobs.parallelFor(0, size, UPDATE_GRAIN_SIZE, (from, to) -> behaviour.read(this, from, to, deltaTime));
+        jobs.parallelFor(0, size, UPDATE_GRAIN_SIZE, (from, to) -> {
+            behaviour.write(this, from, to, deltaTime);
+            marked.addAndGet(markUpdated(from, to));
+        });
+
+        dirtyCount += marked.get();
+    }
+
+    /**
+     * Mark a range of entities changed by a behaviour: the world matrix of every entity that isn't static is out of
+     * date, and its bounding sphere follows its scale. Only touches the range, so ranges can be marked in parallel.
+     *
+     * @param from Index of the first entity of the range.
+     * @param to   Index after the last entity of the range.
+     * @return Number of entities that were not out of date before.
+     */
+    private int markUpdated(int from, int to) {
+        int marked = 0;
+
+        for (int i = from; i < to; i++) {
+            if ((flags[i] & STATIC) != 0) continue;
+
+            radii[i] = boundingRadii[i] * scales[i];
+            if ((flags[i] & DIRTY) != 0) continue;
+
+            flags[i] |= DIRTY;
+            marked++;
+        }
+
+        return marked;
+    }
+
+    /**
+     * Rebuild the world matrices of every entity that changed since they were last built. Runs of consecutive dirty
+     * entities are built together, and when every entity is dirty the whole store is built in one batch.
+     */
+    public void updateWorldMatrices() {
+        if (dirtyCount == 0) return;
+
+        if (dirtyCount == size) {
+            BATCH_MATH.computeModelMatrices(
+                    positionsX, positionsY, positionsZ, rotationsX, rotationsY, rotationsZ, scales, size,
+                    worldMatrices
+            );
+
+            for (int i = 0; i < size; i++) flags[i] &= ~DIRTY;
+            dirtyCount = 0;
+            return;
+        }
+
+        int i = 0;
+
+        while (dirtyCount > 0) {
+            while ((flags[i] & DIRTY) == 0) i++;
+
+            int start = i;
+            while (i < size && (flags[i] & DIRTY) != 0) flags[i++] &= ~DIRTY;
+
+            ScalarBatchMath.computeModelMatrices(
+                    positionsX, positionsY, positionsZ, rotationsX, rotationsY, rotationsZ, scales, start, i,
+                    worldMatrices
+            );
+            dirtyCount -= i - start;
+        }
+    }
+
+    /**
+     * Test the bounding spheres of every entity that isn't hidden against a frustum.
+     *
+     * @param planes         Six normalized frustum planes as (a, b, c, d), see
+     *                       {@link toolbox.EngineMath#extractFrustumPlanes}.
+     * @param visibleIndices Destination for the indices of the visible entities, holding at least {@link #size()}
+     *                       ints.
+     * @return Number of visible entities.
+     */
+    public int cull(float[] planes, int[] visibleIndices) {
+        int count = BATCH_MATH.cullSpheres(planes, positionsX, positionsY, positionsZ, radii, size, visibleIndices);
+        int visible = 0;
+
+        for (int i = 0; i < count; i++) {
+            int index = visibleIndices[i];
+            if ((flags[index] & HIDDEN) == 0) visibleIndices[visible++] = index;
+        }
+
+        return visible;
+    }
+
+    /**
+     * Find the index of an entity in the component arrays.
+     *
+     * @param id Id of the entity.
+     * @return Index of the entity, valid until an entity is removed.
+     */
+    public int index(int id) {
+        if (id < 0 || id >= idCount || indices[id] < 0 || indices[id] >= size || ids[indices[id]] != id) {
+            throw new IllegalArgumentException("Id " + id + " does not refer to an entity in the store.");
+        }
+
+        return indices[id];
+    }
+
+    /**
+     * Find the id of the entity at an index in the component arrays.
+     *
+     * @param index Index of the entity.
+     * @return Id of the entity.
+     */
+    public int id(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Mark the world matrix of the entity at an index out of date. Systems writing directly into the component arrays
+     * must call this for every entity whose position, rotation or scale they changed. Not safe to call from several
+     * threads at once; behaviours run by {@link #update} are marked by the store instead.
+     *
+     * @param index Index of the entity.
+     */
+    public void markDirty(int index) {
+        if ((flags[index] & STATIC) != 0) staticVersion++;
+        if ((flags[index] & DIRTY) != 0) return;
+
+        flags[index] |= DIRTY;
+        dirtyCount++;
+    }
+
+    /**
+     * Displace an entity.
+     *
+     * @param id Id of the entity.
+     * @param dx Displacement along the X axis.
+     * @param dy Displacement along the Y axis.
+     * @param dz Displacement along the Z axis.
+     */
+    public void displace(int id, float dx, float dy, float dz) {
+        if (dx == 0 && dy == 0 && dz == 0) return;
+
+        int index = index(id);
+        positionsX[index] += dx;
+        positionsY[index] += dy;
+        positionsZ[index] += dz;
+        markDirty(index);
+    }
+
+    /**
+     * Rotate an entity.
+     *
+     * @param id Id of the entity.
+     * @param dx Rotation around the X axis in degrees.
+     * @param dy Rotation around the Y axis in degrees.
+     * @param dz Rotation around the Z axis in degrees.
+     */
+    public void rotate(int id, float dx, float dy, float dz) {
+        if (dx == 0 && dy == 0 && dz == 0) return;
+
+        int index = index(id);
+        rotationsX[index] += dx;
+        rotationsY[index] += dy;
+        rotationsZ[index] += dz;
+        markDirty(index);
+    }
+
+    /**
+     * Set the position of an entity.
+     *
+     * @param id Id of the entity.
+     * @param x  X position of the entity.
+     * @param y  Y position of the entity.
+     * @param z  Z position of the entity.
+     */
+    public void setPosition(int id, float x, float y, float z) {
+        int index = index(id);
+        positionsX[index] = x;
+        positionsY[index] = y;
+        positionsZ[index] = z;
+        markDirty(index);
+    }
+
+    /**
+     * Set the rotation of an entity.
+     *
+     * @param id Id of the entity.
+     * @param x  Rotation around the X axis in degrees.
+     * @param y  Rotation around the Y axis in degrees.
+     * @param z  Rotation around the Z axis in degrees.
+     */
+    public void setRotation(int id, float x, float y, float z) {
+        int index = index(id);
+        rotationsX[index] = x;
+        rotationsY[index] = y;
+        rotationsZ[index] = z;
+        markDirty(index);
+    }
+
+    /**
+     * Set the scale of an entity, scaling its bounding sphere with it.
+     *
+     * @param id    Id of the entity.
+     * @param scale Scale of the entity.
+     */
+    public void setScale(int id, float scale) {
+        int index = index(id);
+        scales[index] = scale;
+        radii[index] = boundingRadii[index] * scale;
+        markDirty(index);
+    }
+
+    /**
+     * Set the velocity an entity is moved by in {@link #integrate(float)}.
+     *
+     * @param id Id of the entity.
+     * @param x  Velocity along the X axis.
+     * @param y  Velocity along the Y axis.
+     * @param z  Velocity along the Z axis.
+     */
+    public void setVelocity(int id, float x, float y, float z) {
+        int index = index(id);
+        velocitiesX[index] = x;
+        velocitiesY[index] = y;
+        velocitiesZ[index] = z;
+    }
+
+    /**
+     * Set the flags of an entity.
+     *
+     * @param id    Id of the entity.
+     * @param flags Bit mask of {@link #STATIC} and {@link #HIDDEN}.
+     */
+    public void setFlags(int id, int flags) {
+        int index = index(id);
+        if (((flags | this.flags[index]) & STATIC) != 0) staticVersion++;
+        this.flags[index] = (flags & ~DIRTY) | (this.flags[index] & DIRTY);
+    }
+
+    /**
+     * Get the flags of an entity.
+     *
+     * @param id Id of the entity.
+     * @return Bit mask of {@link #STATIC} and {@link #HIDDEN}.
+     */
+    public int flags(int id) {
+        return flags[index(id)] & ~DIRTY;
+    }
+
+    /**
+     * Check if the world matrix of an entity has to be rebuilt before it can be used.
+     *
+     * @param id Id of the entity.
+     * @return True if the world matrix is out of date, else false.
+     */
+    public boolean isDirty(int id) {
+        return (flags[index(id)] & DIRTY) != 0;
+    }
+
+    /**
+     * Copy the world matrix of an entity into a matrix, rebuilding it first if it is out of date.
+     *
+     * @param id          Id of the entity.
+     * @param destination Matrix to be overwritten.
+     * @return Destination matrix.
+     */
+    public Matrix4f worldMatrix(int id, Matrix4f destination) {
+        int index = index(id);
+
+        if ((flags[index] & DIRTY) != 0) {
+            ScalarBatchMath.computeModelMatrices(
+                    positionsX, positionsY, positionsZ, rotationsX, rotationsY, rotationsZ, scales, index,
+                    index + 1, worldMatrices
+            );
+            flags[index] &= ~DIRTY;
+            dirtyCount--;
+        }
+
+        int offset = index * 16;
+        destination.m00 = worldMatrices[offset];
+        destination.m01 = worldMatrices[offset + 1];
+        destination.m02 = worldMatrices[offset + 2];
+        destination.m03 = worldMatrices[offset + 3];
+        destination.m10 = worldMatrices[offset + 4];
+        destination.m11 = worldMatrices[offset + 5];
+        destination.m12 = worldMatrices[offset + 6];
+        destination.m13 = worldMatrices[offset + 7];
+        destination.m20 = worldMatrices[offset + 8];
+        destination.m21 = worldMatrices[offset + 9];
+        destination.m22 = worldMatrices[offset + 10];
+        destination.m23 = worldMatrices[offset + 11];
+        destination.m30 = worldMatrices[offset + 12];
+        destination.m31 = worldMatrices[offset + 13];
+        destination.m32 = worldMatrices[offset + 14];
+        destination.m33 = worldMatrices[offset + 15];
+        return destination;
+    }
+
+    /**
+     * Get the textured model of an entity.
+     *
+     * @param id Id of the entity.
+     * @return Textured model of the entity.
+     */
+    public TexturedModel texturedModel(int id) {
+        return MODELS.get(models[index(id)]);
+    }
+
+    /**
+     * Set the textured model of an entity.
+     *
+     * @param id            Id of the entity.
+     * @param texturedModel Textured model for the entity.
+     */
+    public void setTexturedModel(int id, TexturedModel texturedModel) {
+        int index = index(id);
+        if ((flags[index] & STATIC) != 0) staticVersion++;
+        models[index] = modelId(texturedModel);
+    }
+
+    /**
+     * Get the textured model behind a model id.
+     *
+     * @param modelId Model id, as stored in {@link #models()}.
+     * @return Textured model.
+     */
+    public TexturedModel model(int modelId) {
+        return MODELS.get(modelId);
+    }
+
+    /**
+     * Find the id of a textured model, registering it the first time it is seen.
+     *
+     * @param texturedModel Textured model.
+     * @return Id of the model.
+     */
+    private int modelId(TexturedModel texturedModel) {
+        Integer id = MODEL_IDS.get(texturedModel);
+
+        if (id == null) {
+            id = MODELS.size();
+            MODELS.add(texturedModel);
+            MODEL_IDS.put(texturedModel, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Grow the component arrays.
+     *
+     * @param capacity Number of entities the arrays can hold.
+     */
+    private void allocateComponents(int capacity) {
+        positionsX = positionsX == null ? new float[capacity] : Arrays.copyOf(positionsX, capacity);
+        positionsY = positionsY == null ? new float[capacity] : Arrays.copyOf(positionsY, capacity);
+        positionsZ = positionsZ == null ? new float[capacity] : Arrays.copyOf(positionsZ, capacity);
+        rotationsX = rotationsX == null ? new float[capacity] : Arrays.copyOf(rotationsX, capacity);
+        rotationsY = rotationsY == null ? new float[capacity] : Arrays.copyOf(rotationsY, capacity);
+        rotationsZ = rotationsZ == null ? new float[capacity] : Arrays.copyOf(rotationsZ, capacity);
+        scales = scales == null ? new float[capacity] : Arrays.copyOf(scales, capacity);
+        velocitiesX = velocitiesX == null ? new float[capacity] : Arrays.copyOf(velocitiesX, capacity);
+        velocitiesY = velocitiesY == null ? new float[capacity] : Arrays.copyOf(velocitiesY, capacity);
+        velocitiesZ = velocitiesZ == null ? new float[capacity] : Arrays.copyOf(velocitiesZ, capacity);
+        boundingRadii = boundingRadii == null ? new float[capacity] : Arrays.copyOf(boundingRadii, capacity);
+        radii = radii == null ? new float[capacity] : Arrays.copyOf(radii, capacity);
+        models = models == null ? new int[capacity] : Arrays.copyOf(models, capacity);
+        flags = flags == null ? new int[capacity] : Arrays.copyOf(flags, capacity);
+        worldMatrices = worldMatrices == null ? new float[capacity * 16] : Arrays.copyOf(worldMatrices, capacity * 16);
+        ids = ids == null ? new int[capacity] : Arrays.copyOf(ids, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get a counter that changes whenever a static entity is added, removed, changed or moved, or an entity becomes
+     * or stops being static, so anything built from the static entities knows when to rebuild.
+     *
+     * @return Version of the static entities.
+     */
+    public int staticVersion() {
+        return staticVersion;
+    }
+
+    public float[] positionsX() {
+        return positionsX;
+    }
+
+    public float[] positionsY() {
+        return positionsY;
+    }
+
+    public float[] positionsZ() {
+        return positionsZ;
+    }
+
+    public float[] rotationsX() {
+        return rotationsX;
+    }
+
+    public float[] rotationsY() {
+        return rotationsY;
+    }
+
+    public float[] rotationsZ() {
+        return rotationsZ;
+    }
+
+    public float[] scales() {
+        return scales;
+    }
+
+    public float[] velocitiesX() {
+        return velocitiesX;
+    }
+
+    public float[] velocitiesY() {
+        return velocitiesY;
+    }
+
+    public float[] velocitiesZ() {
+        return velocitiesZ;
+    }
+
+    public float[] radii() {
+        return radii;
+    }
+
+    public int[] models() {
+        return models;
+    }
+
+    /**
+     * Get the world matrices of every entity, 16 floats each in column-major order at 16 times the entity's index.
+     * Only up to date after {@link #updateWorldMatrices()}.
+     *
+     * @return World matrices.
+     */
+    public float[] worldMatrices() {
+        return worldMatrices;
+    }
+}
@@ -1,9 +1,11 @@
 package entities;
 
+import input.InputSource;
 import models.TexturedModel;
 import org.lwjgl.input.Keyboard;
 import org.lwjgl.util.vector.Vector3f;
-import renderEngine.DisplayManager;
+import physics.CollisionWorld;
+import terrains.Terrain;
 
 /**
  * Main player class for the game; subclass of the entity class.
@@ -18,7 +20,6 @@ public class Player extends Entity {
     private static final float TURN_SPEED = 160;
     private static final float JUMP_POWER = 30;
     private static final float GRAVITY = -50;
-    private static final float TERRAIN_HEIGHT = 0;
 
     /**
      * Create a new player class.
@@ -33,45 +34,69 @@ public class Player extends Entity {
     }
 
     /**
-     * Move the player by polling for inputs every frame.
+     * Move the player by polling for inputs every frame, landing on the terrain under it.
+     *
+     * @param input   Input source for the current frame, which also provides its time step.
+     * @param terrain Terrain under the player, or null to land at a height of 0.
      */
-    public void move() {
-        pollInputs();
+    public void move(InputSource input, Terrain terrain) {
+        pollInputs(input);
+
+        float deltaTime = input.deltaTime();
+        verticalSpeed += GRAVITY * deltaTime;
 
-        verticalSpeed += GRAVITY * DisplayManager.deltaTime();
+        float distance = currentSpeed * deltaTime;
+        double yaw = Math.toRadians(rotation().getY());
 
-        float distance = currentSpeed * DisplayManager.deltaTime();
-        Vector3f displacement = new Vector3f(
-                (float) (distance * Math.sin(Math.toRadians(rotation().y))),
-                verticalSpeed * DisplayManager.deltaTime(),
-                (float) (distance * Math.cos(Math.toRadians(rotation().y)))
+        displace(
+                (float) (distance * Math.sin(yaw)),
+                verticalSpeed * deltaTime,
+                (float) (distance * Math.cos(yaw))
         );
+        rotate(0, currentTurnSpeed * deltaTime, 0);
 
-        Vector3f rotation = new Vector3f(0, currentTurnSpeed * DisplayManager.deltaTime(), 0);
+        float x = position().getX();
+        float z = position().getZ();
+        float terrainHeight = terrain != null ? terrain.heightAt(x, z) : 0;
 
-        displace(displacement);
-        rotate(rotation);
+        if (position().getY() < terrainHeight) {
+            verticalSpeed = 0;
+            setPosition(x, terrainHeight, z);
+            isJumping = false;
+        }
+    }
 
-        if (position().y < TERRAIN_HEIGHT) {
+    /**
+     * Take the player's position after a step of a collision world, which pushed it out of what it ran into. Landing
+     * on top of a body ends a jump the same way landing on the terrain does.
+     *
+     * @param world Collision world the player is a body of.
+     * @param body  Handle of the player's capsule in the world.
+     */
+    public void collide(CollisionWorld world, int body) {
+        setPosition(world.x(body), world.y(body), world.z(body));
+
+        if (world.isGrounded(body) && verticalSpeed <= 0) {
             verticalSpeed = 0;
-            position().y = TERRAIN_HEIGHT;
             isJumping = false;
         }
     }
 
     /**
      * Poll for keyboard inputs every frame for movement and jumping.
+     *
+     * @param input Input source for the current frame.
      */
-    private void pollInputs() {
-        if (Keyboard.isKeyDown(Keyboard.KEY_W)) currentSpeed = RUN_SPEED;
-        else if (Keyboard.isKeyDown(Keyboard.KEY_S)) currentSpeed = -RUN_SPEED;
+    private void pollInputs(InputSource input) {
+        if (input.isKeyDown(Keyboard.KEY_W)) currentSpeed = RUN_SPEED;
+        else if (input.isKeyDown(Keyboard.KEY_S)) currentSpeed = -RUN_SPEED;
         else currentSpeed = 0;
 
-        if (Keyboard.isKeyDown(Keyboard.KEY_A)) currentTurnSpeed = TURN_SPEED;
-        else if (Keyboard.isKeyDown(Keyboard.KEY_D)) currentTurnSpeed = - TURN_SPEED;
+        if (input.isKeyDown(Keyboard.KEY_A)) currentTurnSpeed = TURN_SPEED;
+        else if (input.isKeyDown(Keyboard.KEY_D)) currentTurnSpeed = - TURN_SPEED;
         else currentTurnSpeed = 0;
 
-        if (Keyboard.isKeyDown(Keyboard.KEY_SPACE)) jump();
+        if (input.isKeyDown(Keyboard.KEY_SPACE)) jump();
     }
 
     /**
@@ -0,0 +1,76 @@
+package input;
+
+import org.lwjgl.input.Keyboard;
+
+/**
+ * Mutable snapshot of a single frame of input, shared by the live, recording and replaying input sources.
+ */
+public class InputFrame {
+    /**
+     * Number of mouse buttons whose state is captured; they are stored as a bit mask in one byte of the input log.
+     */
+    public static final int MOUSE_BUTTON_COUNT = 8;
+
+    private final boolean[] KEYS = new boolean[Keyboard.KEYBOARD_SIZE];
+    private int mouseButtons;
+    private int mouseDX;
+    private int mouseDY;
+    private int mouseDWheel;
+
+    /**
+     * Copy the state of another frame into this one.
+     *
+     * @param other Frame to be copied.
+     */
+    public void set(InputFrame other) {
+        System.arraycopy(other.KEYS, 0, KEYS, 0, KEYS.length);
+        this.mouseButtons = other.mouseButtons;
+        this.mouseDX = other.mouseDX;
+        this.mouseDY = other.mouseDY;
+        this.mouseDWheel = other.mouseDWheel;
+    }
+
+    public boolean isKeyDown(int key) {
+        return KEYS[key];
+    }
+
+    public void setKeyDown(int key, boolean down) {
+        KEYS[key] = down;
+    }
+
+    public boolean isMouseButtonDown(int button) {
+        return button < MOUSE_BUTTON_COUNT && (mouseButtons & (1 << button)) != 0;
+    }
+
+    public int mouseButtons() {
+        return mouseButtons;
+    }
+
+    public void setMouseButtons(int mouseButtons) {
+        this.mouseButtons = mouseButtons;
+    }
+
+    public int mouseDX() {
+        return mouseDX;
+    }
+
+    public void setMouseDX(int mouseDX) {
+        this.mouseDX = mouseDX;
+    }
+
+    public int mouseDY() {
+        return mouseDY;
+    }
+
+    public void setMouseDY(int mouseDY) {
+        this.mouseDY = mouseDY;
+    }
+
+    public int mouseDWheel() {
+        return mouseDWheel;
+    }
+
+    public void setMouseDWheel(int mouseDWheel) {
+        this.mouseDWheel = mouseDWheel;
+    }
+}
@@ -0,0 +1,105 @@
+package input;
+
+import org.lwjgl.input.Keyboard;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary layout of a recorded input log.
+ * <p>
+ * The header holds a magic number, the format version and the fixed time step the recording was simulated with. It is
+ * followed by one record per frame: the number of keys whose state toggled since the previous frame (unsigned short)
+ * and their key codes (one byte each), the mouse button bit mask (one byte) and the mouse X, Y and wheel deltas
+ * (signed shorts). An idle frame therefore costs 9 bytes.
+ */
+public final class InputLog {
+    static final int MAGIC = 0x4D504C49; // "MPLI".
+    static final int VERSION = 1;
+
+    private InputLog() { }
+
+    /**
+     * Write the log header.
+     *
+     * @param output   Output to write to.
+     * @param timestep Fixed time step of every recorded frame in seconds.
+     * @throws IOException If the header cannot be written.
+     */
+    static void writeHeader(DataOutput output, float timestep) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+        output.writeFloat(timestep);
+    }
+
+    /**
+     * Read and validate the log header.
+     *
+     * @param input Input to read from.
+     * @return Fixed time step of every recorded frame in seconds.
+     * @throws IOException If the header cannot be read or does not describe a supported input log.
+     */
+    static float readHeader(DataInput input) throws IOException {
+        if (input.readInt() != MAGIC) throw new IOException("Not a Maple input log.");
+
+        int version = input.readUnsignedShort();
+        if (version != VERSION) throw new IOException("Unsupported input log version " + version + ".");
+
+        float timestep = input.readFloat();
+        if (!(timestep > 0) || Float.isInfinite(timestep)) throw new IOException("The input log header is corrupt.");
+
+        return timestep;
+    }
+
+    /**
+     * Write a frame as a delta against the previously written frame.
+     *
+     * @param output   Output to write to.
+     * @param previous Previously written frame; all keys up for the first frame.
+     * @param current  Frame to be written.
+     * @throws IOException If the frame cannot be written.
+     */
+    static void writeFrame(DataOutput output, InputFrame previous, InputFrame current) throws IOException {
+        int toggledCount = 0;
+        for (int key = 0; key < Keyboard.KEYBOARD_SIZE; key++) {
+            if (previous.isKeyDown(key) != current.isKeyDown(key)) toggledCount++;
+        }
+
+        output.writeShort(toggledCount);
+        for (int key = 0; key < Keyboard.KEYBOARD_SIZE; key++) {
+            if (previous.isKeyDown(key) != current.isKeyDown(key)) output.writeByte(key);
+        }
+
+        output.writeByte(current.mouseButtons());
+        output.writeShort(clampToShort(current.mouseDX()));
+        output.writeShort(clampToShort(current.mouseDY()));
+        output.writeShort(clampToShort(current.mouseDWheel()));
+    }
+
+    /**
+     * Read the next frame, applying it on top of the previous frame's state.
+     *
+     * @param input Input to read from.
+     * @param frame Frame holding the previous state, updated in place.
+     * @throws IOException If the frame cannot be read; an EOFException marks the end of the log.
+     */
+    static void readFrame(DataInput input, InputFrame frame) throws IOException {
+        int toggledCount = input.readUnsignedShort();
+        if (toggledCount > Keyboard.KEYBOARD_SIZE) throw new IOException("The input log has a corrupt frame.");
+
+        for (int i = 0; i < toggledCount; i++) {
+            int key = input.readUnsignedByte();
+            frame.setKeyDown(key, !frame.isKeyDown(key));
+        }
+
+        frame.setMouseButtons(input.readUnsignedByte());
+        frame.setMouseDX(input.readShort());
+        frame.setMouseDY(input.readShort());
+        frame.setMouseDWheel(input.readShort());
+    }
+
+    private static int clampToShort(int value) {
+        return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    }
+}
@@ -0,0 +1,43 @@
+package input;
+
+/**
+ * Per-frame source of keyboard and mouse input for the player and camera. Implementations capture a snapshot of the
+ * input once per frame in {@link #poll()} so every reader within that frame sees the same values.
+ */
+public interface InputSource {
+    /**
+     * Advance to the next frame of input.
+     *
+     * @return True if a new frame is available, false if the source has been exhausted.
+     */
+    boolean poll();
+
+    /**
+     * Check if a key was held down in the current frame.
+     *
+     * @param key LWJGL key code of the key.
+     * @return True if the key is down, else false.
+     */
+    boolean isKeyDown(int key);
+
+    /**
+     * Check if a mouse button was held down in the current frame.
+     *
+     * @param button Index of the mouse button.
+     * @return True if the button is down, else false.
+     */
+    boolean isMouseButtonDown(int button);
+
+    int mouseDX();
+
+    int mouseDY();
+
+    int mouseDWheel();
+
+    /**
+     * Get the time step of the current frame in seconds.
+     *
+     * @return Time step of the frame.
+     */
+    float deltaTime();
+}
@@ -0,0 +1,68 @@
+package input;
+
+import org.lwjgl.input.Keyboard;
+import org.lwjgl.input.Mouse;
+import renderEngine.DisplayManager;
+
+/**
+ * Input source reading the LWJGL keyboard and mouse directly, timed by the display's frame delta.
+ */
+public class LiveInput implements InputSource {
+    private final InputFrame FRAME = new InputFrame();
+
+    /**
+     * Capture the current keyboard and mouse state. Mouse deltas are consumed by this call.
+     *
+     * @return Always true; live input never runs out.
+     */
+    @Override
+    public boolean poll() {
+        for (int key = 0; key < Keyboard.KEYBOARD_SIZE; key++) {
+            FRAME.setKeyDown(key, Keyboard.isKeyDown(key));
+        }
+
+        int buttonCount = Math.min(Mouse.getButtonCount(), InputFrame.MOUSE_BUTTON_COUNT);
+        int mouseButtons = 0;
+
+        for (int button = 0; button < buttonCount; button++) {
+            if (Mouse.isButtonDown(button)) mouseButtons |= 1 << button;
+        }
+
+        FRAME.setMouseButtons(mouseButtons);
+        FRAME.setMouseDX(Mouse.getDX());
+        FRAME.setMouseDY(Mouse.getDY());
+        FRAME.setMouseDWheel(Mouse.getDWheel());
+
+        return true;
+    }
+
+    @Override
+    public boolean isKeyDown(int key) {
+        return FRAME.isKeyDown(key);
+    }
+
+    @Override
+    public boolean isMouseButtonDown(int button) {
+        return FRAME.isMouseButtonDown(button);
+    }
+
+    @Override
+    public int mouseDX() {
+        return FRAME.mouseDX();
+    }
+
+    @Override
+    public int mouseDY() {
+        return FRAME.mouseDY();
+    }
+
+    @Override
+    public int mouseDWheel() {
+        return FRAME.mouseDWheel();
+    }
+
+    @Override
+    public float deltaTime() {
+        return DisplayManager.deltaTime();
+    }
+}
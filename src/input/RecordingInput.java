@@ -0,0 +1,151 @@
+package input;
+
+import org.lwjgl.input.Keyboard;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Input source that forwards another source and records every frame into an input log. The recording is simulated with
+ * a fixed time step, so replaying the log reproduces the exact same player and camera path.
+ */
+public class RecordingInput implements InputSource {
+    private final InputSource SOURCE;
+    private final float TIMESTEP;
+    private final DataOutputStream OUTPUT;
+
+    private final InputFrame PREVIOUS_FRAME = new InputFrame();
+    private final InputFrame CURRENT_FRAME = new InputFrame();
+
+    /**
+     * Create a new recording input source writing to a file.
+     *
+     * @param source   Input source to be recorded, generally live input.
+     * @param timestep Fixed time step of every frame in seconds.
+     * @param filename Path of the input log to be written.
+     */
+    public RecordingInput(InputSource source, float timestep, String filename) {
+        this(source, timestep, openFile(filename));
+    }
+
+    /**
+     * Create a new recording input source.
+     *
+     * @param source   Input source to be recorded, generally live input.
+     * @param timestep Fixed time step of every frame in seconds.
+     * @param output   Stream the input log is written to.
+     */
+    public RecordingInput(InputSource source, float timestep, OutputStream output) {
+        this.SOURCE = source;
+        this.TIMESTEP = timestep;
+        this.OUTPUT = new DataOutputStream(new BufferedOutputStream(output));
+
+        try {
+            InputLog.writeHeader(OUTPUT, timestep);
+        }
+
+        catch (IOException e) {
+            System.err.println("Could not write the input log header.");
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Poll the recorded source and append its frame to the log.
+     *
+     * @return True if the recorded source produced a frame, else false.
+     */
+    @Override
+    public boolean poll() {
+        if (!SOURCE.poll()) return false;
+
+        for (int key = 0; key < Keyboard.KEYBOARD_SIZE; key++) {
+            CURRENT_FRAME.setKeyDown(key, SOURCE.isKeyDown(key));
+        }
+
+        int mouseButtons = 0;
+        for (int button = 0; button < InputFrame.MOUSE_BUTTON_COUNT; button++) {
+            if (SOURCE.isMouseButtonDown(button)) mouseButtons |= 1 << button;
+        }
+
+        CURRENT_FRAME.setMouseButtons(mouseButtons);
+        CURRENT_FRAME.setMouseDX(SOURCE.mouseDX());
+        CURRENT_FRAME.setMouseDY(SOURCE.mouseDY());
+        CURRENT_FRAME.setMouseDWheel(SOURCE.mouseDWheel());
+
+        try {
+            InputLog.writeFrame(OUTPUT, PREVIOUS_FRAME, CURRENT_FRAME);
+        }
+
+        catch (IOException e) {
+            System.err.println("Could not write to the input log.");
+            throw new RuntimeException(e);
+        }
+
+        PREVIOUS_FRAME.set(CURRENT_FRAME);
+        return true;
+    }
+
+    /**
+     * Flush and close the input log.
+     */
+    public void close() {
+        try {
+            OUTPUT.close();
+        }
+
+        catch (IOException e) {
+            System.err.println("Could not close the input log.");
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean isKeyDown(int key) {
+        return CURRENT_FRAME.isKeyDown(key);
+    }
+
+    @Override
+    public boolean isMouseButtonDown(int button) {
+        return CURRENT_FRAME.isMouseButtonDown(button);
+    }
+
+    @Override
+    public int mouseDX() {
+        return CURRENT_FRAME.mouseDX();
+    }
+
+    @Override
+    public int mouseDY() {
+        return CURRENT_FRAME.mouseDY();
+    }
+
+    @Override
+    public int mouseDWheel() {
+        return CURRENT_FRAME.mouseDWheel();
+    }
+
+    /**
+     * Get the fixed time step of the recording, independent of the actual frame time.
+     *
+     * @return Fixed time step in seconds.
+     */
+    @Override
+    public float deltaTime() {
+        return TIMESTEP;
+    }
+
+    private static OutputStream openFile(String filename) {
+        try {
+            return new FileOutputStream(filename);
+        }
+
+        catch (IOException e) {
+            System.err.println("Could not create input log " + filename + ".");
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package input;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input source replaying a recorded input log frame by frame at the log's fixed time step.
+ */
+public class ReplayInput implements InputSource {
+    private final DataInputStream INPUT;
+    private final float TIMESTEP;
+    private final InputFrame FRAME = new InputFrame();
+
+    private int frameCount = 0;
+    private boolean exhausted = false;
+
+    /**
+     * Create a new replaying input source reading from a file.
+     *
+     * @param filename Path of the input log to be replayed.
+     */
+    public ReplayInput(String filename) {
+        this(openFile(filename));
+    }
+
+    /**
+     * Create a new replaying input source.
+     *
+     * @param input Stream the input log is read from.
+     */
+    public ReplayInput(InputStream input) {
+        this.INPUT = new DataInputStream(new BufferedInputStream(input));
+
+        try {
+            this.TIMESTEP = InputLog.readHeader(INPUT);
+        }
+
+        catch (IOException e) {
+            System.err.println("Could not read the input log header.");
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Advance to the next recorded frame.
+     *
+     * @return True if a frame was read, false once the end of the log has been reached.
+     */
+    @Override
+    public boolean poll() {
+        if (exhausted) return false;
+
+        try {
+            InputLog.readFrame(INPUT, FRAME);
+            frameCount++;
+            return true;
+        }
+
+        catch (EOFException e) {
+            exhausted = true;
+            close();
+            return false;
+        }
+
+        catch (IOException e) {
+            System.err.println("Could not read from the input log.");
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Close the input log.
+     */
+    public void close() {
+        try {
+            INPUT.close();
+        }
+
+        catch (IOException e) {
+            System.err.println("Could not close the input log.");
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Get the number of frames replayed so far.
+     *
+     * @return Number of replayed frames.
+     */
+    public int frameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public boolean isKeyDown(int key) {
+        return FRAME.isKeyDown(key);
+    }
+
+    @Override
+    public boolean isMouseButtonDown(int button) {
+        return FRAME.isMouseButtonDown(button);
+    }
+
+    @Override
+    public int mouseDX() {
+        return FRAME.mouseDX();
+    }
+
+    @Override
+    public int mouseDY() {
+        return FRAME.mouseDY();
+    }
+
+    @Override
+    public int mouseDWheel() {
+        return FRAME.mouseDWheel();
+    }
+
+    @Override
+    public float deltaTime() {
+        return TIMESTEP;
+    }
+
+    private static InputStream openFile(String filename) {
+        try {
+            return new FileInputStream(filename);
+        }
+
+        catch (IOException e) {
+            System.err.println("Could not open input log " + filename + ".");
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package input;
+
+import org.lwjgl.input.Keyboard;
+
+/**
+ * Input source handing the input polled on the render thread to a simulation stepping at a fixed rate, possibly on
+ * another thread. Keys and mouse buttons keep their latest state, while mouse movement offered over several frames
+ * adds up until the next step consumes it, so no movement is lost or applied twice when frames and steps don't line
+ * up.
+ */
+public class SharedInput implements InputSource {
+    private final float TIMESTEP;
+    private final InputFrame PENDING = new InputFrame();
+    private final InputFrame FRAME = new InputFrame();
+
+    /**
+     * Create a new shared input source.
+     *
+     * @param timestep Fixed time step of the simulation reading it, in seconds.
+     */
+    public SharedInput(float timestep) {
+        this.TIMESTEP = timestep;
+    }
+
+    /**
+     * Offer the input of a frame polled on the render thread.
+     *
+     * @param source Input source that was just polled.
+     */
+    public synchronized void offer(InputSource source) {
+        for (int key = 0; key < Keyboard.KEYBOARD_SIZE; key++) {
+            PENDING.setKeyDown(key, source.isKeyDown(key));
+        }
+
+        int mouseButtons = 0;
+        for (int button = 0; button < InputFrame.MOUSE_BUTTON_COUNT; button++) {
+            if (source.isMouseButtonDown(button)) mouseButtons |= 1 << button;
+        }
+
+        PENDING.setMouseButtons(mouseButtons);
+        PENDING.setMouseDX(PENDING.mouseDX() + source.mouseDX());
+        PENDING.setMouseDY(PENDING.mouseDY() + source.mouseDY());
+        PENDING.setMouseDWheel(PENDING.mouseDWheel() + source.mouseDWheel());
+    }
+
+    /**
+     * Take the input offered since the last step, consuming its mouse movement.
+     *
+     * @return Always true; the shared input never runs out.
+     */
+    @Override
+    public synchronized boolean poll() {
+        FRAME.set(PENDING);
+        PENDING.setMouseDX(0);
+        PENDING.setMouseDY(0);
+        PENDING.setMouseDWheel(0);
+        return true;
+    }
+
+    @Override
+    public boolean isKeyDown(int key) {
+        return FRAME.isKeyDown(key);
+    }
+
+    @Override
+    public boolean isMouseButtonDown(int button) {
+        return FRAME.isMouseButtonDown(button);
+    }
+
+    @Override
+    public int mouseDX() {
+        return FRAME.mouseDX();
+    }
+
+    @Override
+    public int mouseDY() {
+        return FRAME.mouseDY();
+    }
+
+    @Override
+    public int mouseDWheel() {
+        return FRAME.mouseDWheel();
+    }
+
+    @Override
+    public float deltaTime() {
+        return TIMESTEP;
+    }
+}
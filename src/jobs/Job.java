@@ -0,0 +1,151 @@
+package jobs;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handle to a piece of work scheduled on a {@link JobSystem}. A job starts once every job it depends on has finished,
+ * and a job whose dependency failed fails with the same error without running.
+ */
+public final class Job {
+    private final Runnable WORK;
+    private final AtomicInteger PENDING = new AtomicInteger(1);
+    private final List<Job> DEPENDENTS = new ArrayList<>(2);
+
+    private JobSystem system;
+    private volatile Throwable failure;
+    private volatile boolean done = false;
+
+    /**
+     * Create a new job that has not been scheduled yet.
+     *
+     * @param work Work of the job.
+     */
+    Job(Runnable work) {
+        this.WORK = work;
+    }
+
+    /**
+     * Schedule the job to start once its dependencies have finished.
+     *
+     * @param system       Job system running the job.
+     * @param dependencies Jobs that must finish first.
+     */
+    void schedule(JobSystem system, Job[] dependencies) {
+        this.system = system;
+
+        for (Job dependency : dependencies) {
+            synchronized (dependency) {
+                if (!dependency.done) {
+                    PENDING.incrementAndGet();
+                    dependency.DEPENDENTS.add(this);
+                    continue;
+                }
+            }
+
+            if (dependency.failure != null) failure = dependency.failure;
+        }
+
+        if (release()) system.start(this);
+    }
+
+    /**
+     * Count down one dependency.
+     *
+     * @return True if none are left and the job should start, else false.
+     */
+    private boolean release() {
+        return PENDING.decrementAndGet() == 0;
+    }
+
+    /**
+     * Run the job, then the jobs it releases. On worker threads the released jobs are started on the pool, while
+     * without threads they are queued and run in a loop here, so a long chain of dependent jobs cannot overflow the
+     * stack.
+     */
+    void run() {
+        ArrayDeque<Job> released = system.threadCount() == 0 ? new ArrayDeque<>() : null;
+        Job job = this;
+
+        while (job != null) {
+            job.runOnce(released);
+            job = released == null ? null : released.poll();
+        }
+    }
+
+    /**
+     * Run the job's work unless a dependency failed, then release the jobs waiting on it. Errors are recorded as
+     * failures like exceptions are, so the job is always marked done and its dependents never wait forever.
+     *
+     * @param released Queue for the dependents that are ready to run, or null to start them on the job system.
+     */
+    private void runOnce(ArrayDeque<Job> released) {
+        if (failure == null) {
+            try {
+                WORK.run();
+            }
+
+            catch (Throwable e) {
+                System.err.println("Job failed: " + e);
+                failure = e;
+            }
+        }
+
+        List<Job> dependents;
+
+        synchronized (this) {
+            done = true;
+            dependents = List.copyOf(DEPENDENTS);
+            DEPENDENTS.clear();
+            notifyAll();
+        }
+
+        for (Job dependent : dependents) {
+            if (failure != null) dependent.failure = failure;
+            if (!dependent.release()) continue;
+
+            if (released == null) system.start(dependent);
+            else released.add(dependent);
+        }
+    }
+
+    /**
+     * Wait until the job has finished. Waiting from a worker thread of the job system lets the pool start another
+     * worker in its place, so jobs waiting on each other cannot starve the pool.
+     *
+     * @throws RuntimeException If the job or one of its dependencies failed.
+     */
+    public void await() {
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    synchronized (Job.this) {
+                        while (!done) Job.this.wait();
+                    }
+
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return done;
+                }
+            });
+        }
+
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        if (failure != null) throw new RuntimeException(failure);
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+}
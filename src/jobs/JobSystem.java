@@ -0,0 +1,181 @@
+package jobs;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduler for game logic split into jobs, running on a work-stealing fork-join pool: every worker keeps its own deque
+ * of jobs and steals from the others when it runs dry.
+ * <p>
+ * Jobs can depend on other jobs, forming a graph that is started as its dependencies finish, and
+ * {@link #parallelFor} splits a range of indices in halves down to a grain size so that idle workers steal the largest
+ * remaining halves. A job system with no threads runs everything on the calling thread, in the order it was
+ * scheduled, which is also the reference the threaded modes must match.
+ */
+public class JobSystem implements AutoCloseable {
+    /**
+     * Longest time closing waits for the jobs already scheduled to finish.
+     */
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final ForkJoinPool POOL;
+    private final int THREAD_COUNT;
+
+    /**
+     * Create a new job system.
+     *
+     * @param threadCount Number of worker threads, or 0 to run every job on the thread scheduling it.
+     */
+    public JobSystem(int threadCount) {
+        if (threadCount < 0) throw new IllegalArgumentException("A job system cannot have a negative thread count.");
+
+        this.THREAD_COUNT = threadCount;
+        this.POOL = threadCount == 0 ? null : new ForkJoinPool(threadCount, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("job-worker-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Schedule a job to run once its dependencies have finished.
+     *
+     * @param work         Work of the job.
+     * @param dependencies Jobs that must finish first.
+     * @return Handle to the job.
+     */
+    public Job schedule(Runnable work, Job... dependencies) {
+        Job job = new Job(work);
+        job.schedule(this, dependencies);
+        return job;
+    }
+
+    /**
+     * Schedule a job running a range task over a range of indices in parallel, once its dependencies have finished.
+     *
+     * @param from         First index of the range.
+     * @param to           Index after the last index of the range.
+     * @param grainSize    Largest number of indices run as one piece of work.
+     * @param task         Work over a part of the range.
+     * @param dependencies Jobs that must finish first.
+     * @return Handle to the job.
+     */
+    public Job scheduleFor(int from, int to, int grainSize, RangeTask task, Job... dependencies) {
+        return schedule(() -> parallelFor(from, to, grainSize, task), dependencies);
+    }
+
+    /**
+     * Run a range task over a range of indices in parallel and wait until every part has finished. The parts never
+     * overlap, and together they cover the range exactly once.
+     *
+     * @param from      First index of the range.
+     * @param to        Index after the last index of the range.
+     * @param grainSize Largest number of indices run as one piece of work.
+     * @param task      Work over a part of the range.
+     */
+    public void parallelFor(int from, int to, int grainSize, RangeTask task) {
+        if (grainSize < 1) throw new IllegalArgumentException("The grain size of a parallel for must be positive.");
+        if (from >= to) return;
+
+        if (POOL == null || to - from <= grainSize) {
+            task.run(from, to);
+            return;
+        }
+
+        RangeAction action = new RangeAction(task, from, to, grainSize);
+        if (isWorkerThread()) action.invoke();
+        else POOL.invoke(action);
+    }
+
+    /**
+     * Start a job whose dependencies have all finished: inline without threads, on the local deque of a worker
+     * scheduling it, and through the pool's submission queue otherwise.
+     *
+     * @param job Job to be started.
+     */
+    void start(Job job) {
+        if (POOL == null) job.run();
+        else if (isWorkerThread()) ForkJoinTask.adapt(job::run).fork();
+        else POOL.execute(job::run);
+    }
+
+    /**
+     * Check if the current thread is a worker of this job system.
+     *
+     * @return True if the current thread belongs to the pool, else false.
+     */
+    private boolean isWorkerThread() {
+        return Thread.currentThread() instanceof ForkJoinWorkerThread worker && worker.getPool() == POOL;
+    }
+
+    /**
+     * Fork-join task running a range task over a range, split in halves until it is no larger than the grain size.
+     */
+    private static final class RangeAction extends RecursiveAction {
+        private final RangeTask TASK;
+        private final int FROM;
+        private final int TO;
+        private final int GRAIN_SIZE;
+
+        /**
+         * Create a new action over a range.
+         *
+         * @param task      Work over a part of the range.
+         * @param from      First index of the range.
+         * @param to        Index after the last index of the range.
+         * @param grainSize Largest number of indices run as one piece of work.
+         */
+        private RangeAction(RangeTask task, int from, int to, int grainSize) {
+            this.TASK = task;
+            this.FROM = from;
+            this.TO = to;
+            this.GRAIN_SIZE = grainSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (TO - FROM <= GRAIN_SIZE) {
+                TASK.run(FROM, TO);
+                return;
+            }
+
+            int middle = (FROM + TO) >>> 1;
+            invokeAll(new RangeAction(TASK, FROM, middle, GRAIN_SIZE), new RangeAction(TASK, middle, TO, GRAIN_SIZE));
+        }
+    }
+
+    /**
+     * Stop the worker threads once the jobs already scheduled have finished.
+     *
+     * @throws IllegalStateException If jobs were still running after waiting {@value #CLOSE_TIMEOUT_SECONDS} seconds.
+     */
+    @Override
+    public void close() {
+        if (POOL == null) return;
+
+        POOL.shutdown();
+        boolean terminated;
+
+        try {
+            terminated = POOL.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        if (!terminated) {
+            System.err.println("Jobs were still running " + CLOSE_TIMEOUT_SECONDS + " seconds after closing.");
+            throw new IllegalStateException("The job system could not finish its jobs.");
+        }
+    }
+
+    public int threadCount() {
+        return THREAD_COUNT;
+    }
+}
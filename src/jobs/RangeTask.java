@@ -0,0 +1,16 @@
+package jobs;
+
+/**
+ * Work over a range of indices, such as a slice of the entities in an entity store, run by
+ * {@link JobSystem#parallelFor}.
+ */
+@FunctionalInterface
+public interface RangeTask {
+    /**
+     * Run the work over a range of indices.
+     *
+     * @param from First index of the range.
+     * @param to   Index after the last index of the range.
+     */
+    void run(int from, int to);
+}
@@ -0,0 +1,373 @@
+package lighting;
+
+import jobs.JobSystem;
+import jobs.RangeTask;
+import org.lwjgl.util.vector.Matrix4f;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Clustered light culling for forward shading. The view frustum is split into a grid of clusters: tiles across the
+ * screen and slices along the depth, spaced exponentially so that clusters stay roughly cube-shaped. Every frame, each
+ * light's bounding sphere is assigned to the clusters it touches, and a fragment only shades the lights of its own
+ * cluster, so its cost follows the number of lights nearby rather than the number of lights in the scene.
+ * <p>
+ * The assignment runs one depth slice per job: a slice owns its clusters, so the jobs never write to the same place.
+ * Each cluster holds at most a fixed number of lights; lights beyond that are dropped from it and counted. The result
+ * is an offset and a count per cluster into one packed array of light indices, ready to be uploaded as is. Nothing is
+ * allocated once the scratch arrays have grown to the number of lights.
+ */
+public class LightClusters {
+    private static final int LIGHT_GRAIN_SIZE = 256;
+
+    /**
+     * Relative margin added around each light's depth and screen bounds, so that rounding never leaves out a cluster
+     * that the fragment shader computes slightly differently.
+     */
+    private static final float EDGE_PADDING = 1e-4f;
+
+    private final int TILES_X;
+    private final int TILES_Y;
+    private final int SLICES;
+    private final int TILES_PER_SLICE;
+    private final int CLUSTER_COUNT;
+    private final int MAX_LIGHTS_PER_CLUSTER;
+    private final float DEPTH_SCALE;
+    private final float DEPTH_BIAS;
+    private final float[] SLICE_DEPTHS;
+
+    private final int[] CLUSTER_SIZES;
+    private final int[] CLUSTER_SLOTS;
+    private final int[] SLICE_OVERFLOWS;
+    private final int[] CLUSTER_RANGES;
+    private final int[] LIGHT_INDICES;
+
+    private final RangeTask TRANSFORM_TASK = this::transformLights;
+    private final RangeTask SLICE_TASK = this::assignSlices;
+
+    private float[] centersX = new float[0];
+    private float[] centersY = new float[0];
+    private float[] depths = new float[0];
+    private float[] radii = new float[0];
+
+    private LightStore lights;
+    private Matrix4f viewMatrix;
+    private float xScale;
+    private float yScale;
+
+    private int lightCount = 0;
+    private int indexCount = 0;
+    private int overflowCount = 0;
+    private long assignments = 0;
+    private long totalAssignNanos = 0;
+
+    /**
+     * Create a new cluster grid over a view frustum.
+     *
+     * @param tilesX              Number of tiles across the width of the screen.
+     * @param tilesY              Number of tiles across the height of the screen.
+     * @param slices              Number of slices along the depth of the frustum.
+     * @param nearPlane           Distance to the near plane of the frustum.
+     * @param farPlane            Distance to the far plane of the frustum.
+     * @param maxLightsPerCluster Largest number of lights a cluster holds.
+     */
+    public LightClusters(int tilesX, int tilesY, int slices, float nearPlane, float farPlane, int maxLightsPerCluster) {
+        if (tilesX < 1 || tilesY < 1 || slices < 1 || maxLightsPerCluster < 1) {
+            throw new IllegalArgumentException("A cluster grid needs at least one cluster holding at least one light.");
+        }
+
+        if (nearPlane <= 0 || farPlane <= nearPlane) {
+            throw new IllegalArgumentException("A cluster grid needs 0 < near plane < far plane.");
+        }
+
+        this.TILES_X = tilesX;
+        this.TILES_Y = tilesY;
+        this.SLICES = slices;
+        this.TILES_PER_SLICE = tilesX * tilesY;
+        this.CLUSTER_COUNT = TILES_PER_SLICE * slices;
+        this.MAX_LIGHTS_PER_CLUSTER = maxLightsPerCluster;
+
+        // Slice s starts at near * (far / near)^(s / slices), so the slice of a depth is log(depth) * scale + bias.
+        float logRatio = (float) Math.log(farPlane / nearPlane);
+        this.DEPTH_SCALE = slices / logRatio;
+        this.DEPTH_BIAS = (float) -Math.log(nearPlane) * slices / logRatio;
+
+        SLICE_DEPTHS = new float[slices + 1];
+        for (int slice = 0; slice <= slices; slice++) {
+            SLICE_DEPTHS[slice] = (float) (nearPlane * Math.pow(farPlane / nearPlane, (double) slice / slices));
+        }
+
+        CLUSTER_SIZES = new int[CLUSTER_COUNT];
+        CLUSTER_SLOTS = new int[CLUSTER_COUNT * maxLightsPerCluster];
+        SLICE_OVERFLOWS = new int[slices];
+        CLUSTER_RANGES = new int[CLUSTER_COUNT * 2];
+        LIGHT_INDICES = new int[CLUSTER_COUNT * maxLightsPerCluster];
+    }
+
+    /**
+     * Assign every light of a store to the clusters its bounding sphere touches, as seen through a camera.
+     *
+     * @param lights           Lights to be assigned.
+     * @param projectionMatrix Perspective projection of the camera.
+     * @param viewMatrix       View matrix of the camera.
+     * @param jobs             Job system the lights and slices are processed on.
+     */
+    public void assign(LightStore lights, Matrix4f projectionMatrix, Matrix4f viewMatrix, JobSystem jobs) {
+        long start = System.nanoTime();
+
+        this.lights = lights;
+        this.viewMatrix = viewMatrix;
+        this.xScale = projectionMatrix.m00;
+        this.yScale = projectionMatrix.m11;
+        lightCount = lights.size();
+
+        if (centersX.length < lightCount) {
+            int capacity = Math.max(lightCount, centersX.length * 2);
+            centersX = new float[capacity];
+            centersY = new float[capacity];
+            depths = new float[capacity];
+            radii = new float[capacity];
+        }
+
+        jobs.parallelFor(0, lightCount, LIGHT_GRAIN_SIZE, TRANSFORM_TASK);
+        jobs.parallelFor(0, SLICES, 1, SLICE_TASK);
+
+        // Pack the clusters' lights back to back, in cluster order.
+        indexCount = 0;
+        overflowCount = 0;
+
+        for (int cluster = 0; cluster < CLUSTER_COUNT; cluster++) {
+            int size = CLUSTER_SIZES[cluster];
+            CLUSTER_RANGES[cluster * 2] = indexCount;
+            CLUSTER_RANGES[cluster * 2 + 1] = size;
+            System.arraycopy(CLUSTER_SLOTS, cluster * MAX_LIGHTS_PER_CLUSTER, LIGHT_INDICES, indexCount, size);
+            indexCount += size;
+        }
+
+        for (int overflow : SLICE_OVERFLOWS) overflowCount += overflow;
+
+        this.lights = null;
+        this.viewMatrix = null;
+
+        assignments++;
+        totalAssignNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Find the bounding sphere of a range of lights in view space. A spot light's sphere wraps its cone rather than
+     * its whole range.
+     *
+     * @param from First index of the range.
+     * @param to   Index after the last index of the range.
+     */
+    private void transformLights(int from, int to) {
+        float[] positionsX = lights.positionsX();
+        float[] positionsY = lights.positionsY();
+        float[] positionsZ = lights.positionsZ();
+        float[] directionsX = lights.directionsX();
+        float[] directionsY = lights.directionsY();
+        float[] directionsZ = lights.directionsZ();
+        float[] ranges = lights.ranges();
+        float[] outerCosines = lights.outerCosines();
+        Matrix4f view = viewMatrix;
+
+        for (int i = from; i < to; i++) {
+            float x = positionsX[i];
+            float y = positionsY[i];
+            float z = positionsZ[i];
+            float radius = ranges[i];
+
+            if (lights.isSpot(i)) {
+                float cosine = outerCosines[i];
+                float offset;
+
+                // A narrow cone fits in the sphere through its apex and rim; a wide one in the sphere around its rim.
+                if (cosine > (float) Math.sqrt(0.5)) {
+                    offset = radius / (2 * cosine);
+                    radius = offset;
+                }
+
+                else {
+                    offset = radius * cosine;
+                    radius *= (float) Math.sqrt(1 - cosine * cosine);
+                }
+
+                x += directionsX[i] * offset;
+                y += directionsY[i] * offset;
+                z += directionsZ[i] * offset;
+            }
+
+            centersX[i] = view.m00 * x + view.m10 * y + view.m20 * z + view.m30;
+            centersY[i] = view.m01 * x + view.m11 * y + view.m21 * z + view.m31;
+            depths[i] = -(view.m02 * x + view.m12 * y + view.m22 * z + view.m32);
+            radii[i] = radius;
+        }
+    }
+
+    /**
+     * Assign the lights to the clusters of a range of depth slices.
+     *
+     * @param from First slice of the range.
+     * @param to   Slice after the last slice of the range.
+     */
+    private void assignSlices(int from, int to) {
+        for (int slice = from; slice < to; slice++) {
+            int base = slice * TILES_PER_SLICE;
+            float sliceNear = SLICE_DEPTHS[slice] * (1 - EDGE_PADDING);
+            float sliceFar = SLICE_DEPTHS[slice + 1] * (1 + EDGE_PADDING);
+            int overflow = 0;
+
+            Arrays.fill(CLUSTER_SIZES, base, base + TILES_PER_SLICE, 0);
+
+            for (int light = 0; light < lightCount; light++) {
+                float depth = depths[light];
+                float radius = radii[light];
+                if (depth + radius < sliceNear || depth - radius > sliceFar) continue;
+
+                // Part of the sphere within the slice, bounded by its widest cross-section there.
+                float near = Math.max(sliceNear, depth - radius);
+                float far = Math.min(sliceFar, depth + radius);
+                float offset = depth < near ? near - depth : depth > far ? depth - far : 0;
+                float sectionRadius = (float) Math.sqrt(Math.max(0, radius * radius - offset * offset));
+
+                // Screen bounds of that part; each edge is furthest out at one of the two depths.
+                float left = (centersX[light] - sectionRadius) * xScale;
+                float right = (centersX[light] + sectionRadius) * xScale;
+                float bottom = (centersY[light] - sectionRadius) * yScale;
+                float top = (centersY[light] + sectionRadius) * yScale;
+
+                float minX = Math.min(left / near, left / far) - EDGE_PADDING;
+                float maxX = Math.max(right / near, right / far) + EDGE_PADDING;
+                float minY = Math.min(bottom / near, bottom / far) - EDGE_PADDING;
+                float maxY = Math.max(top / near, top / far) + EDGE_PADDING;
+                if (maxX < -1 || minX > 1 || maxY < -1 || minY > 1) continue;
+
+                int tileMinX = tile(minX, TILES_X);
+                int tileMaxX = tile(maxX, TILES_X);
+                int tileMinY = tile(minY, TILES_Y);
+                int tileMaxY = tile(maxY, TILES_Y);
+
+                for (int tileY = tileMinY; tileY <= tileMaxY; tileY++) {
+                    for (int tileX = tileMinX; tileX <= tileMaxX; tileX++) {
+                        int cluster = base + tileY * TILES_X + tileX;
+                        int size = CLUSTER_SIZES[cluster];
+
+                        if (size == MAX_LIGHTS_PER_CLUSTER) {
+                            overflow++;
+                            continue;
+                        }
+
+                        CLUSTER_SLOTS[cluster * MAX_LIGHTS_PER_CLUSTER + size] = light;
+                        CLUSTER_SIZES[cluster] = size + 1;
+                    }
+                }
+            }
+
+            SLICE_OVERFLOWS[slice] = overflow;
+        }
+    }
+
+    /**
+     * Find the tile holding a normalized device coordinate along one axis, clamped to the grid.
+     *
+     * @param coordinate Normalized device coordinate, from -1 to 1 across the screen.
+     * @param tiles      Number of tiles along the axis.
+     * @return Tile along the axis.
+     */
+    private static int tile(float coordinate, int tiles) {
+        int tile = (int) Math.floor((coordinate * 0.5f + 0.5f) * tiles);
+        return Math.max(0, Math.min(tiles - 1, tile));
+    }
+
+    /**
+     * Find the cluster holding a point, the same way the fragment shaders do.
+     *
+     * @param ndcX  X normalized device coordinate of the point.
+     * @param ndcY  Y normalized device coordinate of the point.
+     * @param depth Distance of the point in front of the camera.
+     * @return Index of the cluster.
+     */
+    public int clusterAt(float ndcX, float ndcY, float depth) {
+        int slice = (int) Math.floor(Math.log(depth) * DEPTH_SCALE + DEPTH_BIAS);
+        slice = Math.max(0, Math.min(SLICES - 1, slice));
+
+        return (slice * TILES_Y + tile(ndcY, TILES_Y)) * TILES_X + tile(ndcX, TILES_X);
+    }
+
+    /**
+     * Print how many lights were assigned and how long assigning them took on average.
+     *
+     * @param out Stream to print to.
+     */
+    public void print(PrintStream out) {
+        out.printf(
+                "Light clusters: %d lights, %d cluster entries, %d dropped, %.3f ms per assignment on average%n",
+                lightCount, indexCount, overflowCount, averageAssignMillis()
+        );
+    }
+
+    /**
+     * Get the average time taken by an assignment.
+     *
+     * @return Average assignment time in milliseconds, or 0 before the first assignment.
+     */
+    public float averageAssignMillis() {
+        return assignments == 0 ? 0 : totalAssignNanos / (assignments * 1e6f);
+    }
+
+    /**
+     * Get the offset and count of every cluster's lights within {@link #lightIndices()}, two ints per cluster.
+     *
+     * @return Ranges of the clusters, valid until the next assignment.
+     */
+    public int[] clusterRanges() {
+        return CLUSTER_RANGES;
+    }
+
+    /**
+     * Get the store indices of the lights of every cluster, packed back to back; only the first
+     * {@link #indexCount()} are in use.
+     *
+     * @return Light indices of the clusters, valid until the next assignment.
+     */
+    public int[] lightIndices() {
+        return LIGHT_INDICES;
+    }
+
+    public int indexCount() {
+        return indexCount;
+    }
+
+    public int lightCount() {
+        return lightCount;
+    }
+
+    public int overflowCount() {
+        return overflowCount;
+    }
+
+    public int clusterCount() {
+        return CLUSTER_COUNT;
+    }
+
+    public int tilesX() {
+        return TILES_X;
+    }
+
+    public int tilesY() {
+        return TILES_Y;
+    }
+
+    public int slices() {
+        return SLICES;
+    }
+
+    public float depthScale() {
+        return DEPTH_SCALE;
+    }
+
+    public float depthBias() {
+        return DEPTH_BIAS;
+    }
+}
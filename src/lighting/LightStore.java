@@ -0,0 +1,323 @@
+package lighting;
+
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays storage for the local point and spot lights of a scene, lit per pixel through
+ * {@link LightClusters}. The sun stays a single {@link entities.Light} outside of the store.
+ * <p>
+ * Like the entity store, lights are identified by ids that stay valid until they are removed, while the live lights
+ * occupy indices 0 to {@link #size()} - 1 without gaps. A point light is a spot light whose cone covers every
+ * direction, so both kinds share the same arrays and the same shader code.
+ */
+public class LightStore {
+    /**
+     * Cosines of the cone angles of a point light, at and below the lowest possible cosine so that every direction is
+     * at full intensity.
+     */
+    private static final float POINT_LIGHT_INNER_COSINE = -1;
+    private static final float POINT_LIGHT_OUTER_COSINE = -2;
+
+    private float[] positionsX;
+    private float[] positionsY;
+    private float[] positionsZ;
+    private float[] colorsR;
+    private float[] colorsG;
+    private float[] colorsB;
+    private float[] ranges;
+    private float[] directionsX;
+    private float[] directionsY;
+    private float[] directionsZ;
+    private float[] innerCosines;
+    private float[] outerCosines;
+    private int[] ids;
+
+    private int[] indices;
+    private int freeId = -1;
+    private int idCount = 0;
+    private int size = 0;
+
+    /**
+     * Create a new empty light store.
+     *
+     * @param initialCapacity Number of lights the store can hold before its arrays have to grow.
+     */
+    public LightStore(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+
+        allocate(capacity);
+        indices = new int[capacity];
+    }
+
+    /**
+     * Add a point light, shining in every direction.
+     *
+     * @param x     X position of the light.
+     * @param y     Y position of the light.
+     * @param z     Z position of the light.
+     * @param red   Red intensity of the light.
+     * @param green Green intensity of the light.
+     * @param blue  Blue intensity of the light.
+     * @param range Distance at which the light fades out completely.
+     * @return Id of the light, valid until it is removed.
+     */
+    public int addPoint(float x, float y, float z, float red, float green, float blue, float range) {
+        return add(x, y, z, red, green, blue, range, 0, -1, 0, POINT_LIGHT_INNER_COSINE, POINT_LIGHT_OUTER_COSINE);
+    }
+
+    /**
+     * Add a spot light, shining in a cone that fades out between an inner and an outer angle.
+     *
+     * @param x          X position of the light.
+     * @param y          Y position of the light.
+     * @param z          Z position of the light.
+     * @param red        Red intensity of the light.
+     * @param green      Green intensity of the light.
+     * @param blue       Blue intensity of the light.
+     * @param range      Distance at which the light fades out completely.
+     * @param directionX X component of the direction of the cone.
+     * @param directionY Y component of the direction of the cone.
+     * @param directionZ Z component of the direction of the cone.
+     * @param innerAngle Angle from the direction in degrees within which the light is at full intensity.
+     * @param outerAngle Angle from the direction in degrees beyond which the light is off; below 90.
+     * @return Id of the light, valid until it is removed.
+     */
+    public int addSpot(
+            float x, float y, float z, float red, float green, float blue, float range, float directionX,
+            float directionY, float directionZ, float innerAngle, float outerAngle
+    ) {
+        if (outerAngle <= 0 || outerAngle >= 90 || innerAngle > outerAngle) {
+            throw new IllegalArgumentException("A spot light needs 0 < inner angle <= outer angle < 90 degrees.");
+        }
+
+        float length = (float) Math.sqrt(directionX * directionX + directionY * directionY + directionZ * directionZ);
+        if (length == 0) throw new IllegalArgumentException("A spot light needs a direction.");
+
+        return add(
+                x, y, z, red, green, blue, range, directionX / length, directionY / length, directionZ / length,
+                (float) Math.cos(Math.toRadians(innerAngle)), (float) Math.cos(Math.toRadians(outerAngle))
+        );
+    }
+
+    /**
+     * Add a light to the store.
+     *
+     * @param x           X position of the light.
+     * @param y           Y position of the light.
+     * @param z           Z position of the light.
+     * @param red         Red intensity of the light.
+     * @param green       Green intensity of the light.
+     * @param blue        Blue intensity of the light.
+     * @param range       Distance at which the light fades out completely.
+     * @param directionX  X component of the unit direction of the cone.
+     * @param directionY  Y component of the unit direction of the cone.
+     * @param directionZ  Z component of the unit direction of the cone.
+     * @param innerCosine Cosine of the angle within which the light is at full intensity.
+     * @param outerCosine Cosine of the angle beyond which the light is off.
+     * @return Id of the light, valid until it is removed.
+     */
+    private int add(
+            float x, float y, float z, float red, float green, float blue, float range, float directionX,
+            float directionY, float directionZ, float innerCosine, float outerCosine
+    ) {
+        if (range <= 0) throw new IllegalArgumentException("A light must have a positive range.");
+        if (size == positionsX.length) allocate(size * 2);
+
+        int id;
+
+        if (freeId != -1) {
+            id = freeId;
+            freeId = indices[id];
+        }
+
+        else {
+            if (idCount == indices.length) indices = Arrays.copyOf(indices, idCount * 2);
+            id = idCount++;
+        }
+
+        int index = size++;
+        indices[id] = index;
+        ids[index] = id;
+
+        positionsX[index] = x;
+        positionsY[index] = y;
+        positionsZ[index] = z;
+        colorsR[index] = red;
+        colorsG[index] = green;
+        colorsB[index] = blue;
+        ranges[index] = range;
+        directionsX[index] = directionX;
+        directionsY[index] = directionY;
+        directionsZ[index] = directionZ;
+        innerCosines[index] = innerCosine;
+        outerCosines[index] = outerCosine;
+
+        return id;
+    }
+
+    /**
+     * Remove a light from the store, moving the last light into its slot. Its id becomes invalid.
+     *
+     * @param id Id of the light.
+     */
+    public void remove(int id) {
+        int index = index(id);
+        int last = --size;
+
+        if (index != last) {
+            positionsX[index] = positionsX[last];
+            positionsY[index] = positionsY[last];
+            positionsZ[index] = positionsZ[last];
+            colorsR[index] = colorsR[last];
+            colorsG[index] = colorsG[last];
+            colorsB[index] = colorsB[last];
+            ranges[index] = ranges[last];
+            directionsX[index] = directionsX[last];
+            directionsY[index] = directionsY[last];
+            directionsZ[index] = directionsZ[last];
+            innerCosines[index] = innerCosines[last];
+            outerCosines[index] = outerCosines[last];
+
+            ids[index] = ids[last];
+            indices[ids[index]] = index;
+        }
+
+        indices[id] = freeId;
+        freeId = id;
+        ids[last] = -1;
+    }
+
+    /**
+     * Move a light.
+     *
+     * @param id Id of the light.
+     * @param x  New X position of the light.
+     * @param y  New Y position of the light.
+     * @param z  New Z position of the light.
+     */
+    public void setPosition(int id, float x, float y, float z) {
+        int index = index(id);
+
+        positionsX[index] = x;
+        positionsY[index] = y;
+        positionsZ[index] = z;
+    }
+
+    /**
+     * Change the color of a light.
+     *
+     * @param id    Id of the light.
+     * @param red   New red intensity of the light.
+     * @param green New green intensity of the light.
+     * @param blue  New blue intensity of the light.
+     */
+    public void setColor(int id, float red, float green, float blue) {
+        int index = index(id);
+
+        colorsR[index] = red;
+        colorsG[index] = green;
+        colorsB[index] = blue;
+    }
+
+    /**
+     * Find the index of a light in the arrays.
+     *
+     * @param id Id of the light.
+     * @return Index of the light.
+     */
+    public int index(int id) {
+        if (id < 0 || id >= idCount || indices[id] < 0 || indices[id] >= size || ids[indices[id]] != id) {
+            throw new IllegalArgumentException("Id " + id + " does not refer to a light in the store.");
+        }
+
+        return indices[id];
+    }
+
+    /**
+     * Check if a light is a spot light.
+     *
+     * @param index Index of the light.
+     * @return True if the light shines in a cone, false if it shines in every direction.
+     */
+    public boolean isSpot(int index) {
+        return outerCosines[index] > POINT_LIGHT_OUTER_COSINE;
+    }
+
+    /**
+     * Grow every array to a new capacity, keeping the live lights.
+     *
+     * @param capacity New capacity.
+     */
+    private void allocate(int capacity) {
+        positionsX = positionsX == null ? new float[capacity] : Arrays.copyOf(positionsX, capacity);
+        positionsY = positionsY == null ? new float[capacity] : Arrays.copyOf(positionsY, capacity);
+        positionsZ = positionsZ == null ? new float[capacity] : Arrays.copyOf(positionsZ, capacity);
+        colorsR = colorsR == null ? new float[capacity] : Arrays.copyOf(colorsR, capacity);
+        colorsG = colorsG == null ? new float[capacity] : Arrays.copyOf(colorsG, capacity);
+        colorsB = colorsB == null ? new float[capacity] : Arrays.copyOf(colorsB, capacity);
+        ranges = ranges == null ? new float[capacity] : Arrays.copyOf(ranges, capacity);
+        directionsX = directionsX == null ? new float[capacity] : Arrays.copyOf(directionsX, capacity);
+        directionsY = directionsY == null ? new float[capacity] : Arrays.copyOf(directionsY, capacity);
+        directionsZ = directionsZ == null ? new float[capacity] : Arrays.copyOf(directionsZ, capacity);
+        innerCosines = innerCosines == null ? new float[capacity] : Arrays.copyOf(innerCosines, capacity);
+        outerCosines = outerCosines == null ? new float[capacity] : Arrays.copyOf(outerCosines, capacity);
+
+        ids = ids == null ? new int[capacity] : Arrays.copyOf(ids, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int id(int index) {
+        return ids[index];
+    }
+
+    public float[] positionsX() {
+        return positionsX;
+    }
+
+    public float[] positionsY() {
+        return positionsY;
+    }
+
+    public float[] positionsZ() {
+        return positionsZ;
+    }
+
+    public float[] colorsR() {
+        return colorsR;
+    }
+
+    public float[] colorsG() {
+        return colorsG;
+    }
+
+    public float[] colorsB() {
+        return colorsB;
+    }
+
+    public float[] ranges() {
+        return ranges;
+    }
+
+    public float[] directionsX() {
+        return directionsX;
+    }
+
+    public float[] directionsY() {
+        return directionsY;
+    }
+
+    public float[] directionsZ() {
+        return directionsZ;
+    }
+
+    public float[] innerCosines() {
+        return innerCosines;
+    }
+
+    public float[] outerCosines() {
+        return outerCosines;
+    }
+}
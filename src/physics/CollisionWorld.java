@@ -0,0 +1,592 @@
+package physics;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Collision detection and response between static boxes, such as tree trunks, and dynamic upright capsules, such as
+ * the player, standing on a height field.
+ * <p>
+ * The broadphase is sweep-and-prune along the X axis: the lower and upper X bounds of every body are kept in one
+ * sorted array of endpoints, re-sorted by insertion sort every step. Bodies move little between steps, so the array is
+ * nearly sorted and the sort takes close to linear time. A sweep over the endpoints then finds every pair of bounding
+ * boxes overlapping on all three axes, skipping pairs of static boxes. The narrowphase pushes each capsule out of the
+ * boxes and capsules it touches, and up onto the ground. All the working arrays are kept between steps, so a step
+ * allocates nothing once the world has stopped growing.
+ */
+public class CollisionWorld {
+    private static final int NONE = -1;
+    private static final float GROUND_NORMAL_Y = 0.7f;
+
+    private boolean[] used;
+    private boolean[] dynamic;
+    private boolean[] grounded;
+    private float[] minX;
+    private float[] minY;
+    private float[] minZ;
+    private float[] maxX;
+    private float[] maxY;
+    private float[] maxZ;
+    private float[] positionsX;
+    private float[] positionsY;
+    private float[] positionsZ;
+    private float[] radii;
+    private float[] heights;
+    private int[] activeSlots;
+
+    private float[] endpointValues;
+    private int[] endpoints;
+    private int endpointCount = 0;
+
+    private int[] activeStatic;
+    private int[] activeDynamic;
+    private int[] pairs;
+    private int pairCount = 0;
+
+    private int capacity;
+    private int bodyCount = 0;
+    private int highWater = 0;
+    private int freeHead = NONE;
+
+    private long steps = 0;
+    private long lastStepNanos = 0;
+    private long totalStepNanos = 0;
+    private long maxStepNanos = 0;
+    private int maxPairCount = 0;
+    private int contactCount = 0;
+
+    /**
+     * Create a new empty collision world.
+     *
+     * @param expectedBodies Number of bodies the world can hold before its arrays have to grow.
+     */
+    public CollisionWorld(int expectedBodies) {
+        allocate(Math.max(16, expectedBodies));
+        pairs = new int[capacity * 2];
+    }
+
+    /**
+     * Add a static axis-aligned box.
+     *
+     * @param minX Smallest X of the box.
+     * @param minY Smallest Y of the box.
+     * @param minZ Smallest Z of the box.
+     * @param maxX Largest X of the box.
+     * @param maxY Largest Y of the box.
+     * @param maxZ Largest Z of the box.
+     * @return Handle of the box.
+     */
+    public int addBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int body = allocateBody(false);
+
+        this.minX[body] = minX;
+        this.minY[body] = minY;
+        this.minZ[body] = minZ;
+        this.maxX[body] = maxX;
+        this.maxY[body] = maxY;
+        this.maxZ[body] = maxZ;
+
+        insertEndpoints(body);
+        return body;
+    }
+
+    /**
+     * Add a dynamic upright capsule. A capsule as high as it is wide is a sphere.
+     *
+     * @param x      X position of the bottom of the capsule.
+     * @param y      Y position of the bottom of the capsule.
+     * @param z      Z position of the bottom of the capsule.
+     * @param radius Radius of the capsule.
+     * @param height Height of the capsule, at least twice its radius.
+     * @return Handle of the capsule.
+     */
+    public int addCapsule(float x, float y, float z, float radius, float height) {
+        if (height < 2 * radius) {
+            throw new IllegalArgumentException("A capsule must be at least as high as it is wide.");
+        }
+
+        int body = allocateBody(true);
+
+        radii[body] = radius;
+        heights[body] = height;
+        setPosition(body, x, y, z);
+
+        insertEndpoints(body);
+        return body;
+    }
+
+    /**
+     * Remove a body from the world, freeing its handle for reuse.
+     *
+     * @param body Handle of the body.
+     */
+    public void remove(int body) {
+        checkBody(body);
+
+        int write = 0;
+        for (int read = 0; read < endpointCount; read++) {
+            if (endpoints[read] >> 1 == body) continue;
+
+            endpoints[write] = endpoints[read];
+            endpointValues[write] = endpointValues[read];
+            write++;
+        }
+
+        endpointCount = write;
+        used[body] = false;
+        activeSlots[body] = freeHead;
+        freeHead = body;
+        bodyCount--;
+    }
+
+    /**
+     * Move a dynamic body. Its position is resolved against everything it touches in the next step.
+     *
+     * @param body Handle of the body.
+     * @param x    X position of the bottom of the body.
+     * @param y    Y position of the bottom of the body.
+     * @param z    Z position of the bottom of the body.
+     */
+    public void setPosition(int body, float x, float y, float z) {
+        checkBody(body);
+        if (!dynamic[body]) throw new IllegalArgumentException("Static bodies cannot be moved.");
+
+        positionsX[body] = x;
+        positionsY[body] = y;
+        positionsZ[body] = z;
+    }
+
+    /**
+     * Find the pairs of bodies whose bounding boxes overlap, push every dynamic body out of what it touches and stand
+     * it on the ground.
+     *
+     * @param ground Ground under the bodies, or null for no ground.
+     * @return Number of contacts resolved.
+     */
+    public int step(HeightField ground) {
+        long start = System.nanoTime();
+
+        updateBounds();
+        sortEndpoints();
+        findPairs();
+
+        contactCount = 0;
+        for (int body = 0; body < highWater; body++) grounded[body] = false;
+
+        for (int pair = 0; pair < pairCount * 2; pair += 2) {
+            int first = pairs[pair];
+            int second = pairs[pair + 1];
+
+            if (dynamic[first] && dynamic[second]) resolveCapsules(first, second);
+            else if (dynamic[first]) resolveCapsuleBox(first, second);
+            else resolveCapsuleBox(second, first);
+        }
+
+        if (ground != null) {
+            for (int body = 0; body < highWater; body++) {
+                if (!used[body] || !dynamic[body]) continue;
+
+                float height = ground.heightAt(positionsX[body], positionsZ[body]);
+                if (positionsY[body] <= height) {
+                    positionsY[body] = height;
+                    grounded[body] = true;
+                }
+            }
+        }
+
+        lastStepNanos = System.nanoTime() - start;
+        totalStepNanos += lastStepNanos;
+        maxStepNanos = Math.max(maxStepNanos, lastStepNanos);
+        maxPairCount = Math.max(maxPairCount, pairCount);
+        steps++;
+
+        return contactCount;
+    }
+
+    /**
+     * Print the pair counts and step times since the world was created.
+     *
+     * @param out Stream to print to.
+     */
+    public void print(PrintStream out) {
+        out.printf(
+                "Collision: %d bodies, %d steps, %.3f ms average step, %.3f ms worst, %d pairs last step, %d at most%n",
+                bodyCount, steps, steps == 0 ? 0 : totalStepNanos / 1e6 / steps, maxStepNanos / 1e6, pairCount,
+                maxPairCount
+        );
+    }
+
+    /**
+     * Rebuild the bounding boxes of the dynamic bodies from their positions, and the endpoint values from the boxes.
+     */
+    private void updateBounds() {
+        for (int body = 0; body < highWater; body++) {
+            if (!used[body] || !dynamic[body]) continue;
+
+            float radius = radii[body];
+            minX[body] = positionsX[body] - radius;
+            maxX[body] = positionsX[body] + radius;
+            minY[body] = positionsY[body];
+            maxY[body] = positionsY[body] + heights[body];
+            minZ[body] = positionsZ[body] - radius;
+            maxZ[body] = positionsZ[body] + radius;
+        }
+
+        for (int i = 0; i < endpointCount; i++) {
+            int body = endpoints[i] >> 1;
+            endpointValues[i] = (endpoints[i] & 1) == 0 ? minX[body] : maxX[body];
+        }
+    }
+
+    /**
+     * Sort the endpoints by insertion sort, which is close to linear on the nearly sorted array left by the previous
+     * step. Lower endpoints go before upper endpoints of the same value, so touching boxes count as overlapping.
+     */
+    private void sortEndpoints() {
+        for (int i = 1; i < endpointCount; i++) {
+            float value = endpointValues[i];
+            int endpoint = endpoints[i];
+            int j = i - 1;
+
+            while (j >= 0 && comesAfter(endpointValues[j], endpoints[j], value, endpoint)) {
+                endpointValues[j + 1] = endpointValues[j];
+                endpoints[j + 1] = endpoints[j];
+                j--;
+            }
+
+            endpointValues[j + 1] = value;
+            endpoints[j + 1] = endpoint;
+        }
+    }
+
+    /**
+     * Sweep over the sorted endpoints, keeping the bodies whose X ranges contain the sweep position, and record every
+     * pair of them that also overlaps on the Y and Z axes and involves a dynamic body. Static and dynamic bodies are
+     * kept in separate active lists, so a static body entering the sweep is only tested against the dynamic ones.
+     */
+    private void findPairs() {
+        pairCount = 0;
+        int staticCount = 0;
+        int dynamicCount = 0;
+
+        for (int i = 0; i < endpointCount; i++) {
+            int body = endpoints[i] >> 1;
+            boolean isDynamic = dynamic[body];
+
+            if ((endpoints[i] & 1) == 1) {
+                int[] active = isDynamic ? activeDynamic : activeStatic;
+                int last = active[isDynamic ? --dynamicCount : --staticCount];
+                int slot = activeSlots[body];
+                active[slot] = last;
+                activeSlots[last] = slot;
+                continue;
+            }
+
+            addOverlaps(body, activeDynamic, dynamicCount);
+
+            if (isDynamic) {
+                addOverlaps(body, activeStatic, staticCount);
+                activeSlots[body] = dynamicCount;
+                activeDynamic[dynamicCount++] = body;
+            }
+
+            else {
+                activeSlots[body] = staticCount;
+                activeStatic[staticCount++] = body;
+            }
+        }
+    }
+
+    /**
+     * Record a pair for every active body whose bounding box overlaps a body's on the Y and Z axes. The X ranges of
+     * the active bodies already overlap it.
+     *
+     * @param body        Handle of the body entering the sweep.
+     * @param active      Active bodies.
+     * @param activeCount Number of active bodies.
+     */
+    private void addOverlaps(int body, int[] active, int activeCount) {
+        for (int a = 0; a < activeCount; a++) {
+            int other = active[a];
+            if (minY[body] > maxY[other] || minY[other] > maxY[body]) continue;
+            if (minZ[body] > maxZ[other] || minZ[other] > maxZ[body]) continue;
+
+            if (pairCount * 2 == pairs.length) pairs = Arrays.copyOf(pairs, pairs.length * 2);
+            pairs[pairCount * 2] = body;
+            pairs[pairCount * 2 + 1] = other;
+            pairCount++;
+        }
+    }
+
+    /**
+     * Push a capsule out of a static box.
+     *
+     * @param capsule Handle of the capsule.
+     * @param box     Handle of the box.
+     */
+    private void resolveCapsuleBox(int capsule, int box) {
+        float radius = radii[capsule];
+        float x = positionsX[capsule];
+        float z = positionsZ[capsule];
+        float bottom = positionsY[capsule] + radius;
+        float top = positionsY[capsule] + heights[capsule] - radius;
+
+        // Point of the capsule's axis closest to the box along Y.
+        float y;
+        if (top < minY[box]) y = top;
+        else if (bottom > maxY[box]) y = bottom;
+        else y = (Math.max(bottom, minY[box]) + Math.min(top, maxY[box])) / 2;
+
+        float dx = x - Math.max(minX[box], Math.min(maxX[box], x));
+        float dy = y - Math.max(minY[box], Math.min(maxY[box], y));
+        float dz = z - Math.max(minZ[box], Math.min(maxZ[box], z));
+        float squaredDistance = dx * dx + dy * dy + dz * dz;
+        if (squaredDistance >= radius * radius) return;
+
+        float normalX;
+        float normalY;
+        float normalZ;
+        float depth;
+
+        if (squaredDistance > 0) {
+            float distance = (float) Math.sqrt(squaredDistance);
+            normalX = dx / distance;
+            normalY = dy / distance;
+            normalZ = dz / distance;
+            depth = radius - distance;
+        }
+
+        else {
+            // The axis is inside the box: leave through the nearest side or the top.
+            float left = x - minX[box];
+            float right = maxX[box] - x;
+            float back = z - minZ[box];
+            float front = maxZ[box] - z;
+            float up = maxY[box] - positionsY[capsule] - radius;
+            float nearest = Math.min(Math.min(left, right), Math.min(Math.min(back, front), up));
+
+            normalX = nearest == left ? -1 : nearest == right ? 1 : 0;
+            normalZ = normalX != 0 ? 0 : nearest == back ? -1 : nearest == front ? 1 : 0;
+            normalY = normalX == 0 && normalZ == 0 ? 1 : 0;
+            depth = nearest + radius;
+        }
+
+        positionsX[capsule] += normalX * depth;
+        positionsY[capsule] += normalY * depth;
+        positionsZ[capsule] += normalZ * depth;
+        if (normalY > GROUND_NORMAL_Y) grounded[capsule] = true;
+        contactCount++;
+    }
+
+    /**
+     * Push two capsules out of each other, each by half the overlap.
+     *
+     * @param first  Handle of the first capsule.
+     * @param second Handle of the second capsule.
+     */
+    private void resolveCapsules(int first, int second) {
+        float firstBottom = positionsY[first] + radii[first];
+        float firstTop = positionsY[first] + heights[first] - radii[first];
+        float secondBottom = positionsY[second] + radii[second];
+        float secondTop = positionsY[second] + heights[second] - radii[second];
+
+        // Closest points of the two vertical axes: level with each other where their heights overlap.
+        float firstY;
+        float secondY;
+        if (firstTop < secondBottom) {
+            firstY = firstTop;
+            secondY = secondBottom;
+        }
+
+        else if (secondTop < firstBottom) {
+            firstY = firstBottom;
+            secondY = secondTop;
+        }
+
+        else {
+            firstY = (Math.max(firstBottom, secondBottom) + Math.min(firstTop, secondTop)) / 2;
+            secondY = firstY;
+        }
+
+        float dx = positionsX[first] - positionsX[second];
+        float dy = firstY - secondY;
+        float dz = positionsZ[first] - positionsZ[second];
+        float reach = radii[first] + radii[second];
+        float squaredDistance = dx * dx + dy * dy + dz * dz;
+        if (squaredDistance >= reach * reach) return;
+
+        float distance = (float) Math.sqrt(squaredDistance);
+        float normalX = distance > 0 ? dx / distance : 1;
+        float normalY = distance > 0 ? dy / distance : 0;
+        float normalZ = distance > 0 ? dz / distance : 0;
+        float halfDepth = (reach - distance) / 2;
+
+        positionsX[first] += normalX * halfDepth;
+        positionsY[first] += normalY * halfDepth;
+        positionsZ[first] += normalZ * halfDepth;
+        positionsX[second] -= normalX * halfDepth;
+        positionsY[second] -= normalY * halfDepth;
+        positionsZ[second] -= normalZ * halfDepth;
+
+        if (normalY > GROUND_NORMAL_Y) grounded[first] = true;
+        if (-normalY > GROUND_NORMAL_Y) grounded[second] = true;
+        contactCount++;
+    }
+
+    /**
+     * Check if one endpoint belongs after another in the sorted order.
+     *
+     * @param value         Value of the first endpoint.
+     * @param endpoint      First endpoint, as its body times two plus one if it is an upper bound.
+     * @param otherValue    Value of the second endpoint.
+     * @param otherEndpoint Second endpoint.
+     * @return True if the first endpoint belongs after the second, else false.
+     */
+    private static boolean comesAfter(float value, int endpoint, float otherValue, int otherEndpoint) {
+        return value > otherValue || (value == otherValue && (endpoint & 1) > (otherEndpoint & 1));
+    }
+
+    /**
+     * Add the endpoints of a new body to the end of the endpoint array; the next step sorts them into place.
+     *
+     * @param body Handle of the body.
+     */
+    private void insertEndpoints(int body) {
+        if (endpointCount + 2 > endpoints.length) {
+            endpoints = Arrays.copyOf(endpoints, endpoints.length * 2);
+            endpointValues = Arrays.copyOf(endpointValues, endpointValues.length * 2);
+        }
+
+        endpoints[endpointCount++] = body << 1;
+        endpoints[endpointCount++] = (body << 1) | 1;
+    }
+
+    /**
+     * Take a free handle for a new body, growing the arrays if needed.
+     *
+     * @param isDynamic True if the body is a capsule, false if it is a static box.
+     * @return Handle of the body.
+     */
+    private int allocateBody(boolean isDynamic) {
+        int body;
+
+        if (freeHead != NONE) {
+            body = freeHead;
+            freeHead = activeSlots[body];
+        }
+
+        else {
+            if (highWater == capacity) allocate(capacity * 2);
+            body = highWater++;
+        }
+
+        used[body] = true;
+        dynamic[body] = isDynamic;
+        grounded[body] = false;
+        bodyCount++;
+        return body;
+    }
+
+    /**
+     * Check that a handle refers to a body in the world.
+     *
+     * @param body Handle to be checked.
+     */
+    private void checkBody(int body) {
+        if (body < 0 || body >= highWater || !used[body]) {
+            throw new IllegalArgumentException("Handle " + body + " does not refer to a body in the world.");
+        }
+    }
+
+    /**
+     * Grow the per-body arrays.
+     *
+     * @param newCapacity Number of bodies the arrays can hold.
+     */
+    private void allocate(int newCapacity) {
+        used = used == null ? new boolean[newCapacity] : Arrays.copyOf(used, newCapacity);
+        dynamic = dynamic == null ? new boolean[newCapacity] : Arrays.copyOf(dynamic, newCapacity);
+        grounded = grounded == null ? new boolean[newCapacity] : Arrays.copyOf(grounded, newCapacity);
+        minX = minX == null ? new float[newCapacity] : Arrays.copyOf(minX, newCapacity);
+        minY = minY == null ? new float[newCapacity] : Arrays.copyOf(minY, newCapacity);
+        minZ = minZ == null ? new float[newCapacity] : Arrays.copyOf(minZ, newCapacity);
+        maxX = maxX == null ? new float[newCapacity] : Arrays.copyOf(maxX, newCapacity);
+        maxY = maxY == null ? new float[newCapacity] : Arrays.copyOf(maxY, newCapacity);
+        maxZ = maxZ == null ? new float[newCapacity] : Arrays.copyOf(maxZ, newCapacity);
+        positionsX = positionsX == null ? new float[newCapacity] : Arrays.copyOf(positionsX, newCapacity);
+        positionsY = positionsY == null ? new float[newCapacity] : Arrays.copyOf(positionsY, newCapacity);
+        positionsZ = positionsZ == null ? new float[newCapacity] : Arrays.copyOf(positionsZ, newCapacity);
+        radii = radii == null ? new float[newCapacity] : Arrays.copyOf(radii, newCapacity);
+        heights = heights == null ? new float[newCapacity] : Arrays.copyOf(heights, newCapacity);
+        activeSlots = activeSlots == null ? new int[newCapacity] : Arrays.copyOf(activeSlots, newCapacity);
+        activeStatic = new int[newCapacity];
+        activeDynamic = new int[newCapacity];
+
+        endpoints = endpoints == null ? new int[newCapacity * 2] : endpoints;
+        endpointValues = endpointValues == null ? new float[newCapacity * 2] : endpointValues;
+        capacity = newCapacity;
+    }
+
+    /**
+     * Get the resolved X position of a dynamic body.
+     *
+     * @param body Handle of the body.
+     * @return X position of the bottom of the body.
+     */
+    public float x(int body) {
+        return positionsX[body];
+    }
+
+    /**
+     * Get the resolved Y position of a dynamic body.
+     *
+     * @param body Handle of the body.
+     * @return Y position of the bottom of the body.
+     */
+    public float y(int body) {
+        return positionsY[body];
+    }
+
+    /**
+     * Get the resolved Z position of a dynamic body.
+     *
+     * @param body Handle of the body.
+     * @return Z position of the bottom of the body.
+     */
+    public float z(int body) {
+        return positionsZ[body];
+    }
+
+    /**
+     * Check if a dynamic body was standing on the ground or on another body after the last step.
+     *
+     * @param body Handle of the body.
+     * @return True if the body is supported, else false.
+     */
+    public boolean isGrounded(int body) {
+        return grounded[body];
+    }
+
+    public int bodyCount() {
+        return bodyCount;
+    }
+
+    public int pairCount() {
+        return pairCount;
+    }
+
+    /**
+     * Get the pairs found by the broadphase in the last step.
+     *
+     * @param pair Index of the pair.
+     * @param side 0 for the first body of the pair, 1 for the second.
+     * @return Handle of the body.
+     */
+    public int pairBody(int pair, int side) {
+        return pairs[pair * 2 + side];
+    }
+
+    public long lastStepNanos() {
+        return lastStepNanos;
+    }
+}
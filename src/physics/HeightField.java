@@ -0,0 +1,16 @@
+package physics;
+
+/**
+ * Ground under the bodies of a collision world, such as the terrain tiles around the player.
+ */
+@FunctionalInterface
+public interface HeightField {
+    /**
+     * Get the height of the ground at a point.
+     *
+     * @param x X position of the point.
+     * @param z Z position of the point.
+     * @return Height of the ground.
+     */
+    float heightAt(float x, float z);
+}
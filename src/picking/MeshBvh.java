@@ -0,0 +1,365 @@
+package picking;
+
+import OBJConverter.ModelData;
+
+/**
+ * Bounding volume hierarchy over the triangles of a model, built once from its vertex data in model space, for
+ * finding the nearest triangle hit by a ray without testing every triangle.
+ * <p>
+ * Every node splits its triangles in half by the median of their centroids along the longest axis of the centroids'
+ * bounds, down to leaves of a few triangles, so the tree is balanced. The nodes are stored in flat arrays with both
+ * children of a node next to each other, and the triangles' vertices are copied in leaf order so a leaf's triangles
+ * are read sequentially. A query keeps its own stack of nodes and is not thread-safe.
+ */
+public class MeshBvh {
+    private static final int MAX_LEAF_TRIANGLES = 4;
+    private static final float PARALLEL_EPSILON = 1e-12f;
+
+    /**
+     * Smallest and largest X, Y and Z of every node, six floats each.
+     */
+    private final float[] BOUNDS;
+
+    /**
+     * Two ints per node: the index of its first child and 0 for inner nodes, or the index of its first triangle and
+     * its triangle count for leaves.
+     */
+    private final int[] NODES;
+
+    /**
+     * Vertices of every triangle in leaf order, nine floats each.
+     */
+    private final float[] TRIANGLES;
+
+    /**
+     * Index of every triangle in leaf order within the model's indices, divided by three.
+     */
+    private final int[] TRIANGLE_INDICES;
+
+    private final int[] STACK;
+    private int nodeCount = 0;
+    private int maxDepth = 0;
+
+    private int hitTriangle = -1;
+
+    /**
+     * Build the hierarchy over the triangles of a model.
+     *
+     * @param mesh Vertex data of the model.
+     */
+    public MeshBvh(ModelData mesh) {
+        float[] vertices = mesh.vertices();
+        int[] indices = mesh.indices();
+        int triangleCount = indices.length / 3;
+
+        if (triangleCount == 0) throw new IllegalArgumentException("A mesh hierarchy needs at least one triangle.");
+
+        float[] centroids = new float[triangleCount * 3];
+        int[] order = new int[triangleCount];
+
+        for (int triangle = 0; triangle < triangleCount; triangle++) {
+            order[triangle] = triangle;
+
+            for (int axis = 0; axis < 3; axis++) {
+                centroids[triangle * 3 + axis] = (vertices[indices[triangle * 3] * 3 + axis]
+                        + vertices[indices[triangle * 3 + 1] * 3 + axis]
+                        + vertices[indices[triangle * 3 + 2] * 3 + axis]) / 3;
+            }
+        }
+
+        BOUNDS = new float[triangleCount * 2 * 6];
+        NODES = new int[triangleCount * 2 * 2];
+        nodeCount = 1;
+        build(0, 0, triangleCount, 0, vertices, indices, centroids, order);
+
+        TRIANGLES = new float[triangleCount * 9];
+        TRIANGLE_INDICES = order;
+
+        for (int i = 0; i < triangleCount; i++) {
+            for (int corner = 0; corner < 3; corner++) {
+                int vertex = indices[order[i] * 3 + corner];
+                TRIANGLES[i * 9 + corner * 3] = vertices[vertex * 3];
+                TRIANGLES[i * 9 + corner * 3 + 1] = vertices[vertex * 3 + 1];
+                TRIANGLES[i * 9 + corner * 3 + 2] = vertices[vertex * 3 + 2];
+            }
+        }
+
+        // Far children are pushed before near ones, so the stack holds at most one pending node per level.
+        STACK = new int[maxDepth + 2];
+    }
+
+    /**
+     * Fill in a node over a range of triangles and build its children.
+     *
+     * @param node      Index of the node.
+     * @param from      Index of the node's first triangle within the order.
+     * @param to        Index after the node's last triangle within the order.
+     * @param depth     Depth of the node, 0 for the root.
+     * @param vertices  Vertex positions of the model.
+     * @param indices   Indices of the model's triangles.
+     * @param centroids Centroid of every triangle, three floats each.
+     * @param order     Triangles in leaf order, rearranged by the build.
+     */
+    private void build(
+            int node, int from, int to, int depth, float[] vertices, int[] indices, float[] centroids, int[] order
+    ) {
+        maxDepth = Math.max(maxDepth, depth);
+
+        int bounds = node * 6;
+        for (int axis = 0; axis < 3; axis++) {
+            BOUNDS[bounds + axis] = Float.POSITIVE_INFINITY;
+            BOUNDS[bounds + 3 + axis] = Float.NEGATIVE_INFINITY;
+        }
+
+        float[] centroidBounds = {
+                Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY
+        };
+
+        for (int i = from; i < to; i++) {
+            int triangle = order[i];
+
+            for (int axis = 0; axis < 3; axis++) {
+                for (int corner = 0; corner < 3; corner++) {
+                    float value = vertices[indices[triangle * 3 + corner] * 3 + axis];
+                    BOUNDS[bounds + axis] = Math.min(BOUNDS[bounds + axis], value);
+                    BOUNDS[bounds + 3 + axis] = Math.max(BOUNDS[bounds + 3 + axis], value);
+                }
+
+                float centroid = centroids[triangle * 3 + axis];
+                centroidBounds[axis] = Math.min(centroidBounds[axis], centroid);
+                centroidBounds[3 + axis] = Math.max(centroidBounds[3 + axis], centroid);
+            }
+        }
+
+        int axis = 0;
+        for (int candidate = 1; candidate < 3; candidate++) {
+            float extent = centroidBounds[3 + candidate] - centroidBounds[candidate];
+            if (extent > centroidBounds[3 + axis] - centroidBounds[axis]) axis = candidate;
+        }
+
+        // Triangles whose centroids all coincide can't be split, so they stay together in a larger leaf.
+        if (to - from <= MAX_LEAF_TRIANGLES || centroidBounds[3 + axis] == centroidBounds[axis]) {
+            NODES[node * 2] = from;
+            NODES[node * 2 + 1] = to - from;
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        select(order, centroids, axis, from, to - 1, middle);
+
+        int children = nodeCount;
+        nodeCount += 2;
+        NODES[node * 2] = children;
+        NODES[node * 2 + 1] = 0;
+
+        build(children, from, middle, depth + 1, vertices, indices, centroids, order);
+        build(children + 1, middle, to, depth + 1, vertices, indices, centroids, order);
+    }
+
+    /**
+     * Partially sort a range of triangles so the one at an index has the centroid it would have if the range were
+     * sorted along an axis, with no larger centroid before it and no smaller one after it.
+     *
+     * @param order     Triangles to be rearranged.
+     * @param centroids Centroid of every triangle, three floats each.
+     * @param axis      Axis to be sorted along.
+     * @param low       Index of the first triangle of the range.
+     * @param high      Index of the last triangle of the range.
+     * @param k         Index whose triangle is to be put in place.
+     */
+    private static void select(int[] order, float[] centroids, int axis, int low, int high, int k) {
+        while (low < high) {
+            float pivot = centroids[order[(low + high) >>> 1] * 3 + axis];
+            int i = low;
+            int j = high;
+
+            while (i <= j) {
+                while (centroids[order[i] * 3 + axis] < pivot) i++;
+                while (centroids[order[j] * 3 + axis] > pivot) j--;
+
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i++] = order[j];
+                    order[j--] = swap;
+                }
+            }
+
+            if (k <= j) high = j;
+            else if (k >= i) low = i;
+            else return;
+        }
+    }
+
+    /**
+     * Find the nearest triangle hit by a ray, from either side. The index of the triangle is then available from
+     * {@link #hitTriangle()}.
+     *
+     * @param originX     X position of the ray's origin.
+     * @param originY     Y position of the ray's origin.
+     * @param originZ     Z position of the ray's origin.
+     * @param directionX  X component of the ray's direction; distances are measured in multiples of its length.
+     * @param directionY  Y component of the ray's direction.
+     * @param directionZ  Z component of the ray's direction.
+     * @param maxDistance Distance beyond which hits are ignored.
+     * @return Distance along the ray to the nearest hit, or positive infinity if there is none within the distance.
+     */
+    public float intersect(
+            float originX, float originY, float originZ, float directionX, float directionY, float directionZ,
+            float maxDistance
+    ) {
+        float inverseX = 1 / directionX;
+        float inverseY = 1 / directionY;
+        float inverseZ = 1 / directionZ;
+
+        float best = maxDistance;
+        int bestTriangle = -1;
+
+        if (enter(0, originX, originY, originZ, inverseX, inverseY, inverseZ) >= best) {
+            hitTriangle = -1;
+            return Float.POSITIVE_INFINITY;
+        }
+
+        STACK[0] = 0;
+        int stackSize = 1;
+
+        while (stackSize > 0) {
+            int node = STACK[--stackSize];
+            int first = NODES[node * 2];
+            int count = NODES[node * 2 + 1];
+
+            if (count > 0) {
+                for (int triangle = first; triangle < first + count; triangle++) {
+                    float distance = intersectTriangle(
+                            triangle, originX, originY, originZ, directionX, directionY, directionZ
+                    );
+
+                    if (distance < best) {
+                        best = distance;
+                        bestTriangle = triangle;
+                    }
+                }
+
+                continue;
+            }
+
+            float nearEntry = enter(first, originX, originY, originZ, inverseX, inverseY, inverseZ);
+            float farEntry = enter(first + 1, originX, originY, originZ, inverseX, inverseY, inverseZ);
+            int near = first;
+            int far = first + 1;
+
+            if (farEntry < nearEntry) {
+                float swap = nearEntry;
+                nearEntry = farEntry;
+                farEntry = swap;
+                near = first + 1;
+                far = first;
+            }
+
+            if (farEntry < best) STACK[stackSize++] = far;
+            if (nearEntry < best) STACK[stackSize++] = near;
+        }
+
+        hitTriangle = bestTriangle >= 0 ? TRIANGLE_INDICES[bestTriangle] : -1;
+        return bestTriangle >= 0 ? best : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Find where a ray enters the bounds of a node, with the slab test.
+     *
+     * @param node     Index of the node.
+     * @param originX  X position of the ray's origin.
+     * @param originY  Y position of the ray's origin.
+     * @param originZ  Z position of the ray's origin.
+     * @param inverseX Inverse of the X component of the ray's direction.
+     * @param inverseY Inverse of the Y component of the ray's direction.
+     * @param inverseZ Inverse of the Z component of the ray's direction.
+     * @return Distance along the ray to where it enters the bounds, 0 if it starts inside them, or positive infinity
+     * if it misses them.
+     */
+    private float enter(
+            int node, float originX, float originY, float originZ, float inverseX, float inverseY, float inverseZ
+    ) {
+        int bounds = node * 6;
+
+        float x1 = (BOUNDS[bounds] - originX) * inverseX;
+        float x2 = (BOUNDS[bounds + 3] - originX) * inverseX;
+        float y1 = (BOUNDS[bounds + 1] - originY) * inverseY;
+        float y2 = (BOUNDS[bounds + 4] - originY) * inverseY;
+        float z1 = (BOUNDS[bounds + 2] - originZ) * inverseZ;
+        float z2 = (BOUNDS[bounds + 5] - originZ) * inverseZ;
+
+        float entry = Math.max(Math.max(Math.min(x1, x2), Math.min(y1, y2)), Math.max(Math.min(z1, z2), 0));
+        float exit = Math.min(Math.min(Math.max(x1, x2), Math.max(y1, y2)), Math.max(z1, z2));
+
+        return entry <= exit ? entry : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Intersect a ray with a triangle, with the Moller-Trumbore test.
+     *
+     * @param triangle   Index of the triangle in leaf order.
+     * @param originX    X position of the ray's origin.
+     * @param originY    Y position of the ray's origin.
+     * @param originZ    Z position of the ray's origin.
+     * @param directionX X component of the ray's direction.
+     * @param directionY Y component of the ray's direction.
+     * @param directionZ Z component of the ray's direction.
+     * @return Distance along the ray to the hit, or positive infinity if the ray misses the triangle.
+     */
+    private float intersectTriangle(
+            int triangle, float originX, float originY, float originZ, float directionX, float directionY,
+            float directionZ
+    ) {
+        int t = triangle * 9;
+
+        float edge1X = TRIANGLES[t + 3] - TRIANGLES[t];
+        float edge1Y = TRIANGLES[t + 4] - TRIANGLES[t + 1];
+        float edge1Z = TRIANGLES[t + 5] - TRIANGLES[t + 2];
+        float edge2X = TRIANGLES[t + 6] - TRIANGLES[t];
+        float edge2Y = TRIANGLES[t + 7] - TRIANGLES[t + 1];
+        float edge2Z = TRIANGLES[t + 8] - TRIANGLES[t + 2];
+
+        float pX = directionY * edge2Z - directionZ * edge2Y;
+        float pY = directionZ * edge2X - directionX * edge2Z;
+        float pZ = directionX * edge2Y - directionY * edge2X;
+
+        float determinant = edge1X * pX + edge1Y * pY + edge1Z * pZ;
+        if (Math.abs(determinant) < PARALLEL_EPSILON) return Float.POSITIVE_INFINITY;
+        float inverse = 1 / determinant;
+
+        float sX = originX - TRIANGLES[t];
+        float sY = originY - TRIANGLES[t + 1];
+        float sZ = originZ - TRIANGLES[t + 2];
+
+        float u = (sX * pX + sY * pY + sZ * pZ) * inverse;
+        if (u < 0 || u > 1) return Float.POSITIVE_INFINITY;
+
+        float qX = sY * edge1Z - sZ * edge1Y;
+        float qY = sZ * edge1X - sX * edge1Z;
+        float qZ = sX * edge1Y - sY * edge1X;
+
+        float v = (directionX * qX + directionY * qY + directionZ * qZ) * inverse;
+        if (v < 0 || u + v > 1) return Float.POSITIVE_INFINITY;
+
+        float distance = (edge2X * qX + edge2Y * qY + edge2Z * qZ) * inverse;
+        return distance >= 0 ? distance : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Get the triangle found by the last call to {@link #intersect}.
+     *
+     * @return Index of the triangle within the model's indices divided by three, or -1 if nothing was hit.
+     */
+    public int hitTriangle() {
+        return hitTriangle;
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int depth() {
+        return maxDepth;
+    }
+}
@@ -0,0 +1,81 @@
+package picking;
+
+/**
+ * Reusable result of a pick: what a ray hit first, how far along it, and where. Reused between picks so picking
+ * allocates nothing.
+ */
+public class PickResult {
+    /**
+     * Kinds of hit.
+     */
+    public static final int NOTHING = 0;
+    public static final int ENTITY = 1;
+    public static final int GROUND = 2;
+
+    private int kind = NOTHING;
+    private int entityId = -1;
+    private int triangle = -1;
+    private float distance = Float.POSITIVE_INFINITY;
+    private float x;
+    private float y;
+    private float z;
+
+    /**
+     * Forget the last hit.
+     */
+    void clear() {
+        kind = NOTHING;
+        entityId = -1;
+        triangle = -1;
+        distance = Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Record a hit.
+     *
+     * @param kind     Kind of hit.
+     * @param entityId Id of the entity hit, or -1 for the ground.
+     * @param triangle Index of the triangle hit within the entity's model, or -1 for the ground.
+     * @param distance Distance along the ray to the hit.
+     * @param x        X position of the hit.
+     * @param y        Y position of the hit.
+     * @param z        Z position of the hit.
+     */
+    void set(int kind, int entityId, int triangle, float distance, float x, float y, float z) {
+        this.kind = kind;
+        this.entityId = entityId;
+        this.triangle = triangle;
+        this.distance = distance;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public int kind() {
+        return kind;
+    }
+
+    public int entityId() {
+        return entityId;
+    }
+
+    public int triangle() {
+        return triangle;
+    }
+
+    public float distance() {
+        return distance;
+    }
+
+    public float x() {
+        return x;
+    }
+
+    public float y() {
+        return y;
+    }
+
+    public float z() {
+        return z;
+    }
+}
@@ -0,0 +1,372 @@
+package picking;
+
+import OBJConverter.ModelData;
+import entities.EntityStore;
+import models.TexturedModel;
+import physics.HeightField;
+import spatial.QueryResults;
+import spatial.SpatialGrid;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds the first entity or point of the ground hit by a ray, such as the one under the mouse cursor.
+ * <p>
+ * Every entity whose model has vertex data is kept in a {@link SpatialGrid} by its bounding sphere. A pick walks the
+ * ray a few grid cells at a time, finds the entities whose spheres each stretch of the ray hits, and tests them
+ * nearest sphere first: the ray is transformed into the entity's model space and traced through a {@link MeshBvh} of
+ * the model, built once per model, down to an exact triangle test. Entities whose spheres start beyond the nearest
+ * hit so far are never traced, and the walk stops at the first stretch holding a hit. The ground is then ray marched
+ * up to that hit, in steps of a fixed length refined by bisection where the ray first goes below the ground, over
+ * the part of the ray below the highest the ground rises.
+ * <p>
+ * The grid is brought up to date with the entity store by {@link #update()}, which is linear in the number of
+ * entities, while a pick only costs as much as the cells and entities along the ray. Picking allocates nothing once
+ * warmed up and is not thread-safe.
+ */
+public class Picker {
+    private static final int NONE = -1;
+    private static final int BISECTION_STEPS = 20;
+    private static final int SEGMENT_CELLS = 4;
+
+    private final EntityStore STORE;
+    private final Map<TexturedModel, MeshBvh> MESH_BVHS = new HashMap<>();
+    private final SpatialGrid<Integer> GRID;
+    private final QueryResults CANDIDATES = new QueryResults(64);
+    private final HeightField GROUND;
+    private final float GROUND_TOP;
+    private final float GROUND_STEP;
+
+    private MeshBvh[] bvhsByModelId = new MeshBvh[0];
+    private int[] handles = new int[0];
+    private float[] gridRadii = new float[0];
+    private int[] seenStamps = new int[0];
+    private int stamp = 0;
+
+    private int[] order = new int[64];
+    private float[] entries = new float[64];
+
+    /**
+     * Create a new picker for the entities of a store, building a hierarchy over the triangles of every model.
+     *
+     * @param store      Store holding the entities to be picked.
+     * @param meshes     Vertex data of every textured model whose entities can be picked.
+     * @param cellSize   Width of the cells of the grid the entities are kept in, at least twice the radius of most
+     *                   entities.
+     * @param ground     Ground to be picked under the entities, or null for none.
+     * @param groundTop  Height the ground never rises above.
+     * @param groundStep Length of the steps the ground is ray marched in, about the spacing of its height samples.
+     */
+    public Picker(
+            EntityStore store, Map<TexturedModel, ModelData> meshes, float cellSize, HeightField ground,
+            float groundTop, float groundStep
+    ) {
+        if (ground != null && groundStep <= 0) {
+            throw new IllegalArgumentException("The ground must be ray marched in steps of a positive length.");
+        }
+
+        this.STORE = store;
+        this.GRID = new SpatialGrid<>(cellSize, Math.max(16, store.size()));
+        this.GROUND = ground;
+        this.GROUND_TOP = groundTop;
+        this.GROUND_STEP = groundStep;
+
+        for (Map.Entry<TexturedModel, ModelData> entry : meshes.entrySet()) {
+            MESH_BVHS.put(entry.getKey(), new MeshBvh(entry.getValue()));
+        }
+
+        update();
+    }
+
+    /**
+     * Bring the grid up to date with the entities of the store: add new entities, move the ones that moved and remove
+     * the ones that were removed. Call after the entities changed and before picking them.
+     */
+    public void update() {
+        STORE.updateWorldMatrices();
+        float[] matrices = STORE.worldMatrices();
+        stamp++;
+
+        for (int i = 0; i < STORE.size(); i++) {
+            if (bvh(STORE.models()[i]) == null) continue;
+
+            int id = STORE.id(i);
+            if (id >= handles.length) growIds(id + 1);
+
+            float x = matrices[i * 16 + 12];
+            float y = matrices[i * 16 + 13];
+            float z = matrices[i * 16 + 14];
+            float radius = STORE.radii()[i];
+
+            if (handles[id] == NONE) {
+                handles[id] = GRID.insert(id, x, y, z, radius);
+                gridRadii[id] = radius;
+            }
+
+            else {
+                GRID.move(handles[id], x, y, z);
+
+                if (radius != gridRadii[id]) {
+                    GRID.resize(handles[id], radius);
+                    gridRadii[id] = radius;
+                }
+            }
+
+            seenStamps[id] = stamp;
+        }
+
+        for (int id = 0; id < handles.length; id++) {
+            if (handles[id] == NONE || seenStamps[id] == stamp) continue;
+
+            GRID.remove(handles[id]);
+            handles[id] = NONE;
+        }
+    }
+
+    /**
+     * Find the first entity or point of the ground hit by a ray. Hidden entities are skipped.
+     *
+     * @param originX     X position of the ray's origin.
+     * @param originY     Y position of the ray's origin.
+     * @param originZ     Z position of the ray's origin.
+     * @param directionX  X component of the ray's direction, which need not be normalized.
+     * @param directionY  Y component of the ray's direction.
+     * @param directionZ  Z component of the ray's direction.
+     * @param maxDistance Length of the ray, which must be finite since both the walk through the grid and the ground
+     *                    march go on until a hit or the end of the ray.
+     * @param result      Destination for the hit, if any.
+     * @return True if the ray hit anything within its length, else false.
+     */
+    public boolean pick(
+            float originX, float originY, float originZ, float directionX, float directionY, float directionZ,
+            float maxDistance, PickResult result
+    ) {
+        if (!Float.isFinite(maxDistance)) {
+            throw new IllegalArgumentException("A pick needs a finite ray length, not " + maxDistance + ".");
+        }
+
+        result.clear();
+
+        float length = (float) Math.sqrt(directionX * directionX + directionY * directionY + directionZ * directionZ);
+        if (length == 0) return false;
+
+        float dx = directionX / length;
+        float dy = directionY / length;
+        float dz = directionZ / length;
+
+        float best = maxDistance;
+        float segmentLength = GRID.cellSize() * SEGMENT_CELLS;
+
+        // Stretches are counted rather than added up, so a long ray can't stall where a float stops growing.
+        for (int segment = 0; segment * segmentLength < best; segment++) {
+            float start = segment * segmentLength;
+            best = pickSegment(originX, originY, originZ, dx, dy, dz, start, segmentLength, best, result);
+        }
+
+        if (GROUND != null) {
+            float distance = marchGround(originX, originY, originZ, dx, dy, dz, best);
+
+            if (distance < best) {
+                result.set(
+                        PickResult.GROUND, NONE, NONE, distance, originX + dx * distance, originY + dy * distance,
+                        originZ + dz * distance
+                );
+            }
+        }
+
+        return result.kind() != PickResult.NOTHING;
+    }
+
+    /**
+     * Test the entities along a stretch of a ray, nearest sphere first, for a hit nearer than the nearest so far.
+     * Entities overhanging several stretches may be tested again in each.
+     *
+     * @param originX X position of the ray's origin.
+     * @param originY Y position of the ray's origin.
+     * @param originZ Z position of the ray's origin.
+     * @param dx      X component of the ray's normalized direction.
+     * @param dy      Y component of the ray's normalized direction.
+     * @param dz      Z component of the ray's normalized direction.
+     * @param start   Distance along the ray to the start of the stretch.
+     * @param length  Length of the stretch.
+     * @param best    Distance along the ray to the nearest hit so far.
+     * @param result  Destination for a nearer hit, if any.
+     * @return Distance along the ray to the nearest hit, including the ones within the stretch.
+     */
+    private float pickSegment(
+            float originX, float originY, float originZ, float dx, float dy, float dz, float start, float length,
+            float best, PickResult result
+    ) {
+        int count = GRID.queryRay(
+                originX + dx * start, originY + dy * start, originZ + dz * start, dx, dy, dz,
+                Math.min(length, best - start), CANDIDATES
+        );
+        sortCandidates(count);
+
+        float[] matrices = STORE.worldMatrices();
+
+        for (int i = 0; i < count && start + entries[i] < best; i++) {
+            int id = GRID.item(CANDIDATES.handle(order[i]));
+            if ((STORE.flags(id) & EntityStore.HIDDEN) != 0) continue;
+
+            int index = STORE.index(id);
+            MeshBvh bvh = bvhsByModelId[STORE.models()[index]];
+            int m = index * 16;
+
+            // The world matrix scales uniformly, so its inverse is its transpose divided by the squared scale, and a
+            // ray transformed by it keeps its distances as multiples of the direction.
+            float inverseScale = 1 / (matrices[m] * matrices[m] + matrices[m + 1] * matrices[m + 1]
+                    + matrices[m + 2] * matrices[m + 2]);
+            float toOriginX = originX - matrices[m + 12];
+            float toOriginY = originY - matrices[m + 13];
+            float toOriginZ = originZ - matrices[m + 14];
+
+            float distance = bvh.intersect(
+                    (matrices[m] * toOriginX + matrices[m + 1] * toOriginY + matrices[m + 2] * toOriginZ)
+                            * inverseScale,
+                    (matrices[m + 4] * toOriginX + matrices[m + 5] * toOriginY + matrices[m + 6] * toOriginZ)
+                            * inverseScale,
+                    (matrices[m + 8] * toOriginX + matrices[m + 9] * toOriginY + matrices[m + 10] * toOriginZ)
+                            * inverseScale,
+                    (matrices[m] * dx + matrices[m + 1] * dy + matrices[m + 2] * dz) * inverseScale,
+                    (matrices[m + 4] * dx + matrices[m + 5] * dy + matrices[m + 6] * dz) * inverseScale,
+                    (matrices[m + 8] * dx + matrices[m + 9] * dy + matrices[m + 10] * dz) * inverseScale,
+                    best
+            );
+
+            if (distance < best) {
+                best = distance;
+                result.set(
+                        PickResult.ENTITY, id, bvh.hitTriangle(), distance, originX + dx * distance,
+                        originY + dy * distance, originZ + dz * distance
+                );
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Ray march the ground: step along the part of the ray below the ground's top until it is below the ground, then
+     * bisect the last step.
+     *
+     * @param originX     X position of the ray's origin.
+     * @param originY     Y position of the ray's origin.
+     * @param originZ     Z position of the ray's origin.
+     * @param dx          X component of the ray's normalized direction.
+     * @param dy          Y component of the ray's normalized direction.
+     * @param dz          Z component of the ray's normalized direction.
+     * @param maxDistance Length of the ray.
+     * @return Distance along the ray to the ground, or positive infinity if it stays above the ground.
+     */
+    private float marchGround(
+            float originX, float originY, float originZ, float dx, float dy, float dz, float maxDistance
+    ) {
+        float above = 0;
+        float end = maxDistance;
+
+        if (dy < 0) above = Math.max(0, (GROUND_TOP - originY) / dy);
+        else if (dy > 0) end = Math.min(maxDistance, (GROUND_TOP - originY) / dy);
+        else if (originY > GROUND_TOP) return Float.POSITIVE_INFINITY;
+
+        if (above == 0 && originY <= GROUND.heightAt(originX, originZ)) return 0;
+
+        float first = above;
+        float below = above;
+
+        for (int step = 1; above < end; step++) {
+            below = Math.min(first + step * GROUND_STEP, end);
+            float x = originX + dx * below;
+            float z = originZ + dz * below;
+
+            if (originY + dy * below <= GROUND.heightAt(x, z)) break;
+            above = below;
+        }
+
+        if (above >= end) return Float.POSITIVE_INFINITY;
+
+        for (int i = 0; i < BISECTION_STEPS; i++) {
+            float middle = (above + below) / 2;
+            float x = originX + dx * middle;
+            float z = originZ + dz * middle;
+
+            if (originY + dy * middle <= GROUND.heightAt(x, z)) below = middle;
+            else above = middle;
+        }
+
+        return below;
+    }
+
+    /**
+     * Order the candidates of the last ray query by the distance at which the ray enters their spheres, by insertion
+     * sort; a ray passes few enough entities that it beats anything cleverer.
+     *
+     * @param count Number of candidates.
+     */
+    private void sortCandidates(int count) {
+        if (order.length < count) {
+            order = new int[Math.max(count, order.length * 2)];
+            entries = new float[order.length];
+        }
+
+        for (int i = 0; i < count; i++) {
+            float entry = CANDIDATES.distance(i);
+            int j = i - 1;
+
+            while (j >= 0 && entries[j] > entry) {
+                order[j + 1] = order[j];
+                entries[j + 1] = entries[j];
+                j--;
+            }
+
+            order[j + 1] = i;
+            entries[j + 1] = entry;
+        }
+    }
+
+    /**
+     * Get the hierarchy of a model, looking it up by textured model the first time.
+     *
+     * @param modelId Model id within the store.
+     * @return Hierarchy over the model's triangles, or null if the model has no vertex data.
+     */
+    private MeshBvh bvh(int modelId) {
+        if (modelId >= bvhsByModelId.length) {
+            bvhsByModelId = Arrays.copyOf(bvhsByModelId, Math.max(modelId + 1, bvhsByModelId.length * 2));
+        }
+
+        if (bvhsByModelId[modelId] == null) bvhsByModelId[modelId] = MESH_BVHS.get(STORE.model(modelId));
+        return bvhsByModelId[modelId];
+    }
+
+    /**
+     * Grow the arrays indexed by entity id.
+     *
+     * @param minimum Number of ids the arrays must hold at least.
+     */
+    private void growIds(int minimum) {
+        int capacity = Math.max(minimum, handles.length * 2);
+        int previous = handles.length;
+
+        handles = Arrays.copyOf(handles, capacity);
+        gridRadii = Arrays.copyOf(gridRadii, capacity);
+        seenStamps = Arrays.copyOf(seenStamps, capacity);
+        Arrays.fill(handles, previous, capacity, NONE);
+    }
+
+    /**
+     * Get the hierarchy built over the triangles of a model.
+     *
+     * @param model Textured model.
+     * @return Hierarchy of the model, or null if it has none.
+     */
+    public MeshBvh meshBvh(TexturedModel model) {
+        return MESH_BVHS.get(model);
+    }
+
+    public int entityCount() {
+        return GRID.size();
+    }
+}
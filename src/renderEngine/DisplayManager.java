@@ -10,8 +10,9 @@ import org.lwjgl.opengl.*;
 public class DisplayManager {
     private static final int WIDTH = 1280;
     private static final int HEIGHT = 720;
-    private static final int FPS_CAP = 120;
+    static final int FPS_CAP = 120;
 
+    private static int fpsCap = FPS_CAP;
     private static long lastFrameTime;
     private static float deltaTime;
 
@@ -42,7 +43,7 @@ public class DisplayManager {
      * Update the display every frame and sync it to a maximum FPS cap.
      */
     public static void updateDisplay() {
-        Display.sync(FPS_CAP);
+        if (fpsCap > 0) Display.sync(fpsCap);
         Display.update();
 
         long currentFrameTime = currentTime();
@@ -69,4 +70,13 @@ public class DisplayManager {
     public static float deltaTime() {
         return deltaTime;
     }
+
+    /**
+     * Change the maximum FPS the display is synced to.
+     *
+     * @param cap New FPS cap, or 0 to render as fast as possible.
+     */
+    public static void setFpsCap(int cap) {
+        fpsCap = cap;
+    }
 }
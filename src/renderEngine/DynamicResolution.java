@@ -0,0 +1,74 @@
+package renderEngine;
+
+import org.lwjgl.opengl.Display;
+
+/**
+ * Renders the scene into an offscreen target whose used region is scaled by a resolution controller, then upscales
+ * it to the display. Without timer query support the scale stays at 1.
+ */
+public class DynamicResolution {
+    private final Fbo FBO;
+    private final GpuTimer GPU_TIMER = new GpuTimer();
+    private final ResolutionController CONTROLLER;
+
+    private int renderWidth;
+    private int renderHeight;
+
+    /**
+     * Create a new dynamic resolution target the size of the display.
+     *
+     * @param budgetMillis GPU time budget of a single frame in milliseconds.
+     */
+    public DynamicResolution(float budgetMillis) {
+        this.FBO = new Fbo(Display.getWidth(), Display.getHeight());
+        this.CONTROLLER = new ResolutionController(budgetMillis);
+    }
+
+    /**
+     * Bind the offscreen target at the current scale and start timing the frame. Called before every frame.
+     */
+    public void bind() {
+        float scale = CONTROLLER.scale();
+        renderWidth = Math.max(1, Math.round(FBO.width() * scale));
+        renderHeight = Math.max(1, Math.round(FBO.height() * scale));
+
+        FBO.bind(renderWidth, renderHeight);
+        GPU_TIMER.begin();
+    }
+
+    /**
+     * Stop timing the frame, feed the controller and upscale the frame onto the display. Called after every frame.
+     */
+    public void resolve() {
+        float gpuMillis = GPU_TIMER.end();
+        if (gpuMillis >= 0) CONTROLLER.addSample(gpuMillis);
+
+        FBO.resolveToDisplay(renderWidth, renderHeight, Display.getWidth(), Display.getHeight());
+    }
+
+    /**
+     * Delete the offscreen target and the timer queries.
+     */
+    public void cleanUp() {
+        FBO.cleanUp();
+        GPU_TIMER.cleanUp();
+    }
+
+    /**
+     * Get the current render scale.
+     *
+     * @return Render scale applied to both axes of the display resolution.
+     */
+    public float scale() {
+        return CONTROLLER.scale();
+    }
+
+    /**
+     * Get the average GPU frame time used for the last scale decision.
+     *
+     * @return Average GPU frame time in milliseconds.
+     */
+    public float averageGpuMillis() {
+        return CONTROLLER.averageMillis();
+    }
+}
@@ -1,6 +1,9 @@
 package renderEngine;
 
+import entities.Camera;
 import entities.Entity;
+import entities.Light;
+import lighting.LightClusters;
 import models.RawModel;
 import models.TexturedModel;
 import org.lwjgl.opengl.GL11;
@@ -8,59 +11,112 @@ import org.lwjgl.opengl.GL13;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
 import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+import shaders.ShaderFeature;
+import shaders.ShaderVariantCache;
 import shaders.StaticShader;
 import textures.ModelTexture;
-import toolbox.EngineMath;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Renderer for the engine to render all the entities to the display.
+ * <p>
+ * Every material is drawn with the static shader variant compiled for exactly the features it uses. Batches are
+ * sorted by variant so each program is bound once per frame.
  */
 public class EntityRenderer {
-    private final StaticShader SHADER;
+    /**
+     * Features enabled for every entity regardless of its material.
+     */
+    private static final int GLOBAL_FEATURES = ShaderFeature.FOG.bit() | ShaderFeature.CLUSTERED_LIGHTS.bit();
+
+    private final ShaderVariantCache<StaticShader> SHADERS;
+    private final List<List<TexturedModel>> MODELS_BY_VARIANT = new ArrayList<>(ShaderFeature.VARIANT_COUNT);
 
     /**
-     * Create a new renderer using an existing static shader.
+     * Create a new renderer that compiles static shader variants on demand.
      *
-     * @param shader Static shader containing a vertex and fragment shader.
+     * @param projectionMatrix Projection matrix loaded into every variant.
      */
-    public EntityRenderer(StaticShader shader, Matrix4f projectionMatrix) {
-        this.SHADER = shader;
+    public EntityRenderer(Matrix4f projectionMatrix) {
+        SHADERS = new ShaderVariantCache<>(StaticShader::new, shader -> {
+            shader.start();
+            shader.loadProjectionMatrix(projectionMatrix);
+            shader.stop();
+        });
+
+        for (int i = 0; i < ShaderFeature.VARIANT_COUNT; i++) MODELS_BY_VARIANT.add(new ArrayList<>());
 
-        shader.start();
-        shader.loadProjectionMatrix(projectionMatrix);
-        shader.stop();
+        SHADERS.precompile(GLOBAL_FEATURES);
     }
 
     /**
      * Render all the entities to the display.
      *
-     * @param entities Hash map of textures and entities corresponding to that texture.
+     * @param entities    Hash map of textures and entities corresponding to that texture.
+     * @param globalLight Global light for the scene.
+     * @param clusters    Light clusters the local lights are assigned to, with their buffers already bound.
+     * @param camera      Camera for the display.
+     * @param skyColor    Color of the sky the entities fade into.
      */
-    public void render(Map<TexturedModel, List<Entity>> entities) {
+    public void render(
+            Map<TexturedModel, List<Entity>> entities, Light globalLight, LightClusters clusters, Camera camera,
+            Vector3f skyColor
+    ) {
         for (TexturedModel texturedModel : entities.keySet()) {
-            prepareTexturedModel(texturedModel);
-            List<Entity> batch = entities.get(texturedModel);
+            int features = texturedModel.texture().shaderFeatures() | GLOBAL_FEATURES;
+            MODELS_BY_VARIANT.get(features).add(texturedModel);
+        }
+
+        for (int features = 0; features < ShaderFeature.VARIANT_COUNT; features++) {
+            List<TexturedModel> texturedModels = MODELS_BY_VARIANT.get(features);
+            if (texturedModels.isEmpty()) continue;
+
+            StaticShader shader = SHADERS.get(features);
+            shader.start();
+
+            shader.loadSkyColor(skyColor);
+            shader.loadLight(globalLight);
+            shader.loadLightClusters(clusters);
+            shader.loadViewMatrix(camera);
 
-            for (Entity entity : batch) {
-                prepareEntity(entity);
+            for (TexturedModel texturedModel : texturedModels) {
+                prepareTexturedModel(shader, texturedModel);
 
-                GL11.glDrawElements(GL11.GL_TRIANGLES, texturedModel.rawModel().vertexCount(), GL11.GL_UNSIGNED_INT, 0);
+                for (Entity entity : entities.get(texturedModel)) {
+                    prepareEntity(shader, entity);
+
+                    GL11.glDrawElements(
+                            GL11.GL_TRIANGLES, texturedModel.rawModel().vertexCount(), GL11.GL_UNSIGNED_INT, 0
+                    );
+                }
+
+                unbindTexturedModel();
             }
 
-            unbindTexturedModel();
+            shader.stop();
+            texturedModels.clear();
         }
     }
 
+    /**
+     * Clean up every compiled shader variant.
+     */
+    public void cleanUp() {
+        SHADERS.cleanUp();
+    }
+
     /**
      * Prepare the texture for rendering by enabling the VAOs, binding the texture and loading the specular lighting
      * information.
      *
+     * @param shader        Shader variant the texture is drawn with.
      * @param texturedModel Texture for the model to be prepared.
      */
-    private void prepareTexturedModel(TexturedModel texturedModel) {
+    private void prepareTexturedModel(StaticShader shader, TexturedModel texturedModel) {
         RawModel rawModel = texturedModel.rawModel();
         ModelTexture texture = texturedModel.texture();
 
@@ -71,8 +127,9 @@ public class EntityRenderer {
 
         if (texture.hasTransparency()) MasterRenderer.disableBackFaceCulling();
 
-        SHADER.loadSpecularLightData(texture.shineDamping(), texture.reflectivity());
-        SHADER.loadFakeLighting(texture.useFakeLighting());
+        if (shader.hasFeature(ShaderFeature.SPECULAR)) {
+            shader.loadSpecularLightData(texture.shineDamping(), texture.reflectivity());
+        }
 
         GL13.glActiveTexture(GL13.GL_TEXTURE0);
         GL11.glBindTexture(GL11.GL_TEXTURE_2D, texture.textureID());
@@ -91,15 +148,12 @@ public class EntityRenderer {
     }
 
     /**
-     * Prepare the entity for rendering by calculating and loading its transformation matrix to the shader.
+     * Prepare the entity for rendering by loading its cached world matrix to the shader.
      *
+     * @param shader Shader variant the entity is drawn with.
      * @param entity Entity to prepare for rendering.
      */
-    private void prepareEntity(Entity entity) {
-        Matrix4f transformationMatrix = EngineMath.createTransformationMatrix(
-                entity.position(), entity.rotation(), entity.scale()
-        );
-
-        SHADER.loadTransformationMatrix(transformationMatrix);
+    private void prepareEntity(StaticShader shader, Entity entity) {
+        shader.loadTransformationMatrix(entity.worldMatrix());
     }
 }
@@ -0,0 +1,113 @@
+package renderEngine;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL14;
+import org.lwjgl.opengl.GL30;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Offscreen render target with a color texture and a depth render buffer. The scene can be drawn into any
+ * sub-rectangle of it and then resolved onto the display with a scaling blit.
+ */
+public class Fbo {
+    private final int WIDTH;
+    private final int HEIGHT;
+
+    private final int FRAMEBUFFER_ID;
+    private final int COLOR_TEXTURE_ID;
+    private final int DEPTH_BUFFER_ID;
+
+    /**
+     * Create a new offscreen render target.
+     *
+     * @param width  Width of the render target in pixels.
+     * @param height Height of the render target in pixels.
+     */
+    public Fbo(int width, int height) {
+        this.WIDTH = width;
+        this.HEIGHT = height;
+
+        FRAMEBUFFER_ID = GL30.glGenFramebuffers();
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, FRAMEBUFFER_ID);
+
+        COLOR_TEXTURE_ID = GL11.glGenTextures();
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, COLOR_TEXTURE_ID);
+        GL11.glTexImage2D(
+                GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA8, width, height, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE,
+                (ByteBuffer) null
+        );
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+        GL30.glFramebufferTexture2D(
+                GL30.GL_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0, GL11.GL_TEXTURE_2D, COLOR_TEXTURE_ID, 0
+        );
+
+        DEPTH_BUFFER_ID = GL30.glGenRenderbuffers();
+        GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, DEPTH_BUFFER_ID);
+        GL30.glRenderbufferStorage(GL30.GL_RENDERBUFFER, GL14.GL_DEPTH_COMPONENT24, width, height);
+        GL30.glFramebufferRenderbuffer(
+                GL30.GL_FRAMEBUFFER, GL30.GL_DEPTH_ATTACHMENT, GL30.GL_RENDERBUFFER, DEPTH_BUFFER_ID
+        );
+
+        if (GL30.glCheckFramebufferStatus(GL30.GL_FRAMEBUFFER) != GL30.GL_FRAMEBUFFER_COMPLETE) {
+            throw new RuntimeException("Offscreen render target is incomplete.");
+        }
+
+        GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, 0);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+    }
+
+    /**
+     * Bind the render target for drawing into its bottom-left sub-rectangle.
+     *
+     * @param width  Width of the region to be drawn to.
+     * @param height Height of the region to be drawn to.
+     */
+    public void bind(int width, int height) {
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, FRAMEBUFFER_ID);
+        GL11.glViewport(0, 0, width, height);
+    }
+
+    /**
+     * Upscale a sub-rectangle of the render target onto the display with bilinear filtering and rebind the display.
+     *
+     * @param width         Width of the region that was drawn to.
+     * @param height        Height of the region that was drawn to.
+     * @param displayWidth  Width of the display.
+     * @param displayHeight Height of the display.
+     */
+    public void resolveToDisplay(int width, int height, int displayWidth, int displayHeight) {
+        GL30.glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, FRAMEBUFFER_ID);
+        GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, 0);
+
+        GL30.glBlitFramebuffer(
+                0, 0, width, height, 0, 0, displayWidth, displayHeight, GL11.GL_COLOR_BUFFER_BIT, GL11.GL_LINEAR
+        );
+
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+        GL11.glViewport(0, 0, displayWidth, displayHeight);
+    }
+
+    /**
+     * Delete the framebuffer and its attachments.
+     */
+    public void cleanUp() {
+        GL30.glDeleteFramebuffers(FRAMEBUFFER_ID);
+        GL11.glDeleteTextures(COLOR_TEXTURE_ID);
+        GL30.glDeleteRenderbuffers(DEPTH_BUFFER_ID);
+    }
+
+    public int colorTexture() {
+        return COLOR_TEXTURE_ID;
+    }
+
+    public int width() {
+        return WIDTH;
+    }
+
+    public int height() {
+        return HEIGHT;
+    }
+}
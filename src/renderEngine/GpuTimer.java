@@ -0,0 +1,69 @@
+package renderEngine;
+
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.opengl.GLContext;
+
+/**
+ * Measures GPU time with a ring of GL_TIME_ELAPSED queries. Results are read a few frames late, and only once
+ * available, so the CPU never stalls waiting on the GPU.
+ */
+public class GpuTimer {
+    private static final int QUERY_COUNT = 4;
+
+    private final boolean SUPPORTED;
+    private final int[] QUERIES = new int[QUERY_COUNT];
+    private final boolean[] PENDING = new boolean[QUERY_COUNT];
+
+    private int current = 0;
+
+    /**
+     * Create a new GPU timer if the driver supports timer queries.
+     */
+    public GpuTimer() {
+        SUPPORTED = GLContext.getCapabilities().OpenGL33 || GLContext.getCapabilities().GL_ARB_timer_query;
+
+        if (SUPPORTED) {
+            for (int i = 0; i < QUERY_COUNT; i++) QUERIES[i] = GL15.glGenQueries();
+        }
+    }
+
+    /**
+     * Start timing the GPU work submitted from now on.
+     */
+    public void begin() {
+        if (SUPPORTED) GL15.glBeginQuery(GL33.GL_TIME_ELAPSED, QUERIES[current]);
+    }
+
+    /**
+     * Stop timing and collect the oldest result if the GPU has finished it.
+     *
+     * @return GPU time of a previous frame in milliseconds, or -1 if no new result is available.
+     */
+    public float end() {
+        if (!SUPPORTED) return -1;
+
+        GL15.glEndQuery(GL33.GL_TIME_ELAPSED);
+        PENDING[current] = true;
+        current = (current + 1) % QUERY_COUNT;
+
+        int oldest = QUERIES[current];
+        if (!PENDING[current] || GL15.glGetQueryObjecti(oldest, GL15.GL_QUERY_RESULT_AVAILABLE) == 0) return -1;
+
+        PENDING[current] = false;
+        return GL33.glGetQueryObjectui64(oldest, GL15.GL_QUERY_RESULT) / 1_000_000f;
+    }
+
+    /**
+     * Delete all the timer queries.
+     */
+    public void cleanUp() {
+        if (SUPPORTED) {
+            for (int query : QUERIES) GL15.glDeleteQueries(query);
+        }
+    }
+
+    public boolean isSupported() {
+        return SUPPORTED;
+    }
+}
@@ -0,0 +1,276 @@
+package renderEngine;
+
+import OBJConverter.ModelData;
+import entities.Camera;
+import entities.Light;
+import models.TexturedModel;
+import org.lwjgl.opengl.Display;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.util.vector.Matrix4f;
+import shaders.ShaderFeature;
+import shaders.StaticShader;
+import textures.ModelTexture;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Texture atlas of pre-rendered views of models, drawn as camera-facing quads in place of the models far from the
+ * camera. Each model takes one row of the atlas, and each row holds a ring of views from evenly spaced angles around
+ * the model's vertical axis, rendered once at load time with an orthographic projection lit by the sun.
+ * <p>
+ * Impostors only turn around the vertical axis, so they suit upright models such as trees. A model's views are lit as
+ * if it were not rotated, so the lighting of a rotated impostor turns with it.
+ */
+public class ImpostorAtlas {
+    /**
+     * Number of floats describing one impostor: its position and rotation around the Y axis, then the half width,
+     * bottom and height of its quad, and the row of its model in the atlas.
+     */
+    public static final int INSTANCE_DATA_LENGTH = 8;
+
+    private final int VIEW_COUNT;
+    private final Map<TexturedModel, Layout> LAYOUTS = new HashMap<>();
+    private final Fbo FBO;
+
+    /**
+     * Placement of a model's views within the atlas and the extent of the model they cover, unscaled.
+     *
+     * @param row       Row of the model's views.
+     * @param halfWidth Largest distance of a vertex from the model's vertical axis.
+     * @param bottom    Lowest Y position of a vertex.
+     * @param height    Distance between the lowest and highest Y positions of a vertex.
+     */
+    private record Layout(int row, float halfWidth, float bottom, float height) {
+    }
+
+    /**
+     * Create a new impostor atlas and render every view of every model into it.
+     *
+     * @param meshes         Vertex data of every textured model to be given impostors.
+     * @param light          Light the views are lit by, generally the Sun.
+     * @param viewCount      Number of views of each model around its vertical axis.
+     * @param viewResolution Width and height in pixels of each view.
+     */
+    public ImpostorAtlas(Map<TexturedModel, ModelData> meshes, Light light, int viewCount, int viewResolution) {
+        this(meshes, viewCount, new Fbo(viewCount * viewResolution, meshes.size() * viewResolution));
+        bake(meshes.keySet(), light, viewResolution);
+    }
+
+    /**
+     * Create a new impostor atlas laid out for some models without rendering their views. Lets the placement of
+     * impostors run without OpenGL.
+     *
+     * @param meshes    Vertex data of every textured model to be given impostors.
+     * @param viewCount Number of views of each model around its vertical axis.
+     */
+    ImpostorAtlas(Map<TexturedModel, ModelData> meshes, int viewCount) {
+        this(meshes, viewCount, null);
+    }
+
+    /**
+     * Create a new impostor atlas laid out for some models.
+     *
+     * @param meshes    Vertex data of every textured model to be given impostors.
+     * @param viewCount Number of views of each model around its vertical axis.
+     * @param fbo       Render target holding the atlas, or null if it is never rendered.
+     */
+    private ImpostorAtlas(Map<TexturedModel, ModelData> meshes, int viewCount, Fbo fbo) {
+        if (viewCount < 1 || meshes.isEmpty()) {
+            throw new IllegalArgumentException("An impostor atlas needs at least one model and one view.");
+        }
+
+        this.VIEW_COUNT = viewCount;
+        this.FBO = fbo;
+
+        for (Map.Entry<TexturedModel, ModelData> entry : meshes.entrySet()) {
+            float[] vertices = entry.getValue().vertices();
+            float squaredHalfWidth = 0;
+            float minY = Float.POSITIVE_INFINITY;
+            float maxY = Float.NEGATIVE_INFINITY;
+
+            for (int i = 0; i < vertices.length; i += 3) {
+                float squaredDistance = vertices[i] * vertices[i] + vertices[i + 2] * vertices[i + 2];
+                squaredHalfWidth = Math.max(squaredHalfWidth, squaredDistance);
+                minY = Math.min(minY, vertices[i + 1]);
+                maxY = Math.max(maxY, vertices[i + 1]);
+            }
+
+            float halfWidth = (float) Math.sqrt(squaredHalfWidth);
+            LAYOUTS.put(entry.getKey(), new Layout(LAYOUTS.size(), halfWidth, minY, maxY - minY));
+        }
+    }
+
+    /**
+     * Render every view of every model into the atlas, then build its mipmaps.
+     *
+     * @param models         Models to be rendered.
+     * @param light          Light the views are lit by.
+     * @param viewResolution Width and height in pixels of each view.
+     */
+    private void bake(Iterable<TexturedModel> models, Light light, int viewResolution) {
+        Camera camera = new Camera();
+        camera.position().set(0, 0, 0);
+        camera.rotation().set(0, 0, 0);
+
+        Matrix4f identity = new Matrix4f();
+        Matrix4f projectionMatrix = new Matrix4f();
+
+        FBO.bind(FBO.width(), FBO.height());
+        GL11.glEnable(GL11.GL_DEPTH_TEST);
+        GL11.glClearColor(0, 0, 0, 0);
+        GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
+
+        for (TexturedModel model : models) {
+            Layout layout = LAYOUTS.get(model);
+            ModelTexture texture = model.texture();
+
+            // The views are unlit by local lights and unfogged; fog is applied to the impostor as a whole.
+            StaticShader shader = new StaticShader(
+                    texture.shaderFeatures() & ~(ShaderFeature.FOG.bit() | ShaderFeature.CLUSTERED_LIGHTS.bit())
+            );
+            shader.start();
+
+            createOrthographicMatrix(layout, projectionMatrix);
+            shader.loadProjectionMatrix(projectionMatrix);
+            shader.loadTransformationMatrix(identity);
+            shader.loadLight(light);
+
+            if (shader.hasFeature(ShaderFeature.SPECULAR)) {
+                shader.loadSpecularLightData(texture.shineDamping(), texture.reflectivity());
+            }
+
+            GL30.glBindVertexArray(model.rawModel().vaoID());
+            GL20.glEnableVertexAttribArray(0); // Position.
+            GL20.glEnableVertexAttribArray(1); // Texture coordinates.
+            GL20.glEnableVertexAttribArray(2); // Normal.
+
+            if (texture.hasTransparency()) MasterRenderer.disableBackFaceCulling();
+
+            GL13.glActiveTexture(GL13.GL_TEXTURE0);
+            GL11.glBindTexture(GL11.GL_TEXTURE_2D, texture.textureID());
+
+            for (int view = 0; view < VIEW_COUNT; view++) {
+                GL11.glViewport(view * viewResolution, layout.row() * viewResolution, viewResolution, viewResolution);
+
+                camera.rotation().y = view * 360f / VIEW_COUNT;
+                shader.loadViewMatrix(camera);
+
+                GL11.glDrawElements(GL11.GL_TRIANGLES, model.rawModel().vertexCount(), GL11.GL_UNSIGNED_INT, 0);
+            }
+
+            MasterRenderer.enableBackFaceCulling();
+            GL20.glDisableVertexAttribArray(0); // Position.
+            GL20.glDisableVertexAttribArray(1); // Texture coordinates.
+            GL20.glDisableVertexAttribArray(2); // Normal.
+            GL30.glBindVertexArray(0);
+
+            shader.stop();
+            shader.cleanUp();
+        }
+
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+        GL11.glViewport(0, 0, Display.getWidth(), Display.getHeight());
+
+        // Impostors are mostly seen from far away, so they are sampled from mipmaps to keep them from shimmering.
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, FBO.colorTexture());
+        GL30.glGenerateMipmap(GL11.GL_TEXTURE_2D);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR_MIPMAP_LINEAR);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+    }
+
+    /**
+     * Write an orthographic projection matrix fitting a model seen from any angle around its vertical axis, with the
+     * camera at the model's origin.
+     *
+     * @param layout      Extent of the model.
+     * @param destination Matrix to be overwritten.
+     */
+    private static void createOrthographicMatrix(Layout layout, Matrix4f destination) {
+        float radius = layout.halfWidth();
+
+        destination.setIdentity();
+        destination.m00 = 1 / radius;
+        destination.m11 = 2 / layout.height();
+        destination.m22 = -1 / radius;
+        destination.m31 = -(2 * layout.bottom() + layout.height()) / layout.height();
+    }
+
+    /**
+     * Find the view of a model that was rendered from the direction closest to the one it is seen from. The view
+     * with index k was rendered by a camera with a yaw of k * 360 / viewCount degrees, looking at the unrotated
+     * model; the impostor vertex shader picks its view the same way.
+     *
+     * @param toEntityX X component of the direction from the camera to the entity.
+     * @param toEntityZ Z component of the direction from the camera to the entity.
+     * @param rotationY Rotation of the entity around the Y axis in degrees.
+     * @param viewCount Number of views of each model.
+     * @return Index of the closest view.
+     */
+    public static int viewIndex(float toEntityX, float toEntityZ, float rotationY, int viewCount) {
+        double angle = Math.atan2(toEntityX, -toEntityZ) + Math.toRadians(rotationY);
+        int view = (int) Math.floor(angle / (2 * Math.PI) * viewCount + 0.5);
+
+        return Math.floorMod(view, viewCount);
+    }
+
+    /**
+     * Check if a model has views in the atlas.
+     *
+     * @param model Textured model to be checked.
+     * @return True if the model can be drawn as an impostor, else false.
+     */
+    public boolean contains(TexturedModel model) {
+        return LAYOUTS.containsKey(model);
+    }
+
+    /**
+     * Write the instance data of an impostor, see {@link #INSTANCE_DATA_LENGTH}.
+     *
+     * @param model       Textured model of the entity.
+     * @param x           X position of the entity.
+     * @param y           Y position of the entity.
+     * @param z           Z position of the entity.
+     * @param rotationY   Rotation of the entity around the Y axis in degrees.
+     * @param scale       Scale of the entity.
+     * @param destination Array to be written to.
+     * @param offset      Index of the first float to be written.
+     */
+    public void writeInstance(
+            TexturedModel model, float x, float y, float z, float rotationY, float scale, float[] destination,
+            int offset
+    ) {
+        Layout layout = LAYOUTS.get(model);
+
+        destination[offset] = x;
+        destination[offset + 1] = y;
+        destination[offset + 2] = z;
+        destination[offset + 3] = rotationY;
+        destination[offset + 4] = layout.halfWidth() * scale;
+        destination[offset + 5] = layout.bottom() * scale;
+        destination[offset + 6] = layout.height() * scale;
+        destination[offset + 7] = layout.row();
+    }
+
+    /**
+     * Delete the atlas texture and its render target.
+     */
+    public void cleanUp() {
+        if (FBO != null) FBO.cleanUp();
+    }
+
+    public int textureID() {
+        return FBO != null ? FBO.colorTexture() : 0;
+    }
+
+    public int viewCount() {
+        return VIEW_COUNT;
+    }
+
+    public int rowCount() {
+        return LAYOUTS.size();
+    }
+}
@@ -0,0 +1,100 @@
+package renderEngine;
+
+import entities.Camera;
+import models.RawModel;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+import shaders.ImpostorShader;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Renderer for the engine to render impostors from an {@link ImpostorAtlas}: every impostor of a frame is drawn with a
+ * single instanced call of a two-triangle quad, its instances uploaded into a stream VBO.
+ */
+public class ImpostorRenderer {
+    private static final float[] QUAD_CORNERS = {-1, 0, 1, 0, 1, 1, -1, 1};
+    private static final int[] QUAD_INDICES = {0, 1, 2, 2, 3, 0};
+
+    private final Loader LOADER;
+    private final ImpostorShader SHADER = new ImpostorShader();
+    private final RawModel QUAD;
+    private final int INSTANCE_VBO;
+
+    private FloatBuffer stagingBuffer = BufferUtils.createFloatBuffer(256 * ImpostorAtlas.INSTANCE_DATA_LENGTH);
+
+    /**
+     * Create a new impostor renderer.
+     *
+     * @param projectionMatrix Projection matrix loaded into the shader.
+     * @param loader           Loader class to create the quad and the instance VBO.
+     */
+    public ImpostorRenderer(Matrix4f projectionMatrix, Loader loader) {
+        this.LOADER = loader;
+
+        QUAD = loader.loadToVAO(QUAD_CORNERS, 2, QUAD_INDICES);
+        INSTANCE_VBO = loader.createStreamVbo();
+
+        int stride = ImpostorAtlas.INSTANCE_DATA_LENGTH;
+        loader.addInstancedAttribute(QUAD.vaoID(), INSTANCE_VBO, 1, 4, stride, 0);
+        loader.addInstancedAttribute(QUAD.vaoID(), INSTANCE_VBO, 2, 4, stride, 4);
+
+        SHADER.start();
+        SHADER.loadProjectionMatrix(projectionMatrix);
+        SHADER.stop();
+    }
+
+    /**
+     * Render impostors.
+     *
+     * @param atlas     Impostor atlas the instances refer to.
+     * @param instances Instance data, see {@link ImpostorAtlas#INSTANCE_DATA_LENGTH}.
+     * @param count     Number of impostors to be rendered.
+     * @param camera    Camera for the display.
+     * @param skyColor  Color of the sky the impostors fade into.
+     */
+    public void render(ImpostorAtlas atlas, float[] instances, int count, Camera camera, Vector3f skyColor) {
+        int length = count * ImpostorAtlas.INSTANCE_DATA_LENGTH;
+
+        if (stagingBuffer.capacity() < length) {
+            stagingBuffer = BufferUtils.createFloatBuffer(Math.max(length, stagingBuffer.capacity() * 2));
+        }
+
+        LOADER.updateStreamVbo(INSTANCE_VBO, instances, length, stagingBuffer);
+
+        SHADER.start();
+        SHADER.loadCamera(camera);
+        SHADER.loadAtlasLayout(atlas.viewCount(), atlas.rowCount());
+        SHADER.loadSkyColor(skyColor);
+
+        GL30.glBindVertexArray(QUAD.vaoID());
+        GL20.glEnableVertexAttribArray(0); // Quad corner.
+        GL20.glEnableVertexAttribArray(1); // Instance position and rotation.
+        GL20.glEnableVertexAttribArray(2); // Instance quad bounds and atlas row.
+
+        GL13.glActiveTexture(GL13.GL_TEXTURE0);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, atlas.textureID());
+
+        GL31.glDrawElementsInstanced(GL11.GL_TRIANGLES, QUAD.vertexCount(), GL11.GL_UNSIGNED_INT, 0, count);
+
+        GL20.glDisableVertexAttribArray(0); // Quad corner.
+        GL20.glDisableVertexAttribArray(1); // Instance position and rotation.
+        GL20.glDisableVertexAttribArray(2); // Instance quad bounds and atlas row.
+        GL30.glBindVertexArray(0);
+
+        SHADER.stop();
+    }
+
+    /**
+     * Clean up the shader. The quad and the instance VBO are deleted with the loader's.
+     */
+    public void cleanUp() {
+        SHADER.cleanUp();
+    }
+}
@@ -0,0 +1,136 @@
+package renderEngine;
+
+import lighting.LightClusters;
+import lighting.LightStore;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import shaders.ShaderProgram;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Buffer textures holding the local lights and their assignment to {@link LightClusters}, read by the fragment
+ * shaders of entities and terrains. Each light takes three RGBA texels: its position and range, its color and the
+ * cosine of its inner cone angle, and its direction and the cosine of its outer cone angle. Each cluster takes the
+ * offset and count of its lights within the light indices.
+ * <p>
+ * Everything is uploaded again every frame into freshly orphaned storage, so the driver never waits for the previous
+ * frame's draws to finish reading it.
+ */
+public class LightBuffers {
+    private static final int FLOATS_PER_LIGHT = 12;
+
+    private final int LIGHTS_VBO;
+    private final int CLUSTERS_VBO;
+    private final int INDICES_VBO;
+    private final int LIGHTS_TEXTURE;
+    private final int CLUSTERS_TEXTURE;
+    private final int INDICES_TEXTURE;
+
+    private final IntBuffer CLUSTER_DATA;
+    private final IntBuffer INDEX_DATA;
+    private FloatBuffer lightData = BufferUtils.createFloatBuffer(64 * FLOATS_PER_LIGHT);
+
+    /**
+     * Create the buffer textures for a cluster grid.
+     *
+     * @param loader   Loader class to create the VBOs and textures.
+     * @param clusters Cluster grid whose assignments are uploaded.
+     */
+    public LightBuffers(Loader loader, LightClusters clusters) {
+        LIGHTS_VBO = loader.createStreamVbo();
+        CLUSTERS_VBO = loader.createStreamVbo();
+        INDICES_VBO = loader.createStreamVbo();
+
+        LIGHTS_TEXTURE = loader.createBufferTexture(LIGHTS_VBO, GL30.GL_RGBA32F);
+        CLUSTERS_TEXTURE = loader.createBufferTexture(CLUSTERS_VBO, GL30.GL_RG32UI);
+        INDICES_TEXTURE = loader.createBufferTexture(INDICES_VBO, GL30.GL_R32UI);
+
+        CLUSTER_DATA = BufferUtils.createIntBuffer(clusters.clusterRanges().length);
+        INDEX_DATA = BufferUtils.createIntBuffer(clusters.lightIndices().length);
+    }
+
+    /**
+     * Upload the lights and the clusters they were last assigned to.
+     *
+     * @param lights   Lights, in the order the clusters refer to them.
+     * @param clusters Cluster grid holding the assignment.
+     */
+    public void upload(LightStore lights, LightClusters clusters) {
+        int count = lights.size();
+
+        if (lightData.capacity() < count * FLOATS_PER_LIGHT) {
+            lightData = BufferUtils.createFloatBuffer(Math.max(count * FLOATS_PER_LIGHT, lightData.capacity() * 2));
+        }
+
+        lightData.clear();
+
+        for (int i = 0; i < count; i++) {
+            lightData.put(lights.positionsX()[i]).put(lights.positionsY()[i]).put(lights.positionsZ()[i])
+                    .put(lights.ranges()[i]);
+            lightData.put(lights.colorsR()[i]).put(lights.colorsG()[i]).put(lights.colorsB()[i])
+                    .put(lights.innerCosines()[i]);
+            lightData.put(lights.directionsX()[i]).put(lights.directionsY()[i]).put(lights.directionsZ()[i])
+                    .put(lights.outerCosines()[i]);
+        }
+
+        lightData.flip();
+        update(LIGHTS_VBO, lightData);
+
+        CLUSTER_DATA.clear();
+        CLUSTER_DATA.put(clusters.clusterRanges());
+        CLUSTER_DATA.flip();
+        update(CLUSTERS_VBO, CLUSTER_DATA);
+
+        INDEX_DATA.clear();
+        INDEX_DATA.put(clusters.lightIndices(), 0, clusters.indexCount());
+        INDEX_DATA.flip();
+        update(INDICES_VBO, INDEX_DATA);
+    }
+
+    /**
+     * Bind the buffer textures to the texture units the shaders read the lights from.
+     */
+    public void bind() {
+        GL13.glActiveTexture(GL13.GL_TEXTURE0 + ShaderProgram.LIGHTS_TEXTURE_UNIT);
+        GL11.glBindTexture(GL31.GL_TEXTURE_BUFFER, LIGHTS_TEXTURE);
+        GL13.glActiveTexture(GL13.GL_TEXTURE0 + ShaderProgram.CLUSTERS_TEXTURE_UNIT);
+        GL11.glBindTexture(GL31.GL_TEXTURE_BUFFER, CLUSTERS_TEXTURE);
+        GL13.glActiveTexture(GL13.GL_TEXTURE0 + ShaderProgram.LIGHT_INDICES_TEXTURE_UNIT);
+        GL11.glBindTexture(GL31.GL_TEXTURE_BUFFER, INDICES_TEXTURE);
+        GL13.glActiveTexture(GL13.GL_TEXTURE0);
+    }
+
+    /**
+     * Replace the contents of a VBO with float data, orphaning its previous storage. Empty data still gets
+     * room for a texel, so the texture is never left without storage.
+     *
+     * @param vboID ID of the VBO.
+     * @param data  Data to be uploaded, flipped for reading.
+     */
+    private static void update(int vboID, FloatBuffer data) {
+        GL15.glBindBuffer(GL31.GL_TEXTURE_BUFFER, vboID);
+        GL15.glBufferData(GL31.GL_TEXTURE_BUFFER, Math.max(16, data.remaining() * 4L), GL15.GL_STREAM_DRAW);
+        GL15.glBufferSubData(GL31.GL_TEXTURE_BUFFER, 0, data);
+        GL15.glBindBuffer(GL31.GL_TEXTURE_BUFFER, 0);
+    }
+
+    /**
+     * Replace the contents of a VBO with int data, orphaning its previous storage. Empty data still gets room for a
+     * texel, so the texture is never left without storage.
+     *
+     * @param vboID ID of the VBO.
+     * @param data  Data to be uploaded, flipped for reading.
+     */
+    private static void update(int vboID, IntBuffer data) {
+        GL15.glBindBuffer(GL31.GL_TEXTURE_BUFFER, vboID);
+        GL15.glBufferData(GL31.GL_TEXTURE_BUFFER, Math.max(8, data.remaining() * 4L), GL15.GL_STREAM_DRAW);
+        GL15.glBufferSubData(GL31.GL_TEXTURE_BUFFER, 0, data);
+        GL15.glBindBuffer(GL31.GL_TEXTURE_BUFFER, 0);
+    }
+}
@@ -3,18 +3,24 @@ package renderEngine;
 import models.RawModel;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
 import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL33;
 import org.newdawn.slick.opengl.Texture;
 import org.newdawn.slick.opengl.TextureLoader;
+import textures.ModelTexture;
 
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Load a model by putting its vertex information into a VBO which is stored in the attribute list of a VAO.
@@ -23,9 +29,11 @@ public class Loader {
     private final List<Integer> VAOs = new ArrayList<>();
     private final List<Integer> VBOs = new ArrayList<>();
     private final List<Integer> TEXTURES = new ArrayList<>();
+    private final Map<Integer, List<Integer>> VAO_BUFFERS = new HashMap<>();
+    private List<Integer> vaoBuffers;
 
     /**
-     * Create a new VAO and bind it for use.
+     * Create a new VAO and bind it for use. The VBOs created until the next VAO are recorded as belonging to it.
      *
      * @return ID of the newly created VAO.
      */
@@ -34,6 +42,9 @@ public class Loader {
         VAOs.add(vaoID);
         GL30.glBindVertexArray(vaoID);
 
+        vaoBuffers = new ArrayList<>();
+        VAO_BUFFERS.put(vaoID, vaoBuffers);
+
         return vaoID;
     }
 
@@ -66,6 +77,164 @@ public class Loader {
         return new RawModel(vaoID, indices.length);
     }
 
+    /**
+     * Load a model's vertex positions in a VAO, without texture coordinates or normals.
+     *
+     * @param positions  Vertex positions of the model.
+     * @param dimensions Number of coordinates per vertex position.
+     * @param indices    Indices of vertex positions of the model.
+     * @return Raw model stored in a VAO.
+     */
+    public RawModel loadToVAO(float[] positions, int dimensions, int[] indices) {
+        int vaoID = createVAO();
+
+        bindIndicesBuffer(indices);
+        storeDataInAttributeList(0, dimensions, positions);
+
+        unbindVAO();
+
+        return new RawModel(vaoID, indices.length);
+    }
+
+    /**
+     * Delete a model loaded by {@link #loadToVAO} before the loader is cleaned up, along with the VBOs holding its
+     * vertex data, for models that are rebuilt while the game runs.
+     *
+     * @param model Model to be deleted.
+     */
+    public void unloadVAO(RawModel model) {
+        List<Integer> buffers = VAO_BUFFERS.remove(model.vaoID());
+        if (buffers == null) throw new IllegalArgumentException("The model was not loaded by this loader.");
+
+        for (int vbo : buffers) {
+            GL15.glDeleteBuffers(vbo);
+            VBOs.remove(Integer.valueOf(vbo));
+        }
+
+        GL30.glDeleteVertexArrays(model.vaoID());
+        VAOs.remove(Integer.valueOf(model.vaoID()));
+    }
+
+    /**
+     * Create an empty VBO for data that is replaced every frame, such as per-instance data.
+     *
+     * @return ID of the newly created VBO.
+     */
+    public int createStreamVbo() {
+        int vboID = GL15.glGenBuffers();
+        VBOs.add(vboID);
+
+        return vboID;
+    }
+
+    /**
+     * Read a float attribute of a VAO from a VBO once per instance instead of once per vertex.
+     *
+     * @param vaoID     ID of the VAO.
+     * @param vboID     ID of the VBO holding the instance data.
+     * @param attribute Slot number of the attribute.
+     * @param dataSize  Number of floats in the attribute.
+     * @param stride    Number of floats of instance data per instance.
+     * @param offset    Index of the attribute's first float within the data of an instance.
+     */
+    public void addInstancedAttribute(int vaoID, int vboID, int attribute, int dataSize, int stride, int offset) {
+        GL30.glBindVertexArray(vaoID);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboID);
+
+        GL20.glVertexAttribPointer(attribute, dataSize, GL11.GL_FLOAT, false, stride * 4, offset * 4L);
+        GL33.glVertexAttribDivisor(attribute, 1);
+
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        unbindVAO();
+    }
+
+    /**
+     * Replace the contents of a stream VBO, orphaning its previous storage so the driver doesn't have to wait for
+     * draws still reading it.
+     *
+     * @param vboID  ID of the VBO.
+     * @param data   Data to be uploaded.
+     * @param length Number of floats of the data to be uploaded.
+     * @param buffer Buffer to stage the data in, with room for at least {@code length} floats.
+     */
+    public void updateStreamVbo(int vboID, float[] data, int length, FloatBuffer buffer) {
+        buffer.clear();
+        buffer.put(data, 0, length);
+        buffer.flip();
+
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboID);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, buffer.capacity() * 4L, GL15.GL_STREAM_DRAW);
+        GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, buffer);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Load a single-channel floating point texture, sampled without filtering and clamped at its edges.
+     *
+     * @param data   Values of the texture, row by row.
+     * @param width  Width of the texture.
+     * @param height Height of the texture.
+     * @return Location of the texture ID.
+     */
+    public int loadFloatTexture(float[] data, int width, int height) {
+        int textureID = GL11.glGenTextures();
+        TEXTURES.add(textureID);
+
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureID);
+        GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 4);
+        GL11.glTexImage2D(
+                GL11.GL_TEXTURE_2D, 0, GL30.GL_R32F, width, height, 0, GL11.GL_RED, GL11.GL_FLOAT,
+                storeDataInFloatBuffer(data)
+        );
+
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+
+        return textureID;
+    }
+
+    /**
+     * Replace the contents of a single-channel floating point texture created by {@link #loadFloatTexture}, keeping
+     * its storage.
+     *
+     * @param textureID ID of the texture.
+     * @param data      New values of the texture, row by row.
+     * @param width     Width of the texture, which must match its storage.
+     * @param height    Height of the texture, which must match its storage.
+     * @param buffer    Buffer to stage the data in, with room for at least {@code width * height} floats.
+     */
+    public void updateFloatTexture(int textureID, float[] data, int width, int height, FloatBuffer buffer) {
+        buffer.clear();
+        buffer.put(data, 0, width * height);
+        buffer.flip();
+
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureID);
+        GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 4);
+        GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, 0, 0, width, height, GL11.GL_RED, GL11.GL_FLOAT, buffer);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+    }
+
+    /**
+     * Create a buffer texture whose texels are read straight from a VBO, for arrays too large to be uniforms.
+     *
+     * @param vboID          ID of the VBO holding the texels.
+     * @param internalFormat Format of the texels, such as GL_RGBA32F.
+     * @return ID of the newly created texture.
+     */
+    public int createBufferTexture(int vboID, int internalFormat) {
+        int textureID = GL11.glGenTextures();
+        TEXTURES.add(textureID);
+
+        GL11.glBindTexture(GL31.GL_TEXTURE_BUFFER, textureID);
+        GL31.glTexBuffer(GL31.GL_TEXTURE_BUFFER, internalFormat, vboID);
+        GL11.glBindTexture(GL31.GL_TEXTURE_BUFFER, 0);
+
+        return textureID;
+    }
+
     /**
      * Load a texture using an existing PNG file.
      *
@@ -73,6 +242,31 @@ public class Loader {
      * @return Location of the texture ID.
      */
     public int loadTexture(String filename) {
+        return readTexture(filename).getTextureID();
+    }
+
+    /**
+     * Load the texture of a model using an existing PNG file, checking its alpha channel for cutouts so the material
+     * is alpha tested only when it needs to be.
+     *
+     * @param filename Name of PNG texture file.
+     * @return Model texture using the loaded texture.
+     */
+    public ModelTexture loadModelTexture(String filename) {
+        Texture texture = readTexture(filename);
+        ModelTexture modelTexture = new ModelTexture(texture.getTextureID());
+
+        if (texture.hasAlpha()) {
+            modelTexture.setHasCutouts(ModelTexture.hasCutouts(
+                    texture.getTextureData(), texture.getTextureWidth(), texture.getImageWidth(),
+                    texture.getImageHeight()
+            ));
+        }
+
+        return modelTexture;
+    }
+
+    private Texture readTexture(String filename) {
         Texture texture;
 
         try {
@@ -84,9 +278,8 @@ public class Loader {
             throw new RuntimeException(e);
         }
 
-        int textureID = texture.getTextureID();
-        TEXTURES.add(textureID);
-        return textureID;
+        TEXTURES.add(texture.getTextureID());
+        return texture;
     }
 
     /**
@@ -97,6 +290,7 @@ public class Loader {
     private void bindIndicesBuffer(int[] indices) {
         int vboID = GL15.glGenBuffers();
         VBOs.add(vboID);
+        vaoBuffers.add(vboID);
         GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, vboID);
 
         IntBuffer buffer = storeDataInIntBuffer(indices);
@@ -141,6 +335,7 @@ public class Loader {
     private void storeDataInAttributeList(int attributeNumber, int coordinateSize, float[] data) {
         int vboID = GL15.glGenBuffers();
         VBOs.add(vboID);
+        vaoBuffers.add(vboID);
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboID);
 
         FloatBuffer buffer = storeDataInFloatBuffer(data);
@@ -3,16 +3,21 @@ package renderEngine;
 import entities.Camera;
 import entities.Entity;
 import entities.Light;
+import jobs.JobSystem;
+import lighting.LightClusters;
+import lighting.LightStore;
 import models.TexturedModel;
 import org.lwjgl.opengl.Display;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.util.vector.Matrix4f;
 import org.lwjgl.util.vector.Vector3f;
-import shaders.StaticShader;
 import shaders.TerrainShader;
 import terrains.Terrain;
+import terrains.VegetationField;
+import toolbox.EngineMath;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,31 +27,83 @@ import java.util.Map;
  */
 public class MasterRenderer {
     private static final int FOV = 70;
-    private static final float NEAR_PLANE = 0.1f;
-    private static final float FAR_PLANE = 1000;
+
+    /**
+     * Distance from the camera to the near plane of the view frustum.
+     */
+    public static final float NEAR_PLANE = 0.1f;
+
+    /**
+     * Distance from the camera to the far plane of the view frustum.
+     */
+    public static final float FAR_PLANE = 1000;
+
+    private static final int CLUSTER_TILES_X = 16;
+    private static final int CLUSTER_TILES_Y = 9;
+    private static final int CLUSTER_SLICES = 24;
+    private static final int MAX_LIGHTS_PER_CLUSTER = 128;
 
     private static final Vector3f SKY_COLOR = new Vector3f(0.5f, 0.5f, 0.5f);
 
     private Matrix4f projectionMatrix;
+    private final Matrix4f VIEW_MATRIX = new Matrix4f();
+    private final Matrix4f VIEW_PROJECTION_MATRIX = new Matrix4f();
+    private final float[] VIEW_PROJECTION = new float[16];
 
     private final EntityRenderer ENTITY_RENDERER;
-    private final StaticShader STATIC_SHADER = new StaticShader();
 
     private final TerrainRenderer TERRAIN_RENDERER;
     private final TerrainShader TERRAIN_SHADER = new TerrainShader();
 
+    private final VegetationRenderer VEGETATION_RENDERER;
+
+    private final ImpostorRenderer IMPOSTOR_RENDERER;
+
+    private final JobSystem JOBS;
+    private final LightClusters LIGHT_CLUSTERS = new LightClusters(
+            CLUSTER_TILES_X, CLUSTER_TILES_Y, CLUSTER_SLICES, NEAR_PLANE, FAR_PLANE, MAX_LIGHTS_PER_CLUSTER
+    );
+    private final LightBuffers LIGHT_BUFFERS;
+    private final LightStore NO_LIGHTS = new LightStore(0);
+
+    private final DynamicResolution DYNAMIC_RESOLUTION = new DynamicResolution(1000f / DisplayManager.FPS_CAP);
+
     private final Map<TexturedModel, List<Entity>> ENTITIES = new HashMap<>();
     private final List<Terrain> TERRAINS = new ArrayList<>();
+    private VegetationField vegetationField;
+    private LightStore lights;
+    private ImpostorAtlas impostorAtlas;
+    private float[] impostorInstances = new float[256 * ImpostorAtlas.INSTANCE_DATA_LENGTH];
+    private int impostorCount = 0;
+
+    /**
+     * Create a new master renderer to control entity and terrain renderers, assigning local lights to clusters on the
+     * render thread.
+     *
+     * @param loader Loader class for the meshes and buffers owned by the renderers.
+     */
+    public MasterRenderer(Loader loader) {
+        this(loader, new JobSystem(0));
+    }
 
     /**
      * Create a new master renderer to control entity and terrain renderers.
+     *
+     * @param loader Loader class for the meshes and buffers owned by the renderers.
+     * @param jobs   Job system local lights are assigned to clusters on.
      */
-    public MasterRenderer() {
+    public MasterRenderer(Loader loader, JobSystem jobs) {
+        this.JOBS = jobs;
+
         enableBackFaceCulling();
-        createProjectionMatrix();
+        projectionMatrix = createProjectionMatrix((float) Display.getWidth() / Display.getHeight(), new Matrix4f());
+
+        LIGHT_BUFFERS = new LightBuffers(loader, LIGHT_CLUSTERS);
 
-        ENTITY_RENDERER = new EntityRenderer(STATIC_SHADER, projectionMatrix);
-        TERRAIN_RENDERER = new TerrainRenderer(TERRAIN_SHADER, projectionMatrix);
+        ENTITY_RENDERER = new EntityRenderer(projectionMatrix);
+        TERRAIN_RENDERER = new TerrainRenderer(TERRAIN_SHADER, projectionMatrix, loader);
+        VEGETATION_RENDERER = new VegetationRenderer(projectionMatrix, loader);
+        IMPOSTOR_RENDERER = new ImpostorRenderer(projectionMatrix, loader);
     }
 
     /**
@@ -64,8 +121,18 @@ public class MasterRenderer {
      * @param entity Entity to be processed.
      */
     public void processEntity(Entity entity) {
+        addToBatch(ENTITIES, entity);
+    }
+
+    /**
+     * Add an entity to the batch of its textured model, creating the batch if it doesn't exist yet.
+     *
+     * @param batches Render batches keyed by textured model.
+     * @param entity  Entity to be added.
+     */
+    static void addToBatch(Map<TexturedModel, List<Entity>> batches, Entity entity) {
         TexturedModel texturedModel = entity.texturedModel();
-        List<Entity> batch = ENTITIES.get(texturedModel);
+        List<Entity> batch = batches.get(texturedModel);
 
         if (batch != null) {
             batch.add(entity);
@@ -74,7 +141,7 @@ public class MasterRenderer {
         else {
             List<Entity> newBatch = new ArrayList<>();
             newBatch.add(entity);
-            ENTITIES.put(texturedModel, newBatch);
+            batches.put(texturedModel, newBatch);
         }
     }
 
@@ -88,63 +155,176 @@ public class MasterRenderer {
     }
 
     /**
-     * Render all the entities within all the batches and all the terrains.
+     * Process a vegetation field, whose ground cover is drawn over the terrains processed in the same frame.
+     *
+     * @param field Vegetation field to be processed.
+     */
+    public void processVegetation(VegetationField field) {
+        vegetationField = field;
+    }
+
+    /**
+     * Process impostors drawn in place of distant entities, adding them to the impostors of the frame. Every impostor
+     * of a frame must come from the same atlas.
+     *
+     * @param atlas     Impostor atlas the instances refer to.
+     * @param instances Instance data, see {@link ImpostorAtlas#INSTANCE_DATA_LENGTH}.
+     * @param count     Number of impostors to be processed.
+     */
+    public void processImpostors(ImpostorAtlas atlas, float[] instances, int count) {
+        if (impostorAtlas != null && atlas != impostorAtlas) {
+            throw new IllegalArgumentException("Every impostor of a frame must come from the same atlas.");
+        }
+
+        int offset = impostorCount * ImpostorAtlas.INSTANCE_DATA_LENGTH;
+        int length = count * ImpostorAtlas.INSTANCE_DATA_LENGTH;
+
+        if (impostorInstances.length < offset + length) {
+            int capacity = Math.max(offset + length, impostorInstances.length * 2);
+            impostorInstances = Arrays.copyOf(impostorInstances, capacity);
+        }
+
+        System.arraycopy(instances, 0, impostorInstances, offset, length);
+        impostorAtlas = atlas;
+        impostorCount += count;
+    }
+
+    /**
+     * Process the local point and spot lights lighting the entities, terrains and ground cover in the same frame.
+     *
+     * @param lights Local lights to be processed.
+     */
+    public void processLights(LightStore lights) {
+        this.lights = lights;
+    }
+
+    /**
+     * Render all the entities within all the batches, all the terrains and their ground cover.
      *
      * @param globalLight Global light for the scene, generally the Sun.
      * @param camera      Camera for the display.
      */
     public void render(Light globalLight, Camera camera) {
+        DYNAMIC_RESOLUTION.bind();
         prepare();
-        // Entity renderer and static shader.
-        STATIC_SHADER.start();
 
-        STATIC_SHADER.loadSkyColor(SKY_COLOR);
-        STATIC_SHADER.loadLight(globalLight);
-        STATIC_SHADER.loadViewMatrix(camera);
+        // Local lights, assigned to the clusters of the view frustum and read by the entity, terrain and vegetation
+        // shaders.
+        LightStore localLights = lights != null ? lights : NO_LIGHTS;
+        EngineMath.createViewMatrix(camera, VIEW_MATRIX);
+        LIGHT_CLUSTERS.assign(localLights, projectionMatrix, VIEW_MATRIX, JOBS);
+        LIGHT_BUFFERS.upload(localLights, LIGHT_CLUSTERS);
+        LIGHT_BUFFERS.bind();
 
-        ENTITY_RENDERER.render(ENTITIES);
+        // Entity renderer, which binds one static shader variant per group of materials.
+        ENTITY_RENDERER.render(ENTITIES, globalLight, LIGHT_CLUSTERS, camera, SKY_COLOR);
 
-        STATIC_SHADER.stop();
+        // Impostor renderer, drawing every distant entity's quad with one instanced call.
+        if (impostorCount > 0) {
+            IMPOSTOR_RENDERER.render(impostorAtlas, impostorInstances, impostorCount, camera, SKY_COLOR);
+        }
 
         // Terrain renderer and terrain shader.
         TERRAIN_SHADER.start();
 
         TERRAIN_SHADER.loadSkyColor(SKY_COLOR);
         TERRAIN_SHADER.loadLight(globalLight);
+        TERRAIN_SHADER.loadLightClusters(LIGHT_CLUSTERS);
         TERRAIN_SHADER.loadViewMatrix(camera);
 
-        TERRAIN_RENDERER.render(TERRAINS);
+        TERRAIN_RENDERER.render(TERRAINS, camera.position());
 
         TERRAIN_SHADER.stop();
 
+        // Vegetation renderer, which binds one vegetation shader variant per layer.
+        if (vegetationField != null) {
+            VEGETATION_RENDERER.render(vegetationField, TERRAINS, globalLight, LIGHT_CLUSTERS, camera, SKY_COLOR);
+        }
+
+        DYNAMIC_RESOLUTION.resolve();
+
         ENTITIES.clear();
         TERRAINS.clear();
+        vegetationField = null;
+        lights = null;
+        impostorAtlas = null;
+        impostorCount = 0;
     }
 
     /**
      * Clean up the shader after use when the display is closed.
      */
     public void cleanUp() {
-        STATIC_SHADER.cleanUp();
+        ENTITY_RENDERER.cleanUp();
         TERRAIN_SHADER.cleanUp();
+        VEGETATION_RENDERER.cleanUp();
+        IMPOSTOR_RENDERER.cleanUp();
+        DYNAMIC_RESOLUTION.cleanUp();
     }
 
     /**
-     * Create a new 4x4 projection matrix using the display and a custom view frustum.
+     * Get the scale of the internal render resolution relative to the display, as chosen by dynamic resolution.
+     *
+     * @return Current render scale.
+     */
+    public float resolutionScale() {
+        return DYNAMIC_RESOLUTION.scale();
+    }
+
+    public LightClusters lightClusters() {
+        return LIGHT_CLUSTERS;
+    }
+
+    /**
+     * Extract the planes of the view frustum of a camera, for culling against before entities are processed.
+     *
+     * @param camera Camera for the display.
+     * @param planes Destination for the six normalized frustum planes as 24 floats, see
+     *               {@link EngineMath#extractFrustumPlanes}.
+     */
+    public void extractFrustumPlanes(Camera camera, float[] planes) {
+        EngineMath.createViewMatrix(camera, VIEW_MATRIX);
+        Matrix4f.mul(projectionMatrix, VIEW_MATRIX, VIEW_PROJECTION_MATRIX);
+        EngineMath.storeMatrix(VIEW_PROJECTION_MATRIX, VIEW_PROJECTION, 0);
+        EngineMath.extractFrustumPlanes(VIEW_PROJECTION, planes);
+    }
+
+    /**
+     * Find the ray from a camera through a point of the display, such as the mouse cursor, for picking.
+     *
+     * @param camera    Camera for the display.
+     * @param mouseX    X position on the display in pixels, from the left edge.
+     * @param mouseY    Y position on the display in pixels, from the bottom edge, as the mouse reports it.
+     * @param origin    Destination for the origin of the ray.
+     * @param direction Destination for the normalized direction of the ray.
+     */
+    public void mouseRay(Camera camera, float mouseX, float mouseY, Vector3f origin, Vector3f direction) {
+        float ndcX = 2 * mouseX / Display.getWidth() - 1;
+        float ndcY = 2 * mouseY / Display.getHeight() - 1;
+
+        EngineMath.createViewMatrix(camera, VIEW_MATRIX);
+        EngineMath.unproject(ndcX, ndcY, projectionMatrix, VIEW_MATRIX, origin, direction);
+    }
+
+    /**
+     * Create the 4x4 projection matrix of the renderer's view frustum for a display.
+     *
+     * @param aspectRatio Width of the display divided by its height.
+     * @param destination Matrix to be overwritten.
+     * @return Destination matrix.
      */
-    private void createProjectionMatrix() {
-        float aspectRatio = (float) Display.getWidth() / Display.getHeight();
+    public static Matrix4f createProjectionMatrix(float aspectRatio, Matrix4f destination) {
         float yScale = (float) ((1f / Math.tan(Math.toRadians(FOV / 2f))) * aspectRatio);
         float xScale = yScale / aspectRatio;
         float frustumLength = FAR_PLANE - NEAR_PLANE;
 
-        projectionMatrix = new Matrix4f();
-        projectionMatrix.m00 = xScale;
-        projectionMatrix.m11 = yScale;
-        projectionMatrix.m22 = -(FAR_PLANE + NEAR_PLANE) / frustumLength;
-        projectionMatrix.m23 = -1;
-        projectionMatrix.m32 = -(2 * NEAR_PLANE * FAR_PLANE) / frustumLength;
-        projectionMatrix.m33 = 0;
+        destination.setZero();
+        destination.m00 = xScale;
+        destination.m11 = yScale;
+        destination.m22 = -(FAR_PLANE + NEAR_PLANE) / frustumLength;
+        destination.m23 = -1;
+        destination.m32 = -(2 * NEAR_PLANE * FAR_PLANE) / frustumLength;
+        return destination;
     }
 
     /**
@@ -0,0 +1,93 @@
+package renderEngine;
+
+/**
+ * Chooses the internal render scale from measured GPU frame times. Samples are averaged over a fixed number of frames
+ * before each decision, and the scale only changes when the average leaves a band around the budget, so it does not
+ * oscillate when the frame time hovers near the target.
+ */
+public class ResolutionController {
+    private static final float MIN_SCALE = 0.5f;
+    private static final float MAX_SCALE = 1;
+    private static final float SCALE_INCREMENT = 0.05f;
+    private static final float MAX_SCALE_CHANGE = 0.15f;
+
+    private static final float DOWNSCALE_THRESHOLD = 0.95f;
+    private static final float UPSCALE_THRESHOLD = 0.75f;
+    private static final float TARGET_LOAD = (DOWNSCALE_THRESHOLD + UPSCALE_THRESHOLD) / 2;
+
+    private static final int ADJUSTMENT_INTERVAL = 8;
+
+    private final float BUDGET_MILLIS;
+
+    private float scale = MAX_SCALE;
+    private float sampleSum = 0;
+    private int sampleCount = 0;
+    private float averageMillis = 0;
+    private int adjustmentCount = 0;
+
+    /**
+     * Create a new resolution controller.
+     *
+     * @param budgetMillis GPU time budget of a single frame in milliseconds.
+     */
+    public ResolutionController(float budgetMillis) {
+        this.BUDGET_MILLIS = budgetMillis;
+    }
+
+    /**
+     * Add the GPU time of a frame and adjust the scale once enough frames have been collected.
+     *
+     * @param gpuMillis GPU frame time in milliseconds.
+     */
+    public void addSample(float gpuMillis) {
+        sampleSum += gpuMillis;
+        sampleCount++;
+
+        if (sampleCount < ADJUSTMENT_INTERVAL) return;
+
+        averageMillis = sampleSum / sampleCount;
+        sampleSum = 0;
+        sampleCount = 0;
+
+        float load = averageMillis / BUDGET_MILLIS;
+        if (load <= DOWNSCALE_THRESHOLD && load >= UPSCALE_THRESHOLD) return;
+
+        // Fill-rate cost grows with the pixel count, which is the square of the scale.
+        float desiredScale = scale * (float) Math.sqrt(TARGET_LOAD / Math.max(load, 0.01f));
+        desiredScale = Math.max(scale - MAX_SCALE_CHANGE, Math.min(scale + MAX_SCALE_CHANGE, desiredScale));
+        desiredScale = Math.round(desiredScale / SCALE_INCREMENT) * SCALE_INCREMENT;
+        desiredScale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, desiredScale));
+
+        if (desiredScale != scale) {
+            scale = desiredScale;
+            adjustmentCount++;
+        }
+    }
+
+    /**
+     * Get the current render scale applied to both axes of the display resolution.
+     *
+     * @return Render scale between the minimum scale and 1.
+     */
+    public float scale() {
+        return scale;
+    }
+
+    /**
+     * Get the average GPU frame time of the last full sample window.
+     *
+     * @return Average GPU frame time in milliseconds.
+     */
+    public float averageMillis() {
+        return averageMillis;
+    }
+
+    /**
+     * Get the number of times the scale has changed.
+     *
+     * @return Number of scale changes.
+     */
+    public int adjustmentCount() {
+        return adjustmentCount;
+    }
+}
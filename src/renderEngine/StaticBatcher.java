@@ -0,0 +1,525 @@
+package renderEngine;
+
+import OBJConverter.ModelData;
+import entities.Entity;
+import entities.EntityStore;
+import models.RawModel;
+import models.TexturedModel;
+import org.lwjgl.util.vector.Vector3f;
+import textures.ModelTexture;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Merges the static entities of an entity store into one mesh per texture and square chunk of the world, so that all
+ * the static geometry sharing a texture within a chunk is drawn with a single draw call.
+ * <p>
+ * The vertices of every static entity are transformed into world space once, when it is batched, and each merged mesh
+ * is drawn as an entity at the origin through the usual entity renderer. Every chunk keeps a bounding sphere so it can
+ * still be culled against the view frustum. The batches are only rebuilt when the store's static entities change, and
+ * then only the chunks whose contents changed are merged and uploaded again.
+ * <p>
+ * With an {@link ImpostorAtlas}, a chunk whose bounding sphere lies entirely beyond the impostor distance is drawn as
+ * one impostor per entity instead of its merged mesh, as long as the atlas holds views of every model in the chunk.
+ * Chunks switch as a whole, so every impostor is at least the impostor distance from the camera.
+ */
+public class StaticBatcher {
+    private final float CHUNK_SIZE;
+    private final Function<MergedMesh, RawModel> UPLOAD;
+    private final Consumer<RawModel> UNLOAD;
+    private final ImpostorAtlas IMPOSTORS;
+    private final float IMPOSTOR_DISTANCE;
+
+    private final Map<ChunkKey, Chunk> CHUNKS = new HashMap<>();
+    private final List<Chunk> CHUNK_LIST = new ArrayList<>();
+    private int builtVersion = -1;
+    private EntityStore builtStore = null;
+
+    private final List<Entity> VISIBLE_MESHES = new ArrayList<>();
+    private float[] visibleImpostors = new float[256 * ImpostorAtlas.INSTANCE_DATA_LENGTH];
+    private int visibleImpostorCount = 0;
+
+    private int chunksRebuilt = 0;
+
+    /**
+     * Texture and chunk position identifying a batch.
+     *
+     * @param texture Texture shared by every entity in the batch.
+     * @param chunkX  X position of the chunk.
+     * @param chunkZ  Z position of the chunk.
+     */
+    private record ChunkKey(ModelTexture texture, int chunkX, int chunkZ) {
+    }
+
+    /**
+     * Vertex data of a merged mesh in world space, with the bounding sphere of its vertices.
+     *
+     * @param positions          Vertex positions.
+     * @param textureCoordinates Texture coordinates.
+     * @param normals            Normal vectors.
+     * @param indices            Indices of the triangles.
+     * @param centerX            X position of the bounding sphere's center.
+     * @param centerY            Y position of the bounding sphere's center.
+     * @param centerZ            Z position of the bounding sphere's center.
+     * @param radius             Radius of the bounding sphere.
+     */
+    record MergedMesh(
+            float[] positions, float[] textureCoordinates, float[] normals, int[] indices, float centerX,
+            float centerY, float centerZ, float radius
+    ) {
+    }
+
+    /**
+     * Batch of one texture within one chunk: the store indices of its entities while being rebuilt, and its uploaded
+     * mesh and the instance data of its impostors, if it has any.
+     */
+    private static final class Chunk {
+        private final ChunkKey KEY;
+        private int[] members = new int[16];
+        private int memberCount = 0;
+        private long signature = 0;
+
+        private long builtSignature = 0;
+        private Entity entity = null;
+        private float centerX;
+        private float centerY;
+        private float centerZ;
+        private float radius;
+        private float[] impostors = null;
+        private int impostorCount = 0;
+
+        private Chunk(ChunkKey key) {
+            this.KEY = key;
+        }
+    }
+
+    /**
+     * Create a new static batcher.
+     *
+     * @param loader    Loader class to upload the merged meshes.
+     * @param chunkSize Width of the square chunks the static entities are grouped into.
+     */
+    public StaticBatcher(Loader loader, float chunkSize) {
+        this(loader, chunkSize, null, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Create a new static batcher that draws distant chunks as impostors.
+     *
+     * @param loader           Loader class to upload the merged meshes.
+     * @param chunkSize        Width of the square chunks the static entities are grouped into.
+     * @param impostors        Impostor atlas holding views of the static entities' models, or null for none.
+     * @param impostorDistance Distance from the camera beyond which whole chunks are drawn as impostors.
+     */
+    public StaticBatcher(Loader loader, float chunkSize, ImpostorAtlas impostors, float impostorDistance) {
+        this(chunkSize, impostors, impostorDistance, mesh -> loader.loadToVAO(
+                mesh.positions(), mesh.textureCoordinates(), mesh.normals(), mesh.indices()
+        ), loader::unloadVAO);
+    }
+
+    /**
+     * Create a new static batcher with its own way of uploading and deleting meshes. Lets the batching run without
+     * OpenGL.
+     *
+     * @param chunkSize Width of the square chunks the static entities are grouped into.
+     * @param upload    Uploads a merged mesh and returns its model.
+     * @param unload    Deletes a model returned by the upload function.
+     */
+    StaticBatcher(float chunkSize, Function<MergedMesh, RawModel> upload, Consumer<RawModel> unload) {
+        this(chunkSize, null, Float.POSITIVE_INFINITY, upload, unload);
+    }
+
+    /**
+     * Create a new static batcher that draws distant chunks as impostors, with its own way of uploading and deleting
+     * meshes. Lets the batching run without OpenGL.
+     *
+     * @param chunkSize        Width of the square chunks the static entities are grouped into.
+     * @param impostors        Impostor atlas holding views of the static entities' models, or null for none.
+     * @param impostorDistance Distance from the camera beyond which whole chunks are drawn as impostors.
+     * @param upload           Uploads a merged mesh and returns its model.
+     * @param unload           Deletes a model returned by the upload function.
+     */
+    StaticBatcher(
+            float chunkSize, ImpostorAtlas impostors, float impostorDistance, Function<MergedMesh, RawModel> upload,
+            Consumer<RawModel> unload
+    ) {
+        this.CHUNK_SIZE = chunkSize;
+        this.IMPOSTORS = impostors;
+        this.IMPOSTOR_DISTANCE = impostorDistance;
+        this.UPLOAD = upload;
+        this.UNLOAD = unload;
+    }
+
+    /**
+     * Rebuild the batches if the static entities of a store changed since they were last built. Static entities that
+     * are hidden are left out.
+     *
+     * @param store  Store holding the static entities.
+     * @param meshes Vertex data of every textured model used by a static entity.
+     * @return True if the static entities changed since the last update, else false.
+     */
+    public boolean update(EntityStore store, Map<TexturedModel, ModelData> meshes) {
+        if (store == builtStore && store.staticVersion() == builtVersion) return false;
+
+        store.updateWorldMatrices();
+
+        for (Chunk chunk : CHUNK_LIST) {
+            chunk.memberCount = 0;
+            chunk.signature = 0;
+        }
+
+        float[] positionsX = store.positionsX();
+        float[] positionsZ = store.positionsZ();
+        float[] matrices = store.worldMatrices();
+
+        for (int i = 0; i < store.size(); i++) {
+            int flags = store.flags(store.id(i));
+            if ((flags & EntityStore.STATIC) == 0 || (flags & EntityStore.HIDDEN) != 0) continue;
+
+            TexturedModel model = store.model(store.models()[i]);
+            if (!meshes.containsKey(model)) {
+                throw new IllegalArgumentException("A static entity uses a model without vertex data to batch.");
+            }
+
+            ChunkKey key = new ChunkKey(
+                    model.texture(), (int) Math.floor(positionsX[i] / CHUNK_SIZE),
+                    (int) Math.floor(positionsZ[i] / CHUNK_SIZE)
+            );
+
+            Chunk chunk = CHUNKS.get(key);
+            if (chunk == null) {
+                chunk = new Chunk(key);
+                CHUNKS.put(key, chunk);
+                CHUNK_LIST.add(chunk);
+            }
+
+            if (chunk.memberCount == chunk.members.length) {
+                chunk.members = Arrays.copyOf(chunk.members, chunk.memberCount * 2);
+            }
+
+            chunk.members[chunk.memberCount++] = i;
+            chunk.signature += signature(store.models()[i], matrices, i * 16);
+        }
+
+        Iterator<Chunk> iterator = CHUNK_LIST.iterator();
+        while (iterator.hasNext()) {
+            Chunk chunk = iterator.next();
+
+            if (chunk.memberCount == 0) {
+                if (chunk.entity != null) UNLOAD.accept(chunk.entity.texturedModel().rawModel());
+                CHUNKS.remove(chunk.KEY);
+                iterator.remove();
+            }
+
+            else if (chunk.entity == null || chunk.signature != chunk.builtSignature) {
+                rebuild(chunk, store, meshes);
+            }
+        }
+
+        builtStore = store;
+        builtVersion = store.staticVersion();
+        return true;
+    }
+
+    /**
+     * Add the chunks whose bounding spheres are at least partly inside a frustum to the renderer, as merged meshes
+     * near the camera and as impostors beyond the impostor distance.
+     *
+     * @param renderer       Renderer drawing the frame.
+     * @param planes         Six normalized frustum planes as (a, b, c, d), see
+     *                       {@link MasterRenderer#extractFrustumPlanes}.
+     * @param cameraPosition Position of the camera.
+     * @return Number of chunks added.
+     */
+    public int processVisible(MasterRenderer renderer, float[] planes, Vector3f cameraPosition) {
+        int visible = selectVisible(planes, cameraPosition.x, cameraPosition.y, cameraPosition.z);
+
+        for (int i = 0; i < VISIBLE_MESHES.size(); i++) renderer.processEntity(VISIBLE_MESHES.get(i));
+        if (visibleImpostorCount > 0) renderer.processImpostors(IMPOSTORS, visibleImpostors, visibleImpostorCount);
+
+        return visible;
+    }
+
+    /**
+     * Find the chunks whose bounding spheres are at least partly inside a frustum, collecting the merged meshes of the
+     * near ones and the impostors of the far ones.
+     *
+     * @param planes  Six normalized frustum planes as (a, b, c, d).
+     * @param cameraX X position of the camera.
+     * @param cameraY Y position of the camera.
+     * @param cameraZ Z position of the camera.
+     * @return Number of visible chunks.
+     */
+    int selectVisible(float[] planes, float cameraX, float cameraY, float cameraZ) {
+        VISIBLE_MESHES.clear();
+        visibleImpostorCount = 0;
+        int visible = 0;
+
+        for (int i = 0; i < CHUNK_LIST.size(); i++) {
+            Chunk chunk = CHUNK_LIST.get(i);
+            if (!isVisible(chunk, planes)) continue;
+            visible++;
+
+            float dx = chunk.centerX - cameraX;
+            float dy = chunk.centerY - cameraY;
+            float dz = chunk.centerZ - cameraZ;
+            float nearest = IMPOSTOR_DISTANCE + chunk.radius;
+
+            if (chunk.impostors == null || dx * dx + dy * dy + dz * dz <= nearest * nearest) {
+                VISIBLE_MESHES.add(chunk.entity);
+                continue;
+            }
+
+            int offset = visibleImpostorCount * ImpostorAtlas.INSTANCE_DATA_LENGTH;
+            int length = chunk.impostorCount * ImpostorAtlas.INSTANCE_DATA_LENGTH;
+
+            if (visibleImpostors.length < offset + length) {
+                int capacity = Math.max(offset + length, visibleImpostors.length * 2);
+                visibleImpostors = Arrays.copyOf(visibleImpostors, capacity);
+            }
+
+            System.arraycopy(chunk.impostors, 0, visibleImpostors, offset, length);
+            visibleImpostorCount += chunk.impostorCount;
+        }
+
+        return visible;
+    }
+
+    /**
+     * Delete every uploaded mesh.
+     */
+    public void cleanUp() {
+        for (Chunk chunk : CHUNK_LIST) {
+            if (chunk.entity != null) UNLOAD.accept(chunk.entity.texturedModel().rawModel());
+        }
+
+        CHUNK_LIST.clear();
+        CHUNKS.clear();
+        builtStore = null;
+    }
+
+    /**
+     * Merge the entities of a chunk again and replace its uploaded mesh.
+     *
+     * @param chunk  Chunk to be rebuilt.
+     * @param store  Store holding the chunk's entities.
+     * @param meshes Vertex data of the entities' textured models.
+     */
+    private void rebuild(Chunk chunk, EntityStore store, Map<TexturedModel, ModelData> meshes) {
+        ModelData[] members = new ModelData[chunk.memberCount];
+        for (int i = 0; i < chunk.memberCount; i++) {
+            members[i] = meshes.get(store.model(store.models()[chunk.members[i]]));
+        }
+
+        MergedMesh mesh = merge(members, store.worldMatrices(), chunk.members);
+
+        if (chunk.entity != null) UNLOAD.accept(chunk.entity.texturedModel().rawModel());
+
+        chunk.centerX = mesh.centerX();
+        chunk.centerY = mesh.centerY();
+        chunk.centerZ = mesh.centerZ();
+        chunk.radius = mesh.radius();
+        chunk.entity = new Entity(
+                new TexturedModel(UPLOAD.apply(mesh), chunk.KEY.texture()), new Vector3f(), new Vector3f(), 1
+        );
+        chunk.builtSignature = chunk.signature;
+        chunksRebuilt++;
+
+        buildImpostors(chunk, store);
+    }
+
+    /**
+     * Write the instance data of the impostors of a chunk's entities, or leave the chunk without impostors if the
+     * atlas lacks views of any of its models.
+     *
+     * @param chunk Chunk whose members were just merged.
+     * @param store Store holding the chunk's entities.
+     */
+    private void buildImpostors(Chunk chunk, EntityStore store) {
+        chunk.impostors = null;
+        chunk.impostorCount = 0;
+
+        if (IMPOSTORS == null) return;
+
+        for (int i = 0; i < chunk.memberCount; i++) {
+            if (!IMPOSTORS.contains(store.model(store.models()[chunk.members[i]]))) return;
+        }
+
+        float[] impostors = new float[chunk.memberCount * ImpostorAtlas.INSTANCE_DATA_LENGTH];
+
+        for (int i = 0; i < chunk.memberCount; i++) {
+            int index = chunk.members[i];
+
+            IMPOSTORS.writeInstance(
+                    store.model(store.models()[index]), store.positionsX()[index], store.positionsY()[index],
+                    store.positionsZ()[index], store.rotationsY()[index], store.scales()[index], impostors,
+                    i * ImpostorAtlas.INSTANCE_DATA_LENGTH
+            );
+        }
+
+        chunk.impostors = impostors;
+        chunk.impostorCount = chunk.memberCount;
+    }
+
+    /**
+     * Transform the vertices of several meshes into world space and merge them into one mesh.
+     *
+     * @param meshes        Vertex data of each mesh.
+     * @param matrices      World matrices, 16 floats each in column-major order.
+     * @param matrixIndices Index of each mesh's world matrix.
+     * @return Merged mesh with its bounding sphere.
+     */
+    static MergedMesh merge(ModelData[] meshes, float[] matrices, int[] matrixIndices) {
+        int vertexCount = 0;
+        int indexCount = 0;
+
+        for (ModelData mesh : meshes) {
+            vertexCount += mesh.vertices().length / 3;
+            indexCount += mesh.indices().length;
+        }
+
+        float[] positions = new float[vertexCount * 3];
+        float[] textureCoordinates = new float[vertexCount * 2];
+        float[] normals = new float[vertexCount * 3];
+        int[] indices = new int[indexCount];
+
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+
+        int baseVertex = 0;
+        int baseIndex = 0;
+
+        for (int member = 0; member < meshes.length; member++) {
+            ModelData mesh = meshes[member];
+            float[] vertices = mesh.vertices();
+            float[] meshNormals = mesh.normals();
+            int m = matrixIndices[member] * 16;
+            int count = vertices.length / 3;
+
+            for (int v = 0; v < count; v++) {
+                float x = vertices[v * 3];
+                float y = vertices[v * 3 + 1];
+                float z = vertices[v * 3 + 2];
+
+                float worldX = matrices[m] * x + matrices[m + 4] * y + matrices[m + 8] * z + matrices[m + 12];
+                float worldY = matrices[m + 1] * x + matrices[m + 5] * y + matrices[m + 9] * z + matrices[m + 13];
+                float worldZ = matrices[m + 2] * x + matrices[m + 6] * y + matrices[m + 10] * z + matrices[m + 14];
+
+                int out = (baseVertex + v) * 3;
+                positions[out] = worldX;
+                positions[out + 1] = worldY;
+                positions[out + 2] = worldZ;
+
+                minX = Math.min(minX, worldX);
+                minY = Math.min(minY, worldY);
+                minZ = Math.min(minZ, worldZ);
+                maxX = Math.max(maxX, worldX);
+                maxY = Math.max(maxY, worldY);
+                maxZ = Math.max(maxZ, worldZ);
+
+                // Scales are uniform, so the upper 3x3 of the world matrix only needs renormalizing for normals.
+                float nx = meshNormals[v * 3];
+                float ny = meshNormals[v * 3 + 1];
+                float nz = meshNormals[v * 3 + 2];
+                float normalX = matrices[m] * nx + matrices[m + 4] * ny + matrices[m + 8] * nz;
+                float normalY = matrices[m + 1] * nx + matrices[m + 5] * ny + matrices[m + 9] * nz;
+                float normalZ = matrices[m + 2] * nx + matrices[m + 6] * ny + matrices[m + 10] * nz;
+                float length = (float) Math.sqrt(normalX * normalX + normalY * normalY + normalZ * normalZ);
+                if (length > 0) length = 1 / length;
+
+                normals[out] = normalX * length;
+                normals[out + 1] = normalY * length;
+                normals[out + 2] = normalZ * length;
+            }
+
+            System.arraycopy(mesh.textureCoordinates(), 0, textureCoordinates, baseVertex * 2, count * 2);
+
+            int[] meshIndices = mesh.indices();
+            for (int i = 0; i < meshIndices.length; i++) indices[baseIndex + i] = meshIndices[i] + baseVertex;
+
+            baseVertex += count;
+            baseIndex += meshIndices.length;
+        }
+
+        float centerX = (minX + maxX) / 2;
+        float centerY = (minY + maxY) / 2;
+        float centerZ = (minZ + maxZ) / 2;
+        float squaredRadius = 0;
+
+        for (int i = 0; i < positions.length; i += 3) {
+            float dx = positions[i] - centerX;
+            float dy = positions[i + 1] - centerY;
+            float dz = positions[i + 2] - centerZ;
+            squaredRadius = Math.max(squaredRadius, dx * dx + dy * dy + dz * dz);
+        }
+
+        return new MergedMesh(
+                positions, textureCoordinates, normals, indices, centerX, centerY, centerZ,
+                (float) Math.sqrt(squaredRadius)
+        );
+    }
+
+    /**
+     * Hash an entity's model and world matrix. The hashes of a chunk's entities are summed, so the signature of a
+     * chunk doesn't depend on the order of its entities in the store.
+     *
+     * @param modelId  Model id of the entity.
+     * @param matrices World matrices, 16 floats each in column-major order.
+     * @param offset   Index of the entity's world matrix.
+     * @return Hash of the entity.
+     */
+    private static long signature(int modelId, float[] matrices, int offset) {
+        long hash = modelId * 0x9E3779B97F4A7C15L;
+
+        for (int i = 0; i < 16; i++) {
+            hash = (hash ^ Float.floatToIntBits(matrices[offset + i])) * 0xBF58476D1CE4E5B9L;
+            hash ^= hash >>> 31;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Check if a chunk's bounding sphere is at least partly inside a frustum.
+     *
+     * @param chunk  Chunk to be tested.
+     * @param planes Six normalized frustum planes as (a, b, c, d).
+     * @return True if it is inside, else false.
+     */
+    private static boolean isVisible(Chunk chunk, float[] planes) {
+        for (int plane = 0; plane < 24; plane += 4) {
+            float distance = planes[plane] * chunk.centerX + planes[plane + 1] * chunk.centerY
+                    + planes[plane + 2] * chunk.centerZ + planes[plane + 3];
+            if (distance < -chunk.radius) return false;
+        }
+
+        return true;
+    }
+
+    public int chunkCount() {
+        return CHUNK_LIST.size();
+    }
+
+    public int chunksRebuilt() {
+        return chunksRebuilt;
+    }
+
+    List<Entity> visibleMeshes() {
+        return VISIBLE_MESHES;
+    }
+
+    float[] visibleImpostors() {
+        return visibleImpostors;
+    }
+
+    int visibleImpostorCount() {
+        return visibleImpostorCount;
+    }
+}
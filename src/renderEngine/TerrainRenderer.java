@@ -1,33 +1,57 @@
 package renderEngine;
 
 import models.RawModel;
+import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL13;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
 import org.lwjgl.util.vector.Matrix4f;
 import org.lwjgl.util.vector.Vector3f;
 import shaders.TerrainShader;
 import terrains.Terrain;
+import terrains.TerrainPatch;
+import terrains.TerrainQuadTree;
 import textures.TerrainTexturePack;
 import toolbox.EngineMath;
 
+import java.nio.FloatBuffer;
 import java.util.List;
 
 /**
  * Renderer for the engine to render all the terrains to the display.
+ * <p>
+ * Every tile is drawn with a single instanced call of the shared patch mesh, one instance per patch its quadtree
+ * selected for the camera position. The vertex shader places each instance and reads its heights from the tile's
+ * height texture, so tiles own no vertex data of their own.
  */
 public class TerrainRenderer {
     private final TerrainShader SHADER;
+    private final Loader LOADER;
+    private final Matrix4f TRANSFORMATION_MATRIX = new Matrix4f();
+
+    private final RawModel PATCH;
+    private final int INSTANCE_VBO;
+    private float[] instanceData = new float[0];
+    private FloatBuffer instanceBuffer = BufferUtils.createFloatBuffer(0);
 
     /**
      * Create a new renderer using an existing terrain shader and projection matrix.
      *
      * @param shader           Terrain shader containing a vertex and fragment shader.
      * @param projectionMatrix Projection matrix for the terrain.
+     * @param loader           Loader class to load the shared patch mesh and stream the patch instances.
      */
-    public TerrainRenderer(TerrainShader shader, Matrix4f projectionMatrix) {
+    public TerrainRenderer(TerrainShader shader, Matrix4f projectionMatrix, Loader loader) {
         this.SHADER = shader;
+        this.LOADER = loader;
+
+        this.PATCH = loader.loadToVAO(TerrainPatch.positions(), 2, TerrainPatch.indices());
+        this.INSTANCE_VBO = loader.createStreamVbo();
+        loader.addInstancedAttribute(
+                PATCH.vaoID(), INSTANCE_VBO, 1, TerrainPatch.INSTANCE_DATA_LENGTH, TerrainPatch.INSTANCE_DATA_LENGTH, 0
+        );
 
         shader.start();
 
@@ -40,40 +64,69 @@ public class TerrainRenderer {
     /**
      * Render all the terrains to the display.
      *
-     * @param terrains List of terrains to be rendered.
+     * @param terrains       List of terrains to be rendered.
+     * @param cameraPosition Position of the camera, which decides the level of detail of every part of the terrains.
      */
-    public void render(List<Terrain> terrains) {
+    public void render(List<Terrain> terrains, Vector3f cameraPosition) {
+        TerrainQuadTree.selectAll(terrains, cameraPosition.x, cameraPosition.y, cameraPosition.z);
+
+        GL30.glBindVertexArray(PATCH.vaoID());
+        GL20.glEnableVertexAttribArray(0); // Patch-local position.
+        GL20.glEnableVertexAttribArray(1); // Patch instance.
+
         for (Terrain terrain : terrains) {
             prepareTerrain(terrain);
             loadModelMatrix(terrain);
 
-            GL11.glDrawElements(GL11.GL_TRIANGLES, terrain.rawModel().vertexCount(), GL11.GL_UNSIGNED_INT, 0);
+            int instanceCount = storeInstances(terrain.quadTree());
 
-            unbindTerrainTexturedModel();
+            GL31.glDrawElementsInstanced(
+                    GL11.GL_TRIANGLES, PATCH.vertexCount(), GL11.GL_UNSIGNED_INT, 0, instanceCount
+            );
         }
+
+        GL20.glDisableVertexAttribArray(0);
+        GL20.glDisableVertexAttribArray(1);
+        GL30.glBindVertexArray(0);
     }
 
     /**
-     * Prepare the terrain for rendering by enabling the VAOs, binding the texture and loading the specular lighting
-     * information.
+     * Stream the instance data of every patch selected for a tile to the instance VBO, growing the staging arrays if
+     * the tile selected more patches than any tile before it.
      *
-     * @param terrain Terrain to be prepared.
+     * @param quadTree Quadtree of the tile.
+     * @return Number of patch instances.
      */
-    private void prepareTerrain(Terrain terrain) {
-        RawModel rawModel = terrain.rawModel();
+    private int storeInstances(TerrainQuadTree quadTree) {
+        int length = quadTree.selectedCount() * TerrainPatch.INSTANCE_DATA_LENGTH;
 
-        GL30.glBindVertexArray(rawModel.vaoID());
-        GL20.glEnableVertexAttribArray(0); // Position.
-        GL20.glEnableVertexAttribArray(1); // Texture coordinates.
-        GL20.glEnableVertexAttribArray(2); // Normal.
+        if (length > instanceData.length) {
+            instanceData = new float[length];
+            instanceBuffer = BufferUtils.createFloatBuffer(length);
+        }
+
+        int instanceCount = quadTree.storeInstances(instanceData);
+        LOADER.updateStreamVbo(INSTANCE_VBO, instanceData, length, instanceBuffer);
 
+        return instanceCount;
+    }
+
+    /**
+     * Prepare the terrain for rendering by binding its textures and loading the size of its height map cells and the
+     * specular lighting information.
+     *
+     * @param terrain Terrain to be prepared.
+     */
+    private void prepareTerrain(Terrain terrain) {
         bindTextures(terrain);
 
+        SHADER.loadCellSize(terrain.cellSize());
         SHADER.loadSpecularLightData(1, 0);
     }
 
     /**
-     * Bind the textures of each one of the four terrain textures to a different texture slot.
+     * Bind the textures of each one of the four terrain textures, the blend map and the height map to a different
+     * texture slot.
      *
      * @param terrain Terrain whose textures are to be bound.
      */
@@ -94,16 +147,9 @@ public class TerrainRenderer {
 
         GL13.glActiveTexture(GL13.GL_TEXTURE4);
         GL11.glBindTexture(GL11.GL_TEXTURE_2D, terrain.blendMap().textureID());
-    }
 
-    /**
-     * Unbind the terrain texture by disabling and unbinding the VAOs.
-     */
-    private void unbindTerrainTexturedModel() {
-        GL20.glDisableVertexAttribArray(0); // Position.
-        GL20.glDisableVertexAttribArray(1); // Texture coordinates.
-        GL20.glDisableVertexAttribArray(2); // Normal.
-        GL30.glBindVertexArray(0);
+        GL13.glActiveTexture(GL13.GL_TEXTURE5);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, terrain.heightTextureID());
     }
 
     /**
@@ -112,10 +158,8 @@ public class TerrainRenderer {
      * @param terrain Terrain to prepare for rendering.
      */
     private void loadModelMatrix(Terrain terrain) {
-        Matrix4f transformationMatrix = EngineMath.createTransformationMatrix(
-                new Vector3f(terrain.x(), 0, terrain.z()), new Vector3f(), 1
-        );
+        EngineMath.createTransformationMatrix(terrain.x(), 0, terrain.z(), 0, 0, 0, 1, TRANSFORMATION_MATRIX);
 
-        SHADER.loadTransformationMatrix(transformationMatrix);
+        SHADER.loadTransformationMatrix(TRANSFORMATION_MATRIX);
     }
 }
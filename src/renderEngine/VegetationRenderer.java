@@ -0,0 +1,309 @@
+package renderEngine;
+
+import entities.Camera;
+import entities.Light;
+import lighting.LightClusters;
+import models.RawModel;
+import models.TexturedModel;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+import shaders.ShaderFeature;
+import shaders.ShaderVariantCache;
+import shaders.VegetationShader;
+import terrains.Terrain;
+import terrains.VegetationField;
+import terrains.VegetationLayer;
+import textures.ModelTexture;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renderer for the engine to render ground cover scattered by a {@link VegetationField}.
+ * <p>
+ * Only the chunks within the largest fade distance of the camera are kept, each as one VBO holding the instances of
+ * every layer back to back. A few missing chunks are scattered per frame, nearest first, and the VBOs of chunks left
+ * behind are recycled. Each layer is drawn with one instanced call per visible chunk, pointing the instance attributes
+ * at the chunk's range of the VBO.
+ */
+public class VegetationRenderer {
+    /**
+     * Features enabled for every layer regardless of its material.
+     */
+    private static final int GLOBAL_FEATURES = ShaderFeature.FOG.bit() | ShaderFeature.CLUSTERED_LIGHTS.bit();
+
+    private static final float FADE_START_FRACTION = 0.7f;
+    private static final int MAX_CHUNK_BUILDS_PER_FRAME = 4;
+    private static final int INSTANCE_STRIDE = VegetationField.INSTANCE_DATA_LENGTH * 4;
+
+    private final Loader LOADER;
+    private final ShaderVariantCache<VegetationShader> SHADERS;
+    private final Map<Long, Chunk> CHUNKS = new HashMap<>();
+    private final ArrayDeque<Integer> VBO_POOL = new ArrayDeque<>();
+
+    private VegetationField field;
+    private float[] instanceData = new float[0];
+    private int[] layerCounts = new int[0];
+    private FloatBuffer stagingBuffer = BufferUtils.createFloatBuffer(0);
+
+    /**
+     * Chunk of scattered instances resident on the GPU.
+     *
+     * @param chunkX       X position of the chunk on the chunk grid.
+     * @param chunkZ       Z position of the chunk on the chunk grid.
+     * @param vboID        ID of the VBO holding the instances of every layer.
+     * @param layerOffsets Index of the first instance of each layer within the VBO.
+     * @param layerCounts  Number of instances of each layer.
+     */
+    private record Chunk(int chunkX, int chunkZ, int vboID, int[] layerOffsets, int[] layerCounts) {
+    }
+
+    /**
+     * Create a new renderer that compiles vegetation shader variants on demand.
+     *
+     * @param projectionMatrix Projection matrix loaded into every variant.
+     * @param loader           Loader class to create the VBOs of the chunks.
+     */
+    public VegetationRenderer(Matrix4f projectionMatrix, Loader loader) {
+        this.LOADER = loader;
+
+        SHADERS = new ShaderVariantCache<>(VegetationShader::new, shader -> {
+            shader.start();
+            shader.loadProjectionMatrix(projectionMatrix);
+            shader.stop();
+        });
+    }
+
+    /**
+     * Render the ground cover of a vegetation field around the camera.
+     *
+     * @param vegetationField Vegetation field to be rendered.
+     * @param terrains        Terrain tiles the ground cover grows on.
+     * @param globalLight     Global light for the scene.
+     * @param clusters        Light clusters the local lights are assigned to, with their buffers already bound.
+     * @param camera          Camera for the display.
+     * @param skyColor        Color of the sky the ground cover fades into.
+     */
+    public void render(
+            VegetationField vegetationField, List<Terrain> terrains, Light globalLight, LightClusters clusters,
+            Camera camera, Vector3f skyColor
+    ) {
+        if (vegetationField != field) useField(vegetationField);
+
+        Vector3f cameraPosition = camera.position();
+        updateChunks(terrains, cameraPosition.x, cameraPosition.z);
+
+        List<VegetationLayer> layers = field.layers();
+
+        for (int layer = 0; layer < layers.size(); layer++) {
+            VegetationLayer vegetationLayer = layers.get(layer);
+            TexturedModel texturedModel = vegetationLayer.model();
+            ModelTexture texture = texturedModel.texture();
+
+            VegetationShader shader = SHADERS.get(texture.shaderFeatures() | GLOBAL_FEATURES);
+            shader.start();
+
+            shader.loadSkyColor(skyColor);
+            shader.loadLight(globalLight);
+            shader.loadLightClusters(clusters);
+            shader.loadCamera(camera);
+            shader.loadFadeDistances(
+                    vegetationLayer.fadeDistance() * FADE_START_FRACTION, vegetationLayer.fadeDistance()
+            );
+
+            if (shader.hasFeature(ShaderFeature.SPECULAR)) {
+                shader.loadSpecularLightData(texture.shineDamping(), texture.reflectivity());
+            }
+
+            prepareTexturedModel(texturedModel);
+
+            for (Chunk chunk : CHUNKS.values()) {
+                int count = chunk.layerCounts()[layer];
+                if (count == 0 || !withinDistance(chunk, cameraPosition, vegetationLayer.fadeDistance())) continue;
+
+                long offset = (long) chunk.layerOffsets()[layer] * INSTANCE_STRIDE;
+
+                GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, chunk.vboID());
+                GL20.glVertexAttribPointer(3, 4, GL11.GL_FLOAT, false, INSTANCE_STRIDE, offset);
+                GL20.glVertexAttribPointer(4, 1, GL11.GL_FLOAT, false, INSTANCE_STRIDE, offset + 16);
+
+                GL31.glDrawElementsInstanced(
+                        GL11.GL_TRIANGLES, texturedModel.rawModel().vertexCount(), GL11.GL_UNSIGNED_INT, 0, count
+                );
+            }
+
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+            unbindTexturedModel();
+            shader.stop();
+        }
+    }
+
+    /**
+     * Switch to a different vegetation field, releasing every chunk scattered by the previous one.
+     *
+     * @param vegetationField New vegetation field.
+     */
+    private void useField(VegetationField vegetationField) {
+        for (Chunk chunk : CHUNKS.values()) VBO_POOL.push(chunk.vboID());
+        CHUNKS.clear();
+
+        field = vegetationField;
+
+        int length = field.maxInstancesPerChunk() * VegetationField.INSTANCE_DATA_LENGTH;
+        instanceData = new float[length];
+        layerCounts = new int[field.layers().size()];
+        stagingBuffer = BufferUtils.createFloatBuffer(Math.max(length, 1));
+    }
+
+    /**
+     * Release the chunks that drifted out of range of the camera and scatter the missing chunks within range, nearest
+     * ring first, up to a fixed number of chunks per frame. Chunks over tiles that are not resident yet are skipped
+     * and tried again on a later frame.
+     *
+     * @param terrains Terrain tiles the ground cover grows on.
+     * @param cameraX  X position of the camera.
+     * @param cameraZ  Z position of the camera.
+     */
+    private void updateChunks(List<Terrain> terrains, float cameraX, float cameraZ) {
+        int centreX = VegetationField.chunkPosition(cameraX);
+        int centreZ = VegetationField.chunkPosition(cameraZ);
+        int radius = (int) Math.ceil(field.maxFadeDistance() / VegetationField.CHUNK_SIZE);
+
+        Iterator<Chunk> chunks = CHUNKS.values().iterator();
+
+        while (chunks.hasNext()) {
+            Chunk chunk = chunks.next();
+            int distance = Math.max(Math.abs(chunk.chunkX() - centreX), Math.abs(chunk.chunkZ() - centreZ));
+            if (distance <= radius + 1) continue;
+
+            VBO_POOL.push(chunk.vboID());
+            chunks.remove();
+        }
+
+        int builds = 0;
+
+        for (int ring = 0; ring <= radius && builds < MAX_CHUNK_BUILDS_PER_FRAME; ring++) {
+            for (int z = -ring; z <= ring && builds < MAX_CHUNK_BUILDS_PER_FRAME; z++) {
+                for (int x = -ring; x <= ring && builds < MAX_CHUNK_BUILDS_PER_FRAME; x++) {
+                    if (Math.max(Math.abs(x), Math.abs(z)) != ring) continue;
+                    if (buildChunk(terrains, centreX + x, centreZ + z)) builds++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Scatter a chunk and upload its instances, unless it is already resident or its tile is not.
+     *
+     * @param terrains Terrain tiles the ground cover grows on.
+     * @param chunkX   X position of the chunk on the chunk grid.
+     * @param chunkZ   Z position of the chunk on the chunk grid.
+     * @return True if the chunk was built, else false.
+     */
+    private boolean buildChunk(List<Terrain> terrains, int chunkX, int chunkZ) {
+        long key = (long) chunkX << 32 | (chunkZ & 0xFFFFFFFFL);
+        if (CHUNKS.containsKey(key)) return false;
+
+        float centreX = (chunkX - 0.5f) * VegetationField.CHUNK_SIZE;
+        float centreZ = (chunkZ - 0.5f) * VegetationField.CHUNK_SIZE;
+        Terrain terrain = Terrain.at(terrains, centreX, centreZ);
+        if (terrain == null) return false;
+
+        int count = field.scatter(terrain, chunkX, chunkZ, instanceData, layerCounts);
+
+        int[] offsets = new int[layerCounts.length];
+        for (int layer = 1; layer < offsets.length; layer++) {
+            offsets[layer] = offsets[layer - 1] + layerCounts[layer - 1];
+        }
+
+        int vboID = VBO_POOL.isEmpty() ? LOADER.createStreamVbo() : VBO_POOL.pop();
+        LOADER.updateStreamVbo(vboID, instanceData, count * VegetationField.INSTANCE_DATA_LENGTH, stagingBuffer);
+
+        CHUNKS.put(key, new Chunk(chunkX, chunkZ, vboID, offsets, layerCounts.clone()));
+        return true;
+    }
+
+    /**
+     * Check if any part of a chunk lies within a distance of the camera on the ground plane.
+     *
+     * @param chunk          Chunk to be checked.
+     * @param cameraPosition Position of the camera.
+     * @param distance       Distance from the camera.
+     * @return True if the chunk is within the distance, else false.
+     */
+    private static boolean withinDistance(Chunk chunk, Vector3f cameraPosition, float distance) {
+        float size = VegetationField.CHUNK_SIZE;
+        float maxX = chunk.chunkX() * size;
+        float maxZ = chunk.chunkZ() * size;
+
+        float dx = Math.max(0, Math.max(maxX - size - cameraPosition.x, cameraPosition.x - maxX));
+        float dz = Math.max(0, Math.max(maxZ - size - cameraPosition.z, cameraPosition.z - maxZ));
+        return dx * dx + dz * dz < distance * distance;
+    }
+
+    /**
+     * Prepare a layer's model for rendering by enabling its vertex and instance attributes and binding its texture.
+     *
+     * @param texturedModel Model of the layer.
+     */
+    private void prepareTexturedModel(TexturedModel texturedModel) {
+        RawModel rawModel = texturedModel.rawModel();
+        ModelTexture texture = texturedModel.texture();
+
+        GL30.glBindVertexArray(rawModel.vaoID());
+        GL20.glEnableVertexAttribArray(0); // Position.
+        GL20.glEnableVertexAttribArray(1); // Texture coordinates.
+        GL20.glEnableVertexAttribArray(2); // Normal.
+        GL20.glEnableVertexAttribArray(3); // Instance position and scale.
+        GL20.glEnableVertexAttribArray(4); // Instance rotation.
+        GL33.glVertexAttribDivisor(3, 1);
+        GL33.glVertexAttribDivisor(4, 1);
+
+        if (texture.hasTransparency()) MasterRenderer.disableBackFaceCulling();
+
+        GL13.glActiveTexture(GL13.GL_TEXTURE0);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, texture.textureID());
+    }
+
+    /**
+     * Unbind a layer's model by disabling its attributes and unbinding its VAO.
+     */
+    private void unbindTexturedModel() {
+        MasterRenderer.enableBackFaceCulling();
+
+        GL20.glDisableVertexAttribArray(0); // Position.
+        GL20.glDisableVertexAttribArray(1); // Texture coordinates.
+        GL20.glDisableVertexAttribArray(2); // Normal.
+        GL20.glDisableVertexAttribArray(3); // Instance position and scale.
+        GL20.glDisableVertexAttribArray(4); // Instance rotation.
+        GL30.glBindVertexArray(0);
+    }
+
+    /**
+     * Get the number of chunks currently resident on the GPU.
+     *
+     * @return Resident chunk count.
+     */
+    public int chunkCount() {
+        return CHUNKS.size();
+    }
+
+    /**
+     * Clean up every compiled shader variant. The VBOs of the chunks are deleted with the loader's.
+     */
+    public void cleanUp() {
+        SHADERS.cleanUp();
+    }
+}
@@ -0,0 +1,428 @@
+package scenes;
+
+import entities.EntityStore;
+import models.TexturedModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiFunction;
+
+/**
+ * Scene file mapped into memory, paging its regions into an entity store as the camera moves. See
+ * {@link SceneFormat} for the layout.
+ * <p>
+ * Opening a scene only reads its header, model table and region index. Every update loads the regions within the
+ * load distance of the camera, copying each column of their blocks straight out of the mapping into the store, and
+ * removes the entities of the regions further away than the eviction distance. Regions that were never near the
+ * camera are never read, and cost nothing but their index entry. Every model is resolved when the scene is opened, so
+ * a scene using a model the game doesn't know is rejected up front. A {@link SceneListener} can follow the regions
+ * being paged in and out.
+ */
+public class Scene implements AutoCloseable {
+    private final FileChannel CHANNEL;
+    private final ByteBuffer DATA;
+    private final EntityStore STORE;
+
+    private final float REGION_SIZE;
+    private final float LOAD_DISTANCE;
+    private final float EVICT_DISTANCE;
+
+    private final String[] MODEL_NAMES;
+    private final String[] TEXTURE_NAMES;
+    private final float[] BOUNDING_RADII;
+    private final TexturedModel[] MODELS;
+
+    private final int[] REGIONS_X;
+    private final int[] REGIONS_Z;
+    private final int[] ENTITY_COUNTS;
+    private final int[] BLOCK_OFFSETS;
+    private final int[][] REGION_IDS;
+
+    private final float[][] FLOAT_COLUMNS = new float[SceneFormat.FLOAT_COLUMNS][];
+    private final int[][] INT_COLUMNS = new int[SceneFormat.INT_COLUMNS][];
+
+    private SceneListener listener;
+
+    private int loadedRegionCount = 0;
+    private int loadedEntityCount = 0;
+    private int regionsLoaded = 0;
+    private int regionsEvicted = 0;
+    private long totalLoadNanos = 0;
+
+    /**
+     * Map a scene file into memory and read its index.
+     *
+     * @param file          Scene file.
+     * @param store         Entity store the regions are loaded into.
+     * @param resolver      Function resolving a model name and texture name to a textured model, or to null if the
+     *                      model is unknown.
+     * @param loadDistance  Distance from the camera within which regions are loaded.
+     * @param evictDistance Distance from the camera beyond which regions are removed; at least the load distance.
+     * @return Scene ready to be paged in.
+     */
+    public static Scene open(
+            File file, EntityStore store, BiFunction<String, String, TexturedModel> resolver, float loadDistance,
+            float evictDistance
+    ) {
+        FileChannel channel = null;
+
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new Scene(channel, data, store, resolver, loadDistance, evictDistance);
+        }
+
+        catch (IOException e) {
+            System.err.println("Could not open the scene file " + file + ": " + e.getMessage());
+            closeQuietly(channel);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Create a new scene over a buffer holding a scene file.
+     *
+     * @param channel       Channel the buffer is mapped from, closed with the scene, or null.
+     * @param data          Buffer holding the scene file.
+     * @param store         Entity store the regions are loaded into.
+     * @param resolver      Function resolving a model name and texture name to a textured model, or to null if the
+     *                      model is unknown.
+     * @param loadDistance  Distance from the camera within which regions are loaded.
+     * @param evictDistance Distance from the camera beyond which regions are removed; at least the load distance.
+     * @throws IOException If the buffer does not hold a supported scene file, or uses a model that isn't known.
+     */
+    Scene(
+            FileChannel channel, ByteBuffer data, EntityStore store,
+            BiFunction<String, String, TexturedModel> resolver, float loadDistance, float evictDistance
+    ) throws IOException {
+        if (evictDistance < loadDistance) {
+            throw new IllegalArgumentException("Regions must be evicted further away than they are loaded.");
+        }
+
+        this.CHANNEL = channel;
+        this.DATA = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.STORE = store;
+        this.LOAD_DISTANCE = loadDistance;
+        this.EVICT_DISTANCE = evictDistance;
+
+        if (DATA.capacity() < 4 || DATA.getInt(0) != SceneFormat.MAGIC) {
+            throw new IOException("Not a Maple scene file.");
+        }
+
+        if (DATA.capacity() < SceneFormat.HEADER_BYTES) {
+            throw new IOException("The scene file's header is truncated.");
+        }
+
+        int version = DATA.getShort(4) & 0xFFFF;
+        if (version != SceneFormat.VERSION) throw new IOException("Unsupported scene file version " + version + ".");
+
+        this.REGION_SIZE = DATA.getFloat(8);
+        int modelCount = DATA.getInt(12);
+        int regionCount = DATA.getInt(16);
+
+        // Each model takes at least its two name lengths and its radius, so a count the file can't hold is caught
+        // before anything is allocated for it.
+        if (!Float.isFinite(REGION_SIZE) || REGION_SIZE <= 0 || regionCount < 0 || modelCount < 0
+                || modelCount > (DATA.capacity() - SceneFormat.HEADER_BYTES) / 8) {
+            throw new IOException("The scene file's header is corrupt.");
+        }
+
+        MODEL_NAMES = new String[modelCount];
+        TEXTURE_NAMES = new String[modelCount];
+        BOUNDING_RADII = new float[modelCount];
+        MODELS = new TexturedModel[modelCount];
+
+        DATA.position(SceneFormat.HEADER_BYTES);
+        for (int model = 0; model < modelCount; model++) {
+            MODEL_NAMES[model] = readName();
+            TEXTURE_NAMES[model] = readName();
+
+            if (DATA.remaining() < 4) throw new IOException("The model table of the scene file is truncated.");
+            BOUNDING_RADII[model] = DATA.getFloat();
+        }
+
+        for (int model = 0; model < modelCount; model++) {
+            MODELS[model] = resolver.apply(MODEL_NAMES[model], TEXTURE_NAMES[model]);
+
+            if (MODELS[model] == null) {
+                throw new IOException(
+                        "Model " + model + " of the scene file, " + MODEL_NAMES[model] + " with texture "
+                                + TEXTURE_NAMES[model] + ", is unknown."
+                );
+            }
+        }
+
+        int entry = (DATA.position() + 3) & ~3;
+        if (regionCount > (DATA.capacity() - entry) / SceneFormat.INDEX_ENTRY_BYTES) {
+            throw new IOException("The region index of the scene file is truncated.");
+        }
+
+        REGIONS_X = new int[regionCount];
+        REGIONS_Z = new int[regionCount];
+        ENTITY_COUNTS = new int[regionCount];
+        BLOCK_OFFSETS = new int[regionCount];
+        REGION_IDS = new int[regionCount][];
+
+        int blocksOffset = entry + regionCount * SceneFormat.INDEX_ENTRY_BYTES;
+        int largestRegion = 0;
+
+        for (int region = 0; region < regionCount; region++, entry += SceneFormat.INDEX_ENTRY_BYTES) {
+            REGIONS_X[region] = DATA.getInt(entry);
+            REGIONS_Z[region] = DATA.getInt(entry + 4);
+            ENTITY_COUNTS[region] = DATA.getInt(entry + 8);
+            long offset = DATA.getLong(entry + 12);
+
+            if (ENTITY_COUNTS[region] < 0 || offset < blocksOffset) {
+                throw new IOException("Region " + region + " of the scene file has a corrupt index entry.");
+            }
+
+            if (offset > DATA.capacity() - (long) ENTITY_COUNTS[region] * SceneFormat.ENTITY_BYTES) {
+                throw new IOException("Region " + region + " of the scene file is truncated.");
+            }
+
+            BLOCK_OFFSETS[region] = (int) offset;
+            largestRegion = Math.max(largestRegion, ENTITY_COUNTS[region]);
+        }
+
+        for (int column = 0; column < FLOAT_COLUMNS.length; column++) FLOAT_COLUMNS[column] = new float[largestRegion];
+        for (int column = 0; column < INT_COLUMNS.length; column++) INT_COLUMNS[column] = new int[largestRegion];
+    }
+
+    /**
+     * Page the regions around the camera: load those within the load distance that aren't loaded yet, and remove those
+     * beyond the eviction distance.
+     *
+     * @param cameraX X position of the camera.
+     * @param cameraZ Z position of the camera.
+     * @return Number of regions loaded or removed.
+     */
+    public int update(float cameraX, float cameraZ) {
+        int changed = 0;
+
+        for (int region = 0; region < REGION_IDS.length; region++) {
+            float distance = distanceTo(region, cameraX, cameraZ);
+
+            if (REGION_IDS[region] == null && distance <= LOAD_DISTANCE) {
+                load(region);
+                changed++;
+            }
+
+            else if (REGION_IDS[region] != null && distance > EVICT_DISTANCE) {
+                evict(region);
+                changed++;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Remove the entities of every loaded region from the store.
+     */
+    public void unloadAll() {
+        for (int region = 0; region < REGION_IDS.length; region++) {
+            if (REGION_IDS[region] != null) evict(region);
+        }
+    }
+
+    /**
+     * Copy a region's block out of the mapping, one column at a time, and create its entities in the store. A region
+     * referring to a model missing from the model table is rejected before any of its entities is created.
+     *
+     * @param region Index of the region.
+     */
+    private void load(int region) {
+        long start = System.nanoTime();
+        int count = ENTITY_COUNTS[region];
+        int offset = BLOCK_OFFSETS[region];
+
+        FloatBuffer floats = DATA.slice(offset, count * SceneFormat.FLOAT_COLUMNS * 4)
+                .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        for (float[] column : FLOAT_COLUMNS) floats.get(column, 0, count);
+
+        IntBuffer ints = DATA.slice(offset + count * SceneFormat.FLOAT_COLUMNS * 4, count * SceneFormat.INT_COLUMNS * 4)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        for (int[] column : INT_COLUMNS) ints.get(column, 0, count);
+
+        int[] ids = new int[count];
+        float[] positionsX = FLOAT_COLUMNS[0];
+        float[] positionsY = FLOAT_COLUMNS[1];
+        float[] positionsZ = FLOAT_COLUMNS[2];
+        float[] rotationsX = FLOAT_COLUMNS[3];
+        float[] rotationsY = FLOAT_COLUMNS[4];
+        float[] rotationsZ = FLOAT_COLUMNS[5];
+        float[] scales = FLOAT_COLUMNS[6];
+        int[] models = INT_COLUMNS[0];
+        int[] flags = INT_COLUMNS[1];
+
+        for (int i = 0; i < count; i++) {
+            if (models[i] < 0 || models[i] >= MODELS.length) {
+                throw new RuntimeException(
+                        "Region " + region + " of the scene file refers to missing model " + models[i] + "."
+                );
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            int model = models[i];
+            ids[i] = STORE.create(
+                    MODELS[model], BOUNDING_RADII[model], positionsX[i], positionsY[i], positionsZ[i], rotationsX[i],
+                    rotationsY[i], rotationsZ[i], scales[i], flags[i]
+            );
+        }
+
+        REGION_IDS[region] = ids;
+        if (listener != null) listener.regionLoaded(STORE, ids);
+        loadedRegionCount++;
+        loadedEntityCount += count;
+        regionsLoaded++;
+        totalLoadNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Remove the entities of a region from the store.
+     *
+     * @param region Index of the region.
+     */
+    private void evict(int region) {
+        if (listener != null) listener.regionEvicted(STORE, REGION_IDS[region]);
+        for (int id : REGION_IDS[region]) STORE.remove(id);
+
+        loadedEntityCount -= REGION_IDS[region].length;
+        REGION_IDS[region] = null;
+        loadedRegionCount--;
+        regionsEvicted++;
+    }
+
+    /**
+     * Get the distance from a point to the nearest point of a region on the XZ plane.
+     *
+     * @param region Index of the region.
+     * @param x      X position of the point.
+     * @param z      Z position of the point.
+     * @return Distance to the region, 0 if the point is inside it.
+     */
+    private float distanceTo(int region, float x, float z) {
+        float minX = REGIONS_X[region] * REGION_SIZE;
+        float minZ = REGIONS_Z[region] * REGION_SIZE;
+        float dx = Math.max(0, Math.max(minX - x, x - (minX + REGION_SIZE)));
+        float dz = Math.max(0, Math.max(minZ - z, z - (minZ + REGION_SIZE)));
+        return (float) Math.sqrt(dx * dx + dz * dz);
+    }
+
+    /**
+     * Read a name from the model table at the buffer's position.
+     *
+     * @return Name.
+     * @throws IOException If the name runs past the end of the file.
+     */
+    private String readName() throws IOException {
+        if (DATA.remaining() < 2) throw new IOException("The model table of the scene file is truncated.");
+        byte[] bytes = new byte[DATA.getShort() & 0xFFFF];
+
+        if (DATA.remaining() < bytes.length) {
+            throw new IOException("The model table of the scene file is truncated.");
+        }
+        DATA.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Print how many regions and entities are loaded and how long loading took.
+     *
+     * @param out Stream to print to.
+     */
+    public void print(PrintStream out) {
+        out.printf(
+                "Scene: %d of %d regions loaded holding %d entities, %d loads, %d evictions, %.3f ms average load%n",
+                loadedRegionCount, REGION_IDS.length, loadedEntityCount, regionsLoaded, regionsEvicted,
+                regionsLoaded == 0 ? 0 : totalLoadNanos / 1e6 / regionsLoaded
+        );
+    }
+
+    /**
+     * Close the file the scene is mapped from. The entities already loaded stay in the store.
+     */
+    @Override
+    public void close() {
+        if (CHANNEL == null) return;
+
+        try {
+            CHANNEL.close();
+        }
+
+        catch (IOException e) {
+            System.err.println("Could not close the scene file.");
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Close the channel of a scene file that could not be opened, keeping the error that stopped it.
+     *
+     * @param channel Channel to close, or null.
+     */
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+
+        try {
+            channel.close();
+        }
+
+        catch (IOException e) {
+            System.err.println("Could not close the scene file.");
+        }
+    }
+
+    /**
+     * Set the hooks called as regions are paged in and out. Regions already loaded are not reported.
+     *
+     * @param listener Listener, or null for none.
+     */
+    public void setListener(SceneListener listener) {
+        this.listener = listener;
+    }
+
+    public int regionCount() {
+        return REGION_IDS.length;
+    }
+
+    public int loadedRegionCount() {
+        return loadedRegionCount;
+    }
+
+    public int loadedEntityCount() {
+        return loadedEntityCount;
+    }
+
+    /**
+     * Get the total number of entities in the scene, loaded or not.
+     *
+     * @return Number of entities.
+     */
+    public int entityCount() {
+        int count = 0;
+        for (int entityCount : ENTITY_COUNTS) count += entityCount;
+        return count;
+    }
+
+    public float regionSize() {
+        return REGION_SIZE;
+    }
+
+    public String modelName(int model) {
+        return MODEL_NAMES[model];
+    }
+
+    public String textureName(int model) {
+        return TEXTURE_NAMES[model];
+    }
+}
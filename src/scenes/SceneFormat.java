@@ -0,0 +1,41 @@
+package scenes;
+
+/**
+ * Binary layout of a scene file, written by {@link SceneWriter} and memory-mapped by {@link Scene}. Every number is
+ * little-endian.
+ * <p>
+ * The header holds a magic number, the format version (unsigned short, then two bytes of padding), the size of the
+ * square regions the XZ plane is split into (float), the number of models and the number of non-empty regions (ints).
+ * It is followed by the model table, one entry per model: the model and texture names (each an unsigned short byte
+ * count and UTF-8 bytes) and the radius of the model's bounding sphere at a scale of 1 (float). Then comes the region
+ * index, padded to a multiple of 4 bytes, one entry per region: its grid X and Z positions and entity count (ints) and
+ * the offset of its block from the start of the file (long).
+ * <p>
+ * Each region's block stores its entities as structure of arrays: the X, Y and Z positions, the X, Y and Z rotations
+ * in degrees and the scales (floats), then the model indices and the entity store flags (ints), each array holding
+ * one value per entity of the region. A region with n entities therefore takes 36n bytes, and loading it is nine bulk
+ * copies.
+ */
+public final class SceneFormat {
+    static final int MAGIC = 0x534C504D; // "MPLS", read little-endian.
+    static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 20;
+    static final int INDEX_ENTRY_BYTES = 20;
+    static final int FLOAT_COLUMNS = 7;
+    static final int INT_COLUMNS = 2;
+    static final int ENTITY_BYTES = (FLOAT_COLUMNS + INT_COLUMNS) * 4;
+
+    private SceneFormat() { }
+
+    /**
+     * Find the grid position of the region holding a point along one axis.
+     *
+     * @param coordinate X or Z position of the point.
+     * @param regionSize Size of the regions.
+     * @return Grid position of the region along the axis.
+     */
+    static int gridPosition(float coordinate, float regionSize) {
+        return (int) Math.floor(coordinate / regionSize);
+    }
+}
@@ -0,0 +1,25 @@
+package scenes;
+
+import entities.EntityStore;
+
+/**
+ * Hooks called by a {@link Scene} as it pages regions in and out, so systems keeping state of their own for the scene's
+ * entities, such as collision bodies, can follow it.
+ */
+public interface SceneListener {
+    /**
+     * Called after the entities of a region were created in the store.
+     *
+     * @param store Entity store the region was loaded into.
+     * @param ids   Ids of the region's entities.
+     */
+    void regionLoaded(EntityStore store, int[] ids);
+
+    /**
+     * Called before the entities of a region are removed from the store, while they can still be read.
+     *
+     * @param store Entity store the region is removed from.
+     * @param ids   Ids of the region's entities.
+     */
+    void regionEvicted(EntityStore store, int[] ids);
+}
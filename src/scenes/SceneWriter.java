@@ -0,0 +1,241 @@
+package scenes;
+
+import entities.EntityStore;
+import models.TexturedModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Collects models and entities and writes them as a scene file, with the entities grouped into regions by their
+ * position on the XZ plane. See {@link SceneFormat} for the layout.
+ */
+public class SceneWriter {
+    private final float REGION_SIZE;
+    private final List<String> MODEL_NAMES = new ArrayList<>();
+    private final List<String> TEXTURE_NAMES = new ArrayList<>();
+    private final List<Float> BOUNDING_RADII = new ArrayList<>();
+
+    private float[][] floatColumns = new float[SceneFormat.FLOAT_COLUMNS][64];
+    private int[][] intColumns = new int[SceneFormat.INT_COLUMNS][64];
+    private int entityCount = 0;
+
+    /**
+     * Create a new empty scene writer.
+     *
+     * @param regionSize Size of the square regions the scene is split into.
+     */
+    public SceneWriter(float regionSize) {
+        if (regionSize <= 0) throw new IllegalArgumentException("The regions of a scene must have a positive size.");
+        this.REGION_SIZE = regionSize;
+    }
+
+    /**
+     * Add a model to the scene.
+     *
+     * @param modelName      Name of the model's OBJ file in the resources folder.
+     * @param textureName    Name of the model's texture in the resources folder.
+     * @param boundingRadius Radius of the model's bounding sphere around its origin, at a scale of 1.
+     * @return Index of the model in the scene.
+     */
+    public int addModel(String modelName, String textureName, float boundingRadius) {
+        checkName(modelName);
+        checkName(textureName);
+
+        MODEL_NAMES.add(modelName);
+        TEXTURE_NAMES.add(textureName);
+        BOUNDING_RADII.add(boundingRadius);
+        return MODEL_NAMES.size() - 1;
+    }
+
+    /**
+     * Make sure a name fits the model table, which stores its length in UTF-8 bytes as an unsigned short.
+     *
+     * @param name Model or texture name.
+     */
+    private static void checkName(String name) {
+        int length = name.getBytes(StandardCharsets.UTF_8).length;
+        if (length > 0xFFFF) {
+            throw new IllegalArgumentException("Names in a scene are at most 65535 bytes long, not " + length + ".");
+        }
+    }
+
+    /**
+     * Add an entity to the scene.
+     *
+     * @param model     Index of the entity's model.
+     * @param x         X position of the entity.
+     * @param y         Y position of the entity.
+     * @param z         Z position of the entity.
+     * @param rotationX Rotation around the X axis in degrees.
+     * @param rotationY Rotation around the Y axis in degrees.
+     * @param rotationZ Rotation around the Z axis in degrees.
+     * @param scale     Scale of the entity.
+     * @param flags     Entity store flags of the entity.
+     */
+    public void addEntity(
+            int model, float x, float y, float z, float rotationX, float rotationY, float rotationZ, float scale,
+            int flags
+    ) {
+        if (model < 0 || model >= MODEL_NAMES.size()) {
+            throw new IllegalArgumentException("Model " + model + " was not added to the scene.");
+        }
+
+        if (entityCount == floatColumns[0].length) {
+            for (int column = 0; column < floatColumns.length; column++) {
+                floatColumns[column] = Arrays.copyOf(floatColumns[column], entityCount * 2);
+            }
+
+            for (int column = 0; column < intColumns.length; column++) {
+                intColumns[column] = Arrays.copyOf(intColumns[column], entityCount * 2);
+            }
+        }
+
+        float[] values = {x, y, z, rotationX, rotationY, rotationZ, scale};
+        for (int column = 0; column < values.length; column++) floatColumns[column][entityCount] = values[column];
+
+        intColumns[0][entityCount] = model;
+        intColumns[1][entityCount] = flags;
+        entityCount++;
+    }
+
+    /**
+     * Add every entity of an entity store to the scene.
+     *
+     * @param store        Store holding the entities.
+     * @param modelIndices Index in the scene of each textured model used by the entities.
+     */
+    public void addEntities(EntityStore store, Function<TexturedModel, Integer> modelIndices) {
+        for (int index = 0; index < store.size(); index++) {
+            int id = store.id(index);
+
+            addEntity(
+                    modelIndices.apply(store.texturedModel(id)), store.positionsX()[index],
+                    store.positionsY()[index], store.positionsZ()[index], store.rotationsX()[index],
+                    store.rotationsY()[index], store.rotationsZ()[index], store.scales()[index], store.flags(id)
+            );
+        }
+    }
+
+    /**
+     * Write the scene to a file, replacing it if it exists.
+     *
+     * @param file File to be written.
+     */
+    public void write(File file) {
+        try (FileChannel channel = FileChannel.open(
+                file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+        )) {
+            ByteBuffer buffer = toBuffer();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+
+        catch (IOException e) {
+            System.err.println("Could not write the scene file " + file + ".");
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Lay the scene out in memory exactly as it is stored in a file.
+     *
+     * @return Buffer holding the scene, positioned at its start.
+     */
+    ByteBuffer toBuffer() {
+        // Sort the entities by region, keeping the order in which they were added within each region.
+        long[] keys = new long[entityCount];
+        for (int i = 0; i < entityCount; i++) {
+            int gridX = SceneFormat.gridPosition(floatColumns[0][i], REGION_SIZE);
+            int gridZ = SceneFormat.gridPosition(floatColumns[2][i], REGION_SIZE);
+            keys[i] = ((long) gridX << 32) ^ (gridZ & 0xFFFFFFFFL);
+        }
+
+        Integer[] order = new Integer[entityCount];
+        for (int i = 0; i < entityCount; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        int regionCount = 0;
+        for (int i = 0; i < entityCount; i++) {
+            if (i == 0 || keys[order[i]] != keys[order[i - 1]]) regionCount++;
+        }
+
+        byte[][] modelNames = new byte[MODEL_NAMES.size()][];
+        byte[][] textureNames = new byte[MODEL_NAMES.size()][];
+        int modelTableBytes = 0;
+
+        for (int model = 0; model < modelNames.length; model++) {
+            modelNames[model] = MODEL_NAMES.get(model).getBytes(StandardCharsets.UTF_8);
+            textureNames[model] = TEXTURE_NAMES.get(model).getBytes(StandardCharsets.UTF_8);
+            modelTableBytes += 2 + modelNames[model].length + 2 + textureNames[model].length + 4;
+        }
+
+        int indexOffset = (SceneFormat.HEADER_BYTES + modelTableBytes + 3) & ~3;
+        int blocksOffset = indexOffset + regionCount * SceneFormat.INDEX_ENTRY_BYTES;
+
+        ByteBuffer buffer = ByteBuffer.allocate(blocksOffset + entityCount * SceneFormat.ENTITY_BYTES);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(SceneFormat.MAGIC);
+        buffer.putShort((short) SceneFormat.VERSION);
+        buffer.putShort((short) 0);
+        buffer.putFloat(REGION_SIZE);
+        buffer.putInt(modelNames.length);
+        buffer.putInt(regionCount);
+
+        for (int model = 0; model < modelNames.length; model++) {
+            buffer.putShort((short) modelNames[model].length);
+            buffer.put(modelNames[model]);
+            buffer.putShort((short) textureNames[model].length);
+            buffer.put(textureNames[model]);
+            buffer.putFloat(BOUNDING_RADII.get(model));
+        }
+
+        int indexEntry = indexOffset;
+        int blockOffset = blocksOffset;
+        int start = 0;
+
+        while (start < entityCount) {
+            int end = start + 1;
+            while (end < entityCount && keys[order[end]] == keys[order[start]]) end++;
+
+            int count = end - start;
+            long key = keys[order[start]];
+            buffer.putInt(indexEntry, (int) (key >> 32));
+            buffer.putInt(indexEntry + 4, (int) key);
+            buffer.putInt(indexEntry + 8, count);
+            buffer.putLong(indexEntry + 12, blockOffset);
+            indexEntry += SceneFormat.INDEX_ENTRY_BYTES;
+
+            int columnOffset = blockOffset;
+            for (float[] values : floatColumns) {
+                for (int i = 0; i < count; i++) buffer.putFloat(columnOffset + i * 4, values[order[start + i]]);
+                columnOffset += count * 4;
+            }
+
+            for (int[] values : intColumns) {
+                for (int i = 0; i < count; i++) buffer.putInt(columnOffset + i * 4, values[order[start + i]]);
+                columnOffset += count * 4;
+            }
+
+            blockOffset += count * SceneFormat.ENTITY_BYTES;
+            start = end;
+        }
+
+        buffer.clear();
+        return buffer;
+    }
+
+    public int entityCount() {
+        return entityCount;
+    }
+}
@@ -0,0 +1,99 @@
+package shaders;
+
+import entities.Camera;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+import toolbox.EngineMath;
+
+/**
+ * Implementation of the ShaderProgram for impostors: camera-facing quads textured with the view of a model from an
+ * impostor atlas that was rendered from the direction closest to the camera's. The lighting is baked into the atlas,
+ * so only fog is applied.
+ */
+public class ImpostorShader extends ShaderProgram {
+    private static final String VERTEX_FILE = "src/shaders/glsl/impostorVertexShader.glsl";
+    private static final String FRAGMENT_FILE = "src/shaders/glsl/impostorFragmentShader.glsl";
+
+    private final Matrix4f VIEW_MATRIX = new Matrix4f();
+
+    private int projectionMatrixLocation;
+    private int viewMatrixLocation;
+    private int cameraPositionLocation;
+
+    private int viewCountLocation;
+    private int rowCountLocation;
+
+    private int skyColorLocation;
+
+    /**
+     * Create a new impostor shader using pre-written GLSL vertex and fragment shaders.
+     */
+    public ImpostorShader() {
+        super(VERTEX_FILE, FRAGMENT_FILE);
+    }
+
+    /**
+     * Load a 4x4 projection matrix within the shader.
+     *
+     * @param matrix Projection matrix to be loaded.
+     */
+    public void loadProjectionMatrix(Matrix4f matrix) {
+        super.loadMatrix4f(projectionMatrixLocation, matrix);
+    }
+
+    /**
+     * Load a 4x4 view matrix and the position of the camera within the shader.
+     *
+     * @param camera Camera to use when creating a view matrix.
+     */
+    public void loadCamera(Camera camera) {
+        EngineMath.createViewMatrix(camera, VIEW_MATRIX);
+        super.loadMatrix4f(viewMatrixLocation, VIEW_MATRIX);
+        super.loadVector3f(cameraPositionLocation, camera.position());
+    }
+
+    /**
+     * Load the layout of the impostor atlas within the shader.
+     *
+     * @param viewCount Number of views of each model, one per column.
+     * @param rowCount  Number of models, one per row.
+     */
+    public void loadAtlasLayout(int viewCount, int rowCount) {
+        super.loadFloat(viewCountLocation, viewCount);
+        super.loadFloat(rowCountLocation, rowCount);
+    }
+
+    /**
+     * Load a vector representing the sky color in RGB within the shader.
+     *
+     * @param color Sky color to be loaded.
+     */
+    public void loadSkyColor(Vector3f color) {
+        super.loadVector3f(skyColorLocation, color);
+    }
+
+    /**
+     * Bind the particular attributes within the current shader.
+     */
+    @Override
+    protected void bindAttributes() {
+        super.bindAttribute(0, "corner");
+        super.bindAttribute(1, "instancePlacement");
+        super.bindAttribute(2, "instanceBounds");
+    }
+
+    /**
+     * Get the uniform locations of all the uniform variables within the current shader.
+     */
+    @Override
+    protected void getAllUniformLocations() {
+        projectionMatrixLocation = super.getUniformLocation("projectionMatrix");
+        viewMatrixLocation = super.getUniformLocation("viewMatrix");
+        cameraPositionLocation = super.getUniformLocation("cameraPosition");
+
+        viewCountLocation = super.getUniformLocation("viewCount");
+        rowCountLocation = super.getUniformLocation("rowCount");
+
+        skyColorLocation = super.getUniformLocation("skyColor");
+    }
+}
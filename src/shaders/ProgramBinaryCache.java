@@ -0,0 +1,302 @@
+package shaders;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.ARBGetProgramBinary;
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL41;
+import org.lwjgl.opengl.GLContext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * On-disk cache of linked shader program binaries, so programs compiled on a previous launch skip GLSL compilation.
+ * <p>
+ * Every entry is keyed by a hash of the program's sources with their feature defines, the program class and the
+ * driver's vendor, renderer and version strings, so a driver update or an edited shader simply misses. A binary the
+ * driver rejects is treated as a miss and overwritten after the program is compiled from source again. The cache is
+ * only used when the context exposes OpenGL 4.1 or ARB_get_program_binary with at least one binary format.
+ */
+public class ProgramBinaryCache {
+    private static final int MAGIC = 0x4D504249;
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".bin";
+
+    private final File DIRECTORY;
+    private final IntBuffer LENGTH_BUFFER = BufferUtils.createIntBuffer(1);
+    private final IntBuffer FORMAT_BUFFER = BufferUtils.createIntBuffer(1);
+
+    /**
+     * Program binary as retrieved from the driver, with its format and the time the program took to compile from
+     * source.
+     */
+    record Entry(int format, long compileNanos, byte[] binary) { }
+
+    private Boolean supported = null;
+    private boolean core;
+    private String driver;
+
+    private int hits = 0;
+    private int misses = 0;
+    private int rejections = 0;
+    private long savedNanos = 0;
+
+    /**
+     * Create a new program binary cache, storing its entries in a directory that is created when the first entry is
+     * written.
+     *
+     * @param directory Directory for the cache entries.
+     */
+    public ProgramBinaryCache(File directory) {
+        this.DIRECTORY = directory;
+    }
+
+    /**
+     * Create a program binary cache for a known driver, without querying an OpenGL context.
+     *
+     * @param directory Directory for the cache entries.
+     * @param driver    Vendor, renderer and version of the driver the entries belong to.
+     */
+    ProgramBinaryCache(File directory, String driver) {
+        this.DIRECTORY = directory;
+        this.supported = true;
+        this.driver = driver;
+    }
+
+    /**
+     * Check if the current OpenGL context can retrieve and load program binaries. Requires a current context.
+     *
+     * @return True if program binaries are supported, else false.
+     */
+    public boolean isSupported() {
+        if (supported == null) {
+            ContextCapabilities capabilities = GLContext.getCapabilities();
+            core = capabilities.OpenGL41;
+            supported = (core || capabilities.GL_ARB_get_program_binary)
+                    && GL11.glGetInteger(GL41.GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+
+            driver = GL11.glGetString(GL11.GL_VENDOR) + '\n' + GL11.glGetString(GL11.GL_RENDERER) + '\n'
+                    + GL11.glGetString(GL11.GL_VERSION);
+        }
+
+        return supported;
+    }
+
+    /**
+     * Create the cache key of a program.
+     *
+     * @param programName    Name of the program, usually its class name.
+     * @param vertexSource   Vertex shader source with its feature defines.
+     * @param fragmentSource Fragment shader source with its feature defines.
+     * @param features       Bit mask of the shader features compiled into the program.
+     * @return Hex-encoded key of the program.
+     */
+    public String key(String programName, CharSequence vertexSource, CharSequence fragmentSource, int features) {
+        isSupported();
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(programName.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(vertexSource.toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(fragmentSource.toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(driver.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Integer.toString(features).getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) key.append(String.format("%02x", b));
+
+            return key.toString();
+        }
+
+        catch (NoSuchAlgorithmException e) {
+            System.err.println("SHA-256 is not available!");
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Load a cached program binary into a new program. Counts a hit if the driver accepts the binary, and a miss
+     * otherwise.
+     *
+     * @param key Key of the program.
+     * @return Linked program, or 0 if there is no usable binary and the program has to be compiled from source.
+     */
+    public int load(String key) {
+        long start = System.nanoTime();
+        Entry entry = read(key);
+
+        if (entry == null) {
+            misses++;
+            return 0;
+        }
+
+        ByteBuffer binary = BufferUtils.createByteBuffer(entry.binary().length);
+        binary.put(entry.binary()).flip();
+
+        int programID = GL20.glCreateProgram();
+
+        if (core) GL41.glProgramBinary(programID, entry.format(), binary);
+        else ARBGetProgramBinary.glProgramBinary(programID, entry.format(), binary);
+
+        if (GL20.glGetProgrami(programID, GL20.GL_LINK_STATUS) == GL11.GL_FALSE) {
+            GL20.glDeleteProgram(programID);
+            rejections++;
+            misses++;
+            return 0;
+        }
+
+        hits++;
+        savedNanos += Math.max(0, entry.compileNanos() - (System.nanoTime() - start));
+
+        return programID;
+    }
+
+    /**
+     * Ask the driver to keep the binary of a program retrievable. Must be called before the program is linked.
+     *
+     * @param programID Program to be stored later.
+     */
+    public void prepare(int programID) {
+        if (core) GL41.glProgramParameteri(programID, GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL11.GL_TRUE);
+        else ARBGetProgramBinary.glProgramParameteri(
+                programID, ARBGetProgramBinary.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL11.GL_TRUE
+        );
+    }
+
+    /**
+     * Store the binary of a linked program.
+     *
+     * @param key          Key of the program.
+     * @param programID    Linked program.
+     * @param compileNanos Time it took to compile and link the program from source, in nanoseconds.
+     */
+    public void store(String key, int programID, long compileNanos) {
+        int length = GL20.glGetProgrami(programID, GL41.GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0) return;
+
+        ByteBuffer binary = BufferUtils.createByteBuffer(length);
+        LENGTH_BUFFER.clear();
+        FORMAT_BUFFER.clear();
+
+        if (core) GL41.glGetProgramBinary(programID, LENGTH_BUFFER, FORMAT_BUFFER, binary);
+        else ARBGetProgramBinary.glGetProgramBinary(programID, LENGTH_BUFFER, FORMAT_BUFFER, binary);
+
+        byte[] bytes = new byte[LENGTH_BUFFER.get(0)];
+        binary.get(bytes);
+
+        write(key, new Entry(FORMAT_BUFFER.get(0), compileNanos, bytes));
+    }
+
+    /**
+     * Read the cache entry of a program. An entry that cannot be read counts as a rejection.
+     *
+     * @param key Key of the program.
+     * @return Cached entry, or null if there is none or it is unreadable.
+     */
+    Entry read(String key) {
+        File file = new File(DIRECTORY, key + EXTENSION);
+        if (!file.isFile()) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Not a program binary.");
+
+            int format = in.readInt();
+            long compileNanos = in.readLong();
+
+            int length = in.readInt();
+            if (length < 0 || length > file.length()) throw new IOException("Corrupt binary length " + length + ".");
+
+            byte[] binary = new byte[length];
+            in.readFully(binary);
+
+            return new Entry(format, compileNanos, binary);
+        }
+
+        catch (IOException e) {
+            System.err.println("Could not read program binary " + file + ": " + e.getMessage());
+            rejections++;
+            return null;
+        }
+    }
+
+    /**
+     * Write the cache entry of a program, replacing any previous entry with the same key.
+     *
+     * @param key   Key of the program.
+     * @param entry Entry to be written.
+     */
+    void write(String key, Entry entry) {
+        DIRECTORY.mkdirs();
+        File file = new File(DIRECTORY, key + EXTENSION);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entry.format());
+            out.writeLong(entry.compileNanos());
+            out.writeInt(entry.binary().length);
+            out.write(entry.binary());
+        }
+
+        catch (IOException e) {
+            System.err.println("Could not write program binary " + file + ": " + e.getMessage());
+        }
+    }
+
+    public int hits() {
+        return hits;
+    }
+
+    public int misses() {
+        return misses;
+    }
+
+    /**
+     * Get the number of misses caused by a cached binary that could not be read or was rejected by the driver.
+     *
+     * @return Number of rejected binaries.
+     */
+    public int rejections() {
+        return rejections;
+    }
+
+    /**
+     * Get the compile time saved by all the hits so far: the time each program took to compile from source when it
+     * was stored, minus the time it took to load its binary.
+     *
+     * @return Saved compile time in milliseconds.
+     */
+    public float savedMillis() {
+        return savedNanos / 1_000_000f;
+    }
+
+    /**
+     * Print the cache statistics.
+     *
+     * @param out Stream to be printed to.
+     */
+    public void print(PrintStream out) {
+        out.printf(
+                "Program binary cache: %d hits, %d misses (%d rejected), %.1f ms of compilation saved%n",
+                hits, misses, rejections, savedMillis()
+        );
+    }
+}
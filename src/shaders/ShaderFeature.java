@@ -0,0 +1,56 @@
+package shaders;
+
+/**
+ * Optional features of a shader program, compiled in or out with a preprocessor define of the same name. A program
+ * variant is identified by the bit mask of its features.
+ */
+public enum ShaderFeature {
+    /**
+     * Use an upward-facing normal instead of the model's normals, for flat foliage such as grass.
+     */
+    FAKE_LIGHTING,
+
+    /**
+     * Discard fragments whose texture alpha is below one half.
+     */
+    ALPHA_TEST,
+
+    /**
+     * Fade into the sky color with distance from the camera.
+     */
+    FOG,
+
+    /**
+     * Add specular highlights, which also requires the vector to the camera per vertex.
+     */
+    SPECULAR,
+
+    /**
+     * Add the diffuse light of the local point and spot lights in the fragment's light cluster to the sun's.
+     */
+    CLUSTERED_LIGHTS;
+
+    /**
+     * Number of bit masks that can be built from all the features.
+     */
+    public static final int VARIANT_COUNT = 1 << values().length;
+
+    /**
+     * Get the bit of the feature within a feature mask.
+     *
+     * @return Bit of the feature.
+     */
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Check if a feature mask contains the feature.
+     *
+     * @param mask Feature mask to be checked.
+     * @return True if the feature is part of the mask, else false.
+     */
+    public boolean isIn(int mask) {
+        return (mask & bit()) != 0;
+    }
+}
@@ -18,8 +18,25 @@ public abstract class ShaderProgram {
     private final int PROGRAM_ID;
     private final int VERTEX_SHADER_ID;
     private final int FRAGMENT_SHADER_ID;
+    private final int FEATURES;
     private static final FloatBuffer MATRIX_BUFFER = BufferUtils.createFloatBuffer(16);
 
+    private static ProgramBinaryCache binaryCache = null;
+
+    /**
+     * Texture units of the buffer textures holding the local lights, the light clusters and their light indices,
+     * above the units used by any material.
+     */
+    public static final int LIGHTS_TEXTURE_UNIT = 6;
+    public static final int CLUSTERS_TEXTURE_UNIT = 7;
+    public static final int LIGHT_INDICES_TEXTURE_UNIT = 8;
+
+    private final UniformShadow UNIFORMS;
+    private int maxUniformLocation = -1;
+
+    private static long uniformsIssued = 0;
+    private static long uniformsSkipped = 0;
+
     /**
      * Create a new shader program.
      *
@@ -27,29 +44,81 @@ public abstract class ShaderProgram {
      * @param fragmentFile File path for the fragment shader.
      */
     public ShaderProgram(String vertexFile, String fragmentFile) {
-        VERTEX_SHADER_ID = loadShader(vertexFile, GL20.GL_VERTEX_SHADER);
-        FRAGMENT_SHADER_ID = loadShader(fragmentFile, GL20.GL_FRAGMENT_SHADER);
-        PROGRAM_ID = GL20.glCreateProgram();
+        this(vertexFile, fragmentFile, 0);
+    }
+
+    /**
+     * Create a new variant of a shader program, with a preprocessor define for every enabled feature. If a program
+     * binary cache is set, the linked program is loaded from it when possible and stored in it otherwise.
+     *
+     * @param vertexFile   File path for the vertex shader.
+     * @param fragmentFile File path for the fragment shader.
+     * @param features     Bit mask of the shader features compiled into the variant.
+     */
+    public ShaderProgram(String vertexFile, String fragmentFile, int features) {
+        FEATURES = features;
+
+        StringBuilder vertexSource = readShader(vertexFile, features);
+        StringBuilder fragmentSource = readShader(fragmentFile, features);
+
+        ProgramBinaryCache cache = binaryCache != null && binaryCache.isSupported() ? binaryCache : null;
+        String key = cache != null ? cache.key(getClass().getName(), vertexSource, fragmentSource, features) : null;
+        int cachedProgramID = cache != null ? cache.load(key) : 0;
+
+        if (cachedProgramID != 0) {
+            VERTEX_SHADER_ID = 0;
+            FRAGMENT_SHADER_ID = 0;
+            PROGRAM_ID = cachedProgramID;
+        }
+
+        else {
+            long compileStart = System.nanoTime();
 
-        GL20.glAttachShader(PROGRAM_ID, VERTEX_SHADER_ID);
-        GL20.glAttachShader(PROGRAM_ID, FRAGMENT_SHADER_ID);
+            VERTEX_SHADER_ID = compileShader(vertexSource, GL20.GL_VERTEX_SHADER);
+            FRAGMENT_SHADER_ID = compileShader(fragmentSource, GL20.GL_FRAGMENT_SHADER);
+            PROGRAM_ID = GL20.glCreateProgram();
 
-        bindAttributes();
+            GL20.glAttachShader(PROGRAM_ID, VERTEX_SHADER_ID);
+            GL20.glAttachShader(PROGRAM_ID, FRAGMENT_SHADER_ID);
+
+            bindAttributes();
+
+            if (cache != null) cache.prepare(PROGRAM_ID);
+            GL20.glLinkProgram(PROGRAM_ID);
+
+            if (GL20.glGetProgrami(PROGRAM_ID, GL20.GL_LINK_STATUS) == GL11.GL_FALSE) {
+                System.err.println(GL20.glGetProgramInfoLog(PROGRAM_ID, 500));
+                System.err.println("Could not link shader program!");
+                throw new RuntimeException("Could not link " + vertexFile + " and " + fragmentFile + ".");
+            }
+
+            if (cache != null) cache.store(key, PROGRAM_ID, System.nanoTime() - compileStart);
+        }
 
-        GL20.glLinkProgram(PROGRAM_ID);
         GL20.glValidateProgram(PROGRAM_ID);
 
         getAllUniformLocations();
+
+        UNIFORMS = new UniformShadow(maxUniformLocation + 1);
     }
 
     /**
-     * Load a specific GLSL shader in OpenGL.
+     * Use a program binary cache for every shader program created from now on, or stop using one.
      *
-     * @param file File path of the shader to be loaded.
-     * @param type Type of the shader to be loaded — vertex or fragment shaders.
-     * @return ID of the newly loaded shader.
+     * @param cache Program binary cache to be used, or null to always compile from source.
      */
-    private static int loadShader(String file, int type) {
+    public static void setBinaryCache(ProgramBinaryCache cache) {
+        binaryCache = cache;
+    }
+
+    /**
+     * Read a specific GLSL shader from a file.
+     *
+     * @param file     File path of the shader to be read.
+     * @param features Bit mask of the shader features to be defined right after the version directive.
+     * @return Source of the shader.
+     */
+    static StringBuilder readShader(String file, int features) {
         StringBuilder shaderSource = new StringBuilder();
 
         try {
@@ -58,6 +127,12 @@ public abstract class ShaderProgram {
 
             while ((line = reader.readLine()) != null) {
                 shaderSource.append(line).append("//\n");
+
+                if (line.startsWith("#version")) {
+                    for (ShaderFeature feature : ShaderFeature.values()) {
+                        if (feature.isIn(features)) shaderSource.append("#define ").append(feature.name()).append('\n');
+                    }
+                }
             }
 
             reader.close();
@@ -69,6 +144,17 @@ public abstract class ShaderProgram {
             System.exit(-1);
         }
 
+        return shaderSource;
+    }
+
+    /**
+     * Compile a specific GLSL shader in OpenGL.
+     *
+     * @param shaderSource Source of the shader to be compiled.
+     * @param type         Type of the shader to be compiled — vertex or fragment shaders.
+     * @return ID of the newly compiled shader.
+     */
+    private static int compileShader(CharSequence shaderSource, int type) {
         int shaderID = GL20.glCreateShader(type);
         GL20.glShaderSource(shaderID, shaderSource);
         GL20.glCompileShader(shaderID);
@@ -82,6 +168,20 @@ public abstract class ShaderProgram {
         return shaderID;
     }
 
+    /**
+     * Check if a feature was compiled into this variant of the program.
+     *
+     * @param feature Feature to be checked.
+     * @return True if the feature is enabled, else false.
+     */
+    public boolean hasFeature(ShaderFeature feature) {
+        return feature.isIn(FEATURES);
+    }
+
+    public int features() {
+        return FEATURES;
+    }
+
     /**
      * Abstract layout to bind multiple variable names with specific data.
      */
@@ -113,11 +213,14 @@ public abstract class ShaderProgram {
     public void cleanUp() {
         stop();
 
-        GL20.glDetachShader(PROGRAM_ID, VERTEX_SHADER_ID);
-        GL20.glDetachShader(PROGRAM_ID, FRAGMENT_SHADER_ID);
+        // Programs loaded from a cached binary have no shader objects attached.
+        if (VERTEX_SHADER_ID != 0) {
+            GL20.glDetachShader(PROGRAM_ID, VERTEX_SHADER_ID);
+            GL20.glDetachShader(PROGRAM_ID, FRAGMENT_SHADER_ID);
 
-        GL20.glDeleteShader(VERTEX_SHADER_ID);
-        GL20.glDeleteShader(FRAGMENT_SHADER_ID);
+            GL20.glDeleteShader(VERTEX_SHADER_ID);
+            GL20.glDeleteShader(FRAGMENT_SHADER_ID);
+        }
 
         GL20.glDeleteProgram(PROGRAM_ID);
     }
@@ -139,7 +242,10 @@ public abstract class ShaderProgram {
      * @return Location of the variable within the shader.
      */
     protected int getUniformLocation(String uniformName) {
-        return GL20.glGetUniformLocation(PROGRAM_ID, uniformName);
+        int location = GL20.glGetUniformLocation(PROGRAM_ID, uniformName);
+        maxUniformLocation = Math.max(maxUniformLocation, location);
+
+        return location;
     }
 
     /**
@@ -149,6 +255,7 @@ public abstract class ShaderProgram {
      * @param value    Integer value to be loaded.
      */
     protected void loadInt(int location, int value) {
+        if (UNIFORMS.isUnchanged(location, value)) return;
         GL20.glUniform1i(location, value);
     }
 
@@ -159,6 +266,7 @@ public abstract class ShaderProgram {
      * @param value    Floating point value to be loaded.
      */
     protected void loadFloat(int location, float value) {
+        if (UNIFORMS.isUnchanged(location, Float.floatToRawIntBits(value))) return;
         GL20.glUniform1f(location, value);
     }
 
@@ -169,8 +277,7 @@ public abstract class ShaderProgram {
      * @param value    Boolean value to be loaded.
      */
     protected void loadBoolean(int location, boolean value) {
-        float floatValue = value ? 1 : 0;
-        GL20.glUniform1f(location, floatValue);
+        loadFloat(location, value ? 1 : 0);
     }
 
     /**
@@ -180,6 +287,7 @@ public abstract class ShaderProgram {
      * @param vector   3D vector value to be loaded.
      */
     protected void loadVector3f(int location, Vector3f vector) {
+        if (UNIFORMS.isUnchanged(location, vector.x, vector.y, vector.z)) return;
         GL20.glUniform3f(location, vector.x, vector.y, vector.z);
     }
 
@@ -190,9 +298,60 @@ public abstract class ShaderProgram {
      * @param matrix   4x4 matrix value to be loaded.
      */
     protected void loadMatrix4f(int location, Matrix4f matrix) {
+        if (UNIFORMS.isUnchanged(location, matrix)) return;
+        GL20.glUniformMatrix4(location, false, storeMatrix(matrix));
+    }
+
+    /**
+     * Count a uniform load as skipped or issued.
+     *
+     * @param skipped Whether the load was skipped.
+     * @return Whether the load was skipped.
+     */
+    static boolean countUpload(boolean skipped) {
+        if (skipped) uniformsSkipped++;
+        else uniformsIssued++;
+
+        return skipped;
+    }
+
+    /**
+     * Get the number of uniform uploads sent to OpenGL by all shader programs since the last reset.
+     *
+     * @return Number of issued uniform uploads.
+     */
+    public static long uniformsIssued() {
+        return uniformsIssued;
+    }
+
+    /**
+     * Get the number of uniform uploads skipped by all shader programs since the last reset because the value was
+     * already loaded, or because the uniform was compiled out of the program.
+     *
+     * @return Number of skipped uniform uploads.
+     */
+    public static long uniformsSkipped() {
+        return uniformsSkipped;
+    }
+
+    /**
+     * Reset the uniform upload statistics, usually once per frame.
+     */
+    public static void resetUniformStatistics() {
+        uniformsIssued = 0;
+        uniformsSkipped = 0;
+    }
+
+    /**
+     * Pack a 4x4 matrix into the shared matrix buffer, ready to be uploaded.
+     *
+     * @param matrix 4x4 matrix to be packed.
+     * @return Shared matrix buffer flipped for reading.
+     */
+    static FloatBuffer storeMatrix(Matrix4f matrix) {
         matrix.store(MATRIX_BUFFER);
         MATRIX_BUFFER.flip();
 
-        GL20.glUniformMatrix4(location, false, MATRIX_BUFFER);
+        return MATRIX_BUFFER;
     }
 }
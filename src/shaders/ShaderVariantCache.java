@@ -0,0 +1,78 @@
+package shaders;
+
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Cache of compiled shader program variants indexed by their feature mask. Variants are compiled the first time they
+ * are requested, or up front with {@link #precompile(int)}.
+ *
+ * @param <T> Type of shader program held by the cache.
+ */
+public class ShaderVariantCache<T extends ShaderProgram> {
+    private final IntFunction<T> FACTORY;
+    private final Consumer<T> INITIALIZER;
+    private final ShaderProgram[] VARIANTS = new ShaderProgram[ShaderFeature.VARIANT_COUNT];
+
+    private int compiledCount = 0;
+
+    /**
+     * Create a new variant cache.
+     *
+     * @param factory     Compiles the variant for a feature mask.
+     * @param initializer Loads the uniforms that never change, such as the projection matrix, into a new variant.
+     */
+    public ShaderVariantCache(IntFunction<T> factory, Consumer<T> initializer) {
+        this.FACTORY = factory;
+        this.INITIALIZER = initializer;
+    }
+
+    /**
+     * Get the variant for a feature mask, compiling it if it has not been requested before.
+     *
+     * @param features Feature mask of the variant.
+     * @return Compiled variant.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int features) {
+        ShaderProgram variant = VARIANTS[features];
+        if (variant == null) variant = compile(features);
+
+        return (T) variant;
+    }
+
+    /**
+     * Compile the variant for a feature mask ahead of time so the first frame using it doesn't stall.
+     *
+     * @param features Feature mask of the variant.
+     */
+    public void precompile(int features) {
+        get(features);
+    }
+
+    /**
+     * Clean up every compiled variant.
+     */
+    public void cleanUp() {
+        for (int i = 0; i < VARIANTS.length; i++) {
+            if (VARIANTS[i] != null) VARIANTS[i].cleanUp();
+            VARIANTS[i] = null;
+        }
+
+        compiledCount = 0;
+    }
+
+    public int compiledCount() {
+        return compiledCount;
+    }
+
+    private T compile(int features) {
+        T variant = FACTORY.apply(features);
+        INITIALIZER.accept(variant);
+
+        VARIANTS[features] = variant;
+        compiledCount++;
+
+        return variant;
+    }
+}
@@ -2,6 +2,7 @@ package shaders;
 
 import entities.Camera;
 import entities.Light;
+import lighting.LightClusters;
 import org.lwjgl.util.vector.Matrix4f;
 import org.lwjgl.util.vector.Vector3f;
 import toolbox.EngineMath;
@@ -13,6 +14,9 @@ public class StaticShader extends ShaderProgram {
     private static final String VERTEX_FILE = "src/shaders/glsl/vertexShader.glsl";
     private static final String FRAGMENT_FILE = "src/shaders/glsl/fragmentShader.glsl";
 
+    private final Matrix4f VIEW_MATRIX = new Matrix4f();
+    private final Vector3f CLUSTER_GRID = new Vector3f();
+
     private int transformationMatrixLocation;
     private int projectionMatrixLocation;
     private int viewMatrixLocation;
@@ -21,15 +25,30 @@ public class StaticShader extends ShaderProgram {
     private int lightColorLocation;
     private int shineDampingLocation;
     private int reflectivityLocation;
-    private int useFakeLightingLocation;
 
     private int skyColorLocation;
 
+    private int lightsLocation;
+    private int clustersLocation;
+    private int lightIndicesLocation;
+    private int clusterGridLocation;
+    private int clusterDepthScaleLocation;
+    private int clusterDepthBiasLocation;
+
     /**
      * Create a new static shader using pre-written GLSL vertex and fragment shaders.
      */
     public StaticShader() {
-        super(VERTEX_FILE, FRAGMENT_FILE);
+        this(0);
+    }
+
+    /**
+     * Create a new variant of the static shader using pre-written GLSL vertex and fragment shaders.
+     *
+     * @param features Bit mask of the shader features compiled into the variant.
+     */
+    public StaticShader(int features) {
+        super(VERTEX_FILE, FRAGMENT_FILE, features);
     }
 
     /**
@@ -56,8 +75,8 @@ public class StaticShader extends ShaderProgram {
      * @param camera Camera to use when creating a view matrix.
      */
     public void loadViewMatrix(Camera camera) {
-        Matrix4f viewMatrix = EngineMath.createViewMatrix(camera);
-        super.loadMatrix4f(viewMatrixLocation, viewMatrix);
+        EngineMath.createViewMatrix(camera, VIEW_MATRIX);
+        super.loadMatrix4f(viewMatrixLocation, VIEW_MATRIX);
     }
 
     /**
@@ -70,6 +89,23 @@ public class StaticShader extends ShaderProgram {
         super.loadVector3f(lightColorLocation, light.getColor());
     }
 
+    /**
+     * Load the layout of the light clusters within the shader, and connect the texture units of the buffer textures
+     * holding the local lights and the clusters' lights.
+     *
+     * @param clusters Light clusters the local lights are assigned to.
+     */
+    public void loadLightClusters(LightClusters clusters) {
+        super.loadInt(lightsLocation, LIGHTS_TEXTURE_UNIT);
+        super.loadInt(clustersLocation, CLUSTERS_TEXTURE_UNIT);
+        super.loadInt(lightIndicesLocation, LIGHT_INDICES_TEXTURE_UNIT);
+
+        CLUSTER_GRID.set(clusters.tilesX(), clusters.tilesY(), clusters.slices());
+        super.loadVector3f(clusterGridLocation, CLUSTER_GRID);
+        super.loadFloat(clusterDepthScaleLocation, clusters.depthScale());
+        super.loadFloat(clusterDepthBiasLocation, clusters.depthBias());
+    }
+
     /**
      * Load specular light information within the shader.
      *
@@ -81,15 +117,6 @@ public class StaticShader extends ShaderProgram {
         super.loadFloat(reflectivityLocation, reflectivity);
     }
 
-    /**
-     * Load a boolean if fake vertical lighting is to be used or not within the shader.
-     *
-     * @param useFakeLighting Whether to use fake vertical lighting or not to be loaded.
-     */
-    public void loadFakeLighting(boolean useFakeLighting) {
-        super.loadBoolean(useFakeLightingLocation, useFakeLighting);
-    }
-
     /**
      * Load a vector representing the sky color in RGB within the shader.
      *
@@ -122,8 +149,14 @@ public class StaticShader extends ShaderProgram {
         lightColorLocation = super.getUniformLocation("lightColor");
         shineDampingLocation = super.getUniformLocation("shineDamping");
         reflectivityLocation = super.getUniformLocation("reflectivity");
-        useFakeLightingLocation = super.getUniformLocation("useFakeLighting");
 
         skyColorLocation = super.getUniformLocation("skyColor");
+
+        lightsLocation = super.getUniformLocation("lights");
+        clustersLocation = super.getUniformLocation("clusters");
+        lightIndicesLocation = super.getUniformLocation("lightIndices");
+        clusterGridLocation = super.getUniformLocation("clusterGrid");
+        clusterDepthScaleLocation = super.getUniformLocation("clusterDepthScale");
+        clusterDepthBiasLocation = super.getUniformLocation("clusterDepthBias");
     }
 }
@@ -2,6 +2,7 @@ package shaders;
 
 import entities.Camera;
 import entities.Light;
+import lighting.LightClusters;
 import org.lwjgl.util.vector.Matrix4f;
 import org.lwjgl.util.vector.Vector3f;
 import toolbox.EngineMath;
@@ -10,6 +11,9 @@ public class TerrainShader extends ShaderProgram {
     private static final String VERTEX_FILE = "src/shaders/glsl/terrainVertexShader.glsl";
     private static final String FRAGMENT_FILE = "src/shaders/glsl/terrainFragmentShader.glsl";
 
+    private final Matrix4f VIEW_MATRIX = new Matrix4f();
+    private final Vector3f CLUSTER_GRID = new Vector3f();
+
     private int transformationMatrixLocation;
     private int projectionMatrixLocation;
     private int viewMatrixLocation;
@@ -21,6 +25,16 @@ public class TerrainShader extends ShaderProgram {
 
     private int skyColorLocation;
 
+    private int lightsLocation;
+    private int clustersLocation;
+    private int lightIndicesLocation;
+    private int clusterGridLocation;
+    private int clusterDepthScaleLocation;
+    private int clusterDepthBiasLocation;
+
+    private int heightMapLocation;
+    private int cellSizeLocation;
+
     private int backgroundTextureLocation;
     private int rTextureLocation;
     private int gTextureLocation;
@@ -58,8 +72,8 @@ public class TerrainShader extends ShaderProgram {
      * @param camera Camera to use when creating a view matrix.
      */
     public void loadViewMatrix(Camera camera) {
-        Matrix4f viewMatrix = EngineMath.createViewMatrix(camera);
-        super.loadMatrix4f(viewMatrixLocation, viewMatrix);
+        EngineMath.createViewMatrix(camera, VIEW_MATRIX);
+        super.loadMatrix4f(viewMatrixLocation, VIEW_MATRIX);
     }
 
     /**
@@ -72,6 +86,23 @@ public class TerrainShader extends ShaderProgram {
         super.loadVector3f(lightColorLocation, light.getColor());
     }
 
+    /**
+     * Load the layout of the light clusters within the shader, and connect the texture units of the buffer textures
+     * holding the local lights and the clusters' lights.
+     *
+     * @param clusters Light clusters the local lights are assigned to.
+     */
+    public void loadLightClusters(LightClusters clusters) {
+        super.loadInt(lightsLocation, LIGHTS_TEXTURE_UNIT);
+        super.loadInt(clustersLocation, CLUSTERS_TEXTURE_UNIT);
+        super.loadInt(lightIndicesLocation, LIGHT_INDICES_TEXTURE_UNIT);
+
+        CLUSTER_GRID.set(clusters.tilesX(), clusters.tilesY(), clusters.slices());
+        super.loadVector3f(clusterGridLocation, CLUSTER_GRID);
+        super.loadFloat(clusterDepthScaleLocation, clusters.depthScale());
+        super.loadFloat(clusterDepthBiasLocation, clusters.depthBias());
+    }
+
     /**
      * Load specular light information within the shader.
      *
@@ -93,7 +124,16 @@ public class TerrainShader extends ShaderProgram {
     }
 
     /**
-     * Connect the texture units of each one of the four terrain texture maps.
+     * Load the distance between neighbouring vertices of the current terrain's height map within the shader.
+     *
+     * @param cellSize Size of a height map cell to be loaded.
+     */
+    public void loadCellSize(float cellSize) {
+        super.loadFloat(cellSizeLocation, cellSize);
+    }
+
+    /**
+     * Connect the texture units of each one of the four terrain texture maps, the blend map and the height map.
      */
     public void connectTextureUnits() {
         super.loadInt(backgroundTextureLocation, 0);
@@ -101,6 +141,7 @@ public class TerrainShader extends ShaderProgram {
         super.loadInt(gTextureLocation, 2);
         super.loadInt(bTextureLocation, 3);
         super.loadInt(blendMapLocation, 4);
+        super.loadInt(heightMapLocation, 5);
     }
 
     /**
@@ -109,8 +150,7 @@ public class TerrainShader extends ShaderProgram {
     @Override
     protected void bindAttributes() {
         super.bindAttribute(0, "position");
-        super.bindAttribute(1, "textureCoordinates");
-        super.bindAttribute(2, "normal");
+        super.bindAttribute(1, "patchInstance");
     }
 
     /**
@@ -129,6 +169,16 @@ public class TerrainShader extends ShaderProgram {
 
         skyColorLocation = super.getUniformLocation("skyColor");
 
+        lightsLocation = super.getUniformLocation("lights");
+        clustersLocation = super.getUniformLocation("clusters");
+        lightIndicesLocation = super.getUniformLocation("lightIndices");
+        clusterGridLocation = super.getUniformLocation("clusterGrid");
+        clusterDepthScaleLocation = super.getUniformLocation("clusterDepthScale");
+        clusterDepthBiasLocation = super.getUniformLocation("clusterDepthBias");
+
+        heightMapLocation = super.getUniformLocation("heightMap");
+        cellSizeLocation = super.getUniformLocation("cellSize");
+
         backgroundTextureLocation = super.getUniformLocation("backgroundTexture");
         rTextureLocation = super.getUniformLocation("rTexture");
         gTextureLocation = super.getUniformLocation("gTexture");
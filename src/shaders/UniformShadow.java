@@ -0,0 +1,143 @@
+package shaders;
+
+import org.lwjgl.util.vector.Matrix4f;
+
+/**
+ * Copy of the values last loaded into the uniform locations of a shader program, kept as raw bits so a load of the
+ * same value can be skipped without calling OpenGL. Every check counts the load as skipped or issued in the shader
+ * program's uniform statistics.
+ */
+final class UniformShadow {
+    /**
+     * Number of shadow slots per uniform location, enough for a 4x4 matrix.
+     */
+    private static final int STRIDE = 16;
+
+    private final int[] VALUES;
+    private final boolean[] LOADED;
+
+    /**
+     * Create a new shadow with nothing loaded yet.
+     *
+     * @param locationCount Number of uniform locations of the program, one more than the largest location.
+     */
+    UniformShadow(int locationCount) {
+        this.VALUES = new int[locationCount * STRIDE];
+        this.LOADED = new boolean[locationCount];
+    }
+
+    /**
+     * Check a value against the last one loaded into a uniform location and remember it if it differs. Counts the
+     * load as skipped or issued.
+     *
+     * @param location Location of the variable within the shader.
+     * @param value    Value to be loaded, as its raw bits.
+     * @return True if the upload can be skipped, else false.
+     */
+    boolean isUnchanged(int location, int value) {
+        if (location < 0 || location >= LOADED.length) return ShaderProgram.countUpload(location < 0);
+
+        int offset = location * STRIDE;
+        if (LOADED[location] && VALUES[offset] == value) return ShaderProgram.countUpload(true);
+
+        LOADED[location] = true;
+        VALUES[offset] = value;
+
+        return ShaderProgram.countUpload(false);
+    }
+
+    /**
+     * Check a 3D vector against the last one loaded into a uniform location and remember it if it differs. Counts
+     * the load as skipped or issued.
+     *
+     * @param location Location of the variable within the shader.
+     * @param x        X component to be loaded.
+     * @param y        Y component to be loaded.
+     * @param z        Z component to be loaded.
+     * @return True if the upload can be skipped, else false.
+     */
+    boolean isUnchanged(int location, float x, float y, float z) {
+        if (location < 0 || location >= LOADED.length) return ShaderProgram.countUpload(location < 0);
+
+        int offset = location * STRIDE;
+        int xBits = Float.floatToRawIntBits(x);
+        int yBits = Float.floatToRawIntBits(y);
+        int zBits = Float.floatToRawIntBits(z);
+
+        if (LOADED[location] && VALUES[offset] == xBits && VALUES[offset + 1] == yBits
+                && VALUES[offset + 2] == zBits) return ShaderProgram.countUpload(true);
+
+        LOADED[location] = true;
+        VALUES[offset] = xBits;
+        VALUES[offset + 1] = yBits;
+        VALUES[offset + 2] = zBits;
+
+        return ShaderProgram.countUpload(false);
+    }
+
+    /**
+     * Check a 4x4 matrix against the last one loaded into a uniform location and remember it if it differs. Counts
+     * the load as skipped or issued.
+     *
+     * @param location Location of the variable within the shader.
+     * @param matrix   4x4 matrix to be loaded.
+     * @return True if the upload can be skipped, else false.
+     */
+    boolean isUnchanged(int location, Matrix4f matrix) {
+        if (location < 0 || location >= LOADED.length) return ShaderProgram.countUpload(location < 0);
+
+        boolean unchanged = updateShadow(VALUES, location * STRIDE, matrix);
+        if (unchanged && LOADED[location]) return ShaderProgram.countUpload(true);
+
+        LOADED[location] = true;
+
+        return ShaderProgram.countUpload(false);
+    }
+
+    /**
+     * Copy a 4x4 matrix into a shadow array as raw float bits, in column-major order.
+     *
+     * @param shadow Shadow array holding the last loaded values.
+     * @param offset Index of the first element of the matrix within the shadow array.
+     * @param matrix 4x4 matrix to be compared and copied.
+     * @return True if the shadow already held exactly the same matrix, else false.
+     */
+    static boolean updateShadow(int[] shadow, int offset, Matrix4f matrix) {
+        int changed = 0;
+
+        changed |= swap(shadow, offset, matrix.m00);
+        changed |= swap(shadow, offset + 1, matrix.m01);
+        changed |= swap(shadow, offset + 2, matrix.m02);
+        changed |= swap(shadow, offset + 3, matrix.m03);
+        changed |= swap(shadow, offset + 4, matrix.m10);
+        changed |= swap(shadow, offset + 5, matrix.m11);
+        changed |= swap(shadow, offset + 6, matrix.m12);
+        changed |= swap(shadow, offset + 7, matrix.m13);
+        changed |= swap(shadow, offset + 8, matrix.m20);
+        changed |= swap(shadow, offset + 9, matrix.m21);
+        changed |= swap(shadow, offset + 10, matrix.m22);
+        changed |= swap(shadow, offset + 11, matrix.m23);
+        changed |= swap(shadow, offset + 12, matrix.m30);
+        changed |= swap(shadow, offset + 13, matrix.m31);
+        changed |= swap(shadow, offset + 14, matrix.m32);
+        changed |= swap(shadow, offset + 15, matrix.m33);
+
+        return changed == 0;
+    }
+
+    /**
+     * Store a float as raw bits in a shadow array.
+     *
+     * @param shadow Shadow array holding the last loaded values.
+     * @param index  Index of the value within the shadow array.
+     * @param value  Value to be stored.
+     * @return Zero if the shadow already held the value, else a non-zero value.
+     */
+    private static int swap(int[] shadow, int index, float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int difference = shadow[index] ^ bits;
+        shadow[index] = bits;
+
+        return difference;
+    }
+}
@@ -0,0 +1,166 @@
+package shaders;
+
+import entities.Camera;
+import entities.Light;
+import lighting.LightClusters;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+import toolbox.EngineMath;
+
+/**
+ * Implementation of the ShaderProgram for instanced ground cover. Every instance is placed, rotated and scaled in the
+ * vertex shader from its per-instance attributes, and shrinks away between two distances from the camera. The
+ * fragment shader is shared with the static shader, so ground cover is lit by the same clustered local lights.
+ */
+public class VegetationShader extends ShaderProgram {
+    private static final String VERTEX_FILE = "src/shaders/glsl/vegetationVertexShader.glsl";
+    private static final String FRAGMENT_FILE = "src/shaders/glsl/fragmentShader.glsl";
+
+    private final Matrix4f VIEW_MATRIX = new Matrix4f();
+    private final Vector3f CLUSTER_GRID = new Vector3f();
+
+    private int projectionMatrixLocation;
+    private int viewMatrixLocation;
+    private int cameraPositionLocation;
+
+    private int lightPositionLocation;
+    private int lightColorLocation;
+    private int shineDampingLocation;
+    private int reflectivityLocation;
+
+    private int skyColorLocation;
+    private int fadeStartLocation;
+    private int fadeEndLocation;
+
+    private int lightsLocation;
+    private int clustersLocation;
+    private int lightIndicesLocation;
+    private int clusterGridLocation;
+    private int clusterDepthScaleLocation;
+    private int clusterDepthBiasLocation;
+
+    /**
+     * Create a new variant of the vegetation shader using pre-written GLSL vertex and fragment shaders.
+     *
+     * @param features Bit mask of the shader features compiled into the variant.
+     */
+    public VegetationShader(int features) {
+        super(VERTEX_FILE, FRAGMENT_FILE, features);
+    }
+
+    /**
+     * Load a 4x4 projection matrix within the shader.
+     *
+     * @param matrix Projection matrix to be loaded.
+     */
+    public void loadProjectionMatrix(Matrix4f matrix) {
+        super.loadMatrix4f(projectionMatrixLocation, matrix);
+    }
+
+    /**
+     * Load a 4x4 view matrix and the position of the camera within the shader.
+     *
+     * @param camera Camera to use when creating a view matrix.
+     */
+    public void loadCamera(Camera camera) {
+        EngineMath.createViewMatrix(camera, VIEW_MATRIX);
+        super.loadMatrix4f(viewMatrixLocation, VIEW_MATRIX);
+        super.loadVector3f(cameraPositionLocation, camera.position());
+    }
+
+    /**
+     * Load a light with its position and color within the shader.
+     *
+     * @param light Light to be loaded.
+     */
+    public void loadLight(Light light) {
+        super.loadVector3f(lightPositionLocation, light.getPosition());
+        super.loadVector3f(lightColorLocation, light.getColor());
+    }
+
+    /**
+     * Load the layout of the light clusters within the shader, and connect the texture units of the buffer textures
+     * holding the local lights and the clusters' lights.
+     *
+     * @param clusters Light clusters the local lights are assigned to.
+     */
+    public void loadLightClusters(LightClusters clusters) {
+        super.loadInt(lightsLocation, LIGHTS_TEXTURE_UNIT);
+        super.loadInt(clustersLocation, CLUSTERS_TEXTURE_UNIT);
+        super.loadInt(lightIndicesLocation, LIGHT_INDICES_TEXTURE_UNIT);
+
+        CLUSTER_GRID.set(clusters.tilesX(), clusters.tilesY(), clusters.slices());
+        super.loadVector3f(clusterGridLocation, CLUSTER_GRID);
+        super.loadFloat(clusterDepthScaleLocation, clusters.depthScale());
+        super.loadFloat(clusterDepthBiasLocation, clusters.depthBias());
+    }
+
+    /**
+     * Load specular light information within the shader.
+     *
+     * @param damping      Damping of the specular lighting to be loaded.
+     * @param reflectivity Reflectivity of the texture to be loaded.
+     */
+    public void loadSpecularLightData(float damping, float reflectivity) {
+        super.loadFloat(shineDampingLocation, damping);
+        super.loadFloat(reflectivityLocation, reflectivity);
+    }
+
+    /**
+     * Load a vector representing the sky color in RGB within the shader.
+     *
+     * @param color Sky color to be loaded.
+     */
+    public void loadSkyColor(Vector3f color) {
+        super.loadVector3f(skyColorLocation, color);
+    }
+
+    /**
+     * Load the distances from the camera over which instances shrink away.
+     *
+     * @param start Distance at which instances start to shrink.
+     * @param end   Distance at which instances have vanished.
+     */
+    public void loadFadeDistances(float start, float end) {
+        super.loadFloat(fadeStartLocation, start);
+        super.loadFloat(fadeEndLocation, end);
+    }
+
+    /**
+     * Bind the particular attributes within the current shader.
+     */
+    @Override
+    protected void bindAttributes() {
+        super.bindAttribute(0, "position");
+        super.bindAttribute(1, "textureCoordinates");
+        super.bindAttribute(2, "normal");
+        super.bindAttribute(3, "instancePlacement");
+        super.bindAttribute(4, "instanceRotation");
+    }
+
+    /**
+     * Get the uniform locations of all the uniform variables within the current shader.
+     */
+    @Override
+    protected void getAllUniformLocations() {
+        projectionMatrixLocation = super.getUniformLocation("projectionMatrix");
+        viewMatrixLocation = super.getUniformLocation("viewMatrix");
+        cameraPositionLocation = super.getUniformLocation("cameraPosition");
+
+        lightPositionLocation = super.getUniformLocation("lightPosition");
+        lightColorLocation = super.getUniformLocation("lightColor");
+        shineDampingLocation = super.getUniformLocation("shineDamping");
+        reflectivityLocation = super.getUniformLocation("reflectivity");
+
+        skyColorLocation = super.getUniformLocation("skyColor");
+        fadeStartLocation = super.getUniformLocation("fadeStart");
+        fadeEndLocation = super.getUniformLocation("fadeEnd");
+
+        lightsLocation = super.getUniformLocation("lights");
+        clustersLocation = super.getUniformLocation("clusters");
+        lightIndicesLocation = super.getUniformLocation("lightIndices");
+        clusterGridLocation = super.getUniformLocation("clusterGrid");
+        clusterDepthScaleLocation = super.getUniformLocation("clusterDepthScale");
+        clusterDepthBiasLocation = super.getUniformLocation("clusterDepthBias");
+    }
+}
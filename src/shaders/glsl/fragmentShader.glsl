@@ -3,40 +3,106 @@
 in vec2 pass_textureCoordinates;
 in vec3 surfaceNormal;
 in vec3 toLightVector;
+#ifdef SPECULAR
 in vec3 toCameraVector;
+#endif
+#ifdef FOG
 in float visibility;
+#endif
+#ifdef CLUSTERED_LIGHTS
+in vec3 pass_worldPosition;
+in vec4 pass_clipPosition;
+#endif
 
 out vec4 out_Color;
 
 uniform sampler2D modelTexture;
 uniform vec3 lightColor;
+#ifdef SPECULAR
 uniform float shineDamping;
 uniform float reflectivity;
+#endif
+#ifdef FOG
 uniform vec3 skyColor;
+#endif
+#ifdef CLUSTERED_LIGHTS
+uniform samplerBuffer lights;
+uniform usamplerBuffer clusters;
+uniform usamplerBuffer lightIndices;
+uniform vec3 clusterGrid;
+uniform float clusterDepthScale;
+uniform float clusterDepthBias;
+
+// Diffuse light of the local lights in the fragment's cluster. Each light takes three texels: its position and range,
+// its color and the cosine of its inner cone angle, and its direction and the cosine of its outer cone angle.
+vec3 localLighting(vec3 unitNormal)
+{
+    ivec3 grid = ivec3(clusterGrid);
+    vec2 ndc = pass_clipPosition.xy / pass_clipPosition.w;
+    ivec2 tile = clamp(ivec2(floor((ndc * 0.5 + 0.5) * vec2(grid.xy))), ivec2(0), grid.xy - 1);
+    int slice = int(floor(log(pass_clipPosition.w) * clusterDepthScale + clusterDepthBias));
+    slice = clamp(slice, 0, grid.z - 1);
+
+    uvec2 cluster = texelFetch(clusters, (slice * grid.y + tile.y) * grid.x + tile.x).xy;
+    vec3 total = vec3(0.0);
+
+    for (uint i = 0u; i < cluster.y; i++) {
+        int light = int(texelFetch(lightIndices, int(cluster.x + i)).r) * 3;
+        vec4 positionRange = texelFetch(lights, light);
+        vec4 colorInner = texelFetch(lights, light + 1);
+        vec4 directionOuter = texelFetch(lights, light + 2);
+
+        vec3 toLight = positionRange.xyz - pass_worldPosition;
+        float distance = length(toLight);
+        vec3 unitToLight = toLight / max(distance, 0.0001);
+
+        float falloff = clamp(1.0 - distance / positionRange.w, 0.0, 1.0);
+        float cone = smoothstep(directionOuter.w, colorInner.w, dot(-unitToLight, directionOuter.xyz));
+        float brightness = max(dot(unitNormal, unitToLight), 0.0);
+
+        total += brightness * falloff * falloff * cone * colorInner.rgb;
+    }
+
+    return total;
+}
+#endif
 
 void main(void)
 {
+    vec4 textureColor = texture(modelTexture, pass_textureCoordinates);
+
+#ifdef ALPHA_TEST
+    if (textureColor.a < 0.5) {
+        discard;
+    }
+#endif
+
     vec3 unitNormal = normalize(surfaceNormal);
     vec3 unitLightVector = normalize(toLightVector);
-    vec3 unitCameraVector = normalize(toCameraVector);
-
-    vec3 lightDirection = -unitLightVector;
-    vec3 reflectedLightDirection = reflect(lightDirection, unitNormal);
 
     float brightness = dot(unitNormal, unitLightVector);
     brightness = max(brightness, 0.15);
     vec3 diffusion = brightness * lightColor;
+#ifdef CLUSTERED_LIGHTS
+    diffusion += localLighting(unitNormal);
+#endif
+
+    out_Color = vec4(diffusion, 1.0) * textureColor;
+
+#ifdef SPECULAR
+    vec3 unitCameraVector = normalize(toCameraVector);
+    vec3 lightDirection = -unitLightVector;
+    vec3 reflectedLightDirection = reflect(lightDirection, unitNormal);
 
     float specularFactor = dot(reflectedLightDirection, unitCameraVector);
     specularFactor = max(specularFactor, 0.0);
     float dampedFactor = pow(specularFactor, shineDamping);
     vec3 finalSpecular = dampedFactor * reflectivity * lightColor;
 
-    vec4 textureColor = texture(modelTexture, pass_textureCoordinates);
-    if (textureColor.a < 0.5) {
-        discard;
-    }
+    out_Color += vec4(finalSpecular, 1.0);
+#endif
 
-    out_Color = vec4(diffusion, 1.0) * textureColor + vec4(finalSpecular, 1.0);
+#ifdef FOG
     out_Color = mix(vec4(skyColor, 1.0), out_Color, visibility);
+#endif
 }
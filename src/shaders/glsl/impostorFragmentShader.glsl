@@ -0,0 +1,20 @@
+#version 150
+
+in vec2 pass_textureCoordinates;
+in float visibility;
+
+out vec4 out_Color;
+
+uniform sampler2D atlas;
+uniform vec3 skyColor;
+
+void main(void)
+{
+    vec4 textureColor = texture(atlas, pass_textureCoordinates);
+
+    if (textureColor.a < 0.5) {
+        discard;
+    }
+
+    out_Color = mix(vec4(skyColor, 1.0), vec4(textureColor.rgb, 1.0), visibility);
+}
@@ -0,0 +1,45 @@
+#version 150
+
+in vec2 corner;
+in vec4 instancePlacement;
+in vec4 instanceBounds;
+
+out vec2 pass_textureCoordinates;
+out float visibility;
+
+uniform mat4 projectionMatrix;
+uniform mat4 viewMatrix;
+uniform vec3 cameraPosition;
+uniform float viewCount;
+uniform float rowCount;
+
+const float density = 0.007;
+const float gradient = 1.5;
+const float TWO_PI = 6.28318530718;
+
+void main(void)
+{
+    // The view rendered by a camera with a yaw of k / viewCount turns, looking at the model unrotated, matches the
+    // direction to the instance once the instance's own rotation is added; see ImpostorAtlas.viewIndex.
+    vec2 toInstance = instancePlacement.xz - cameraPosition.xz;
+    float angle = atan(toInstance.x, -toInstance.y) + radians(instancePlacement.w);
+    float view = mod(floor(angle / TWO_PI * viewCount + 0.5), viewCount);
+
+    // The quad turns around its vertical axis to face the camera, right being the view's right.
+    vec2 right = vec2(-toInstance.y, toInstance.x) / max(length(toInstance), 0.0001);
+
+    vec4 worldPosition = vec4(
+        instancePlacement.x + right.x * corner.x * instanceBounds.x,
+        instancePlacement.y + instanceBounds.y + corner.y * instanceBounds.z,
+        instancePlacement.z + right.y * corner.x * instanceBounds.x,
+        1.0
+    );
+    vec4 positionRelativeToCamera = viewMatrix * worldPosition;
+
+    gl_Position = projectionMatrix * positionRelativeToCamera;
+    pass_textureCoordinates = vec2((view + corner.x * 0.5 + 0.5) / viewCount, (instanceBounds.w + corner.y) / rowCount);
+
+    float distance = length(positionRelativeToCamera.xyz);
+    visibility = exp(-pow(distance * density, gradient));
+    visibility = clamp(visibility, 0.0, 1.0);
+}
@@ -1,10 +1,12 @@
-#version 150
+#version 330 core
 
 in vec2 pass_textureCoordinates;
 in vec3 surfaceNormal;
 in vec3 toLightVector;
 in vec3 toCameraVector;
 in float visibility;
+in vec3 pass_worldPosition;
+in vec4 pass_clipPosition;
 
 out vec4 out_Color;
 
@@ -19,11 +21,51 @@ uniform float shineDamping;
 uniform float reflectivity;
 uniform vec3 skyColor;
 
+uniform samplerBuffer lights;
+uniform usamplerBuffer clusters;
+uniform usamplerBuffer lightIndices;
+uniform vec3 clusterGrid;
+uniform float clusterDepthScale;
+uniform float clusterDepthBias;
+
+// Diffuse light of the local lights in the fragment's cluster. Each light takes three texels: its position and range,
+// its color and the cosine of its inner cone angle, and its direction and the cosine of its outer cone angle.
+vec3 localLighting(vec3 unitNormal)
+{
+    ivec3 grid = ivec3(clusterGrid);
+    vec2 ndc = pass_clipPosition.xy / pass_clipPosition.w;
+    ivec2 tile = clamp(ivec2(floor((ndc * 0.5 + 0.5) * vec2(grid.xy))), ivec2(0), grid.xy - 1);
+    int slice = int(floor(log(pass_clipPosition.w) * clusterDepthScale + clusterDepthBias));
+    slice = clamp(slice, 0, grid.z - 1);
+
+    uvec2 cluster = texelFetch(clusters, (slice * grid.y + tile.y) * grid.x + tile.x).xy;
+    vec3 total = vec3(0.0);
+
+    for (uint i = 0u; i < cluster.y; i++) {
+        int light = int(texelFetch(lightIndices, int(cluster.x + i)).r) * 3;
+        vec4 positionRange = texelFetch(lights, light);
+        vec4 colorInner = texelFetch(lights, light + 1);
+        vec4 directionOuter = texelFetch(lights, light + 2);
+
+        vec3 toLight = positionRange.xyz - pass_worldPosition;
+        float distance = length(toLight);
+        vec3 unitToLight = toLight / max(distance, 0.0001);
+
+        float falloff = clamp(1.0 - distance / positionRange.w, 0.0, 1.0);
+        float cone = smoothstep(directionOuter.w, colorInner.w, dot(-unitToLight, directionOuter.xyz));
+        float brightness = max(dot(unitNormal, unitToLight), 0.0);
+
+        total += brightness * falloff * falloff * cone * colorInner.rgb;
+    }
+
+    return total;
+}
+
 void main(void)
 {
     vec4 blendMapColor = texture(blendMap, pass_textureCoordinates);
 
-    float backgroundTextureAmount = 1 - (blendMapColor.r + blendMapColor.g + blendMapColor.b);
+    float backgroundTextureAmount = max(0.0, 1.0 - (blendMapColor.r + blendMapColor.g + blendMapColor.b));
     vec2 tiledCoordinates = pass_textureCoordinates * 40.0;
 
     vec4 backgroundTextureColor = texture(backgroundTexture, tiledCoordinates) * backgroundTextureAmount;
@@ -42,7 +84,7 @@ void main(void)
 
     float brightness = dot(unitNormal, unitLightVector);
     brightness = max(brightness, 0.15);
-    vec3 diffusion = brightness * lightColor;
+    vec3 diffusion = brightness * lightColor + localLighting(unitNormal);
 
     float specularFactor = dot(reflectedLightDirection, unitCameraVector);
     specularFactor = max(specularFactor, 0.0);
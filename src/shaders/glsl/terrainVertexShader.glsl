@@ -1,30 +1,67 @@
-#version 150
+#version 330 core
 
-in vec3 position;
-in vec2 textureCoordinates;
-in vec3 normal;
+in vec2 position;
+in vec4 patchInstance;
 
 out vec2 pass_textureCoordinates;
 out vec3 surfaceNormal;
 out vec3 toLightVector;
 out vec3 toCameraVector;
 out float visibility;
+out vec3 pass_worldPosition;
+out vec4 pass_clipPosition;
 
 uniform mat4 transformationMatrix;
 uniform mat4 projectionMatrix;
 uniform mat4 viewMatrix;
 uniform vec3 lightPosition;
 
+uniform sampler2D heightMap;
+uniform float cellSize;
+
 const float density = 0.007;
 const float gradient = 1.5;
 
+const int NORTH = 1;
+const int SOUTH = 2;
+const int WEST = 4;
+const int EAST = 8;
+const int PATCH_CELLS = 16;
+
+float heightAt(ivec2 grid, int lastVertex)
+{
+    return texelFetch(heightMap, clamp(grid, ivec2(0), ivec2(lastVertex)), 0).r;
+}
+
 void main(void)
 {
-    vec4 worldPosition = transformationMatrix * vec4(position, 1.0);
+    // Move the odd vertices of edges next to a coarser patch onto the previous even vertex.
+    ivec2 local = ivec2(position);
+    int stitches = int(patchInstance.w);
+
+    if (local.y == 0 && (stitches & NORTH) != 0) local.x &= ~1;
+    if (local.y == PATCH_CELLS && (stitches & SOUTH) != 0) local.x &= ~1;
+    if (local.x == 0 && (stitches & WEST) != 0) local.y &= ~1;
+    if (local.x == PATCH_CELLS && (stitches & EAST) != 0) local.y &= ~1;
+
+    ivec2 grid = ivec2(patchInstance.xy) + local * int(patchInstance.z);
+    int lastVertex = textureSize(heightMap, 0).x - 1;
+
+    // The height map's columns and rows run along the negative X and Z axes of the tile.
+    float height = heightAt(grid, lastVertex);
+    vec4 worldPosition = transformationMatrix * vec4(-grid.x * cellSize, height, -grid.y * cellSize, 1.0);
     vec4 positionRelativeToCamera = viewMatrix * worldPosition;
 
     gl_Position = projectionMatrix * positionRelativeToCamera;
-    pass_textureCoordinates = textureCoordinates;
+    pass_textureCoordinates = vec2(grid) / float(lastVertex);
+    pass_worldPosition = worldPosition.xyz;
+    pass_clipPosition = gl_Position;
+
+    vec3 normal = vec3(
+        heightAt(grid + ivec2(1, 0), lastVertex) - heightAt(grid - ivec2(1, 0), lastVertex),
+        2.0 * cellSize,
+        heightAt(grid + ivec2(0, 1), lastVertex) - heightAt(grid - ivec2(0, 1), lastVertex)
+    );
 
     surfaceNormal = (transformationMatrix * vec4(normal, 0.0)).xyz;
     toLightVector = lightPosition - worldPosition.xyz;
@@ -0,0 +1,72 @@
+#version 150
+
+in vec3 position;
+in vec2 textureCoordinates;
+in vec3 normal;
+in vec4 instancePlacement;
+in float instanceRotation;
+
+out vec2 pass_textureCoordinates;
+out vec3 surfaceNormal;
+out vec3 toLightVector;
+#ifdef SPECULAR
+out vec3 toCameraVector;
+#endif
+#ifdef FOG
+out float visibility;
+#endif
+#ifdef CLUSTERED_LIGHTS
+out vec3 pass_worldPosition;
+out vec4 pass_clipPosition;
+#endif
+
+uniform mat4 projectionMatrix;
+uniform mat4 viewMatrix;
+uniform vec3 lightPosition;
+uniform vec3 cameraPosition;
+uniform float fadeStart;
+uniform float fadeEnd;
+
+const float density = 0.007;
+const float gradient = 1.5;
+
+void main(void)
+{
+    // Instances shrink to nothing between the two fade distances instead of popping out.
+    float distanceToCamera = length(instancePlacement.xyz - cameraPosition);
+    float fade = clamp((fadeEnd - distanceToCamera) / (fadeEnd - fadeStart), 0.0, 1.0);
+
+    float angle = radians(instanceRotation);
+    float s = sin(angle);
+    float c = cos(angle);
+    mat3 rotation = mat3(c, 0.0, -s, 0.0, 1.0, 0.0, s, 0.0, c);
+
+    vec4 worldPosition = vec4(instancePlacement.xyz + rotation * position * (instancePlacement.w * fade), 1.0);
+    vec4 positionRelativeToCamera = viewMatrix * worldPosition;
+
+    gl_Position = projectionMatrix * positionRelativeToCamera;
+    pass_textureCoordinates = textureCoordinates;
+
+#ifdef CLUSTERED_LIGHTS
+    pass_worldPosition = worldPosition.xyz;
+    pass_clipPosition = gl_Position;
+#endif
+
+#ifdef FAKE_LIGHTING
+    surfaceNormal = vec3(0.0, 1.0, 0.0);
+#else
+    surfaceNormal = rotation * normal;
+#endif
+
+    toLightVector = lightPosition - worldPosition.xyz;
+
+#ifdef SPECULAR
+    toCameraVector = cameraPosition - worldPosition.xyz;
+#endif
+
+#ifdef FOG
+    float distance = length(positionRelativeToCamera.xyz);
+    visibility = exp(-pow(distance * density, gradient));
+    visibility = clamp(visibility, 0.0, 1.0);
+#endif
+}
@@ -7,16 +7,22 @@ in vec3 normal;
 out vec2 pass_textureCoordinates;
 out vec3 surfaceNormal;
 out vec3 toLightVector;
+#ifdef SPECULAR
 out vec3 toCameraVector;
+#endif
+#ifdef FOG
 out float visibility;
+#endif
+#ifdef CLUSTERED_LIGHTS
+out vec3 pass_worldPosition;
+out vec4 pass_clipPosition;
+#endif
 
 uniform mat4 transformationMatrix;
 uniform mat4 projectionMatrix;
 uniform mat4 viewMatrix;
 uniform vec3 lightPosition;
 
-uniform float useFakeLighting;
-
 const float density = 0.007;
 const float gradient = 1.5;
 
@@ -28,17 +34,26 @@ void main(void)
     gl_Position = projectionMatrix * positionRelativeToCamera;
     pass_textureCoordinates = textureCoordinates;
 
-    vec3 actualNormal = normal;
+#ifdef CLUSTERED_LIGHTS
+    pass_worldPosition = worldPosition.xyz;
+    pass_clipPosition = gl_Position;
+#endif
 
-    if (useFakeLighting > 0.5) {
-        actualNormal = vec3(0.0, 1.0, 0.0);
-    }
+#ifdef FAKE_LIGHTING
+    surfaceNormal = (transformationMatrix * vec4(0.0, 1.0, 0.0, 0.0)).xyz;
+#else
+    surfaceNormal = (transformationMatrix * vec4(normal, 0.0)).xyz;
+#endif
 
-    surfaceNormal = (transformationMatrix * vec4(actualNormal, 0.0)).xyz;
     toLightVector = lightPosition - worldPosition.xyz;
+
+#ifdef SPECULAR
     toCameraVector = (inverse(viewMatrix) * vec4(0.0, 0.0, 0.0, 1.0) - worldPosition).xyz;
+#endif
 
+#ifdef FOG
     float distance = length(positionRelativeToCamera.xyz);
     visibility = exp(-pow(distance * density, gradient));
     visibility = clamp(visibility, 0.0, 1.0);
+#endif
 }
@@ -0,0 +1,21 @@
+package simulation;
+
+/**
+ * Game logic advanced in fixed steps by a {@link SimulationLoop}, possibly on a thread of its own. Nothing a simulation
+ * touches may be read by the render thread except through the snapshots it captures.
+ */
+public interface Simulation {
+    /**
+     * Advance the simulation by one step.
+     *
+     * @param deltaTime Time step in seconds.
+     */
+    void step(float deltaTime);
+
+    /**
+     * Capture the transforms the render thread needs after a step.
+     *
+     * @param snapshot Snapshot to be filled, owned by the simulation until it is published.
+     */
+    void capture(TransformSnapshot snapshot);
+}
@@ -0,0 +1,276 @@
+package simulation;
+
+import org.lwjgl.util.vector.Vector3f;
+
+import java.io.PrintStream;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a simulation in fixed steps and hands its transforms to the render thread through a {@link TripleBuffer} of
+ * snapshots, so a slow step never holds up a frame and a slow frame never holds up a step.
+ * <p>
+ * In threaded mode the simulation runs on its own thread, paced to the wall clock, and publishes a snapshot after every
+ * step. In single-threaded mode, meant for debugging, the render thread runs the steps that are due at the start of
+ * each frame, through the same snapshots. Either way the render thread draws the transforms interpolated between the
+ * last two snapshots it acquired, so motion stays smooth when the frame rate and the step rate differ.
+ * <p>
+ * The render thread copies every snapshot it acquires into one of two snapshots of its own. The front slot of the
+ * triple buffer goes back to the simulation thread on the next acquisition, so it cannot be read after that.
+ */
+public class SimulationLoop {
+    private static final int MAX_CATCH_UP_STEPS = 5;
+
+    private final Simulation SIMULATION;
+    private final TripleBuffer<TransformSnapshot> SNAPSHOTS;
+    private final float TIMESTEP;
+    private final long STEP_NANOS;
+    private final boolean THREADED;
+
+    private Thread thread;
+    private volatile boolean running = false;
+    private volatile Throwable failure;
+
+    private long tick = 0;
+    private float accumulator = 0;
+
+    private TransformSnapshot previous;
+    private TransformSnapshot current;
+    private float alpha = 0;
+
+    private volatile long totalStepNanos = 0;
+    private volatile long maxStepNanos = 0;
+    private long frames = 0;
+    private long totalLatencyNanos = 0;
+    private long maxLatencyNanos = 0;
+
+    /**
+     * Create a new simulation loop.
+     *
+     * @param simulation     Simulation to be run.
+     * @param timestep       Fixed time step of the simulation in seconds.
+     * @param transformCount Number of transforms in each snapshot.
+     * @param threaded       True to run the simulation on its own thread, false to run it on the render thread.
+     */
+    public SimulationLoop(Simulation simulation, float timestep, int transformCount, boolean threaded) {
+        this.SIMULATION = simulation;
+        this.SNAPSHOTS = new TripleBuffer<>(() -> new TransformSnapshot(transformCount));
+        this.TIMESTEP = timestep;
+        this.STEP_NANOS = Math.round(timestep * 1e9);
+        this.THREADED = threaded;
+        this.previous = new TransformSnapshot(transformCount);
+        this.current = new TransformSnapshot(transformCount);
+    }
+
+    /**
+     * Publish the simulation's initial state, then start the simulation thread in threaded mode.
+     */
+    public void start() {
+        publish();
+        running = true;
+
+        if (THREADED) {
+            thread = new Thread(this::run, "simulation");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Prepare a frame on the render thread: run the steps that are due in single-threaded mode, acquire the latest
+     * snapshot and work out how far the frame is between it and the one before. When several steps are due, each
+     * snapshot but the last is acquired right after its step, so the one before the latest is always one step older.
+     * In threaded mode the render thread may miss snapshots, so the one before the latest can be several steps older;
+     * the frame is then drawn at the same point in time it would be drawn at without the gap, up to one step behind
+     * the latest snapshot.
+     *
+     * @param deltaTime Time since the last frame in seconds, only used in single-threaded mode.
+     * @throws RuntimeException If the simulation thread failed.
+     */
+    public void update(float deltaTime) {
+        if (failure != null) throw new RuntimeException(failure);
+
+        if (!THREADED) {
+            accumulator += deltaTime;
+
+            for (int steps = 0; accumulator >= TIMESTEP && steps < MAX_CATCH_UP_STEPS; steps++) {
+                if (steps > 0) acquireLatest();
+                step();
+                accumulator -= TIMESTEP;
+            }
+
+            accumulator = Math.min(accumulator, TIMESTEP);
+        }
+
+        acquireLatest();
+        long now = System.nanoTime();
+
+        long latency = now - current.publishNanos();
+        totalLatencyNanos += latency;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+        frames++;
+
+        if (THREADED) {
+            float progress = Math.min(1, latency / (float) STEP_NANOS);
+            long gap = current.tick() - previous.tick();
+            alpha = gap <= 1 ? progress : (gap - 1 + progress) / gap;
+        }
+
+        else {
+            alpha = accumulator / TIMESTEP;
+        }
+    }
+
+    /**
+     * Get a transform for the current frame, interpolated between the last two snapshots.
+     *
+     * @param slot     Index of the transform.
+     * @param position Destination for the position.
+     * @param rotation Destination for the rotation.
+     * @return Interpolated scale.
+     */
+    public float interpolate(int slot, Vector3f position, Vector3f rotation) {
+        return TransformSnapshot.interpolate(previous, current, alpha, slot, position, rotation);
+    }
+
+    /**
+     * Acquire the latest snapshot and, if it is new, copy it into the render thread's own current snapshot, keeping
+     * the one it replaces as the previous snapshot. The first snapshot is also used as the previous one.
+     */
+    private void acquireLatest() {
+        TransformSnapshot latest = SNAPSHOTS.acquire();
+        if (latest.tick() == current.tick()) return;
+
+        TransformSnapshot replaced = previous;
+        previous = current;
+        current = replaced;
+        current.copyFrom(latest);
+
+        if (previous.tick() < 0) previous.copyFrom(latest);
+    }
+
+    /**
+     * Stop the simulation thread and wait for it to finish its step.
+     */
+    public void stop() {
+        running = false;
+        if (thread == null) return;
+
+        try {
+            thread.join();
+        }
+
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Print the step times, the snapshot latency seen by the render thread, and how often the two threads missed each
+     * other's snapshots.
+     *
+     * @param out Stream to print to.
+     */
+    public void print(PrintStream out) {
+        out.printf(
+                "Simulation (%s): %d steps, %.3f ms average step, %.3f ms worst%n",
+                THREADED ? "threaded" : "single-threaded", tick, tick == 0 ? 0 : totalStepNanos / 1e6 / tick,
+                maxStepNanos / 1e6
+        );
+        out.printf(
+                "Snapshots: %d published, %d dropped unseen, %d frames reused a snapshot, "
+                        + "%.3f ms average latency, %.3f ms worst%n",
+                SNAPSHOTS.published(), SNAPSHOTS.dropped(), SNAPSHOTS.stale(), averageLatencyMillis(),
+                maxLatencyNanos / 1e6
+        );
+    }
+
+    /**
+     * Run steps at the fixed rate on the simulation thread until stopped. A simulation that falls more than a few
+     * steps behind drops the backlog instead of trying to catch up with it. Anything the simulation throws, errors
+     * included, stops the thread and is rethrown on the render thread by the next {@link #update(float)}.
+     */
+    private void run() {
+        long nextStep = System.nanoTime();
+
+        try {
+            while (running) {
+                long now = System.nanoTime();
+
+                if (now < nextStep) {
+                    LockSupport.parkNanos(nextStep - now);
+                    continue;
+                }
+
+                if (now - nextStep > MAX_CATCH_UP_STEPS * STEP_NANOS) nextStep = now;
+
+                step();
+                nextStep += STEP_NANOS;
+            }
+        }
+
+        catch (Throwable e) {
+            System.err.println("The simulation thread failed.");
+            failure = e;
+        }
+    }
+
+    /**
+     * Advance the simulation by one step and publish its snapshot.
+     */
+    private void step() {
+        long start = System.nanoTime();
+        SIMULATION.step(TIMESTEP);
+
+        long stepNanos = System.nanoTime() - start;
+        totalStepNanos += stepNanos;
+        maxStepNanos = Math.max(maxStepNanos, stepNanos);
+
+        tick++;
+        publish();
+    }
+
+    /**
+     * Capture the simulation into the back snapshot and publish it.
+     */
+    private void publish() {
+        TransformSnapshot snapshot = SNAPSHOTS.back();
+        SIMULATION.capture(snapshot);
+        snapshot.stamp(tick, System.nanoTime());
+        SNAPSHOTS.publish();
+    }
+
+    public boolean isThreaded() {
+        return THREADED;
+    }
+
+    /**
+     * Get the fraction of the way from the previous snapshot to the latest one the current frame is drawn at.
+     *
+     * @return Interpolation factor between 0 and 1.
+     */
+    public float alpha() {
+        return alpha;
+    }
+
+    /**
+     * Get the number of the step the latest snapshot acquired by the render thread was captured at.
+     *
+     * @return Tick of the latest snapshot.
+     */
+    public long currentTick() {
+        return current.tick();
+    }
+
+    public float averageLatencyMillis() {
+        return frames == 0 ? 0 : totalLatencyNanos / 1e6f / frames;
+    }
+
+    public long droppedSnapshots() {
+        return SNAPSHOTS.dropped();
+    }
+
+    public long staleFrames() {
+        return SNAPSHOTS.stale();
+    }
+}
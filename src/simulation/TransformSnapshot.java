@@ -0,0 +1,136 @@
+package simulation;
+
+import org.lwjgl.util.vector.ReadableVector3f;
+import org.lwjgl.util.vector.Vector3f;
+
+/**
+ * Positions, rotations and scales of a fixed set of transforms, such as the player and the camera, captured by the
+ * simulation at the end of a step. A snapshot is written only while the simulation owns it and is never changed after
+ * being published, until the render thread has handed it back.
+ */
+public class TransformSnapshot {
+    private static final int STRIDE = 7;
+
+    private final float[] TRANSFORMS;
+    private final int CAPACITY;
+
+    private long tick = -1;
+    private long publishNanos = 0;
+
+    /**
+     * Create a new empty snapshot.
+     *
+     * @param capacity Number of transforms in the snapshot.
+     */
+    public TransformSnapshot(int capacity) {
+        this.TRANSFORMS = new float[capacity * STRIDE];
+        this.CAPACITY = capacity;
+    }
+
+    /**
+     * Store a transform.
+     *
+     * @param slot     Index of the transform.
+     * @param position Position.
+     * @param rotation Rotation around each axis in degrees.
+     * @param scale    Scale.
+     */
+    public void set(int slot, ReadableVector3f position, ReadableVector3f rotation, float scale) {
+        int offset = slot * STRIDE;
+
+        TRANSFORMS[offset] = position.getX();
+        TRANSFORMS[offset + 1] = position.getY();
+        TRANSFORMS[offset + 2] = position.getZ();
+        TRANSFORMS[offset + 3] = rotation.getX();
+        TRANSFORMS[offset + 4] = rotation.getY();
+        TRANSFORMS[offset + 5] = rotation.getZ();
+        TRANSFORMS[offset + 6] = scale;
+    }
+
+    /**
+     * Copy every transform and the stamp of another snapshot.
+     *
+     * @param other Snapshot to be copied.
+     */
+    public void copyFrom(TransformSnapshot other) {
+        System.arraycopy(other.TRANSFORMS, 0, TRANSFORMS, 0, TRANSFORMS.length);
+        tick = other.tick;
+        publishNanos = other.publishNanos;
+    }
+
+    /**
+     * Stamp the snapshot with the step it was captured at, just before it is published.
+     *
+     * @param tick         Number of steps simulated.
+     * @param publishNanos Time the snapshot was published.
+     */
+    void stamp(long tick, long publishNanos) {
+        this.tick = tick;
+        this.publishNanos = publishNanos;
+    }
+
+    /**
+     * Interpolate a transform between two snapshots. Rotations take the shorter way around.
+     *
+     * @param from     Earlier snapshot.
+     * @param to       Later snapshot.
+     * @param alpha    Fraction of the way from the earlier snapshot to the later one.
+     * @param slot     Index of the transform.
+     * @param position Destination for the position.
+     * @param rotation Destination for the rotation.
+     * @return Interpolated scale.
+     */
+    public static float interpolate(
+            TransformSnapshot from, TransformSnapshot to, float alpha, int slot, Vector3f position, Vector3f rotation
+    ) {
+        float[] a = from.TRANSFORMS;
+        float[] b = to.TRANSFORMS;
+        int offset = slot * STRIDE;
+
+        position.set(
+                a[offset] + (b[offset] - a[offset]) * alpha,
+                a[offset + 1] + (b[offset + 1] - a[offset + 1]) * alpha,
+                a[offset + 2] + (b[offset + 2] - a[offset + 2]) * alpha
+        );
+        rotation.set(
+                interpolateAngle(a[offset + 3], b[offset + 3], alpha),
+                interpolateAngle(a[offset + 4], b[offset + 4], alpha),
+                interpolateAngle(a[offset + 5], b[offset + 5], alpha)
+        );
+
+        return a[offset + 6] + (b[offset + 6] - a[offset + 6]) * alpha;
+    }
+
+    /**
+     * Interpolate between two angles the shorter way around.
+     *
+     * @param from  Earlier angle in degrees.
+     * @param to    Later angle in degrees.
+     * @param alpha Fraction of the way from the earlier angle to the later one.
+     * @return Interpolated angle in degrees.
+     */
+    private static float interpolateAngle(float from, float to, float alpha) {
+        float difference = (to - from) % 360;
+        if (difference > 180) difference -= 360;
+        else if (difference < -180) difference += 360;
+
+        return from + difference * alpha;
+    }
+
+    public int capacity() {
+        return CAPACITY;
+    }
+
+    /**
+     * Get the number of steps simulated when the snapshot was captured.
+     *
+     * @return Tick of the snapshot, or -1 if it was never published.
+     */
+    public long tick() {
+        return tick;
+    }
+
+    public long publishNanos() {
+        return publishNanos;
+    }
+}
@@ -0,0 +1,115 @@
+package simulation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free hand-off of the latest value from one producer thread to one consumer thread, over three slots.
+ * <p>
+ * The producer owns the back slot and the consumer the front slot; the third slot sits in the middle, holding the last
+ * published value. Publishing swaps the back slot with the middle one, and acquiring swaps the front slot with the
+ * middle one if a fresh value is waiting there, each with a single atomic exchange. Neither side ever waits for the
+ * other, and a slot is only written by the producer while no other thread can see it, so the consumer never reads a
+ * half-written value. Values published while the consumer was busy are overwritten and counted as dropped.
+ *
+ * @param <T> Type of the values.
+ */
+public class TripleBuffer<T> {
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;
+
+    private final Object[] SLOTS = new Object[3];
+    private final AtomicInteger MIDDLE = new AtomicInteger(1);
+
+    private int back = 0;
+    private int front = 2;
+
+    private volatile long published = 0;
+    private volatile long dropped = 0;
+    private long acquired = 0;
+    private long stale = 0;
+
+    /**
+     * Create a new triple buffer.
+     *
+     * @param factory Factory creating the value of each of the three slots.
+     */
+    public TripleBuffer(Supplier<T> factory) {
+        for (int i = 0; i < SLOTS.length; i++) SLOTS[i] = factory.get();
+    }
+
+    /**
+     * Get the back slot, which only the producer may write to until it publishes it.
+     *
+     * @return Value of the back slot.
+     */
+    @SuppressWarnings("unchecked")
+    public T back() {
+        return (T) SLOTS[back];
+    }
+
+    /**
+     * Publish the back slot as the latest value and take over the slot it replaces as the new back slot. Producer
+     * thread only.
+     */
+    public void publish() {
+        int previous = MIDDLE.getAndSet(back | FRESH);
+        back = previous & INDEX_MASK;
+
+        if ((previous & FRESH) != 0) dropped++;
+        published++;
+    }
+
+    /**
+     * Get the latest published value, taking it over as the front slot if it is newer than the current one. Consumer
+     * thread only; the value stays untouched until the next call.
+     *
+     * @return Value of the front slot.
+     */
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        if ((MIDDLE.get() & FRESH) == 0) {
+            stale++;
+            return (T) SLOTS[front];
+        }
+
+        front = MIDDLE.getAndSet(front) & INDEX_MASK;
+        acquired++;
+        return (T) SLOTS[front];
+    }
+
+    /**
+     * Check if a value was published since the consumer last acquired one.
+     *
+     * @return True if a fresh value is waiting, else false.
+     */
+    public boolean hasFresh() {
+        return (MIDDLE.get() & FRESH) != 0;
+    }
+
+    public long published() {
+        return published;
+    }
+
+    /**
+     * Get the number of published values that were replaced before the consumer acquired them.
+     *
+     * @return Number of dropped values.
+     */
+    public long dropped() {
+        return dropped;
+    }
+
+    public long acquired() {
+        return acquired;
+    }
+
+    /**
+     * Get the number of times the consumer found no fresh value and kept the one it had.
+     *
+     * @return Number of stale acquisitions.
+     */
+    public long stale() {
+        return stale;
+    }
+}
@@ -0,0 +1,80 @@
+package spatial;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffer of handles returned by a spatial query, with a distance per handle for queries that produce one.
+ * The buffer grows as needed and keeps its capacity between queries, so a warmed up query allocates nothing.
+ */
+public class QueryResults {
+    private int[] handles;
+    private float[] distances;
+    private int size = 0;
+
+    /**
+     * Create a new empty buffer.
+     *
+     * @param initialCapacity Number of results the buffer can hold before it has to grow.
+     */
+    public QueryResults(int initialCapacity) {
+        handles = new int[Math.max(1, initialCapacity)];
+        distances = new float[handles.length];
+    }
+
+    /**
+     * Remove every result, keeping the capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Add a result without a distance.
+     *
+     * @param handle Handle of the result.
+     */
+    void add(int handle) {
+        add(handle, 0);
+    }
+
+    /**
+     * Add a result.
+     *
+     * @param handle   Handle of the result.
+     * @param distance Distance of the result, such as the distance along a ray.
+     */
+    void add(int handle, float distance) {
+        if (size == handles.length) {
+            handles = Arrays.copyOf(handles, size * 2);
+            distances = Arrays.copyOf(distances, size * 2);
+        }
+
+        handles[size] = handle;
+        distances[size] = distance;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the handle of a result.
+     *
+     * @param index Index of the result.
+     * @return Handle of the result.
+     */
+    public int handle(int index) {
+        return handles[index];
+    }
+
+    /**
+     * Get the distance of a result, for queries that produce one.
+     *
+     * @param index Index of the result.
+     * @return Distance of the result, or 0 if the query doesn't produce distances.
+     */
+    public float distance(int index) {
+        return distances[index];
+    }
+}
@@ -0,0 +1,745 @@
+package spatial;
+
+import java.util.Arrays;
+
+/**
+ * Loose uniform grid over the XZ plane for finding items by their bounding spheres, hashed so the world has no bounds.
+ * <p>
+ * Each item is stored in the cell containing its centre, in an intrusive doubly linked list per hash bucket, so it may
+ * overhang that cell by up to half a cell; queries widen their cell range by that much. Items larger than that are
+ * kept in a separate list checked by every query. Items are addressed by integer handles, and moving an item only
+ * relinks it when it crosses into another cell. A query walks the buckets of the cells it covers and tests the items
+ * there exactly, so its cost follows the size of the queried region and its results rather than the size of the
+ * world. Cells hashing to the same bucket share its list; items are filtered by their own cell, so nothing is reported
+ * twice.
+ *
+ * @param <T> Type of the items.
+ */
+public class SpatialGrid<T> {
+    private static final int FREE = -1;
+    private static final int OVERSIZED = -2;
+    private static final int NONE = -1;
+
+    private final float CELL_SIZE;
+    private final float INVERSE_CELL_SIZE;
+    private final float MAX_RADIUS;
+    private final int[] HEADS;
+    private final int BUCKET_MASK;
+
+    private Object[] items;
+    private float[] centresX;
+    private float[] centresY;
+    private float[] centresZ;
+    private float[] radii;
+    private int[] cellsX;
+    private int[] cellsZ;
+    private int[] buckets;
+    private int[] next;
+    private int[] previous;
+    private int[] stamps;
+
+    private int capacity;
+    private int highWater = 0;
+    private int freeHead = NONE;
+    private int oversizedHead = NONE;
+    private int size = 0;
+    private int stamp = 0;
+
+    private float lowestY = Float.POSITIVE_INFINITY;
+    private float highestY = Float.NEGATIVE_INFINITY;
+
+    private final float[] FRUSTUM_CORNERS = new float[24];
+
+    /**
+     * Create a new spatial grid.
+     *
+     * @param cellSize      Width of a cell. Items up to half as wide in radius are stored in the grid itself.
+     * @param expectedItems Number of items the grid is sized for; it holds any number, but hash buckets are shared
+     *                      more as it fills past this.
+     */
+    public SpatialGrid(float cellSize, int expectedItems) {
+        if (cellSize <= 0 || expectedItems < 1) {
+            throw new IllegalArgumentException("A spatial grid needs a positive cell size and expected item count.");
+        }
+
+        this.CELL_SIZE = cellSize;
+        this.INVERSE_CELL_SIZE = 1 / cellSize;
+        this.MAX_RADIUS = cellSize / 2;
+
+        int bucketCount = Integer.highestOneBit(Math.max(16, expectedItems - 1)) << 1;
+        this.HEADS = new int[bucketCount];
+        this.BUCKET_MASK = bucketCount - 1;
+        Arrays.fill(HEADS, NONE);
+
+        allocate(Math.max(16, expectedItems));
+    }
+
+    /**
+     * Add an item to the grid.
+     *
+     * @param item   Item to be added.
+     * @param x      X position of the centre of its bounding sphere.
+     * @param y      Y position of the centre of its bounding sphere.
+     * @param z      Z position of the centre of its bounding sphere.
+     * @param radius Radius of its bounding sphere.
+     * @return Handle of the item, valid until it is removed.
+     */
+    public int insert(T item, float x, float y, float z, float radius) {
+        int handle;
+
+        if (freeHead != NONE) {
+            handle = freeHead;
+            freeHead = next[handle];
+        }
+
+        else {
+            if (highWater == capacity) allocate(capacity * 2);
+            handle = highWater++;
+        }
+
+        items[handle] = item;
+        centresX[handle] = x;
+        centresY[handle] = y;
+        centresZ[handle] = z;
+        radii[handle] = radius;
+        lowestY = Math.min(lowestY, y);
+        highestY = Math.max(highestY, y);
+        stamps[handle] = stamp;
+        size++;
+
+        link(handle);
+        return handle;
+    }
+
+    /**
+     * Remove an item from the grid, freeing its handle for reuse.
+     *
+     * @param handle Handle of the item.
+     */
+    public void remove(int handle) {
+        checkHandle(handle);
+        unlink(handle);
+
+        items[handle] = null;
+        buckets[handle] = FREE;
+        next[handle] = freeHead;
+        freeHead = handle;
+        size--;
+    }
+
+    /**
+     * Move an item, relinking it only if its centre crossed into another cell.
+     *
+     * @param handle Handle of the item.
+     * @param x      New X position of the centre of its bounding sphere.
+     * @param y      New Y position of the centre of its bounding sphere.
+     * @param z      New Z position of the centre of its bounding sphere.
+     */
+    public void move(int handle, float x, float y, float z) {
+        checkHandle(handle);
+
+        centresX[handle] = x;
+        centresY[handle] = y;
+        centresZ[handle] = z;
+        lowestY = Math.min(lowestY, y);
+        highestY = Math.max(highestY, y);
+
+        if (buckets[handle] == OVERSIZED) return;
+        if (cellsX[handle] == cell(x) && cellsZ[handle] == cell(z)) return;
+
+        unlink(handle);
+        link(handle);
+    }
+
+    /**
+     * Change the radius of an item's bounding sphere, moving it in or out of the oversized list if needed.
+     *
+     * @param handle Handle of the item.
+     * @param radius New radius of its bounding sphere.
+     */
+    public void resize(int handle, float radius) {
+        checkHandle(handle);
+
+        boolean wasOversized = buckets[handle] == OVERSIZED;
+        radii[handle] = radius;
+
+        if (wasOversized != radius > MAX_RADIUS) {
+            unlink(handle);
+            link(handle);
+        }
+    }
+
+    /**
+     * Find every item whose bounding sphere overlaps a sphere.
+     *
+     * @param x       X position of the sphere's centre.
+     * @param y       Y position of the sphere's centre.
+     * @param z       Z position of the sphere's centre.
+     * @param radius  Radius of the sphere.
+     * @param results Buffer for the handles of the items, cleared first.
+     * @return Number of items found.
+     */
+    public int querySphere(float x, float y, float z, float radius, QueryResults results) {
+        results.clear();
+        nextStamp();
+
+        int minCellX = cell(x - radius - MAX_RADIUS);
+        int maxCellX = cell(x + radius + MAX_RADIUS);
+        int minCellZ = cell(z - radius - MAX_RADIUS);
+        int maxCellZ = cell(z + radius + MAX_RADIUS);
+
+        for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                for (int handle = HEADS[bucket(cellX, cellZ)]; handle != NONE; handle = next[handle]) {
+                    if (cellsX[handle] != cellX || cellsZ[handle] != cellZ) continue;
+                    if (overlapsSphere(handle, x, y, z, radius)) results.add(handle);
+                }
+            }
+        }
+
+        for (int handle = oversizedHead; handle != NONE; handle = next[handle]) {
+            if (overlapsSphere(handle, x, y, z, radius)) results.add(handle);
+        }
+
+        return results.size();
+    }
+
+    /**
+     * Find every item whose bounding sphere overlaps an axis-aligned box.
+     *
+     * @param minX    Smallest X of the box.
+     * @param minY    Smallest Y of the box.
+     * @param minZ    Smallest Z of the box.
+     * @param maxX    Largest X of the box.
+     * @param maxY    Largest Y of the box.
+     * @param maxZ    Largest Z of the box.
+     * @param results Buffer for the handles of the items, cleared first.
+     * @return Number of items found.
+     */
+    public int queryAabb(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, QueryResults results) {
+        results.clear();
+        nextStamp();
+
+        int minCellX = cell(minX - MAX_RADIUS);
+        int maxCellX = cell(maxX + MAX_RADIUS);
+        int minCellZ = cell(minZ - MAX_RADIUS);
+        int maxCellZ = cell(maxZ + MAX_RADIUS);
+
+        for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                for (int handle = HEADS[bucket(cellX, cellZ)]; handle != NONE; handle = next[handle]) {
+                    if (cellsX[handle] != cellX || cellsZ[handle] != cellZ) continue;
+                    if (overlapsAabb(handle, minX, minY, minZ, maxX, maxY, maxZ)) results.add(handle);
+                }
+            }
+        }
+
+        for (int handle = oversizedHead; handle != NONE; handle = next[handle]) {
+            if (overlapsAabb(handle, minX, minY, minZ, maxX, maxY, maxZ)) results.add(handle);
+        }
+
+        return results.size();
+    }
+
+    /**
+     * Find every item whose bounding sphere is at least partly inside a view frustum. The cells within the
+     * rectangle around the frustum's footprint on the XZ plane are each tested against the frustum before their items
+     * are.
+     *
+     * @param planes  Six normalized frustum planes as (a, b, c, d), see
+     *                {@link toolbox.EngineMath#extractFrustumPlanes}.
+     * @param results Buffer for the handles of the items, cleared first.
+     * @return Number of items found.
+     */
+    public int queryFrustum(float[] planes, QueryResults results) {
+        results.clear();
+        nextStamp();
+
+        computeFrustumCorners(planes);
+
+        float minX = Float.POSITIVE_INFINITY;
+        float minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxZ = Float.NEGATIVE_INFINITY;
+
+        for (int corner = 0; corner < 24; corner += 3) {
+            minX = Math.min(minX, FRUSTUM_CORNERS[corner]);
+            maxX = Math.max(maxX, FRUSTUM_CORNERS[corner]);
+            minZ = Math.min(minZ, FRUSTUM_CORNERS[corner + 2]);
+            maxZ = Math.max(maxZ, FRUSTUM_CORNERS[corner + 2]);
+        }
+
+        int minCellX = cell(minX - MAX_RADIUS);
+        int maxCellX = cell(maxX + MAX_RADIUS);
+        int minCellZ = cell(minZ - MAX_RADIUS);
+        int maxCellZ = cell(maxZ + MAX_RADIUS);
+
+        for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                if (!cellInsideFrustum(cellX, cellZ, planes)) continue;
+
+                for (int handle = HEADS[bucket(cellX, cellZ)]; handle != NONE; handle = next[handle]) {
+                    if (cellsX[handle] != cellX || cellsZ[handle] != cellZ) continue;
+                    if (insideFrustum(handle, planes)) results.add(handle);
+                }
+            }
+        }
+
+        for (int handle = oversizedHead; handle != NONE; handle = next[handle]) {
+            if (insideFrustum(handle, planes)) results.add(handle);
+        }
+
+        return results.size();
+    }
+
+    /**
+     * Find every item whose bounding sphere is hit by a ray, with the distance along the ray to where it enters the
+     * sphere, or 0 if it starts inside. The cells along the ray are walked from its origin with a 3D-DDA restricted to
+     * the XZ plane, widened by one cell on each side for the items overhanging their cells, so the results come
+     * roughly nearest first but are not sorted. The walk only covers the part of the ray between the lowest and
+     * highest items.
+     *
+     * @param originX     X position of the ray's origin.
+     * @param originY     Y position of the ray's origin.
+     * @param originZ     Z position of the ray's origin.
+     * @param directionX  X component of the ray's direction, which need not be normalized.
+     * @param directionY  Y component of the ray's direction.
+     * @param directionZ  Z component of the ray's direction.
+     * @param maxDistance Length of the ray, which must be finite since the walk through the cells is not bounded by the
+     *                    items in the grid.
+     * @param results     Buffer for the handles and hit distances of the items, cleared first.
+     * @return Number of items found.
+     */
+    public int queryRay(
+            float originX, float originY, float originZ, float directionX, float directionY, float directionZ,
+            float maxDistance, QueryResults results
+    ) {
+        if (!Float.isFinite(maxDistance)) {
+            throw new IllegalArgumentException("A ray query needs a finite length, not " + maxDistance + ".");
+        }
+
+        results.clear();
+        nextStamp();
+
+        float length = (float) Math.sqrt(directionX * directionX + directionY * directionY + directionZ * directionZ);
+        if (length == 0) return 0;
+
+        float dx = directionX / length;
+        float dy = directionY / length;
+        float dz = directionZ / length;
+
+        // Only the part of the ray within every height an item in a cell has been given can hit one, so the walk
+        // through the cells is clipped to it; rays passing over or under the items walk no cells at all.
+        float walkStart = 0;
+        float walkEnd = maxDistance;
+
+        if (dy != 0) {
+            float lowCrossing = (lowestY - MAX_RADIUS - originY) / dy;
+            float highCrossing = (highestY + MAX_RADIUS - originY) / dy;
+            walkStart = Math.max(0, Math.min(lowCrossing, highCrossing));
+            walkEnd = Math.min(maxDistance, Math.max(lowCrossing, highCrossing));
+        }
+
+        else if (originY < lowestY - MAX_RADIUS || originY > highestY + MAX_RADIUS) {
+            walkEnd = -1;
+        }
+
+        if (walkStart <= walkEnd) {
+            walkRayCells(originX, originY, originZ, dx, dy, dz, maxDistance, walkStart, walkEnd, results);
+        }
+
+        for (int handle = oversizedHead; handle != NONE; handle = next[handle]) {
+            testRay(handle, originX, originY, originZ, dx, dy, dz, maxDistance, results);
+        }
+
+        return results.size();
+    }
+
+    /**
+     * Walk the cells along part of a ray with a 3D-DDA restricted to the XZ plane, testing the items of each cell and
+     * its neighbours against the whole ray.
+     *
+     * @param originX     X position of the ray's origin.
+     * @param originY     Y position of the ray's origin.
+     * @param originZ     Z position of the ray's origin.
+     * @param dx          X component of the ray's normalized direction.
+     * @param dy          Y component of the ray's normalized direction.
+     * @param dz          Z component of the ray's normalized direction.
+     * @param maxDistance Length of the ray.
+     * @param walkStart   Distance along the ray to where the walk starts.
+     * @param walkEnd     Distance along the ray to where the walk ends.
+     * @param results     Buffer for the handles and hit distances of the items.
+     */
+    private void walkRayCells(
+            float originX, float originY, float originZ, float dx, float dy, float dz, float maxDistance,
+            float walkStart, float walkEnd, QueryResults results
+    ) {
+        float startX = originX + dx * walkStart;
+        float startZ = originZ + dz * walkStart;
+
+        int cellX = cell(startX);
+        int cellZ = cell(startZ);
+        int endCellX = cell(originX + dx * walkEnd);
+        int endCellZ = cell(originZ + dz * walkEnd);
+
+        int stepX = dx > 0 ? 1 : -1;
+        int stepZ = dz > 0 ? 1 : -1;
+        float deltaX = dx != 0 ? Math.abs(CELL_SIZE / dx) : Float.POSITIVE_INFINITY;
+        float deltaZ = dz != 0 ? Math.abs(CELL_SIZE / dz) : Float.POSITIVE_INFINITY;
+        float boundaryX = (cellX + (stepX > 0 ? 1 : 0)) * CELL_SIZE;
+        float boundaryZ = (cellZ + (stepZ > 0 ? 1 : 0)) * CELL_SIZE;
+        float nextX = dx != 0 ? walkStart + (boundaryX - startX) / dx : Float.POSITIVE_INFINITY;
+        float nextZ = dz != 0 ? walkStart + (boundaryZ - startZ) / dz : Float.POSITIVE_INFINITY;
+
+        while (true) {
+            for (int neighbourZ = cellZ - 1; neighbourZ <= cellZ + 1; neighbourZ++) {
+                for (int neighbourX = cellX - 1; neighbourX <= cellX + 1; neighbourX++) {
+                    testRayCell(neighbourX, neighbourZ, originX, originY, originZ, dx, dy, dz, maxDistance, results);
+                }
+            }
+
+            if (cellX == endCellX && cellZ == endCellZ) break;
+            if (Math.min(nextX, nextZ) > walkEnd) break;
+
+            if (nextX < nextZ) {
+                cellX += stepX;
+                nextX += deltaX;
+            }
+
+            else {
+                cellZ += stepZ;
+                nextZ += deltaZ;
+            }
+        }
+    }
+
+    /**
+     * Test the items of one cell against a ray, skipping items already tested by this query.
+     *
+     * @param cellX       X position of the cell.
+     * @param cellZ       Z position of the cell.
+     * @param originX     X position of the ray's origin.
+     * @param originY     Y position of the ray's origin.
+     * @param originZ     Z position of the ray's origin.
+     * @param dx          X component of the ray's normalized direction.
+     * @param dy          Y component of the ray's normalized direction.
+     * @param dz          Z component of the ray's normalized direction.
+     * @param maxDistance Length of the ray.
+     * @param results     Buffer for the handles and hit distances of the items.
+     */
+    private void testRayCell(
+            int cellX, int cellZ, float originX, float originY, float originZ, float dx, float dy, float dz,
+            float maxDistance, QueryResults results
+    ) {
+        for (int handle = HEADS[bucket(cellX, cellZ)]; handle != NONE; handle = next[handle]) {
+            if (cellsX[handle] != cellX || cellsZ[handle] != cellZ || stamps[handle] == stamp) continue;
+
+            stamps[handle] = stamp;
+            testRay(handle, originX, originY, originZ, dx, dy, dz, maxDistance, results);
+        }
+    }
+
+    /**
+     * Test one item against a ray, adding it with its hit distance if the ray hits its bounding sphere.
+     *
+     * @param handle      Handle of the item.
+     * @param originX     X position of the ray's origin.
+     * @param originY     Y position of the ray's origin.
+     * @param originZ     Z position of the ray's origin.
+     * @param dx          X component of the ray's normalized direction.
+     * @param dy          Y component of the ray's normalized direction.
+     * @param dz          Z component of the ray's normalized direction.
+     * @param maxDistance Length of the ray.
+     * @param results     Buffer for the handles and hit distances of the items.
+     */
+    private void testRay(
+            int handle, float originX, float originY, float originZ, float dx, float dy, float dz, float maxDistance,
+            QueryResults results
+    ) {
+        float toCentreX = centresX[handle] - originX;
+        float toCentreY = centresY[handle] - originY;
+        float toCentreZ = centresZ[handle] - originZ;
+        float radius = radii[handle];
+
+        float along = toCentreX * dx + toCentreY * dy + toCentreZ * dz;
+        float squaredDistance = toCentreX * toCentreX + toCentreY * toCentreY + toCentreZ * toCentreZ;
+        float squaredMiss = squaredDistance - along * along;
+        if (squaredMiss > radius * radius) return;
+
+        float halfChord = (float) Math.sqrt(radius * radius - squaredMiss);
+        float enter = along - halfChord;
+        float exit = along + halfChord;
+
+        if (exit < 0 || enter > maxDistance) return;
+        results.add(handle, Math.max(0, enter));
+    }
+
+    /**
+     * Check if an item's bounding sphere overlaps a sphere.
+     *
+     * @param handle Handle of the item.
+     * @param x      X position of the sphere's centre.
+     * @param y      Y position of the sphere's centre.
+     * @param z      Z position of the sphere's centre.
+     * @param radius Radius of the sphere.
+     * @return True if they overlap, else false.
+     */
+    private boolean overlapsSphere(int handle, float x, float y, float z, float radius) {
+        float dx = centresX[handle] - x;
+        float dy = centresY[handle] - y;
+        float dz = centresZ[handle] - z;
+        float reach = radii[handle] + radius;
+
+        return dx * dx + dy * dy + dz * dz <= reach * reach;
+    }
+
+    /**
+     * Check if an item's bounding sphere overlaps an axis-aligned box.
+     *
+     * @param handle Handle of the item.
+     * @param minX   Smallest X of the box.
+     * @param minY   Smallest Y of the box.
+     * @param minZ   Smallest Z of the box.
+     * @param maxX   Largest X of the box.
+     * @param maxY   Largest Y of the box.
+     * @param maxZ   Largest Z of the box.
+     * @return True if they overlap, else false.
+     */
+    private boolean overlapsAabb(int handle, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        float x = centresX[handle];
+        float y = centresY[handle];
+        float z = centresZ[handle];
+
+        float dx = x - Math.max(minX, Math.min(maxX, x));
+        float dy = y - Math.max(minY, Math.min(maxY, y));
+        float dz = z - Math.max(minZ, Math.min(maxZ, z));
+
+        return dx * dx + dy * dy + dz * dz <= radii[handle] * radii[handle];
+    }
+
+    /**
+     * Check if an item's bounding sphere is at least partly inside a frustum.
+     *
+     * @param handle Handle of the item.
+     * @param planes Six normalized frustum planes as (a, b, c, d).
+     * @return True if it is inside, else false.
+     */
+    private boolean insideFrustum(int handle, float[] planes) {
+        float x = centresX[handle];
+        float y = centresY[handle];
+        float z = centresZ[handle];
+        float negativeRadius = -radii[handle];
+
+        for (int plane = 0; plane < 24; plane += 4) {
+            float distance = planes[plane] * x + planes[plane + 1] * y + planes[plane + 2] * z + planes[plane + 3];
+            if (distance < negativeRadius) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if any item stored in a cell could be inside a frustum, by testing the box the items of the cell can reach
+     * against each plane. The box spans every height an item has been given, since the grid doesn't split along Y.
+     *
+     * @param cellX  X position of the cell.
+     * @param cellZ  Z position of the cell.
+     * @param planes Six normalized frustum planes as (a, b, c, d).
+     * @return False if the box is entirely outside one of the planes, else true.
+     */
+    private boolean cellInsideFrustum(int cellX, int cellZ, float[] planes) {
+        float minX = cellX * CELL_SIZE - MAX_RADIUS;
+        float maxX = minX + CELL_SIZE + 2 * MAX_RADIUS;
+        float minZ = cellZ * CELL_SIZE - MAX_RADIUS;
+        float maxZ = minZ + CELL_SIZE + 2 * MAX_RADIUS;
+        float minY = lowestY - MAX_RADIUS;
+        float maxY = highestY + MAX_RADIUS;
+
+        for (int plane = 0; plane < 24; plane += 4) {
+            // The corner of the box furthest along the plane's normal.
+            float x = planes[plane] >= 0 ? maxX : minX;
+            float y = planes[plane + 1] >= 0 ? maxY : minY;
+            float z = planes[plane + 2] >= 0 ? maxZ : minZ;
+
+            if (planes[plane] * x + planes[plane + 1] * y + planes[plane + 2] * z + planes[plane + 3] < 0) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Compute the eight corners of a frustum by intersecting each of its near and far planes with each pair of its
+     * side planes.
+     *
+     * @param planes Left, right, bottom, top, near and far planes as (a, b, c, d).
+     */
+    private void computeFrustumCorners(float[] planes) {
+        int corner = 0;
+
+        for (int depth = 16; depth <= 20; depth += 4) {
+            for (int vertical = 8; vertical <= 12; vertical += 4) {
+                for (int horizontal = 0; horizontal <= 4; horizontal += 4) {
+                    intersectPlanes(planes, depth, vertical, horizontal, corner);
+                    corner += 3;
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the point where three planes meet and store it as a frustum corner.
+     *
+     * @param planes Planes as (a, b, c, d), where a point p lies on a plane when a * p.x + b * p.y + c * p.z + d = 0.
+     * @param first  Index of the first plane.
+     * @param second Index of the second plane.
+     * @param third  Index of the third plane.
+     * @param corner Index of the corner's first coordinate.
+     */
+    private void intersectPlanes(float[] planes, int first, int second, int third, int corner) {
+        float ax = planes[first], ay = planes[first + 1], az = planes[first + 2], ad = planes[first + 3];
+        float bx = planes[second], by = planes[second + 1], bz = planes[second + 2], bd = planes[second + 3];
+        float cx = planes[third], cy = planes[third + 1], cz = planes[third + 2], cd = planes[third + 3];
+
+        // p = -(d1 (n2 x n3) + d2 (n3 x n1) + d3 (n1 x n2)) / (n1 . (n2 x n3))
+        float bcX = by * cz - bz * cy, bcY = bz * cx - bx * cz, bcZ = bx * cy - by * cx;
+        float caX = cy * az - cz * ay, caY = cz * ax - cx * az, caZ = cx * ay - cy * ax;
+        float abX = ay * bz - az * by, abY = az * bx - ax * bz, abZ = ax * by - ay * bx;
+        float denominator = -(ax * bcX + ay * bcY + az * bcZ);
+
+        FRUSTUM_CORNERS[corner] = (ad * bcX + bd * caX + cd * abX) / denominator;
+        FRUSTUM_CORNERS[corner + 1] = (ad * bcY + bd * caY + cd * abY) / denominator;
+        FRUSTUM_CORNERS[corner + 2] = (ad * bcZ + bd * caZ + cd * abZ) / denominator;
+    }
+
+    /**
+     * Add an item to the list of the bucket of its cell, or to the oversized list if it is too large for the grid.
+     *
+     * @param handle Handle of the item.
+     */
+    private void link(int handle) {
+        int head;
+
+        if (radii[handle] > MAX_RADIUS) {
+            buckets[handle] = OVERSIZED;
+            head = oversizedHead;
+            oversizedHead = handle;
+        }
+
+        else {
+            int cellX = cell(centresX[handle]);
+            int cellZ = cell(centresZ[handle]);
+            int bucket = bucket(cellX, cellZ);
+
+            cellsX[handle] = cellX;
+            cellsZ[handle] = cellZ;
+            buckets[handle] = bucket;
+            head = HEADS[bucket];
+            HEADS[bucket] = handle;
+        }
+
+        previous[handle] = NONE;
+        next[handle] = head;
+        if (head != NONE) previous[head] = handle;
+    }
+
+    /**
+     * Remove an item from the list it is in.
+     *
+     * @param handle Handle of the item.
+     */
+    private void unlink(int handle) {
+        int before = previous[handle];
+        int after = next[handle];
+
+        if (before != NONE) next[before] = after;
+        else if (buckets[handle] == OVERSIZED) oversizedHead = after;
+        else HEADS[buckets[handle]] = after;
+
+        if (after != NONE) previous[after] = before;
+    }
+
+    /**
+     * Find the cell covering a coordinate along the X or Z axis.
+     *
+     * @param coordinate World coordinate.
+     * @return Cell position.
+     */
+    private int cell(float coordinate) {
+        return (int) Math.floor(coordinate * INVERSE_CELL_SIZE);
+    }
+
+    /**
+     * Hash a cell to its bucket.
+     *
+     * @param cellX X position of the cell.
+     * @param cellZ Z position of the cell.
+     * @return Index of the bucket.
+     */
+    private int bucket(int cellX, int cellZ) {
+        int hash = cellX * 0x9E3779B1 + cellZ;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash & BUCKET_MASK;
+    }
+
+    /**
+     * Start a new query, resetting the stamps of every item once the counter wraps around.
+     */
+    private void nextStamp() {
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0, highWater, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * Check that a handle refers to an item in the grid.
+     *
+     * @param handle Handle to be checked.
+     */
+    private void checkHandle(int handle) {
+        if (handle < 0 || handle >= highWater || buckets[handle] == FREE) {
+            throw new IllegalArgumentException("Handle " + handle + " does not refer to an item in the grid.");
+        }
+    }
+
+    /**
+     * Grow the per-item arrays.
+     *
+     * @param newCapacity Number of items the arrays can hold.
+     */
+    private void allocate(int newCapacity) {
+        items = items == null ? new Object[newCapacity] : Arrays.copyOf(items, newCapacity);
+        centresX = centresX == null ? new float[newCapacity] : Arrays.copyOf(centresX, newCapacity);
+        centresY = centresY == null ? new float[newCapacity] : Arrays.copyOf(centresY, newCapacity);
+        centresZ = centresZ == null ? new float[newCapacity] : Arrays.copyOf(centresZ, newCapacity);
+        radii = radii == null ? new float[newCapacity] : Arrays.copyOf(radii, newCapacity);
+        cellsX = cellsX == null ? new int[newCapacity] : Arrays.copyOf(cellsX, newCapacity);
+        cellsZ = cellsZ == null ? new int[newCapacity] : Arrays.copyOf(cellsZ, newCapacity);
+        buckets = buckets == null ? new int[newCapacity] : Arrays.copyOf(buckets, newCapacity);
+        next = next == null ? new int[newCapacity] : Arrays.copyOf(next, newCapacity);
+        previous = previous == null ? new int[newCapacity] : Arrays.copyOf(previous, newCapacity);
+        stamps = stamps == null ? new int[newCapacity] : Arrays.copyOf(stamps, newCapacity);
+        capacity = newCapacity;
+    }
+
+    /**
+     * Get the item behind a handle.
+     *
+     * @param handle Handle of the item.
+     * @return Item.
+     */
+    @SuppressWarnings("unchecked")
+    public T item(int handle) {
+        return (T) items[handle];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public float cellSize() {
+        return CELL_SIZE;
+    }
+}
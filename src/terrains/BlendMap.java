@@ -0,0 +1,118 @@
+package terrains;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * CPU copy of a terrain blend map, giving the weight of each of the four terrain textures anywhere on a tile. The
+ * weights match the terrain shader: the red, green and blue channels weigh their textures directly and the
+ * background texture gets whatever is left.
+ */
+public class BlendMap {
+    public static final int BACKGROUND = 0;
+    public static final int RED = 1;
+    public static final int GREEN = 2;
+    public static final int BLUE = 3;
+
+    private static final int CHANNELS = 4;
+
+    private final int WIDTH;
+    private final int HEIGHT;
+    private final float[] WEIGHTS;
+
+    /**
+     * Create a new blend map from existing weights.
+     *
+     * @param width   Width of the blend map in pixels.
+     * @param height  Height of the blend map in pixels.
+     * @param weights Background, red, green and blue weights of every pixel, row by row; the array is used directly,
+     *                not copied.
+     */
+    public BlendMap(int width, int height, float[] weights) {
+        if (width < 1 || height < 1 || weights.length != width * height * CHANNELS) {
+            throw new IllegalArgumentException("A blend map needs four weights for every pixel.");
+        }
+
+        this.WIDTH = width;
+        this.HEIGHT = height;
+        this.WEIGHTS = weights;
+    }
+
+    /**
+     * Load a blend map from an image in the resources folder.
+     *
+     * @param filename Name of the PNG image without its extension.
+     * @return Loaded blend map.
+     */
+    public static BlendMap loadImage(String filename) {
+        BufferedImage image;
+
+        try {
+            image = ImageIO.read(new File("res/" + filename + ".png"));
+        }
+
+        catch (IOException e) {
+            System.err.println("Tried to load blend map " + filename + ".png unsuccessfully.");
+            throw new RuntimeException(e);
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        float[] weights = new float[width * height * CHANNELS];
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = image.getRGB(x, y);
+                float red = ((rgb >> 16) & 0xFF) / 255f;
+                float green = ((rgb >> 8) & 0xFF) / 255f;
+                float blue = (rgb & 0xFF) / 255f;
+
+                int pointer = (y * width + x) * CHANNELS;
+                weights[pointer + BACKGROUND] = Math.max(0, 1 - red - green - blue);
+                weights[pointer + RED] = red;
+                weights[pointer + GREEN] = green;
+                weights[pointer + BLUE] = blue;
+            }
+        }
+
+        return new BlendMap(width, height, weights);
+    }
+
+    /**
+     * Get the weight of a terrain texture at a point on a tile, interpolated bilinearly between the pixel centres.
+     *
+     * @param channel One of {@link #BACKGROUND}, {@link #RED}, {@link #GREEN} or {@link #BLUE}.
+     * @param u       Position of the point across the tile, from 0 to 1, like the terrain's texture coordinates.
+     * @param v       Position of the point down the tile, from 0 to 1.
+     * @return Weight of the texture, from 0 to 1.
+     */
+    public float weight(int channel, float u, float v) {
+        float x = Math.max(0, Math.min(WIDTH - 1, u * WIDTH - 0.5f));
+        float y = Math.max(0, Math.min(HEIGHT - 1, v * HEIGHT - 0.5f));
+
+        int x0 = (int) x;
+        int y0 = (int) y;
+        int x1 = Math.min(x0 + 1, WIDTH - 1);
+        int y1 = Math.min(y0 + 1, HEIGHT - 1);
+        float fx = x - x0;
+        float fy = y - y0;
+
+        float top = sample(channel, x0, y0) + fx * (sample(channel, x1, y0) - sample(channel, x0, y0));
+        float bottom = sample(channel, x0, y1) + fx * (sample(channel, x1, y1) - sample(channel, x0, y1));
+        return top + fy * (bottom - top);
+    }
+
+    /**
+     * Get the weight of a terrain texture at a single pixel.
+     *
+     * @param channel Channel of the texture.
+     * @param x       Column of the pixel.
+     * @param y       Row of the pixel.
+     * @return Weight of the texture.
+     */
+    private float sample(int channel, int x, int y) {
+        return WEIGHTS[(y * WIDTH + x) * CHANNELS + channel];
+    }
+}
@@ -0,0 +1,215 @@
+package terrains;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.stream.IntStream;
+
+/**
+ * Square grid of terrain heights, one per vertex, stored row by row in a primitive array.
+ */
+public class HeightMap {
+    private final int SIZE;
+    private final float[] HEIGHTS;
+
+    /**
+     * Create a new height map from existing heights.
+     *
+     * @param size    Number of vertices along each side of the grid.
+     * @param heights Heights of the grid, row by row; the array is used directly, not copied.
+     */
+    public HeightMap(int size, float[] heights) {
+        if (size < 2 || heights.length != size * size) {
+            throw new IllegalArgumentException("A height map needs at least 2x2 vertices and one height per vertex.");
+        }
+
+        this.SIZE = size;
+        this.HEIGHTS = heights;
+    }
+
+    /**
+     * Create a new flat height map.
+     *
+     * @param size Number of vertices along each side of the grid.
+     * @return Height map where every height is 0.
+     */
+    public static HeightMap flat(int size) {
+        return new HeightMap(size, new float[size * size]);
+    }
+
+    /**
+     * Load a height map from a square image in the resources folder. The red channel of each pixel is mapped
+     * linearly from [0, 255] to [-maxHeight, maxHeight].
+     *
+     * @param filename  Name of the PNG image without its extension.
+     * @param maxHeight Height of a fully red pixel.
+     * @return Loaded height map.
+     */
+    public static HeightMap loadImage(String filename, float maxHeight) {
+        BufferedImage image;
+
+        try {
+            image = ImageIO.read(new File("res/" + filename + ".png"));
+        }
+
+        catch (IOException e) {
+            System.err.println("Tried to load height map " + filename + ".png unsuccessfully.");
+            throw new RuntimeException(e);
+        }
+
+        int size = Math.min(image.getWidth(), image.getHeight());
+        float[] heights = new float[size * size];
+
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                int red = (image.getRGB(x, z) >> 16) & 0xFF;
+                heights[z * size + x] = (red / 127.5f - 1) * maxHeight;
+            }
+        }
+
+        return new HeightMap(size, heights);
+    }
+
+    /**
+     * Load a height map from a square raw file of unsigned little-endian 16-bit samples in the resources folder. Each
+     * sample is mapped linearly from [0, 65535] to [-maxHeight, maxHeight].
+     *
+     * @param filename  Name of the raw file without its extension, which must be .r16.
+     * @param maxHeight Height of the largest sample.
+     * @return Loaded height map.
+     */
+    public static HeightMap loadRaw16(String filename, float maxHeight) {
+        File file = new File("res/" + filename + ".r16");
+        int size = (int) Math.sqrt(file.length() / 2);
+
+        if (size < 2 || (long) size * size * 2 != file.length()) {
+            throw new IllegalArgumentException("Height map " + file + " is not a square grid of 16-bit samples.");
+        }
+
+        float[] heights = new float[size * size];
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            for (int i = 0; i < heights.length; i++) {
+                int sample = in.readUnsignedByte() | in.readUnsignedByte() << 8;
+                heights[i] = (sample / 32767.5f - 1) * maxHeight;
+            }
+        }
+
+        catch (IOException e) {
+            System.err.println("Tried to load height map " + filename + ".r16 unsuccessfully.");
+            throw new RuntimeException(e);
+        }
+
+        return new HeightMap(size, heights);
+    }
+
+    /**
+     * Get the height of a vertex, clamping the coordinates to the edge of the grid.
+     *
+     * @param x Column of the vertex.
+     * @param z Row of the vertex.
+     * @return Height of the vertex.
+     */
+    public float height(int x, int z) {
+        x = Math.max(0, Math.min(SIZE - 1, x));
+        z = Math.max(0, Math.min(SIZE - 1, z));
+
+        return HEIGHTS[z * SIZE + x];
+    }
+
+    /**
+     * Interpolate the height at a point within the grid, on the same triangles the terrain mesh is built from. Each
+     * cell is split along the diagonal from (x + 1, z) to (x, z + 1).
+     *
+     * @param gridX Column of the point, which may be fractional.
+     * @param gridZ Row of the point, which may be fractional.
+     * @return Interpolated height, or the height of the nearest edge for points outside the grid.
+     */
+    public float interpolate(float gridX, float gridZ) {
+        gridX = Math.max(0, Math.min(SIZE - 1, gridX));
+        gridZ = Math.max(0, Math.min(SIZE - 1, gridZ));
+
+        int cellX = Math.min((int) gridX, SIZE - 2);
+        int cellZ = Math.min((int) gridZ, SIZE - 2);
+        float u = gridX - cellX;
+        float v = gridZ - cellZ;
+
+        int index = cellZ * SIZE + cellX;
+        float h01 = HEIGHTS[index + SIZE];
+        float h10 = HEIGHTS[index + 1];
+
+        // Barycentric weights reduce to these two planes for a right triangle of unit legs.
+        if (u + v <= 1) {
+            float h00 = HEIGHTS[index];
+            return h00 + u * (h10 - h00) + v * (h01 - h00);
+        }
+
+        float h11 = HEIGHTS[index + SIZE + 1];
+        return h11 + (1 - u) * (h01 - h11) + (1 - v) * (h10 - h11);
+    }
+
+    /**
+     * Resample the height map onto a grid of a different size, interpolating between the original vertices.
+     *
+     * @param size Number of vertices along each side of the new grid.
+     * @return Resampled height map, or this height map if it already has the requested size.
+     */
+    public HeightMap resample(int size) {
+        if (size == SIZE) return this;
+
+        float[] heights = new float[size * size];
+        float scale = (float) (SIZE - 1) / (size - 1);
+
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) heights[z * size + x] = interpolate(x * scale, z * scale);
+        }
+
+        return new HeightMap(size, heights);
+    }
+
+    /**
+     * Compute the vertex normals of the grid from central differences of the neighbouring heights, one row per task
+     * on the common fork-join pool. The grid's columns and rows run along the negative X and Z axes, as in the
+     * terrain mesh.
+     *
+     * @param cellSize Distance between neighbouring vertices.
+     * @return Normals of the grid, three floats per vertex, row by row.
+     */
+    public float[] computeNormals(float cellSize) {
+        float[] normals = new float[SIZE * SIZE * 3];
+        float doubleCellSize = 2 * cellSize;
+        float doubleCellSizeSquared = doubleCellSize * doubleCellSize;
+
+        IntStream.range(0, SIZE).parallel().forEach(z -> {
+            for (int x = 0; x < SIZE; x++) {
+                float normalX = height(x + 1, z) - height(x - 1, z);
+                float normalZ = height(x, z + 1) - height(x, z - 1);
+                float length = (float) Math.sqrt(normalX * normalX + doubleCellSizeSquared + normalZ * normalZ);
+
+                int pointer = (z * SIZE + x) * 3;
+                normals[pointer] = normalX / length;
+                normals[pointer + 1] = doubleCellSize / length;
+                normals[pointer + 2] = normalZ / length;
+            }
+        });
+
+        return normals;
+    }
+
+    public int size() {
+        return SIZE;
+    }
+
+    /**
+     * Get the heights of the grid, row by row. The array is owned by the height map and must not be modified.
+     *
+     * @return Heights of the grid.
+     */
+    public float[] heights() {
+        return HEIGHTS;
+    }
+}
@@ -0,0 +1,268 @@
+package terrains;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Procedural source of terrain tiles made of seeded multi-octave gradient noise, with the sample points displaced by
+ * two further noise fields (domain warping) so ridges and valleys bend instead of following the noise lattice.
+ * <p>
+ * Every height is a pure function of the seed and the vertex's integer position on the world grid, and tiles share
+ * their edge vertices with their neighbours, so tiles are seamless and identical no matter which thread or how many
+ * threads generated them. A tile's rows are filled by a fork-join pool, each leaf task working on whole rows one
+ * octave at a time over flat arrays, so the inner loops stay free of calls, branches and allocation.
+ */
+public class NoiseGenerator implements TileSource {
+    private static final int ROWS_PER_TASK = 8;
+    private static final int WARP_OCTAVES = 2;
+    private static final float PERSISTENCE = 0.5f;
+    private static final float NORMALIZATION = 2.6f;
+
+    private static final double WARP_SHIFT_X = 5.2;
+    private static final double WARP_SHIFT_Z = 1.7;
+    private static final int OCTAVE_SEED_STEP = 0x9E3779B9;
+
+    private final int SEED;
+    private final int VERTEX_COUNT;
+    private final float MAX_HEIGHT;
+    private final int OCTAVES;
+    private final double FREQUENCY;
+    private final float WARP_STRENGTH;
+    private final ForkJoinPool POOL;
+
+    /**
+     * Create a new noise generator with a wavelength of 64 vertices, five octaves and moderate warping, running on the
+     * common fork-join pool.
+     *
+     * @param seed        Seed of the noise.
+     * @param vertexCount Number of vertices along each side of a tile.
+     * @param maxHeight   Height of the highest peaks.
+     */
+    public NoiseGenerator(long seed, int vertexCount, float maxHeight) {
+        this(seed, vertexCount, maxHeight, 5, 1.0 / 64, 0.6f, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a new noise generator.
+     *
+     * @param seed         Seed of the noise.
+     * @param vertexCount  Number of vertices along each side of a tile.
+     * @param maxHeight    Height of the highest peaks.
+     * @param octaves      Number of octaves, each at twice the frequency and half the amplitude of the last.
+     * @param frequency    Frequency of the first octave, in cycles per vertex.
+     * @param warpStrength Distance the sample points are displaced by, in wavelengths of the first octave.
+     * @param pool         Fork-join pool filling the rows of each tile.
+     */
+    public NoiseGenerator(
+            long seed, int vertexCount, float maxHeight, int octaves, double frequency, float warpStrength,
+            ForkJoinPool pool
+    ) {
+        if (vertexCount < 2 || octaves < 1) {
+            throw new IllegalArgumentException("A noise generator needs at least 2x2 vertices and one octave.");
+        }
+
+        this.SEED = (int) (seed ^ seed >>> 32);
+        this.VERTEX_COUNT = vertexCount;
+        this.MAX_HEIGHT = maxHeight;
+        this.OCTAVES = octaves;
+        this.FREQUENCY = frequency;
+        this.WARP_STRENGTH = warpStrength;
+        this.POOL = pool;
+    }
+
+    @Override
+    public HeightMap heightMap(int gridX, int gridZ) {
+        float[] heights = new float[VERTEX_COUNT * VERTEX_COUNT];
+
+        // Columns and rows run along the negative X and Z axes, and the last ones are the first of the next tiles.
+        long originColumn = (long) gridX * (VERTEX_COUNT - 1);
+        long originRow = (long) gridZ * (VERTEX_COUNT - 1);
+
+        POOL.invoke(new RowTask(heights, originColumn, originRow, 0, VERTEX_COUNT));
+        return new HeightMap(VERTEX_COUNT, heights);
+    }
+
+    /**
+     * Fork-join task filling a range of rows of a tile, split in halves until it is small enough to fill directly.
+     */
+    private final class RowTask extends RecursiveAction {
+        private final float[] HEIGHTS;
+        private final long ORIGIN_COLUMN;
+        private final long ORIGIN_ROW;
+        private final int FROM;
+        private final int TO;
+
+        /**
+         * Create a new task over a range of rows.
+         *
+         * @param heights      Heights of the tile, row by row.
+         * @param originColumn Column of the tile's first vertex on the world grid.
+         * @param originRow    Row of the tile's first vertex on the world grid.
+         * @param from         First row of the range.
+         * @param to           Row after the last row of the range.
+         */
+        private RowTask(float[] heights, long originColumn, long originRow, int from, int to) {
+            this.HEIGHTS = heights;
+            this.ORIGIN_COLUMN = originColumn;
+            this.ORIGIN_ROW = originRow;
+            this.FROM = from;
+            this.TO = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (TO - FROM <= ROWS_PER_TASK) {
+                fillRows(HEIGHTS, ORIGIN_COLUMN, ORIGIN_ROW, FROM, TO);
+                return;
+            }
+
+            int middle = (FROM + TO) >>> 1;
+            invokeAll(
+                    new RowTask(HEIGHTS, ORIGIN_COLUMN, ORIGIN_ROW, FROM, middle),
+                    new RowTask(HEIGHTS, ORIGIN_COLUMN, ORIGIN_ROW, middle, TO)
+            );
+        }
+    }
+
+    /**
+     * Fill a range of rows of a tile: first the two warp fields over each row, then the warped height field.
+     *
+     * @param heights      Heights of the tile, row by row.
+     * @param originColumn Column of the tile's first vertex on the world grid.
+     * @param originRow    Row of the tile's first vertex on the world grid.
+     * @param from         First row of the range.
+     * @param to           Row after the last row of the range.
+     */
+    private void fillRows(float[] heights, long originColumn, long originRow, int from, int to) {
+        float[] unwarped = new float[VERTEX_COUNT];
+        float[] warpX = new float[VERTEX_COUNT];
+        float[] warpZ = new float[VERTEX_COUNT];
+        float[] row = new float[VERTEX_COUNT];
+
+        float heightScale = MAX_HEIGHT * NORMALIZATION / amplitudeSum(OCTAVES);
+        float warpScale = WARP_STRENGTH / amplitudeSum(WARP_OCTAVES);
+
+        for (int z = from; z < to; z++) {
+            long worldRow = originRow - z;
+
+            Arrays.fill(warpX, 0);
+            Arrays.fill(warpZ, 0);
+            Arrays.fill(row, 0);
+
+            fractalRow(warpX, originColumn, worldRow, WARP_SHIFT_X, unwarped, unwarped, 0, WARP_OCTAVES, SEED + 1);
+            fractalRow(warpZ, originColumn, worldRow, WARP_SHIFT_Z, unwarped, unwarped, 0, WARP_OCTAVES, SEED + 2);
+            fractalRow(row, originColumn, worldRow, 0, warpX, warpZ, warpScale, OCTAVES, SEED);
+
+            int offset = z * VERTEX_COUNT;
+            for (int x = 0; x < VERTEX_COUNT; x++) heights[offset + x] = row[x] * heightScale;
+        }
+    }
+
+    /**
+     * Add several octaves of gradient noise over a row of vertices to a destination, one octave at a time. The
+     * sample point of each vertex is computed from its integer world position, never accumulated, so neighbouring
+     * tiles sample their shared vertices at exactly the same points.
+     *
+     * @param destination  Accumulated noise of each vertex of the row.
+     * @param originColumn Column of the row's first vertex on the world grid.
+     * @param worldRow     Row on the world grid.
+     * @param shift        Offset of the sample points, in wavelengths of the first octave.
+     * @param warpX        Displacement of each sample point along X, scaled by the warp scale.
+     * @param warpZ        Displacement of each sample point along Z, scaled by the warp scale.
+     * @param warpScale    Scale of the displacements, in wavelengths of the first octave.
+     * @param octaves      Number of octaves.
+     * @param seed         Seed of the first octave.
+     */
+    private void fractalRow(
+            float[] destination, long originColumn, long worldRow, double shift, float[] warpX, float[] warpZ,
+            float warpScale, int octaves, int seed
+    ) {
+        double rowPosition = worldRow * FREQUENCY + shift;
+        double scale = 1;
+        float amplitude = 1;
+
+        for (int octave = 0; octave < octaves; octave++) {
+            int octaveSeed = seed + octave * OCTAVE_SEED_STEP;
+
+            for (int x = 0; x < VERTEX_COUNT; x++) {
+                double sampleX = ((originColumn - x) * FREQUENCY + shift + warpX[x] * warpScale) * scale;
+                double sampleZ = (rowPosition + warpZ[x] * warpScale) * scale;
+
+                destination[x] += amplitude * gradientNoise(sampleX, sampleZ, octaveSeed);
+            }
+
+            scale *= 2;
+            amplitude *= PERSISTENCE;
+        }
+    }
+
+    /**
+     * Sum the amplitudes of a number of octaves, the largest magnitude their noise could add up to.
+     *
+     * @param octaves Number of octaves.
+     * @return Sum of the amplitudes.
+     */
+    private static float amplitudeSum(int octaves) {
+        float sum = 0;
+        float amplitude = 1;
+
+        for (int octave = 0; octave < octaves; octave++) {
+            sum += amplitude;
+            amplitude *= PERSISTENCE;
+        }
+
+        return sum;
+    }
+
+    /**
+     * Evaluate 2D gradient noise at a point, blending the contributions of the four surrounding lattice corners.
+     *
+     * @param x    X position of the point, in lattice cells.
+     * @param z    Z position of the point, in lattice cells.
+     * @param seed Seed of the lattice gradients.
+     * @return Noise at the point, roughly within [-0.7, 0.7].
+     */
+    static float gradientNoise(double x, double z, int seed) {
+        int cellX = (int) Math.floor(x);
+        int cellZ = (int) Math.floor(z);
+        float u = (float) (x - cellX);
+        float v = (float) (z - cellZ);
+
+        float n00 = corner(cellX, cellZ, u, v, seed);
+        float n10 = corner(cellX + 1, cellZ, u - 1, v, seed);
+        float n01 = corner(cellX, cellZ + 1, u, v - 1, seed);
+        float n11 = corner(cellX + 1, cellZ + 1, u - 1, v - 1, seed);
+
+        float fadeU = u * u * u * (u * (u * 6 - 15) + 10);
+        float fadeV = v * v * v * (v * (v * 6 - 15) + 10);
+
+        float near = n00 + fadeU * (n10 - n00);
+        float far = n01 + fadeU * (n11 - n01);
+        return near + fadeV * (far - near);
+    }
+
+    /**
+     * Find the contribution of a lattice corner: the dot product of its hashed gradient and the offset to the point.
+     *
+     * @param cellX X position of the corner.
+     * @param cellZ Z position of the corner.
+     * @param u     Offset of the point from the corner along X.
+     * @param v     Offset of the point from the corner along Z.
+     * @param seed  Seed of the lattice gradients.
+     * @return Contribution of the corner.
+     */
+    private static float corner(int cellX, int cellZ, float u, float v, int seed) {
+        int hash = seed ^ cellX * 0x27D4EB2D ^ cellZ * 0x165667B1;
+        hash ^= hash >>> 15;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+
+        // The high and low halves of the hash give the two gradient components in [-1, 1).
+        float gradientX = (hash >> 16) * (1f / 32768);
+        float gradientZ = (short) hash * (1f / 32768);
+        return gradientX * u + gradientZ * v;
+    }
+}
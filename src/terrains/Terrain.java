@@ -1,93 +1,196 @@
 package terrains;
 
-import models.RawModel;
+import entities.Entity;
 import renderEngine.Loader;
 import textures.TerrainTexture;
 import textures.TerrainTexturePack;
 
+import java.util.List;
+
 /**
  * Terrain class for the engine.
+ * <p>
+ * A terrain tile covers a square of {@code SIZE} units stretching from its grid corner along the negative X and Z
+ * axes. Its shape comes from a height map, which is kept on the CPU so the height under any point can be found in
+ * constant time. On the GPU the tile is only a height texture: it is drawn as instances of the shared
+ * {@link TerrainPatch} mesh chosen by a {@link TerrainQuadTree}, so distant parts of the tile use fewer triangles.
  */
 public class Terrain {
-    private static final float SIZE = 800;
-    private static final int VERTEX_COUNT = 128;
+    public static final float SIZE = 800;
+    private static final int VERTEX_COUNT = TerrainPatch.PATCH_CELLS * 8 + 1;
 
     private final float X;
     private final float Z;
 
-    private final RawModel RAW_MODEL;
+    private final HeightMap HEIGHT_MAP;
+    private final float CELL_SIZE;
+    private final TerrainQuadTree QUAD_TREE;
+
+    private final int HEIGHT_TEXTURE;
     private final TerrainTexturePack TEXTURE_PACK;
     private final TerrainTexture BLEND_MAP;
 
     /**
-     * Create a new terrain piece at a given location using a given texture.
+     * Create a new flat terrain piece at a given location using a given texture.
      *
      * @param gridX       X position of the terrain.
      * @param gridZ       Z position of the terrain.
-     * @param loader      Loader class to load the terrain model.
+     * @param loader      Loader class to load the terrain height texture.
      * @param texturePack Texture pack for all the four textured to be blended onto the terrain.
      * @param blendMap    Texture describing how to blend all the textured on the terrain.
      */
     public Terrain(int gridX, int gridZ, Loader loader, TerrainTexturePack texturePack, TerrainTexture blendMap) {
+        this(gridX, gridZ, loader, texturePack, blendMap, HeightMap.flat(VERTEX_COUNT));
+    }
+
+    /**
+     * Create a new terrain piece at a given location using a given texture, shaped by a height map.
+     *
+     * @param gridX       X position of the terrain.
+     * @param gridZ       Z position of the terrain.
+     * @param loader      Loader class to load the terrain height texture.
+     * @param texturePack Texture pack for all the four textured to be blended onto the terrain.
+     * @param blendMap    Texture describing how to blend all the textured on the terrain.
+     * @param heightMap   Heights of the terrain, which also decide its vertex count. Resampled to the next size its
+     *                    quadtree supports if needed.
+     */
+    public Terrain(
+            int gridX, int gridZ, Loader loader, TerrainTexturePack texturePack, TerrainTexture blendMap,
+            HeightMap heightMap
+    ) {
         this.X = gridX * SIZE;
         this.Z = gridZ * SIZE;
         this.TEXTURE_PACK = texturePack;
         this.BLEND_MAP = blendMap;
 
-        this.RAW_MODEL = generateTerrain(loader);
+        this.HEIGHT_MAP = heightMap.resample(TerrainPatch.fitVertexCount(heightMap.size()));
+        this.CELL_SIZE = SIZE / (HEIGHT_MAP.size() - 1);
+        this.QUAD_TREE = new TerrainQuadTree(HEIGHT_MAP, X, Z, CELL_SIZE);
+
+        this.HEIGHT_TEXTURE = loader.loadFloatTexture(HEIGHT_MAP.heights(), HEIGHT_MAP.size(), HEIGHT_MAP.size());
     }
 
     /**
-     * Generate a new terrain piece using a loader to set the vertices, texture coordinates, normals and indices for
-     * each piece before loading them to a VAO.
+     * Create a terrain piece that only answers height queries and selects its level of detail, without any textures.
      *
-     * @param loader Loader class to generate a raw model.
-     * @return Terrain raw model.
+     * @param gridX     X position of the terrain.
+     * @param gridZ     Z position of the terrain.
+     * @param heightMap Heights of the terrain.
      */
-    private RawModel generateTerrain(Loader loader) {
-        int count = VERTEX_COUNT * VERTEX_COUNT;
-        int vertexPointer = 0;
-        int pointer = 0;
-
-        float[] vertices = new float[count * 3];
-        float[] textureCoordinates = new float[count * 2];
-        float[] normals = new float[count * 3];
-        int[] indices = new int[(VERTEX_COUNT - 1) * (VERTEX_COUNT - 1) * 6];
-
-        for (int i = 0; i < VERTEX_COUNT; i++) {
-            for (int j = 0; j < VERTEX_COUNT; j++) {
-                vertices[vertexPointer * 3] = -(float) j / (VERTEX_COUNT - 1) * SIZE;
-                vertices[vertexPointer * 3 + 1] = 0;
-                vertices[vertexPointer * 3 + 2] = -(float) i / (VERTEX_COUNT - 1) * SIZE;
-
-                textureCoordinates[vertexPointer * 2] = (float) j / (VERTEX_COUNT - 1);
-                textureCoordinates[vertexPointer * 2 + 1] = (float) i / (VERTEX_COUNT - 1);
-
-                normals[vertexPointer * 3] = 0;
-                normals[vertexPointer * 3 + 1] = 1;
-                normals[vertexPointer * 3 + 1] = 0;
-
-                vertexPointer++;
-            }
+    Terrain(int gridX, int gridZ, HeightMap heightMap) {
+        this.X = gridX * SIZE;
+        this.Z = gridZ * SIZE;
+        this.TEXTURE_PACK = null;
+        this.BLEND_MAP = null;
+
+        this.HEIGHT_MAP = heightMap.resample(TerrainPatch.fitVertexCount(heightMap.size()));
+        this.CELL_SIZE = SIZE / (HEIGHT_MAP.size() - 1);
+        this.QUAD_TREE = new TerrainQuadTree(HEIGHT_MAP, X, Z, CELL_SIZE);
+
+        this.HEIGHT_TEXTURE = 0;
+    }
+
+    /**
+     * Create a textured terrain piece from one prepared without any textures, sharing its heights and quadtree.
+     *
+     * @param prepared      Terrain prepared off the render thread.
+     * @param texturePack   Texture pack for all the four textured to be blended onto the terrain.
+     * @param blendMap      Texture describing how to blend all the textured on the terrain.
+     * @param heightTexture ID of a texture already holding the heights of the terrain.
+     */
+    Terrain(Terrain prepared, TerrainTexturePack texturePack, TerrainTexture blendMap, int heightTexture) {
+        this.X = prepared.X;
+        this.Z = prepared.Z;
+        this.TEXTURE_PACK = texturePack;
+        this.BLEND_MAP = blendMap;
+
+        this.HEIGHT_MAP = prepared.HEIGHT_MAP;
+        this.CELL_SIZE = prepared.CELL_SIZE;
+        this.QUAD_TREE = prepared.QUAD_TREE;
+
+        this.HEIGHT_TEXTURE = heightTexture;
+    }
+
+    /**
+     * Get the height of the terrain at a point in the world, interpolated within the mesh triangle under it.
+     *
+     * @param worldX X position of the point.
+     * @param worldZ Z position of the point.
+     * @return Height of the terrain, or the height of its nearest edge for points outside the tile.
+     */
+    public float heightAt(float worldX, float worldZ) {
+        return HEIGHT_MAP.interpolate((X - worldX) / CELL_SIZE, (Z - worldZ) / CELL_SIZE);
+    }
+
+    /**
+     * Get the heights of the terrain at a batch of points in the world.
+     *
+     * @param positionsX X positions of the points.
+     * @param positionsZ Z positions of the points.
+     * @param heights    Destination for the heights, at the same indices as the points.
+     * @param offset     Index of the first point.
+     * @param count      Number of points.
+     */
+    public void heightsAt(float[] positionsX, float[] positionsZ, float[] heights, int offset, int count) {
+        float inverseCellSize = 1 / CELL_SIZE;
+        int end = offset + count;
+
+        for (int i = offset; i < end; i++) {
+            heights[i] = HEIGHT_MAP.interpolate(
+                    (X - positionsX[i]) * inverseCellSize, (Z - positionsZ[i]) * inverseCellSize
+            );
+        }
+    }
+
+    /**
+     * Move every entity standing over this tile onto the surface of the terrain, leaving the others untouched.
+     *
+     * @param entities Entities to be snapped.
+     */
+    public void snapToGround(List<? extends Entity> entities) {
+        for (Entity entity : entities) {
+            float x = entity.position().getX();
+            float z = entity.position().getZ();
+
+            if (contains(x, z)) entity.setPosition(x, heightAt(x, z), z);
         }
+    }
+
+    /**
+     * Check if a point in the world lies over this tile.
+     *
+     * @param worldX X position of the point.
+     * @param worldZ Z position of the point.
+     * @return True if the point is over the tile, else false.
+     */
+    public boolean contains(float worldX, float worldZ) {
+        return worldX <= X && worldX > X - SIZE && worldZ <= Z && worldZ > Z - SIZE;
+    }
 
-        for (int groundZ = 0; groundZ < VERTEX_COUNT - 1; groundZ++) {
-            for (int groundX = 0; groundX < VERTEX_COUNT - 1; groundX++) {
-                int topLeft = (groundZ * VERTEX_COUNT) + groundX;
-                int topRight = topLeft + 1;
-                int bottomLeft = ((groundZ + 1) * VERTEX_COUNT) + groundX;
-                int bottomRight = bottomLeft + 1;
-
-                indices[pointer++] = topLeft;
-                indices[pointer++] = bottomLeft;
-                indices[pointer++] = topRight;
-                indices[pointer++] = topRight;
-                indices[pointer++] = bottomLeft;
-                indices[pointer++] = bottomRight;
-            }
+    /**
+     * Find the tile under a point in the world.
+     *
+     * @param terrains Tiles to be searched.
+     * @param worldX   X position of the point.
+     * @param worldZ   Z position of the point.
+     * @return Tile under the point, or null if there is none.
+     */
+    public static Terrain at(List<Terrain> terrains, float worldX, float worldZ) {
+        for (Terrain terrain : terrains) {
+            if (terrain.contains(worldX, worldZ)) return terrain;
         }
 
-        return loader.loadToVAO(vertices, textureCoordinates, normals, indices);
+        return null;
+    }
+
+    /**
+     * Find the position on the terrain grid of the tile covering a world coordinate, along either the X or Z axis.
+     *
+     * @param world World coordinate.
+     * @return Grid position of the tile covering it.
+     */
+    public static int gridPosition(float world) {
+        return (int) Math.ceil(world / SIZE);
     }
 
     public float x() {
@@ -98,8 +201,25 @@ public class Terrain {
         return Z;
     }
 
-    public RawModel rawModel() {
-        return RAW_MODEL;
+    public HeightMap heightMap() {
+        return HEIGHT_MAP;
+    }
+
+    public TerrainQuadTree quadTree() {
+        return QUAD_TREE;
+    }
+
+    /**
+     * Get the distance between neighbouring vertices of the terrain.
+     *
+     * @return Size of a height map cell.
+     */
+    public float cellSize() {
+        return CELL_SIZE;
+    }
+
+    public int heightTextureID() {
+        return HEIGHT_TEXTURE;
     }
 
     public TerrainTexturePack texturePack() {
@@ -0,0 +1,108 @@
+package terrains;
+
+/**
+ * Square grid mesh shared by every terrain patch at every level of detail.
+ * <p>
+ * A patch always has {@link #PATCH_CELLS} by {@link #PATCH_CELLS} quads; at level {@code l} each quad spans
+ * {@code 2^l} cells of the tile's height map, so one patch covers {@code PATCH_CELLS * 2^l} cells along each side. The
+ * mesh only holds the patch-local column and row of every vertex; the vertex shader turns them into height map
+ * coordinates with the patch's instance data and reads the height from the tile's height texture.
+ * <p>
+ * An edge is stitched when the neighbouring patch is one level coarser: the vertex shader moves its odd vertices onto
+ * the previous even vertex, so the edge matches the coarser neighbour exactly and no cracks open between them.
+ */
+public class TerrainPatch {
+    /**
+     * Number of quads along each side of a patch.
+     */
+    public static final int PATCH_CELLS = 16;
+
+    /**
+     * Number of floats of instance data per patch: its first column and row in the height map, the number of height
+     * map cells per quad and the bit mask of its stitched edges.
+     */
+    public static final int INSTANCE_DATA_LENGTH = 4;
+
+    /**
+     * Edge of a patch on its first row, towards the previous row of the height map.
+     */
+    public static final int NORTH = 1;
+
+    /**
+     * Edge of a patch on its last row, towards the next row of the height map.
+     */
+    public static final int SOUTH = 2;
+
+    /**
+     * Edge of a patch on its first column, towards the previous column of the height map.
+     */
+    public static final int WEST = 4;
+
+    /**
+     * Edge of a patch on its last column, towards the next column of the height map.
+     */
+    public static final int EAST = 8;
+
+    /**
+     * Get the patch-local column and row of every vertex of the patch mesh, row by row.
+     *
+     * @return Two floats per vertex.
+     */
+    public static float[] positions() {
+        int vertexCount = PATCH_CELLS + 1;
+        float[] positions = new float[vertexCount * vertexCount * 2];
+        int pointer = 0;
+
+        for (int row = 0; row < vertexCount; row++) {
+            for (int column = 0; column < vertexCount; column++) {
+                positions[pointer++] = column;
+                positions[pointer++] = row;
+            }
+        }
+
+        return positions;
+    }
+
+    /**
+     * Get the indices of the patch mesh, splitting every quad along the same diagonal as the height queries.
+     *
+     * @return Six indices per quad.
+     */
+    public static int[] indices() {
+        int vertexCount = PATCH_CELLS + 1;
+        int[] indices = new int[PATCH_CELLS * PATCH_CELLS * 6];
+        int pointer = 0;
+
+        for (int row = 0; row < PATCH_CELLS; row++) {
+            for (int column = 0; column < PATCH_CELLS; column++) {
+                int topLeft = row * vertexCount + column;
+                int topRight = topLeft + 1;
+                int bottomLeft = topLeft + vertexCount;
+                int bottomRight = bottomLeft + 1;
+
+                indices[pointer++] = topLeft;
+                indices[pointer++] = bottomLeft;
+                indices[pointer++] = topRight;
+                indices[pointer++] = topRight;
+                indices[pointer++] = bottomLeft;
+                indices[pointer++] = bottomRight;
+            }
+        }
+
+        return indices;
+    }
+
+    /**
+     * Get the smallest height map size with at least a given number of vertices along each side that a whole number
+     * of quadtree levels fits, {@code PATCH_CELLS * 2^n + 1}.
+     *
+     * @param vertexCount Minimum number of vertices along each side.
+     * @return Supported number of vertices along each side.
+     */
+    public static int fitVertexCount(int vertexCount) {
+        int patches = 1;
+        while (patches * PATCH_CELLS + 1 < vertexCount) patches *= 2;
+
+        return patches * PATCH_CELLS + 1;
+    }
+}
@@ -0,0 +1,335 @@
+package terrains;
+
+import java.util.List;
+
+/**
+ * Quadtree over the patches of a terrain tile, selecting a level of detail for every part of the tile from its
+ * distance to the camera.
+ * <p>
+ * The root covers the whole tile at the coarsest level and every child covers a quarter of its parent one level
+ * finer. A node is split while the camera is closer to its bounding box than the range of the level below it, where
+ * the range doubles with every level. Because neighbouring patches then never differ by more than one level, an edge
+ * only has to be stitched against a neighbour exactly one level coarser, including neighbours on adjacent tiles.
+ * <p>
+ * Selection only writes into arrays allocated up front, so it can run every frame without creating garbage.
+ */
+public class TerrainQuadTree {
+    /**
+     * Range of the finest level, as a multiple of the width of a finest patch.
+     */
+    public static final float DEFAULT_RANGE_FACTOR = 4;
+
+    private final float X;
+    private final float Z;
+    private final float CELL_SIZE;
+
+    private final int LEVEL_COUNT;
+    private final int FINEST_NODES;
+    private final float[][] MIN_HEIGHTS;
+    private final float[][] MAX_HEIGHTS;
+
+    private final int[] LEVEL_GRID;
+    private final int[] SELECTED_LEVELS;
+    private final int[] SELECTED_ROWS;
+    private final int[] SELECTED_COLUMNS;
+    private final int[] SELECTED_STITCHES;
+    private int selectedCount = 0;
+
+    /**
+     * Create a new quadtree over a terrain tile.
+     *
+     * @param heightMap Heights of the tile, with {@code PATCH_CELLS * 2^n + 1} vertices along each side.
+     * @param x         X position of the tile's corner.
+     * @param z         Z position of the tile's corner.
+     * @param cellSize  Distance between neighbouring vertices.
+     */
+    public TerrainQuadTree(HeightMap heightMap, float x, float z, float cellSize) {
+        int patches = (heightMap.size() - 1) / TerrainPatch.PATCH_CELLS;
+
+        if (patches * TerrainPatch.PATCH_CELLS + 1 != heightMap.size() || Integer.bitCount(patches) != 1) {
+            throw new IllegalArgumentException("A terrain quadtree needs PATCH_CELLS * 2^n + 1 vertices per side.");
+        }
+
+        this.X = x;
+        this.Z = z;
+        this.CELL_SIZE = cellSize;
+
+        this.LEVEL_COUNT = Integer.numberOfTrailingZeros(patches) + 1;
+        this.FINEST_NODES = patches;
+        this.MIN_HEIGHTS = new float[LEVEL_COUNT][];
+        this.MAX_HEIGHTS = new float[LEVEL_COUNT][];
+
+        int finestCount = FINEST_NODES * FINEST_NODES;
+        this.LEVEL_GRID = new int[finestCount];
+        this.SELECTED_LEVELS = new int[finestCount];
+        this.SELECTED_ROWS = new int[finestCount];
+        this.SELECTED_COLUMNS = new int[finestCount];
+        this.SELECTED_STITCHES = new int[finestCount];
+
+        computeBounds(heightMap);
+    }
+
+    /**
+     * Compute the lowest and highest point of every node, finest level first, each coarser level from its children.
+     *
+     * @param heightMap Heights of the tile.
+     */
+    private void computeBounds(HeightMap heightMap) {
+        MIN_HEIGHTS[0] = new float[FINEST_NODES * FINEST_NODES];
+        MAX_HEIGHTS[0] = new float[FINEST_NODES * FINEST_NODES];
+
+        for (int row = 0; row < FINEST_NODES; row++) {
+            for (int column = 0; column < FINEST_NODES; column++) {
+                float min = Float.POSITIVE_INFINITY;
+                float max = Float.NEGATIVE_INFINITY;
+
+                for (int z = 0; z <= TerrainPatch.PATCH_CELLS; z++) {
+                    for (int x = 0; x <= TerrainPatch.PATCH_CELLS; x++) {
+                        float height = heightMap.height(
+                                column * TerrainPatch.PATCH_CELLS + x, row * TerrainPatch.PATCH_CELLS + z
+                        );
+
+                        min = Math.min(min, height);
+                        max = Math.max(max, height);
+                    }
+                }
+
+                MIN_HEIGHTS[0][row * FINEST_NODES + column] = min;
+                MAX_HEIGHTS[0][row * FINEST_NODES + column] = max;
+            }
+        }
+
+        for (int level = 1; level < LEVEL_COUNT; level++) {
+            int nodes = FINEST_NODES >> level;
+            int childNodes = nodes * 2;
+
+            MIN_HEIGHTS[level] = new float[nodes * nodes];
+            MAX_HEIGHTS[level] = new float[nodes * nodes];
+
+            float[] childMin = MIN_HEIGHTS[level - 1];
+            float[] childMax = MAX_HEIGHTS[level - 1];
+
+            for (int row = 0; row < nodes; row++) {
+                for (int column = 0; column < nodes; column++) {
+                    int child = row * 2 * childNodes + column * 2;
+                    int below = child + childNodes;
+
+                    float top = Math.min(childMin[child], childMin[child + 1]);
+                    float bottom = Math.min(childMin[below], childMin[below + 1]);
+                    MIN_HEIGHTS[level][row * nodes + column] = Math.min(top, bottom);
+
+                    top = Math.max(childMax[child], childMax[child + 1]);
+                    bottom = Math.max(childMax[below], childMax[below + 1]);
+                    MAX_HEIGHTS[level][row * nodes + column] = Math.max(top, bottom);
+                }
+            }
+        }
+    }
+
+    /**
+     * Select the levels of detail of every tile and stitch the edges between them, including edges between tiles.
+     *
+     * @param terrains Tiles to be selected.
+     * @param cameraX  X position of the camera.
+     * @param cameraY  Y position of the camera.
+     * @param cameraZ  Z position of the camera.
+     */
+    public static void selectAll(List<Terrain> terrains, float cameraX, float cameraY, float cameraZ) {
+        for (Terrain terrain : terrains) terrain.quadTree().select(cameraX, cameraY, cameraZ);
+        for (Terrain terrain : terrains) terrain.quadTree().stitch(terrains);
+    }
+
+    /**
+     * Select the nodes to be drawn for a camera position, using the default ranges.
+     *
+     * @param cameraX X position of the camera.
+     * @param cameraY Y position of the camera.
+     * @param cameraZ Z position of the camera.
+     */
+    public void select(float cameraX, float cameraY, float cameraZ) {
+        select(cameraX, cameraY, cameraZ, DEFAULT_RANGE_FACTOR * TerrainPatch.PATCH_CELLS * CELL_SIZE);
+    }
+
+    /**
+     * Select the nodes to be drawn for a camera position. Clears the edge stitching of the previous selection.
+     *
+     * @param cameraX     X position of the camera.
+     * @param cameraY     Y position of the camera.
+     * @param cameraZ     Z position of the camera.
+     * @param finestRange Distance up to which the finest level is used; every coarser level doubles it.
+     */
+    public void select(float cameraX, float cameraY, float cameraZ, float finestRange) {
+        selectedCount = 0;
+        selectNode(LEVEL_COUNT - 1, 0, 0, cameraX, cameraY, cameraZ, finestRange);
+    }
+
+    /**
+     * Select a node or recurse into its children.
+     *
+     * @param level       Level of the node.
+     * @param row         Row of the node within its level.
+     * @param column      Column of the node within its level.
+     * @param cameraX     X position of the camera.
+     * @param cameraY     Y position of the camera.
+     * @param cameraZ     Z position of the camera.
+     * @param finestRange Distance up to which the finest level is used.
+     */
+    private void selectNode(
+            int level, int row, int column, float cameraX, float cameraY, float cameraZ, float finestRange
+    ) {
+        if (level > 0 && distance(level, row, column, cameraX, cameraY, cameraZ) < finestRange * (1 << (level - 1))) {
+            for (int child = 0; child < 4; child++) {
+                selectNode(
+                        level - 1, row * 2 + child / 2, column * 2 + child % 2, cameraX, cameraY, cameraZ, finestRange
+                );
+            }
+
+            return;
+        }
+
+        SELECTED_LEVELS[selectedCount] = level;
+        SELECTED_ROWS[selectedCount] = row;
+        SELECTED_COLUMNS[selectedCount] = column;
+        SELECTED_STITCHES[selectedCount] = 0;
+        selectedCount++;
+
+        int span = 1 << level;
+        for (int z = row * span; z < (row + 1) * span; z++) {
+            for (int x = column * span; x < (column + 1) * span; x++) LEVEL_GRID[z * FINEST_NODES + x] = level;
+        }
+    }
+
+    /**
+     * Get the distance from the camera to the bounding box of a node.
+     *
+     * @param level   Level of the node.
+     * @param row     Row of the node within its level.
+     * @param column  Column of the node within its level.
+     * @param cameraX X position of the camera.
+     * @param cameraY Y position of the camera.
+     * @param cameraZ Z position of the camera.
+     * @return Distance to the node, or 0 if the camera is inside it.
+     */
+    private float distance(int level, int row, int column, float cameraX, float cameraY, float cameraZ) {
+        float nodeSize = (TerrainPatch.PATCH_CELLS << level) * CELL_SIZE;
+        int index = row * (FINEST_NODES >> level) + column;
+
+        // The grid runs along the negative X and Z axes from the corner of the tile.
+        float maxX = X - column * nodeSize;
+        float maxZ = Z - row * nodeSize;
+
+        float dx = Math.max(0, Math.max(maxX - nodeSize - cameraX, cameraX - maxX));
+        float dy = Math.max(0, Math.max(MIN_HEIGHTS[level][index] - cameraY, cameraY - MAX_HEIGHTS[level][index]));
+        float dz = Math.max(0, Math.max(maxZ - nodeSize - cameraZ, cameraZ - maxZ));
+
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Stitch every edge of the selected nodes that borders a node one level coarser, on this tile or a neighbouring
+     * one. Every tile must have been selected first.
+     *
+     * @param terrains Tiles that may neighbour this one.
+     */
+    public void stitch(List<Terrain> terrains) {
+        float halfCell = CELL_SIZE / 2;
+
+        for (int i = 0; i < selectedCount; i++) {
+            int level = SELECTED_LEVELS[i];
+            float nodeSize = (TerrainPatch.PATCH_CELLS << level) * CELL_SIZE;
+
+            float maxX = X - SELECTED_COLUMNS[i] * nodeSize;
+            float maxZ = Z - SELECTED_ROWS[i] * nodeSize;
+            float centerX = maxX - nodeSize / 2;
+            float centerZ = maxZ - nodeSize / 2;
+
+            float minX = maxX - nodeSize;
+            float minZ = maxZ - nodeSize;
+
+            int stitches = 0;
+            if (neighbourLevel(terrains, centerX, maxZ + halfCell) > level) stitches |= TerrainPatch.NORTH;
+            if (neighbourLevel(terrains, centerX, minZ - halfCell) > level) stitches |= TerrainPatch.SOUTH;
+            if (neighbourLevel(terrains, maxX + halfCell, centerZ) > level) stitches |= TerrainPatch.WEST;
+            if (neighbourLevel(terrains, minX - halfCell, centerZ) > level) stitches |= TerrainPatch.EAST;
+
+            SELECTED_STITCHES[i] = stitches;
+        }
+    }
+
+    /**
+     * Get the selected level at a point, looking it up on a neighbouring tile if the point is outside this one.
+     *
+     * @param terrains Tiles that may neighbour this one.
+     * @param worldX   X position of the point.
+     * @param worldZ   Z position of the point.
+     * @return Selected level at the point, or -1 if no tile covers it.
+     */
+    private int neighbourLevel(List<Terrain> terrains, float worldX, float worldZ) {
+        int level = levelAt(worldX, worldZ);
+        if (level >= 0) return level;
+
+        Terrain neighbour = Terrain.at(terrains, worldX, worldZ);
+        return neighbour != null ? neighbour.quadTree().levelAt(worldX, worldZ) : -1;
+    }
+
+    /**
+     * Get the level of the selected node covering a point.
+     *
+     * @param worldX X position of the point.
+     * @param worldZ Z position of the point.
+     * @return Selected level at the point, or -1 if the point is outside the tile.
+     */
+    public int levelAt(float worldX, float worldZ) {
+        float patchSize = TerrainPatch.PATCH_CELLS * CELL_SIZE;
+        float gridX = (X - worldX) / patchSize;
+        float gridZ = (Z - worldZ) / patchSize;
+
+        if (gridX < 0 || gridZ < 0 || gridX >= FINEST_NODES || gridZ >= FINEST_NODES) return -1;
+
+        return LEVEL_GRID[(int) gridZ * FINEST_NODES + (int) gridX];
+    }
+
+    public int selectedCount() {
+        return selectedCount;
+    }
+
+    public int selectedLevel(int i) {
+        return SELECTED_LEVELS[i];
+    }
+
+    public int selectedStitches(int i) {
+        return SELECTED_STITCHES[i];
+    }
+
+    /**
+     * Write the instance data of every selected node, in selection order: the first column and row of the node in
+     * the height map, the number of height map cells per patch quad and the bit mask of its stitched edges.
+     *
+     * @param destination Array to be written to, with at least {@code INSTANCE_DATA_LENGTH} floats per selected node.
+     * @return Number of instances written.
+     */
+    public int storeInstances(float[] destination) {
+        int pointer = 0;
+
+        for (int i = 0; i < selectedCount; i++) {
+            int step = 1 << SELECTED_LEVELS[i];
+            int span = TerrainPatch.PATCH_CELLS * step;
+
+            destination[pointer++] = SELECTED_COLUMNS[i] * span;
+            destination[pointer++] = SELECTED_ROWS[i] * span;
+            destination[pointer++] = step;
+            destination[pointer++] = SELECTED_STITCHES[i];
+        }
+
+        return selectedCount;
+    }
+
+    /**
+     * Count the triangles drawn for the current selection, including the ones collapsed by stitching.
+     *
+     * @return Number of selected triangles.
+     */
+    public int selectedTriangles() {
+        return selectedCount * TerrainPatch.PATCH_CELLS * TerrainPatch.PATCH_CELLS * 2;
+    }
+}
@@ -0,0 +1,495 @@
+package terrains;
+
+import org.lwjgl.BufferUtils;
+import renderEngine.Loader;
+import textures.TerrainTexture;
+import textures.TerrainTexturePack;
+
+import java.io.PrintStream;
+import java.nio.FloatBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps the terrain tiles around a moving point resident, so the world is only bounded by its {@link TileSource}.
+ * <p>
+ * Every frame {@link #update(float, float)} requests the missing tiles within the load radius of the tile under the
+ * point, nearest ring first. Their height maps and quadtrees are prepared on worker threads, and the finished tiles
+ * are handed back to the render thread, which uploads their height textures until the frame's upload budget is
+ * spent. Tiles further away than the eviction radius are dropped, and their height textures are kept in a pool to be
+ * refilled by later tiles of the same size. The gap between the two radii stops tiles on a boundary the point keeps
+ * crossing from being evicted and reloaded over and over.
+ * <p>
+ * A tile whose source fails is reported and left out. It is requested again once a retry delay has passed, as long as
+ * it is still within the load radius.
+ */
+public class TerrainStreamer {
+    private static final long DEFAULT_RETRY_DELAY_NANOS = 1_000_000_000L;
+
+    private final TileSource SOURCE;
+    private final Loader LOADER;
+    private final TerrainTexturePack TEXTURE_PACK;
+    private final TerrainTexture BLEND_MAP;
+
+    private final int LOAD_RADIUS;
+    private final int EVICT_RADIUS;
+    private final long UPLOAD_BUDGET_NANOS;
+    private final long RETRY_DELAY_NANOS;
+
+    private final ExecutorService WORKERS;
+    private final ConcurrentLinkedQueue<PreparedTile> READY = new ConcurrentLinkedQueue<>();
+    private final Map<Long, Future<?>> PENDING = new HashMap<>();
+    private final Map<Long, Terrain> RESIDENT = new ConcurrentHashMap<>();
+    private final List<Terrain> TERRAINS = new ArrayList<>();
+    private final Map<Integer, ArrayDeque<Integer>> TEXTURE_POOL = new HashMap<>();
+    private FloatBuffer stagingBuffer = BufferUtils.createFloatBuffer(0);
+
+    private int centreX = Integer.MIN_VALUE;
+    private int centreZ = Integer.MIN_VALUE;
+    private long retryNanos = Long.MAX_VALUE;
+
+    private int tilesLoaded = 0;
+    private int tilesEvicted = 0;
+    private int tilesDiscarded = 0;
+    private int tilesFailed = 0;
+    private int texturesCreated = 0;
+    private int texturesReused = 0;
+    private long totalGenerationNanos = 0;
+    private long maxGenerationNanos = 0;
+    private long totalResidencyNanos = 0;
+    private long maxResidencyNanos = 0;
+
+    /**
+     * Tile whose heights and quadtree were prepared by a worker thread, waiting for its height texture, or whose
+     * preparation failed.
+     *
+     * @param key            Key of the tile's grid position.
+     * @param terrain        Terrain without any textures, or null if its preparation failed.
+     * @param requestNanos   Time the tile was requested.
+     * @param generatedNanos Time the worker finished the tile.
+     */
+    private record PreparedTile(long key, Terrain terrain, long requestNanos, long generatedNanos) {
+    }
+
+    /**
+     * Create a new terrain streamer.
+     *
+     * @param source            Source of the height maps of the tiles.
+     * @param loader            Loader class to upload the height textures of the tiles.
+     * @param texturePack       Texture pack for all the four textures to be blended onto every tile.
+     * @param blendMap          Texture describing how to blend the textures on every tile.
+     * @param loadRadius        Number of tiles around the centre tile to keep resident in every direction.
+     * @param evictRadius       Number of tiles around the centre tile beyond which tiles are evicted; at least the
+     *                          load radius.
+     * @param uploadBudgetNanos Time each call to {@link #update(float, float)} may spend uploading tiles, after the
+     *                          first upload which is always made.
+     * @param workerCount       Number of threads preparing tiles.
+     */
+    public TerrainStreamer(
+            TileSource source, Loader loader, TerrainTexturePack texturePack, TerrainTexture blendMap,
+            int loadRadius, int evictRadius, long uploadBudgetNanos, int workerCount
+    ) {
+        this(
+                source, loader, texturePack, blendMap, loadRadius, evictRadius, uploadBudgetNanos, workerCount,
+                DEFAULT_RETRY_DELAY_NANOS
+        );
+    }
+
+    /**
+     * Create a terrain streamer whose tiles only answer height queries and select their level of detail, without
+     * uploading any textures.
+     *
+     * @param source          Source of the height maps of the tiles.
+     * @param loadRadius      Number of tiles around the centre tile to keep resident in every direction.
+     * @param evictRadius     Number of tiles around the centre tile beyond which tiles are evicted.
+     * @param workerCount     Number of threads preparing tiles.
+     * @param retryDelayNanos Time after a tile failed to be prepared before it is requested again.
+     */
+    TerrainStreamer(TileSource source, int loadRadius, int evictRadius, int workerCount, long retryDelayNanos) {
+        this(source, null, null, null, loadRadius, evictRadius, Long.MAX_VALUE, workerCount, retryDelayNanos);
+    }
+
+    /**
+     * Create a new terrain streamer.
+     *
+     * @param source            Source of the height maps of the tiles.
+     * @param loader            Loader class to upload the height textures of the tiles, or null to upload nothing.
+     * @param texturePack       Texture pack for all the four textures to be blended onto every tile.
+     * @param blendMap          Texture describing how to blend the textures on every tile.
+     * @param loadRadius        Number of tiles around the centre tile to keep resident in every direction.
+     * @param evictRadius       Number of tiles around the centre tile beyond which tiles are evicted.
+     * @param uploadBudgetNanos Time each call to {@link #update(float, float)} may spend uploading tiles.
+     * @param workerCount       Number of threads preparing tiles.
+     * @param retryDelayNanos   Time after a tile failed to be prepared before it is requested again.
+     */
+    private TerrainStreamer(
+            TileSource source, Loader loader, TerrainTexturePack texturePack, TerrainTexture blendMap,
+            int loadRadius, int evictRadius, long uploadBudgetNanos, int workerCount, long retryDelayNanos
+    ) {
+        if (loadRadius < 0 || evictRadius < loadRadius || workerCount < 1) {
+            throw new IllegalArgumentException("Streaming needs 0 <= load radius <= evict radius and a worker.");
+        }
+
+        this.SOURCE = source;
+        this.LOADER = loader;
+        this.TEXTURE_PACK = texturePack;
+        this.BLEND_MAP = blendMap;
+
+        this.LOAD_RADIUS = loadRadius;
+        this.EVICT_RADIUS = evictRadius;
+        this.UPLOAD_BUDGET_NANOS = uploadBudgetNanos;
+        this.RETRY_DELAY_NANOS = retryDelayNanos;
+
+        this.WORKERS = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "terrain-streamer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+    }
+
+    /**
+     * Stream the terrain around a point: evict the tiles that drifted out of range, request the missing tiles nearest
+     * first, including failed tiles due for a retry, and upload the tiles the workers finished, within the upload
+     * budget.
+     *
+     * @param worldX X position of the point.
+     * @param worldZ Z position of the point.
+     */
+    public void update(float worldX, float worldZ) {
+        int gridX = Terrain.gridPosition(worldX);
+        int gridZ = Terrain.gridPosition(worldZ);
+
+        if (gridX != centreX || gridZ != centreZ) {
+            centreX = gridX;
+            centreZ = gridZ;
+
+            evictOutOfRange();
+            requestMissing();
+        }
+
+        else if (System.nanoTime() >= retryNanos) {
+            retryNanos = Long.MAX_VALUE;
+            requestMissing();
+        }
+
+        uploadReady(UPLOAD_BUDGET_NANOS);
+    }
+
+    /**
+     * Stream the terrain around a point and wait until every tile within the load radius is resident or has failed,
+     * ignoring the upload budget. Meant for loading screens and teleports.
+     *
+     * @param worldX X position of the point.
+     * @param worldZ Z position of the point.
+     */
+    public void loadAround(float worldX, float worldZ) {
+        update(worldX, worldZ);
+
+        for (Future<?> future : List.copyOf(PENDING.values())) {
+            try {
+                future.get();
+            }
+
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+
+            catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        uploadReady(Long.MAX_VALUE);
+    }
+
+    /**
+     * Evict every resident tile, and cancel every pending tile, further than the eviction radius from the centre tile.
+     */
+    private void evictOutOfRange() {
+        Iterator<Map.Entry<Long, Terrain>> resident = RESIDENT.entrySet().iterator();
+
+        while (resident.hasNext()) {
+            Map.Entry<Long, Terrain> entry = resident.next();
+            if (inRange(entry.getKey(), EVICT_RADIUS)) continue;
+
+            Terrain terrain = entry.getValue();
+            resident.remove();
+            TERRAINS.remove(terrain);
+            recycleHeightTexture(terrain);
+            tilesEvicted++;
+        }
+
+        Iterator<Map.Entry<Long, Future<?>>> pending = PENDING.entrySet().iterator();
+
+        while (pending.hasNext()) {
+            Map.Entry<Long, Future<?>> entry = pending.next();
+            if (inRange(entry.getKey(), EVICT_RADIUS)) continue;
+
+            entry.getValue().cancel(false);
+            pending.remove();
+        }
+    }
+
+    /**
+     * Request every tile within the load radius of the centre tile that is neither resident nor pending, one ring
+     * around the centre tile at a time so the workers prepare the nearest tiles first.
+     */
+    private void requestMissing() {
+        for (int ring = 0; ring <= LOAD_RADIUS; ring++) {
+            for (int z = -ring; z <= ring; z++) {
+                for (int x = -ring; x <= ring; x++) {
+                    if (Math.max(Math.abs(x), Math.abs(z)) == ring) request(centreX + x, centreZ + z);
+                }
+            }
+        }
+    }
+
+    /**
+     * Request a tile from the workers unless it is already resident or pending.
+     *
+     * @param gridX X position of the tile on the terrain grid.
+     * @param gridZ Z position of the tile on the terrain grid.
+     */
+    private void request(int gridX, int gridZ) {
+        long key = key(gridX, gridZ);
+        if (RESIDENT.containsKey(key) || PENDING.containsKey(key)) return;
+
+        long requestNanos = System.nanoTime();
+
+        PENDING.put(key, WORKERS.submit(() -> {
+            Terrain terrain = null;
+
+            try {
+                terrain = new Terrain(gridX, gridZ, SOURCE.heightMap(gridX, gridZ));
+            }
+
+            catch (RuntimeException e) {
+                System.err.println(
+                        "Tried to prepare terrain tile " + gridX + ", " + gridZ + " unsuccessfully: " + e.getMessage()
+                );
+            }
+
+            READY.add(new PreparedTile(key, terrain, requestNanos, System.nanoTime()));
+        }));
+    }
+
+    /**
+     * Upload the height textures of the tiles the workers finished and make them resident, until the budget is spent.
+     * Tiles that were cancelled or drifted out of range while being prepared are discarded, and tiles that failed are
+     * scheduled to be requested again.
+     *
+     * @param budgetNanos Time that may be spent uploading, after the first upload which is always made.
+     */
+    private void uploadReady(long budgetNanos) {
+        long start = System.nanoTime();
+        int uploads = 0;
+
+        PreparedTile tile;
+        while ((uploads == 0 || System.nanoTime() - start < budgetNanos) && (tile = READY.poll()) != null) {
+            boolean wanted = PENDING.remove(tile.key()) != null && !RESIDENT.containsKey(tile.key());
+
+            if (tile.terrain() == null) {
+                tilesFailed++;
+                retryNanos = Math.min(retryNanos, System.nanoTime() + RETRY_DELAY_NANOS);
+                continue;
+            }
+
+            if (!wanted || !inRange(tile.key(), EVICT_RADIUS)) {
+                tilesDiscarded++;
+                continue;
+            }
+
+            Terrain terrain = LOADER != null
+                    ? new Terrain(tile.terrain(), TEXTURE_PACK, BLEND_MAP, uploadHeightTexture(tile.terrain()))
+                    : tile.terrain();
+
+            RESIDENT.put(tile.key(), terrain);
+            TERRAINS.add(terrain);
+            uploads++;
+            tilesLoaded++;
+
+            long generationNanos = tile.generatedNanos() - tile.requestNanos();
+            long residencyNanos = System.nanoTime() - tile.requestNanos();
+            totalGenerationNanos += generationNanos;
+            maxGenerationNanos = Math.max(maxGenerationNanos, generationNanos);
+            totalResidencyNanos += residencyNanos;
+            maxResidencyNanos = Math.max(maxResidencyNanos, residencyNanos);
+        }
+    }
+
+    /**
+     * Upload the heights of a tile to a pooled height texture of the same size, or to a new one if the pool has none.
+     *
+     * @param terrain Tile whose heights are to be uploaded.
+     * @return ID of the height texture.
+     */
+    private int uploadHeightTexture(Terrain terrain) {
+        HeightMap heightMap = terrain.heightMap();
+        int size = heightMap.size();
+        ArrayDeque<Integer> pool = TEXTURE_POOL.get(size);
+
+        if (pool == null || pool.isEmpty()) {
+            texturesCreated++;
+            return LOADER.loadFloatTexture(heightMap.heights(), size, size);
+        }
+
+        if (stagingBuffer.capacity() < size * size) stagingBuffer = BufferUtils.createFloatBuffer(size * size);
+
+        int textureID = pool.pop();
+        LOADER.updateFloatTexture(textureID, heightMap.heights(), size, size, stagingBuffer);
+        texturesReused++;
+        return textureID;
+    }
+
+    /**
+     * Return the height texture of an evicted tile to the pool. The texture itself is deleted with the loader's.
+     *
+     * @param terrain Evicted tile.
+     */
+    private void recycleHeightTexture(Terrain terrain) {
+        if (terrain.heightTextureID() == 0) return;
+
+        TEXTURE_POOL.computeIfAbsent(terrain.heightMap().size(), size -> new ArrayDeque<>())
+                .push(terrain.heightTextureID());
+    }
+
+    /**
+     * Check if a tile lies within a number of tiles of the centre tile in both directions.
+     *
+     * @param key    Key of the tile's grid position.
+     * @param radius Number of tiles.
+     * @return True if the tile is within range, else false.
+     */
+    private boolean inRange(long key, int radius) {
+        return Math.abs(keyX(key) - centreX) <= radius && Math.abs(keyZ(key) - centreZ) <= radius;
+    }
+
+    /**
+     * Pack the grid position of a tile into a single key.
+     *
+     * @param gridX X position of the tile on the terrain grid.
+     * @param gridZ Z position of the tile on the terrain grid.
+     * @return Key of the grid position.
+     */
+    private static long key(int gridX, int gridZ) {
+        return (long) gridX << 32 | (gridZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Unpack the X position of a tile from its key.
+     *
+     * @param key Key of the tile's grid position.
+     * @return X position of the tile on the terrain grid.
+     */
+    private static int keyX(long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * Unpack the Z position of a tile from its key.
+     *
+     * @param key Key of the tile's grid position.
+     * @return Z position of the tile on the terrain grid.
+     */
+    private static int keyZ(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Find the resident tile under a point in the world. Safe to call from any thread, such as a simulation thread
+     * running beside the render thread that streams the tiles.
+     *
+     * @param worldX X position of the point.
+     * @param worldZ Z position of the point.
+     * @return Tile under the point, or null if it is not resident.
+     */
+    public Terrain terrainAt(float worldX, float worldZ) {
+        return RESIDENT.get(key(Terrain.gridPosition(worldX), Terrain.gridPosition(worldZ)));
+    }
+
+    /**
+     * Get the resident tiles. The list is owned by the streamer and changes with every update.
+     *
+     * @return Resident tiles.
+     */
+    public List<Terrain> terrains() {
+        return Collections.unmodifiableList(TERRAINS);
+    }
+
+    public int residentCount() {
+        return RESIDENT.size();
+    }
+
+    public int pendingCount() {
+        return PENDING.size();
+    }
+
+    public int tilesLoaded() {
+        return tilesLoaded;
+    }
+
+    public int tilesEvicted() {
+        return tilesEvicted;
+    }
+
+    public int tilesFailed() {
+        return tilesFailed;
+    }
+
+    /**
+     * Get the average time from requesting a tile until a worker finished preparing it.
+     *
+     * @return Average generation latency in milliseconds, or 0 if no tile has been loaded.
+     */
+    public float averageGenerationMillis() {
+        return tilesLoaded == 0 ? 0 : totalGenerationNanos / 1_000_000f / tilesLoaded;
+    }
+
+    /**
+     * Get the average time from requesting a tile until it became resident, including the time it waited for the
+     * workers and for the upload budget.
+     *
+     * @return Average residency latency in milliseconds, or 0 if no tile has been loaded.
+     */
+    public float averageResidencyMillis() {
+        return tilesLoaded == 0 ? 0 : totalResidencyNanos / 1_000_000f / tilesLoaded;
+    }
+
+    /**
+     * Print the streaming statistics.
+     *
+     * @param out Stream to be printed to.
+     */
+    public void print(PrintStream out) {
+        out.printf(
+                "Terrain streaming: %d resident, %d pending, %d loaded, %d evicted, %d discarded, %d failed%n",
+                RESIDENT.size(), PENDING.size(), tilesLoaded, tilesEvicted, tilesDiscarded, tilesFailed
+        );
+        out.printf(
+                "  generation %.2f ms avg / %.2f ms max, residency %.2f ms avg / %.2f ms max%n",
+                averageGenerationMillis(), maxGenerationNanos / 1_000_000f,
+                averageResidencyMillis(), maxResidencyNanos / 1_000_000f
+        );
+        out.printf("  height textures: %d created, %d reused%n", texturesCreated, texturesReused);
+    }
+
+    /**
+     * Stop the worker threads, abandoning any pending tiles.
+     */
+    public void cleanUp() {
+        WORKERS.shutdownNow();
+    }
+}
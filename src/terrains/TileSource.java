@@ -0,0 +1,29 @@
+package terrains;
+
+/**
+ * Source of the height maps of terrain tiles, addressed by their grid position. Tiles are requested from background
+ * threads, so implementations must be safe to call concurrently and must return the same heights for a tile every
+ * time it is requested.
+ */
+public interface TileSource {
+    /**
+     * Produce the height map of a tile.
+     *
+     * @param gridX X position of the tile on the terrain grid.
+     * @param gridZ Z position of the tile on the terrain grid.
+     * @return Heights of the tile.
+     */
+    HeightMap heightMap(int gridX, int gridZ);
+
+    /**
+     * Create a source reading every tile from its own raw 16-bit height map in the resources folder, named
+     * {@code <prefix>_<gridX>_<gridZ>.r16}.
+     *
+     * @param prefix    Path of the tile files within the resources folder, up to the grid position.
+     * @param maxHeight Height of the largest sample.
+     * @return Source of the tiles on disk.
+     */
+    static TileSource rawFiles(String prefix, float maxHeight) {
+        return (gridX, gridZ) -> HeightMap.loadRaw16(prefix + "_" + gridX + "_" + gridZ, maxHeight);
+    }
+}
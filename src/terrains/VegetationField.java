@@ -0,0 +1,157 @@
+package terrains;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Ground cover scattered over the terrain by a set of {@link VegetationLayer}s, one square chunk at a time.
+ * <p>
+ * Chunks are laid out on a world grid like terrain tiles, stretching from their corner along the negative X and Z
+ * axes, and several fit into each tile. The instances of a chunk depend only on the seed, the chunk's position and
+ * the terrain under it, so a chunk can be dropped as soon as the camera leaves it and scattered again, identically,
+ * when it comes back.
+ */
+public class VegetationField {
+    public static final float CHUNK_SIZE = 50;
+    public static final int INSTANCE_DATA_LENGTH = 5;
+
+    private static final long LAYER_SEED_STEP = 0x9E3779B97F4A7C15L;
+
+    private final List<VegetationLayer> LAYERS;
+    private final BlendMap BLEND_MAP;
+    private final long SEED;
+
+    private final int MAX_INSTANCES_PER_CHUNK;
+    private final float MAX_FADE_DISTANCE;
+
+    /**
+     * Create a new vegetation field.
+     *
+     * @param layers   Layers of ground cover, drawn in this order.
+     * @param blendMap Blend map shared by every terrain tile, which scales the density of each layer.
+     * @param seed     Seed of the placement.
+     */
+    public VegetationField(List<VegetationLayer> layers, BlendMap blendMap, long seed) {
+        this.LAYERS = List.copyOf(layers);
+        this.BLEND_MAP = blendMap;
+        this.SEED = seed;
+
+        int maxInstances = 0;
+        float maxFadeDistance = 0;
+
+        for (VegetationLayer layer : LAYERS) {
+            maxInstances += candidateCount(layer);
+            maxFadeDistance = Math.max(maxFadeDistance, layer.fadeDistance());
+        }
+
+        this.MAX_INSTANCES_PER_CHUNK = maxInstances;
+        this.MAX_FADE_DISTANCE = maxFadeDistance;
+    }
+
+    /**
+     * Scatter the instances of every layer over a chunk. Each layer tries a fixed number of random positions in the
+     * chunk and keeps each one with the probability given by its blend map channel there, so the density follows
+     * the blend map smoothly. Instances are stored as their position, scale and rotation about the Y axis, layer
+     * after layer.
+     *
+     * @param terrain     Tile the chunk lies on.
+     * @param chunkX      X position of the chunk on the chunk grid.
+     * @param chunkZ      Z position of the chunk on the chunk grid.
+     * @param destination Destination for the instance data, with room for {@link #maxInstancesPerChunk()} instances.
+     * @param layerCounts Destination for the number of instances of each layer.
+     * @return Total number of instances.
+     */
+    public int scatter(Terrain terrain, int chunkX, int chunkZ, float[] destination, int[] layerCounts) {
+        float cornerX = chunkX * CHUNK_SIZE;
+        float cornerZ = chunkZ * CHUNK_SIZE;
+        int pointer = 0;
+
+        for (int i = 0; i < LAYERS.size(); i++) {
+            VegetationLayer layer = LAYERS.get(i);
+            SplittableRandom random = new SplittableRandom(chunkSeed(chunkX, chunkZ, i));
+            int candidates = candidateCount(layer);
+            int count = 0;
+
+            for (int candidate = 0; candidate < candidates; candidate++) {
+                // Draw every value even for rejected candidates, so one candidate never shifts the next.
+                float x = cornerX - (float) random.nextDouble() * CHUNK_SIZE;
+                float z = cornerZ - (float) random.nextDouble() * CHUNK_SIZE;
+                float chance = (float) random.nextDouble();
+                float scale = layer.minScale() + (float) random.nextDouble() * (layer.maxScale() - layer.minScale());
+                float rotation = (float) random.nextDouble() * 360;
+
+                float u = (terrain.x() - x) / Terrain.SIZE;
+                float v = (terrain.z() - z) / Terrain.SIZE;
+                if (chance >= BLEND_MAP.weight(layer.channel(), u, v)) continue;
+
+                destination[pointer++] = x;
+                destination[pointer++] = terrain.heightAt(x, z);
+                destination[pointer++] = z;
+                destination[pointer++] = scale;
+                destination[pointer++] = rotation;
+                count++;
+            }
+
+            layerCounts[i] = count;
+        }
+
+        return pointer / INSTANCE_DATA_LENGTH;
+    }
+
+    /**
+     * Find the number of random positions a layer tries in each chunk.
+     *
+     * @param layer Layer of ground cover.
+     * @return Number of positions.
+     */
+    private static int candidateCount(VegetationLayer layer) {
+        return Math.round(layer.density() * CHUNK_SIZE * CHUNK_SIZE);
+    }
+
+    /**
+     * Derive the seed of one layer of one chunk from the field's seed.
+     *
+     * @param chunkX X position of the chunk on the chunk grid.
+     * @param chunkZ Z position of the chunk on the chunk grid.
+     * @param layer  Index of the layer.
+     * @return Seed of the layer within the chunk.
+     */
+    private long chunkSeed(int chunkX, int chunkZ, int layer) {
+        long seed = SEED + layer * LAYER_SEED_STEP;
+        seed = (seed ^ chunkX) * 0xBF58476D1CE4E5B9L;
+        seed = (seed ^ chunkZ) * 0x94D049BB133111EBL;
+        return seed ^ seed >>> 31;
+    }
+
+    /**
+     * Find the position on the chunk grid of the chunk covering a world coordinate, along either the X or Z axis.
+     *
+     * @param world World coordinate.
+     * @return Grid position of the chunk covering it.
+     */
+    public static int chunkPosition(float world) {
+        return (int) Math.ceil(world / CHUNK_SIZE);
+    }
+
+    public List<VegetationLayer> layers() {
+        return LAYERS;
+    }
+
+    /**
+     * Get the largest number of instances a single chunk can hold, over all its layers.
+     *
+     * @return Maximum instance count of a chunk.
+     */
+    public int maxInstancesPerChunk() {
+        return MAX_INSTANCES_PER_CHUNK;
+    }
+
+    /**
+     * Get the distance beyond which no layer draws any instances.
+     *
+     * @return Largest fade distance of the layers.
+     */
+    public float maxFadeDistance() {
+        return MAX_FADE_DISTANCE;
+    }
+}
@@ -0,0 +1,18 @@
+package terrains;
+
+import models.TexturedModel;
+
+/**
+ * Rule for scattering one kind of ground cover over the terrain, tied to one channel of the blend map.
+ *
+ * @param model        Textured model drawn for every instance.
+ * @param channel      Blend map channel scaling the density, one of the {@link BlendMap} channels.
+ * @param density      Instances per square unit where the channel has full weight.
+ * @param minScale     Smallest scale of an instance.
+ * @param maxScale     Largest scale of an instance.
+ * @param fadeDistance Distance from the camera at which instances have shrunk away completely.
+ */
+public record VegetationLayer(
+        TexturedModel model, int channel, float density, float minScale, float maxScale, float fadeDistance
+) {
+}
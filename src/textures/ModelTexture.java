@@ -1,5 +1,7 @@
 package textures;
 
+import shaders.ShaderFeature;
+
 /**
  * Class to store a texture ID for a model.
  */
@@ -8,6 +10,7 @@ public class ModelTexture {
     private float shineDamping = 1;
     private float reflectivity = 0;
     private boolean hasTransparency = false;
+    private boolean hasCutouts = false;
     private boolean useFakeLighting = false;
 
     /**
@@ -43,6 +46,19 @@ public class ModelTexture {
         this.hasTransparency = hasTransparency;
     }
 
+    /**
+     * Check if the texture has texels the alpha test discards, even though the model is drawn with back-face culling.
+     *
+     * @return True if the texture needs the alpha test, else false.
+     */
+    public boolean hasCutouts() {
+        return hasCutouts;
+    }
+
+    public void setHasCutouts(boolean hasCutouts) {
+        this.hasCutouts = hasCutouts;
+    }
+
     public boolean useFakeLighting() {
         return useFakeLighting;
     }
@@ -50,4 +66,40 @@ public class ModelTexture {
     public void setUseFakeLighting(boolean useFakeLighting) {
         this.useFakeLighting = useFakeLighting;
     }
+
+    /**
+     * Get the shader features this material needs, which select the shader variant it is drawn with. Transparent
+     * textures and textures with cutouts are alpha tested; every other texture skips the discard, so the depth test
+     * can still reject its fragments early.
+     *
+     * @return Bit mask of shader features.
+     */
+    public int shaderFeatures() {
+        int features = 0;
+
+        if (useFakeLighting) features |= ShaderFeature.FAKE_LIGHTING.bit();
+        if (hasTransparency || hasCutouts) features |= ShaderFeature.ALPHA_TEST.bit();
+        if (reflectivity > 0) features |= ShaderFeature.SPECULAR.bit();
+
+        return features;
+    }
+
+    /**
+     * Check if RGBA texture data has any texel the alpha test would discard, which is an alpha below one half.
+     *
+     * @param rgba        Texture data, four bytes per texel, row by row.
+     * @param rowLength   Number of texels in a row of the data, which may be padded beyond the image.
+     * @param imageWidth  Width of the image within the data in texels.
+     * @param imageHeight Height of the image within the data in texels.
+     * @return True if the image has cutouts, else false.
+     */
+    public static boolean hasCutouts(byte[] rgba, int rowLength, int imageWidth, int imageHeight) {
+        for (int row = 0; row < imageHeight; row++) {
+            for (int column = 0; column < imageWidth; column++) {
+                if ((rgba[(row * rowLength + column) * 4 + 3] & 0xFF) < 128) return true;
+            }
+        }
+
+        return false;
+    }
 }
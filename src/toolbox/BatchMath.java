@@ -0,0 +1,74 @@
+package toolbox;
+
+/**
+ * Data-parallel transform and culling operations over struct-of-arrays entity data. Matrices are stored as 16
+ * consecutive floats in column-major order, the layout OpenGL expects.
+ * <p>
+ * {@link #get()} returns the SIMD implementation from the optional simd module when it is on the class path and the
+ * JVM was started with {@code --add-modules jdk.incubator.vector}, and the scalar implementation otherwise.
+ */
+public interface BatchMath {
+    /**
+     * Name of the class implementing the operations with the Java Vector API, loaded reflectively if present.
+     */
+    String VECTOR_IMPLEMENTATION = "simd.VectorBatchMath";
+
+    /**
+     * System property which, when set to false, forces the scalar implementation.
+     */
+    String SIMD_PROPERTY = "maple.simd";
+
+    /**
+     * Compute model matrices, equivalent to {@link EngineMath#createTransformationMatrix}, for a range of bodies.
+     *
+     * @param positionsX X translations.
+     * @param positionsY Y translations.
+     * @param positionsZ Z translations.
+     * @param rotationsX Rotations around the X axis in degrees.
+     * @param rotationsY Rotations around the Y axis in degrees.
+     * @param rotationsZ Rotations around the Z axis in degrees.
+     * @param scales     Scales.
+     * @param count      Number of bodies, starting at index 0.
+     * @param matrices   Destination holding at least 16 * count floats.
+     */
+    void computeModelMatrices(
+            float[] positionsX, float[] positionsY, float[] positionsZ, float[] rotationsX, float[] rotationsY,
+            float[] rotationsZ, float[] scales, int count, float[] matrices
+    );
+
+    /**
+     * Multiply one matrix by each matrix of a batch, for example a view-projection matrix by model matrices.
+     *
+     * @param left     Matrix on the left-hand side of every product.
+     * @param matrices Matrices on the right-hand side of the products.
+     * @param count    Number of matrices in the batch.
+     * @param results  Destination holding at least 16 * count floats; must not be the same array as matrices.
+     */
+    void multiplyMatrices(float[] left, float[] matrices, int count, float[] results);
+
+    /**
+     * Test bounding spheres against a frustum and collect the indices of the ones at least partially inside.
+     *
+     * @param planes         Six normalized frustum planes as (a, b, c, d), see {@link EngineMath#extractFrustumPlanes}.
+     * @param centersX       X coordinates of the sphere centers.
+     * @param centersY       Y coordinates of the sphere centers.
+     * @param centersZ       Z coordinates of the sphere centers.
+     * @param radii          Sphere radii.
+     * @param count          Number of spheres.
+     * @param visibleIndices Destination for the indices of the visible spheres, in ascending order.
+     * @return Number of visible spheres.
+     */
+    int cullSpheres(
+            float[] planes, float[] centersX, float[] centersY, float[] centersZ, float[] radii, int count,
+            int[] visibleIndices
+    );
+
+    /**
+     * Get the fastest implementation available in the running JVM.
+     *
+     * @return Batch math implementation.
+     */
+    static BatchMath get() {
+        return BatchMathSelector.INSTANCE;
+    }
+}
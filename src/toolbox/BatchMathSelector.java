@@ -0,0 +1,23 @@
+package toolbox;
+
+/**
+ * Selects the batch math implementation the first time it is requested.
+ */
+final class BatchMathSelector {
+    static final BatchMath INSTANCE = select();
+
+    private BatchMathSelector() { }
+
+    private static BatchMath select() {
+        if (!Boolean.parseBoolean(System.getProperty(BatchMath.SIMD_PROPERTY, "true"))) return new ScalarBatchMath();
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return new ScalarBatchMath();
+
+        try {
+            return (BatchMath) Class.forName(BatchMath.VECTOR_IMPLEMENTATION).getDeclaredConstructor().newInstance();
+        }
+
+        catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarBatchMath();
+        }
+    }
+}
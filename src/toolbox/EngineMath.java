@@ -4,10 +4,18 @@ import entities.Camera;
 import org.lwjgl.util.vector.Matrix4f;
 import org.lwjgl.util.vector.Vector3f;
 
+import java.nio.FloatBuffer;
+
 /**
  * Commonly used Mathematical operations used within the engine.
+ * <p>
+ * The allocating factory methods are kept for convenience; the render loop uses the in-place and batch variants,
+ * which build the matrices in closed form and never allocate.
  */
 public class EngineMath {
+    // Per-thread matrix the Matrix4f and FloatBuffer variants are built in before being copied out.
+    private static final ThreadLocal<float[]> SCRATCH = ThreadLocal.withInitial(() -> new float[16]);
+
     /**
      * Create a new transformation matrix with specified values.
      *
@@ -17,16 +25,185 @@ public class EngineMath {
      * @return New transformation matrix.
      */
     public static Matrix4f createTransformationMatrix(Vector3f translation, Vector3f rotation, float scale) {
-        Matrix4f matrix = new Matrix4f();
-        matrix.setIdentity();
+        return createTransformationMatrix(translation, rotation, scale, new Matrix4f());
+    }
+
+    /**
+     * Write a transformation matrix into an existing matrix.
+     *
+     * @param translation Translation of the matrix.
+     * @param rotation    Rotation of the body in the matrix, as Euler angles in degrees applied in X, Y, Z order.
+     * @param scale       Scale of the matrix.
+     * @param destination Matrix to be overwritten.
+     * @return Destination matrix.
+     */
+    public static Matrix4f createTransformationMatrix(
+            Vector3f translation, Vector3f rotation, float scale, Matrix4f destination
+    ) {
+        return createTransformationMatrix(
+                translation.x, translation.y, translation.z, rotation.x, rotation.y, rotation.z, scale, destination
+        );
+    }
+
+    /**
+     * Write a transformation matrix into an existing matrix. Equivalent to translating an identity matrix, rotating
+     * it around the X, Y and Z axes in that order and scaling it, but computed directly from the sines and cosines.
+     *
+     * @param x           X translation of the matrix.
+     * @param y           Y translation of the matrix.
+     * @param z           Z translation of the matrix.
+     * @param rotationX   Rotation around the X axis in degrees.
+     * @param rotationY   Rotation around the Y axis in degrees.
+     * @param rotationZ   Rotation around the Z axis in degrees.
+     * @param scale       Scale of the matrix.
+     * @param destination Matrix to be overwritten.
+     * @return Destination matrix.
+     */
+    public static Matrix4f createTransformationMatrix(
+            float x, float y, float z, float rotationX, float rotationY, float rotationZ, float scale,
+            Matrix4f destination
+    ) {
+        float[] matrix = SCRATCH.get();
+        storeTransformationMatrix(x, y, z, rotationX, rotationY, rotationZ, scale, matrix, 0);
+
+        destination.m00 = matrix[0];
+        destination.m01 = matrix[1];
+        destination.m02 = matrix[2];
+        destination.m03 = matrix[3];
+        destination.m10 = matrix[4];
+        destination.m11 = matrix[5];
+        destination.m12 = matrix[6];
+        destination.m13 = matrix[7];
+        destination.m20 = matrix[8];
+        destination.m21 = matrix[9];
+        destination.m22 = matrix[10];
+        destination.m23 = matrix[11];
+        destination.m30 = matrix[12];
+        destination.m31 = matrix[13];
+        destination.m32 = matrix[14];
+        destination.m33 = matrix[15];
+
+        return destination;
+    }
+
+    /**
+     * Write a transformation matrix in column-major order into a float buffer at its current position, advancing the
+     * position by 16.
+     *
+     * @param translation Translation of the matrix.
+     * @param rotation    Rotation of the body in the matrix, as Euler angles in degrees applied in X, Y, Z order.
+     * @param scale       Scale of the matrix.
+     * @param destination Buffer to be written to.
+     */
+    public static void storeTransformationMatrix(
+            Vector3f translation, Vector3f rotation, float scale, FloatBuffer destination
+    ) {
+        storeTransformationMatrix(
+                translation.x, translation.y, translation.z, rotation.x, rotation.y, rotation.z, scale, destination
+        );
+    }
+
+    /**
+     * Write a transformation matrix in column-major order into a float buffer at its current position, advancing the
+     * position by 16.
+     *
+     * @param x           X translation of the matrix.
+     * @param y           Y translation of the matrix.
+     * @param z           Z translation of the matrix.
+     * @param rotationX   Rotation around the X axis in degrees.
+     * @param rotationY   Rotation around the Y axis in degrees.
+     * @param rotationZ   Rotation around the Z axis in degrees.
+     * @param scale       Scale of the matrix.
+     * @param destination Buffer to be written to.
+     */
+    public static void storeTransformationMatrix(
+            float x, float y, float z, float rotationX, float rotationY, float rotationZ, float scale,
+            FloatBuffer destination
+    ) {
+        float[] matrix = SCRATCH.get();
+        storeTransformationMatrix(x, y, z, rotationX, rotationY, rotationZ, scale, matrix, 0);
+        destination.put(matrix);
+    }
+
+    /**
+     * Write a transformation matrix in column-major order into a float array. Every other variant, including the
+     * scalar batch math, wraps this one so the closed form exists only once.
+     *
+     * @param x           X translation of the matrix.
+     * @param y           Y translation of the matrix.
+     * @param z           Z translation of the matrix.
+     * @param rotationX   Rotation around the X axis in degrees.
+     * @param rotationY   Rotation around the Y axis in degrees.
+     * @param rotationZ   Rotation around the Z axis in degrees.
+     * @param scale       Scale of the matrix.
+     * @param destination Array to be written to.
+     * @param offset      Index of the first element to be written.
+     */
+    static void storeTransformationMatrix(
+            float x, float y, float z, float rotationX, float rotationY, float rotationZ, float scale,
+            float[] destination, int offset
+    ) {
+        double radiansX = Math.toRadians(rotationX);
+        double radiansY = Math.toRadians(rotationY);
+        double radiansZ = Math.toRadians(rotationZ);
+
+        float sinX = (float) Math.sin(radiansX);
+        float cosX = (float) Math.cos(radiansX);
+        float sinY = (float) Math.sin(radiansY);
+        float cosY = (float) Math.cos(radiansY);
+        float sinZ = (float) Math.sin(radiansZ);
+        float cosZ = (float) Math.cos(radiansZ);
 
-        matrix.translate(translation);
-        matrix.rotate((float) Math.toRadians(rotation.x), new Vector3f(1, 0, 0));
-        matrix.rotate((float) Math.toRadians(rotation.y), new Vector3f(0, 1, 0));
-        matrix.rotate((float) Math.toRadians(rotation.z), new Vector3f(0, 0, 1));
-        matrix.scale(new Vector3f(scale, scale, scale));
+        // The rotation part is Rx * Ry * Rz with every column multiplied by the scale.
+        destination[offset] = cosY * cosZ * scale;
+        destination[offset + 1] = (sinX * sinY * cosZ + cosX * sinZ) * scale;
+        destination[offset + 2] = (sinX * sinZ - cosX * sinY * cosZ) * scale;
+        destination[offset + 3] = 0;
 
-        return matrix;
+        destination[offset + 4] = -cosY * sinZ * scale;
+        destination[offset + 5] = (cosX * cosZ - sinX * sinY * sinZ) * scale;
+        destination[offset + 6] = (cosX * sinY * sinZ + sinX * cosZ) * scale;
+        destination[offset + 7] = 0;
+
+        destination[offset + 8] = sinY * scale;
+        destination[offset + 9] = -sinX * cosY * scale;
+        destination[offset + 10] = cosX * cosY * scale;
+        destination[offset + 11] = 0;
+
+        destination[offset + 12] = x;
+        destination[offset + 13] = y;
+        destination[offset + 14] = z;
+        destination[offset + 15] = 1;
+    }
+
+    /**
+     * Write a batch of transformation matrices, one after the other in column-major order, into a float buffer at its
+     * current position. The transforms are read from struct-of-arrays inputs, where index i of every array belongs to
+     * the same body.
+     *
+     * @param positionsX  X translations.
+     * @param positionsY  Y translations.
+     * @param positionsZ  Z translations.
+     * @param rotationsX  Rotations around the X axis in degrees.
+     * @param rotationsY  Rotations around the Y axis in degrees.
+     * @param rotationsZ  Rotations around the Z axis in degrees.
+     * @param scales      Scales.
+     * @param offset      Index of the first transform to be written.
+     * @param count       Number of transforms to be written.
+     * @param destination Buffer to be written to; its position advances by 16 floats per transform.
+     */
+    public static void storeTransformationMatrices(
+            float[] positionsX, float[] positionsY, float[] positionsZ, float[] rotationsX, float[] rotationsY,
+            float[] rotationsZ, float[] scales, int offset, int count, FloatBuffer destination
+    ) {
+        int end = offset + count;
+
+        for (int i = offset; i < end; i++) {
+            storeTransformationMatrix(
+                    positionsX[i], positionsY[i], positionsZ[i], rotationsX[i], rotationsY[i], rotationsZ[i],
+                    scales[i], destination
+            );
+        }
     }
 
     /**
@@ -36,15 +213,135 @@ public class EngineMath {
      * @return New view matrix.
      */
     public static Matrix4f createViewMatrix(Camera camera) {
-        Matrix4f viewMatrix = new Matrix4f();
-        Vector3f cameraPosition = camera.position();
-        Vector3f negativeCameraPosition = new Vector3f(-cameraPosition.x, -cameraPosition.y, -cameraPosition.z);
+        return createViewMatrix(camera, new Matrix4f());
+    }
+
+    /**
+     * Write the view matrix of a camera into an existing matrix: the camera's pitch, then its yaw, applied to the
+     * world translated by the negative camera position.
+     *
+     * @param camera      Camera for which a view matrix is to be created.
+     * @param destination Matrix to be overwritten.
+     * @return Destination matrix.
+     */
+    public static Matrix4f createViewMatrix(Camera camera, Matrix4f destination) {
+        Vector3f position = camera.position();
+        Vector3f rotation = camera.rotation();
+
+        double pitch = Math.toRadians(rotation.x);
+        double yaw = Math.toRadians(rotation.y);
+
+        float sinX = (float) Math.sin(pitch);
+        float cosX = (float) Math.cos(pitch);
+        float sinY = (float) Math.sin(yaw);
+        float cosY = (float) Math.cos(yaw);
+
+        destination.m00 = cosY;
+        destination.m01 = sinX * sinY;
+        destination.m02 = -cosX * sinY;
+        destination.m03 = 0;
+
+        destination.m10 = 0;
+        destination.m11 = cosX;
+        destination.m12 = sinX;
+        destination.m13 = 0;
+
+        destination.m20 = sinY;
+        destination.m21 = -sinX * cosY;
+        destination.m22 = cosX * cosY;
+        destination.m23 = 0;
+
+        destination.m30 = -(destination.m00 * position.x + destination.m10 * position.y + destination.m20 * position.z);
+        destination.m31 = -(destination.m01 * position.x + destination.m11 * position.y + destination.m21 * position.z);
+        destination.m32 = -(destination.m02 * position.x + destination.m12 * position.y + destination.m22 * position.z);
+        destination.m33 = 1;
+
+        return destination;
+    }
+
+    /**
+     * Find the ray from the camera through a point on the screen, such as the mouse cursor.
+     *
+     * @param ndcX       X position on the screen in normalized device coordinates, from -1 at the left to 1 at the
+     *                   right.
+     * @param ndcY       Y position on the screen in normalized device coordinates, from -1 at the bottom to 1 at the
+     *                   top.
+     * @param projection Symmetric perspective projection matrix, as built by the master renderer.
+     * @param view       View matrix of the camera, see {@link #createViewMatrix(Camera, Matrix4f)}.
+     * @param origin     Destination for the origin of the ray, the position of the camera.
+     * @param direction  Destination for the normalized direction of the ray.
+     */
+    public static void unproject(
+            float ndcX, float ndcY, Matrix4f projection, Matrix4f view, Vector3f origin, Vector3f direction
+    ) {
+        // The point at a depth of 1 in view space, which the projection puts at the given position.
+        float viewX = ndcX / projection.m00;
+        float viewY = ndcY / projection.m11;
+        float viewZ = -1;
+
+        // The view matrix is a rotation followed by a translation, so its inverse rotation is its transpose.
+        direction.set(
+                view.m00 * viewX + view.m01 * viewY + view.m02 * viewZ,
+                view.m10 * viewX + view.m11 * viewY + view.m12 * viewZ,
+                view.m20 * viewX + view.m21 * viewY + view.m22 * viewZ
+        );
+        direction.normalise();
+
+        origin.set(
+                -(view.m00 * view.m30 + view.m01 * view.m31 + view.m02 * view.m32),
+                -(view.m10 * view.m30 + view.m11 * view.m31 + view.m12 * view.m32),
+                -(view.m20 * view.m30 + view.m21 * view.m31 + view.m22 * view.m32)
+        );
+    }
+
+    /**
+     * Copy a matrix into a float array in column-major order.
+     *
+     * @param matrix      Matrix to be copied.
+     * @param destination Array to be written to.
+     * @param offset      Index of the first element to be written.
+     */
+    public static void storeMatrix(Matrix4f matrix, float[] destination, int offset) {
+        destination[offset] = matrix.m00;
+        destination[offset + 1] = matrix.m01;
+        destination[offset + 2] = matrix.m02;
+        destination[offset + 3] = matrix.m03;
+        destination[offset + 4] = matrix.m10;
+        destination[offset + 5] = matrix.m11;
+        destination[offset + 6] = matrix.m12;
+        destination[offset + 7] = matrix.m13;
+        destination[offset + 8] = matrix.m20;
+        destination[offset + 9] = matrix.m21;
+        destination[offset + 10] = matrix.m22;
+        destination[offset + 11] = matrix.m23;
+        destination[offset + 12] = matrix.m30;
+        destination[offset + 13] = matrix.m31;
+        destination[offset + 14] = matrix.m32;
+        destination[offset + 15] = matrix.m33;
+    }
+
+    /**
+     * Extract the six frustum planes of a view-projection matrix. A point p is inside a plane (a, b, c, d) when
+     * a * p.x + b * p.y + c * p.z + d is not negative, and the planes are normalized so that value is a distance.
+     *
+     * @param viewProjection View-projection matrix as 16 floats in column-major order.
+     * @param planes         Destination for the left, right, bottom, top, near and far planes as 24 floats.
+     */
+    public static void extractFrustumPlanes(float[] viewProjection, float[] planes) {
+        for (int i = 0; i < 6; i++) {
+            int row = i / 2;
+            float sign = i % 2 == 0 ? 1 : -1;
 
-        viewMatrix.setIdentity();
-        viewMatrix.rotate((float) Math.toRadians(camera.rotation().x), new Vector3f(1, 0, 0));
-        viewMatrix.rotate((float) Math.toRadians(camera.rotation().y), new Vector3f(0, 1, 0));
-        viewMatrix.translate(negativeCameraPosition);
+            float a = viewProjection[3] + sign * viewProjection[row];
+            float b = viewProjection[7] + sign * viewProjection[4 + row];
+            float c = viewProjection[11] + sign * viewProjection[8 + row];
+            float d = viewProjection[15] + sign * viewProjection[12 + row];
+            float length = (float) Math.sqrt(a * a + b * b + c * c);
 
-        return viewMatrix;
+            planes[i * 4] = a / length;
+            planes[i * 4 + 1] = b / length;
+            planes[i * 4 + 2] = c / length;
+            planes[i * 4 + 3] = d / length;
+        }
     }
 }
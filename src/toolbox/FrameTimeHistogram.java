@@ -0,0 +1,113 @@
+package toolbox;
+
+import java.io.PrintStream;
+
+/**
+ * Fixed-bucket histogram of frame times. Recording a frame never allocates, so it can be used inside the game loop
+ * without disturbing the timings it measures.
+ */
+public class FrameTimeHistogram {
+    private static final int BAR_WIDTH = 50;
+
+    private final long BUCKET_WIDTH_NANOS;
+    private final long[] BUCKETS;
+
+    private long overflowCount = 0;
+    private long frameCount = 0;
+    private long totalNanos = 0;
+    private long minimumNanos = Long.MAX_VALUE;
+    private long maximumNanos = 0;
+
+    /**
+     * Create a new frame time histogram.
+     *
+     * @param bucketWidthMillis Width of each bucket in milliseconds.
+     * @param bucketCount       Number of buckets; slower frames are counted as overflow.
+     */
+    public FrameTimeHistogram(float bucketWidthMillis, int bucketCount) {
+        this.BUCKET_WIDTH_NANOS = (long) (bucketWidthMillis * 1_000_000);
+        this.BUCKETS = new long[bucketCount];
+    }
+
+    /**
+     * Record the duration of a single frame.
+     *
+     * @param frameNanos Frame time in nanoseconds.
+     */
+    public void record(long frameNanos) {
+        int bucket = (int) (frameNanos / BUCKET_WIDTH_NANOS);
+
+        if (bucket < BUCKETS.length) BUCKETS[bucket]++;
+        else overflowCount++;
+
+        frameCount++;
+        totalNanos += frameNanos;
+        minimumNanos = Math.min(minimumNanos, frameNanos);
+        maximumNanos = Math.max(maximumNanos, frameNanos);
+    }
+
+    /**
+     * Estimate a percentile of the recorded frame times from the bucket upper bounds.
+     *
+     * @param percentile Percentile between 0 and 100.
+     * @return Frame time at the percentile in milliseconds.
+     */
+    public float percentileMillis(float percentile) {
+        if (frameCount == 0) return 0;
+
+        long threshold = (long) Math.ceil(frameCount * percentile / 100.0);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS.length; i++) {
+            seen += BUCKETS[i];
+            if (seen >= threshold) return toMillis((i + 1) * BUCKET_WIDTH_NANOS);
+        }
+
+        return toMillis(maximumNanos);
+    }
+
+    /**
+     * Print a summary and a bar chart of every non-empty bucket.
+     *
+     * @param out Stream to print to.
+     */
+    public void print(PrintStream out) {
+        if (frameCount == 0) {
+            out.println("No frames recorded.");
+            return;
+        }
+
+        out.printf("Frames: %d, mean: %.3f ms, min: %.3f ms, max: %.3f ms%n",
+                frameCount, toMillis(totalNanos) / frameCount, toMillis(minimumNanos), toMillis(maximumNanos));
+        out.printf("p50: %.3f ms, p90: %.3f ms, p99: %.3f ms, p99.9: %.3f ms%n",
+                percentileMillis(50), percentileMillis(90), percentileMillis(99), percentileMillis(99.9f));
+
+        long largestBucket = overflowCount;
+        for (long count : BUCKETS) largestBucket = Math.max(largestBucket, count);
+
+        for (int i = 0; i < BUCKETS.length; i++) {
+            if (BUCKETS[i] == 0) continue;
+
+            out.printf("%8.3f - %8.3f ms | %8d | %s%n",
+                    toMillis(i * BUCKET_WIDTH_NANOS), toMillis((i + 1) * BUCKET_WIDTH_NANOS), BUCKETS[i],
+                    bar(BUCKETS[i], largestBucket));
+        }
+
+        if (overflowCount > 0) {
+            out.printf("%8.3f +          ms | %8d | %s%n",
+                    toMillis(BUCKETS.length * BUCKET_WIDTH_NANOS), overflowCount, bar(overflowCount, largestBucket));
+        }
+    }
+
+    public long frameCount() {
+        return frameCount;
+    }
+
+    private static String bar(long count, long largestBucket) {
+        return "#".repeat((int) Math.max(1, count * BAR_WIDTH / largestBucket));
+    }
+
+    private static float toMillis(long nanos) {
+        return nanos / 1_000_000f;
+    }
+}
@@ -0,0 +1,113 @@
+package toolbox;
+
+/**
+ * Plain Java implementation of the batch math operations, used when the Vector API is unavailable and as the
+ * reference the SIMD implementation is compared against.
+ */
+public class ScalarBatchMath implements BatchMath {
+    @Override
+    public void computeModelMatrices(
+            float[] positionsX, float[] positionsY, float[] positionsZ, float[] rotationsX, float[] rotationsY,
+            float[] rotationsZ, float[] scales, int count, float[] matrices
+    ) {
+        computeModelMatrices(
+                positionsX, positionsY, positionsZ, rotationsX, rotationsY, rotationsZ, scales, 0, count, matrices
+        );
+    }
+
+    /**
+     * Compute the model matrices of a range of bodies. Shared with the SIMD implementation for the tail of a batch
+     * that does not fill a whole vector.
+     *
+     * @param positionsX X translations.
+     * @param positionsY Y translations.
+     * @param positionsZ Z translations.
+     * @param rotationsX Rotations around the X axis in degrees.
+     * @param rotationsY Rotations around the Y axis in degrees.
+     * @param rotationsZ Rotations around the Z axis in degrees.
+     * @param scales     Scales.
+     * @param start      Index of the first body.
+     * @param end        Index after the last body.
+     * @param matrices   Destination, where body i is written at index 16 * i.
+     */
+    public static void computeModelMatrices(
+            float[] positionsX, float[] positionsY, float[] positionsZ, float[] rotationsX, float[] rotationsY,
+            float[] rotationsZ, float[] scales, int start, int end, float[] matrices
+    ) {
+        for (int i = start; i < end; i++) {
+            EngineMath.storeTransformationMatrix(
+                    positionsX[i], positionsY[i], positionsZ[i], rotationsX[i], rotationsY[i], rotationsZ[i],
+                    scales[i], matrices, i * 16
+            );
+        }
+    }
+
+    @Override
+    public void multiplyMatrices(float[] left, float[] matrices, int count, float[] results) {
+        for (int i = 0; i < count; i++) {
+            int offset = i * 16;
+
+            for (int column = 0; column < 4; column++) {
+                float m0 = matrices[offset + column * 4];
+                float m1 = matrices[offset + column * 4 + 1];
+                float m2 = matrices[offset + column * 4 + 2];
+                float m3 = matrices[offset + column * 4 + 3];
+
+                for (int row = 0; row < 4; row++) {
+                    results[offset + column * 4 + row] =
+                            left[row] * m0 + left[4 + row] * m1 + left[8 + row] * m2 + left[12 + row] * m3;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int cullSpheres(
+            float[] planes, float[] centersX, float[] centersY, float[] centersZ, float[] radii, int count,
+            int[] visibleIndices
+    ) {
+        return cullSpheres(planes, centersX, centersY, centersZ, radii, 0, count, visibleIndices, 0);
+    }
+
+    /**
+     * Test a range of bounding spheres against a frustum. Shared with the SIMD implementation for the tail of a batch
+     * that does not fill a whole vector.
+     *
+     * @param planes         Six normalized frustum planes as (a, b, c, d).
+     * @param centersX       X coordinates of the sphere centers.
+     * @param centersY       Y coordinates of the sphere centers.
+     * @param centersZ       Z coordinates of the sphere centers.
+     * @param radii          Sphere radii.
+     * @param start          Index of the first sphere to be tested.
+     * @param end            Index after the last sphere to be tested.
+     * @param visibleIndices Destination for the indices of the visible spheres.
+     * @param visibleCount   Number of indices already in the destination.
+     * @return Number of indices in the destination after the range has been tested.
+     */
+    public static int cullSpheres(
+            float[] planes, float[] centersX, float[] centersY, float[] centersZ, float[] radii, int start, int end,
+            int[] visibleIndices, int visibleCount
+    ) {
+        for (int i = start; i < end; i++) {
+            float x = centersX[i];
+            float y = centersY[i];
+            float z = centersZ[i];
+            float negativeRadius = -radii[i];
+
+            boolean visible = true;
+
+            for (int plane = 0; plane < 24; plane += 4) {
+                float distance = planes[plane] * x + planes[plane + 1] * y + planes[plane + 2] * z + planes[plane + 3];
+
+                if (distance < negativeRadius) {
+                    visible = false;
+                    break;
+                }
+            }
+
+            if (visible) visibleIndices[visibleCount++] = i;
+        }
+
+        return visibleCount;
+    }
+}